@@ -0,0 +1,477 @@
+package Procesador;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Genera, para cada entidad con campos @Columna (entities.Columna), la clase
+ * &lt;Entidad&gt;Filas con el mapeo ResultSet → entidad y la vinculación
+ * entidad → PreparedStatement, escritos campo por campo: sin reflexión ni
+ * búsquedas de columnas por nombre en cada fila.
+ *
+ * Lo generado:
+ * <ul>
+ *   <li>Indices: posición de cada columna, resuelta una vez por result set
+ *       a partir de sus etiquetas (0 = la consulta no la trae y el campo
+ *       queda sin asignar).</li>
+ *   <li>leer(rs, indices): una entidad por fila, con getters tipados
+ *       (getInt, getBoolean...) y enums por tabla de símbolos. Las entidades
+ *       @Anidada se leen con su prefijo, solo si su id no es nulo.</li>
+ *   <li>vincular(ps, desde, entidad): los parámetros de las columnas
+ *       declaradas en la propia clase (no las heredadas, como id y
+ *       eliminado), en orden de declaración; devuelve el próximo índice.</li>
+ *   <li>COLUMNAS, MARCADORES y ASIGNACIONES con esas mismas columnas, para
+ *       armar INSERT y UPDATE, y seleccion(alias, prefijo[, campos]) para los
+ *       SELECT (todas las columnas o solo las de los campos pedidos).</li>
+ * </ul>
+ *
+ * Las clases van al paquete de la opción filas.paquete (por defecto "Dao"),
+ * porque usan Dao.CompresionTextos para las columnas comprimidas.
+ */
+@SupportedAnnotationTypes({ProcesadorFilas.COLUMNA, ProcesadorFilas.ANIDADA})
+@SupportedOptions(ProcesadorFilas.OPCION_PAQUETE)
+public class ProcesadorFilas extends AbstractProcessor {
+
+    static final String COLUMNA = "entities.Columna";
+    static final String ANIDADA = "entities.Anidada";
+    static final String OPCION_PAQUETE = "filas.paquete";
+    private static final String COMPRESION = "Dao.CompresionTextos";
+
+    /** Cómo se lee y se vincula cada tipo de campo admitido. */
+    private enum Tipo { INT, LONG, BOOLEAN, DOUBLE, ENTERO, LARGO, TEXTO, FECHA, FECHA_HORA, ENUM_SIMBOLO, ENUM_NOMBRE, ANIDADA }
+
+    /** Un campo anotado de la entidad. */
+    private static final class Campo {
+        String nombre;
+        String columna;
+        Tipo tipo;
+        String claseTipo;
+        boolean comprimida;
+        boolean propio;
+        String prefijo;
+        String getter;
+        String setter;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> anotaciones, RoundEnvironment ronda) {
+        Set<TypeElement> entidades = new LinkedHashSet<>();
+        for (TypeElement anotacion : anotaciones) {
+            for (Element campo : ronda.getElementsAnnotatedWith(anotacion)) {
+                entidades.add((TypeElement) campo.getEnclosingElement());
+            }
+        }
+        for (TypeElement entidad : entidades) {
+            if (!entidad.getModifiers().contains(Modifier.ABSTRACT)) {
+                try {
+                    generar(entidad);
+                } catch (IOException e) {
+                    error(entidad, "No se pudo generar " + nombreFilas(entidad) + ": " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    // --- Modelo ---
+
+    private List<Campo> campos(TypeElement entidad) {
+        // De la superclase más lejana a la entidad: el orden de las columnas es el de declaración.
+        List<TypeElement> jerarquia = new ArrayList<>();
+        for (TypeElement t = entidad; t != null; t = superclase(t)) {
+            jerarquia.add(t);
+        }
+        Collections.reverse(jerarquia);
+
+        List<Campo> campos = new ArrayList<>();
+        for (TypeElement t : jerarquia) {
+            for (VariableElement v : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                AnnotationMirror columna = anotacion(v, COLUMNA);
+                AnnotationMirror anidada = anotacion(v, ANIDADA);
+                if (columna == null && anidada == null) {
+                    continue;
+                }
+                Campo c = new Campo();
+                c.nombre = v.getSimpleName().toString();
+                c.propio = t.equals(entidad);
+                c.claseTipo = processingEnv.getTypeUtils().erasure(v.asType()).toString();
+                String mayuscula = Character.toUpperCase(c.nombre.charAt(0)) + c.nombre.substring(1);
+                if (anidada != null) {
+                    c.tipo = Tipo.ANIDADA;
+                    c.prefijo = (String) valor(anidada, "prefijo");
+                    if (!(v.asType() instanceof DeclaredType)) {
+                        error(v, "@Anidada requiere una entidad");
+                        continue;
+                    }
+                } else {
+                    String nombreColumna = (String) valor(columna, "value");
+                    c.columna = nombreColumna.isEmpty() ? c.nombre : nombreColumna;
+                    c.comprimida = (Boolean) valor(columna, "comprimida");
+                    c.tipo = tipo(v.asType());
+                    if (c.tipo == null) {
+                        error(v, "Tipo de columna no admitido: " + v.asType());
+                        continue;
+                    }
+                    if (c.comprimida && c.tipo != Tipo.TEXTO) {
+                        error(v, "Solo una columna String puede ser comprimida");
+                        continue;
+                    }
+                }
+                c.getter = (c.tipo == Tipo.BOOLEAN ? "is" : "get") + mayuscula;
+                c.setter = "set" + mayuscula + (c.comprimida ? "Diferido" : "");
+                if (!tieneMetodo(entidad, c.getter, 0) || !tieneMetodo(entidad, c.setter, 1)) {
+                    error(v, "El campo " + c.nombre + " necesita " + c.getter + "() y " + c.setter + "(...)");
+                    continue;
+                }
+                campos.add(c);
+            }
+        }
+        return campos;
+    }
+
+    private Tipo tipo(TypeMirror t) {
+        switch (t.getKind()) {
+            case INT: return Tipo.INT;
+            case LONG: return Tipo.LONG;
+            case BOOLEAN: return Tipo.BOOLEAN;
+            case DOUBLE: return Tipo.DOUBLE;
+            case DECLARED: break;
+            default: return null;
+        }
+        TypeElement e = (TypeElement) ((DeclaredType) t).asElement();
+        if (e.getKind() == ElementKind.ENUM) {
+            boolean porSimbolo = ElementFilter.methodsIn(e.getEnclosedElements()).stream().anyMatch(m ->
+                    m.getSimpleName().contentEquals("desdeSimbolo") && m.getModifiers().contains(Modifier.STATIC))
+                    && tieneMetodo(e, "getSimbolo", 0);
+            return porSimbolo ? Tipo.ENUM_SIMBOLO : Tipo.ENUM_NOMBRE;
+        }
+        switch (e.getQualifiedName().toString()) {
+            case "java.lang.Integer": return Tipo.ENTERO;
+            case "java.lang.Long": return Tipo.LARGO;
+            case "java.lang.String": return Tipo.TEXTO;
+            case "java.time.LocalDate": return Tipo.FECHA;
+            case "java.time.LocalDateTime": return Tipo.FECHA_HORA;
+            default: return null;
+        }
+    }
+
+    private boolean tieneMetodo(TypeElement tipo, String nombre, int parametros) {
+        for (ExecutableElement m : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(tipo))) {
+            if (m.getSimpleName().contentEquals(nombre) && m.getParameters().size() == parametros
+                    && m.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TypeElement superclase(TypeElement t) {
+        TypeMirror s = t.getSuperclass();
+        if (s.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement e = (TypeElement) ((DeclaredType) s).asElement();
+        return e.getQualifiedName().contentEquals("java.lang.Object") ? null : e;
+    }
+
+    private static AnnotationMirror anotacion(Element e, String nombre) {
+        for (AnnotationMirror a : e.getAnnotationMirrors()) {
+            if (((TypeElement) a.getAnnotationType().asElement()).getQualifiedName().contentEquals(nombre)) {
+                return a;
+            }
+        }
+        return null;
+    }
+
+    private Object valor(AnnotationMirror a, String nombre) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> valores =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(a);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> v : valores.entrySet()) {
+            if (v.getKey().getSimpleName().contentEquals(nombre)) {
+                return v.getValue().getValue();
+            }
+        }
+        throw new IllegalStateException("Falta " + nombre + " en " + a);
+    }
+
+    private String paquete() {
+        String p = processingEnv.getOptions().get(OPCION_PAQUETE);
+        return p == null || p.isEmpty() ? "Dao" : p;
+    }
+
+    private static String nombreFilas(TypeElement entidad) {
+        return entidad.getSimpleName() + "Filas";
+    }
+
+    private static String nombreFilas(String claseEntidad) {
+        return claseEntidad.substring(claseEntidad.lastIndexOf('.') + 1) + "Filas";
+    }
+
+    private void error(Element e, String mensaje) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, mensaje, e);
+    }
+
+    // --- Generación ---
+
+    private void generar(TypeElement entidad) throws IOException {
+        List<Campo> campos = campos(entidad);
+        boolean tieneId = campos.stream().anyMatch(c -> c.nombre.equals("id") && c.tipo == Tipo.INT);
+        if (!tieneId) {
+            error(entidad, "La entidad necesita una columna int id (ver entities.Base)");
+            return;
+        }
+        List<Campo> vinculados = new ArrayList<>();
+        List<Campo> columnas = new ArrayList<>();
+        for (Campo c : campos) {
+            if (c.tipo != Tipo.ANIDADA) {
+                columnas.add(c);
+                if (c.propio) {
+                    vinculados.add(c);
+                }
+            }
+        }
+
+        String clase = nombreFilas(entidad);
+        String tipoEntidad = entidad.getQualifiedName().toString();
+        StringBuilder s = new StringBuilder();
+        s.append("package ").append(paquete()).append(";\n\n");
+        s.append("import java.sql.Connection;\n");
+        s.append("import java.sql.PreparedStatement;\n");
+        s.append("import java.sql.ResultSet;\n");
+        s.append("import java.sql.ResultSetMetaData;\n");
+        s.append("import java.sql.SQLException;\n");
+        s.append("import java.sql.Types;\n");
+        s.append("import java.util.HashMap;\n");
+        s.append("import java.util.Locale;\n");
+        s.append("import java.util.Map;\n");
+        s.append("import java.util.Set;\n\n");
+        s.append("/**\n * Mapeo y vinculación de ").append(entidad.getSimpleName())
+         .append(" generados por Procesador.ProcesadorFilas a partir de sus\n * campos @Columna. No editar.\n */\n");
+        s.append("@javax.annotation.processing.Generated(\"Procesador.ProcesadorFilas\")\n");
+        s.append("public final class ").append(clase).append(" {\n\n");
+        s.append("    private ").append(clase).append("() {\n    }\n\n");
+
+        s.append("    /** Columnas propias (sin las heredadas), en el orden de vincular(). */\n");
+        s.append("    public static final String COLUMNAS = \"").append(unir(vinculados, "", ", ")).append("\";\n");
+        s.append("    public static final String MARCADORES = \"").append(unir(vinculados, "?", ", ")).append("\";\n");
+        s.append("    public static final String ASIGNACIONES = \"").append(unir(vinculados, " = ?", ", ")).append("\";\n");
+        s.append("    /** Cantidad de parámetros que ocupa vincular(). */\n");
+        s.append("    public static final int PARAMETROS = ").append(vinculados.size()).append(";\n\n");
+
+        // seleccion
+        s.append("    /**\n     * Lista de SELECT con todas las columnas de la entidad: \"alias.col AS prefijocol\".\n     */\n");
+        s.append("    public static String seleccion(String alias, String prefijo) {\n");
+        s.append("        return ");
+        for (int i = 0; i < columnas.size(); i++) {
+            String col = columnas.get(i).columna;
+            s.append(i == 0 ? "" : "\n                + \", \" + ")
+             .append("alias + \".").append(col).append(" AS \" + prefijo + \"").append(col).append("\"");
+        }
+        s.append(";\n    }\n\n");
+
+        s.append("    /** Nombres de los campos con columna (los que acepta seleccion con campos). */\n");
+        s.append("    public static final Set<String> CAMPOS = Set.of(");
+        for (int i = 0; i < columnas.size(); i++) {
+            s.append(i == 0 ? "" : ", ").append('"').append(columnas.get(i).nombre).append('"');
+        }
+        s.append(");\n\n");
+        s.append("    /**\n     * Lista de SELECT con solo los campos pedidos (más el id, siempre), en orden\n")
+         .append("     * de declaración. Los demás quedan sin asignar en leer().\n")
+         .append("     * @throws IllegalArgumentException Si algún campo no está en CAMPOS\n     */\n");
+        s.append("    public static String seleccion(String alias, String prefijo, Set<String> campos) {\n");
+        s.append("        if (!CAMPOS.containsAll(campos)) {\n");
+        s.append("            throw new IllegalArgumentException(\"Campos inválidos: \" + campos + \" (válidos: \" + CAMPOS + \")\");\n");
+        s.append("        }\n");
+        s.append("        StringBuilder s = new StringBuilder(alias).append(\".id AS \").append(prefijo).append(\"id\");\n");
+        for (Campo c : columnas) {
+            if (c.nombre.equals("id")) {
+                continue;
+            }
+            s.append("        if (campos.contains(\"").append(c.nombre).append("\")) {\n");
+            s.append("            s.append(\", \").append(alias).append(\".").append(c.columna)
+             .append(" AS \").append(prefijo).append(\"").append(c.columna).append("\");\n");
+            s.append("        }\n");
+        }
+        s.append("        return s.toString();\n    }\n\n");
+
+        // Indices
+        s.append("    /** Posiciones de las columnas en un result set (0 = ausente). */\n");
+        s.append("    public static final class Indices {\n");
+        s.append("        final Connection conexion;\n");
+        for (Campo c : campos) {
+            if (c.tipo == Tipo.ANIDADA) {
+                s.append("        final ").append(nombreFilas(c.claseTipo)).append(".Indices ").append(c.nombre).append(";\n");
+            } else {
+                s.append("        final int ").append(c.nombre).append(";\n");
+            }
+        }
+        s.append("\n        Indices(Map<String, Integer> etiquetas, String prefijo, Connection conexion) {\n");
+        s.append("            this.conexion = conexion;\n");
+        for (Campo c : campos) {
+            if (c.tipo == Tipo.ANIDADA) {
+                s.append("            this.").append(c.nombre).append(" = new ").append(nombreFilas(c.claseTipo))
+                 .append(".Indices(etiquetas, prefijo + \"").append(c.prefijo.toLowerCase(Locale.ROOT)).append("\", conexion);\n");
+            } else {
+                s.append("            this.").append(c.nombre).append(" = etiquetas.getOrDefault(prefijo + \"")
+                 .append(c.columna.toLowerCase(Locale.ROOT)).append("\", 0);\n");
+            }
+        }
+        s.append("        }\n    }\n\n");
+
+        s.append("    /**\n     * Resuelve las columnas de \"rs\" (una vez, antes de recorrerlo). Los textos\n")
+         .append("     * comprimidos cargan su diccionario con la conexión del result set.\n     */\n");
+        s.append("    public static Indices indices(ResultSet rs) throws SQLException {\n");
+        s.append("        return indices(rs, rs.getStatement().getConnection());\n    }\n\n");
+        s.append("    /**\n     * Variante con la conexión para cargar diccionarios (null en recorridos en\n")
+         .append("     * streaming, que llaman antes a CompresionTextos.preparar).\n     */\n");
+        s.append("    public static Indices indices(ResultSet rs, Connection conexion) throws SQLException {\n");
+        s.append("        ResultSetMetaData md = rs.getMetaData();\n");
+        s.append("        Map<String, Integer> etiquetas = new HashMap<>();\n");
+        s.append("        for (int i = md.getColumnCount(); i >= 1; i--) {\n");
+        s.append("            etiquetas.put(md.getColumnLabel(i).toLowerCase(Locale.ROOT), i); // ante repetidas, la primera\n");
+        s.append("        }\n");
+        s.append("        return new Indices(etiquetas, \"\", conexion);\n    }\n\n");
+
+        // leer
+        s.append("    /** Entidad de la fila actual de \"rs\". */\n");
+        s.append("    public static ").append(tipoEntidad).append(" leer(ResultSet rs, Indices ix) throws SQLException {\n");
+        s.append("        ").append(tipoEntidad).append(" e = new ").append(tipoEntidad).append("();\n");
+        for (Campo c : campos) {
+            s.append(lectura(c));
+        }
+        s.append("        return e;\n    }\n\n");
+
+        s.append("    /** null si el id de la fila es nulo (p. ej. un LEFT JOIN sin coincidencia). */\n");
+        s.append("    static ").append(tipoEntidad).append(" leerSiExiste(ResultSet rs, Indices ix) throws SQLException {\n");
+        s.append("        if (ix.id == 0 || rs.getInt(ix.id) == 0) {\n            return null;\n        }\n");
+        s.append("        return leer(rs, ix);\n    }\n\n");
+
+        // vincular
+        s.append("    /**\n     * Vincula las columnas de COLUMNAS desde el parámetro \"desde\".\n")
+         .append("     * @return Índice del parámetro siguiente\n     */\n");
+        s.append("    public static int vincular(PreparedStatement ps, int desde, ").append(tipoEntidad)
+         .append(" e) throws SQLException {\n");
+        s.append("        int i = desde;\n");
+        for (Campo c : vinculados) {
+            s.append(vinculacion(c));
+        }
+        s.append("        return i;\n    }\n}\n");
+
+        try (Writer w = processingEnv.getFiler().createSourceFile(paquete() + "." + clase, entidad).openWriter()) {
+            w.write(s.toString());
+        }
+    }
+
+    private static String unir(List<Campo> campos, String sufijo, String separador) {
+        StringBuilder s = new StringBuilder();
+        for (Campo c : campos) {
+            if (s.length() > 0) {
+                s.append(separador);
+            }
+            s.append(sufijo.equals("?") ? "?" : c.columna + sufijo);
+        }
+        return s.toString();
+    }
+
+    private static String lectura(Campo c) {
+        String ix = "ix." + c.nombre;
+        String set = "e." + c.setter;
+        String cuerpo;
+        switch (c.tipo) {
+            case INT: cuerpo = set + "(rs.getInt(" + ix + "));"; break;
+            case LONG: cuerpo = set + "(rs.getLong(" + ix + "));"; break;
+            case BOOLEAN: cuerpo = set + "(rs.getBoolean(" + ix + "));"; break;
+            case DOUBLE: cuerpo = set + "(rs.getDouble(" + ix + "));"; break;
+            case ENTERO:
+                cuerpo = "int v = rs.getInt(" + ix + ");\n            " + set + "(rs.wasNull() ? null : v);";
+                break;
+            case LARGO:
+                cuerpo = "long v = rs.getLong(" + ix + ");\n            " + set + "(rs.wasNull() ? null : v);";
+                break;
+            case TEXTO:
+                cuerpo = c.comprimida
+                        ? set + "(" + COMPRESION + ".diferido(rs.getString(" + ix + "), ix.conexion));"
+                        : set + "(rs.getString(" + ix + "));";
+                break;
+            case FECHA:
+                cuerpo = "java.sql.Date v = rs.getDate(" + ix + ");\n            " + set + "(v != null ? v.toLocalDate() : null);";
+                break;
+            case FECHA_HORA:
+                cuerpo = "java.sql.Timestamp v = rs.getTimestamp(" + ix + ");\n            "
+                        + set + "(v != null ? v.toLocalDateTime() : null);";
+                break;
+            case ENUM_SIMBOLO:
+                cuerpo = "String v = rs.getString(" + ix + ");\n            "
+                        + set + "(v != null ? " + c.claseTipo + ".desdeSimbolo(v) : null);";
+                break;
+            case ENUM_NOMBRE:
+                cuerpo = "String v = rs.getString(" + ix + ");\n            "
+                        + set + "(v != null ? " + c.claseTipo + ".valueOf(v) : null);";
+                break;
+            case ANIDADA:
+                return "        " + set + "(" + nombreFilas(c.claseTipo) + ".leerSiExiste(rs, " + ix + "));\n";
+            default:
+                throw new IllegalStateException(c.tipo.name());
+        }
+        return "        if (" + ix + " != 0) {\n            " + cuerpo + "\n        }\n";
+    }
+
+    private static String vinculacion(Campo c) {
+        String get = "e." + c.getter + "()";
+        switch (c.tipo) {
+            case INT: return "        ps.setInt(i++, " + get + ");\n";
+            case LONG: return "        ps.setLong(i++, " + get + ");\n";
+            case BOOLEAN: return "        ps.setBoolean(i++, " + get + ");\n";
+            case DOUBLE: return "        ps.setDouble(i++, " + get + ");\n";
+            case TEXTO:
+                return "        ps.setString(i++, " + (c.comprimida ? COMPRESION + ".paraGuardar(" + get + ")" : get) + ");\n";
+            default:
+                break;
+        }
+        String tipoSql;
+        String valor;
+        switch (c.tipo) {
+            case ENTERO: tipoSql = "Types.INTEGER"; valor = "ps.setInt(i++, v);"; break;
+            case LARGO: tipoSql = "Types.BIGINT"; valor = "ps.setLong(i++, v);"; break;
+            case FECHA: tipoSql = "Types.DATE"; valor = "ps.setDate(i++, java.sql.Date.valueOf(v));"; break;
+            case FECHA_HORA: tipoSql = "Types.TIMESTAMP"; valor = "ps.setTimestamp(i++, java.sql.Timestamp.valueOf(v));"; break;
+            case ENUM_SIMBOLO: tipoSql = "Types.VARCHAR"; valor = "ps.setString(i++, v.getSimbolo());"; break;
+            case ENUM_NOMBRE: tipoSql = "Types.VARCHAR"; valor = "ps.setString(i++, v.name());"; break;
+            default: throw new IllegalStateException(c.tipo.name());
+        }
+        String tipoVariable = c.tipo == Tipo.ENTERO ? "Integer" : c.tipo == Tipo.LARGO ? "Long" : c.claseTipo;
+        return "        {\n            " + tipoVariable + " v = " + get + ";\n"
+                + "            if (v == null) {\n                ps.setNull(i++, " + tipoSql + ");\n"
+                + "            } else {\n                " + valor + "\n            }\n        }\n";
+    }
+}
@@ -0,0 +1,94 @@
+package Auditoria;
+
+import Util.Apagado;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Punto de acceso a la auditoría de lecturas y cambios de HistoriaClinica.
+ *
+ * Se activa con -Dauditoria.dir=DIRECTORIO (desactivada por defecto: sin
+ * costo alguno). Parámetros opcionales:
+ * - -Dauditoria.segmentoMb (64): tamaño de cada segmento
+ * - -Dauditoria.fsyncMs (1000): período máximo entre force() a disco
+ * - -Dauditoria.capacidad (65536): eventos en el buffer antes de descartar
+ *
+ * El usuario de cada evento es el fijado con setUsuario() en el hilo actual
+ * (la API HTTP lo toma del encabezado X-Usuario) o, si no hay, el usuario
+ * del sistema operativo que ejecuta el proceso.
+ */
+public final class Auditor {
+
+    private static final BitacoraAuditoria BITACORA = crearBitacora();
+    private static final ThreadLocal<String> USUARIO = new ThreadLocal<>();
+    private static final String USUARIO_PROCESO = System.getProperty("user.name", "desconocido");
+
+    private Auditor() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    private static BitacoraAuditoria crearBitacora() {
+        String dir = System.getProperty("auditoria.dir");
+        if (dir == null || dir.trim().isEmpty()) {
+            return null;
+        }
+        int segmentoMb = Integer.getInteger("auditoria.segmentoMb", 64);
+        long fsyncMs = Long.getLong("auditoria.fsyncMs", 1000L);
+        int capacidad = Integer.getInteger("auditoria.capacidad", 65536);
+        try {
+            BitacoraAuditoria b = BitacoraAuditoria.abrir(Paths.get(dir), segmentoMb * 1024 * 1024, fsyncMs, capacidad);
+            // Después del vaciado de la escritura diferida, que audita lo que escribe.
+            Apagado.alApagar(Apagado.Fase.BITACORAS, b::close);
+            return b;
+        } catch (IOException e) {
+            // Configurada pero inutilizable: no se sigue sin auditar.
+            throw new IllegalStateException("No se pudo abrir la bitácora de auditoría en " + dir + ": " + e.getMessage(), e);
+        }
+    }
+
+    public static boolean estaActivo() {
+        return BITACORA != null;
+    }
+
+    /** La bitácora en uso, o null si la auditoría está desactivada. */
+    public static BitacoraAuditoria getBitacora() {
+        return BITACORA;
+    }
+
+    /**
+     * Registra un evento (no bloquea: solo lo encola).
+     */
+    public static void registrar(EventoAuditoria.Tipo tipo, int pacienteId, String detalle) {
+        registrar(tipo, pacienteId, usuarioActual(), detalle);
+    }
+
+    /**
+     * Registra un evento a nombre de "usuario" (para lo que se confirma en
+     * otro hilo, p. ej. la escritura diferida: ver getUsuario()).
+     */
+    public static void registrar(EventoAuditoria.Tipo tipo, int pacienteId, String usuario, String detalle) {
+        if (BITACORA != null) {
+            BITACORA.registrar(new EventoAuditoria(System.currentTimeMillis(), tipo, pacienteId, usuario, detalle));
+        }
+    }
+
+    /** Usuario a registrar en los eventos del hilo actual (null = el del proceso). */
+    public static void setUsuario(String usuario) {
+        if (usuario == null) {
+            USUARIO.remove();
+        } else {
+            USUARIO.set(usuario);
+        }
+    }
+
+    /** Usuario que se registraría ahora en este hilo (el fijado o el del proceso). */
+    public static String getUsuario() {
+        return usuarioActual();
+    }
+
+    private static String usuarioActual() {
+        String u = USUARIO.get();
+        return u != null ? u : USUARIO_PROCESO;
+    }
+}
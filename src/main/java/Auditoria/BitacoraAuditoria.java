@@ -0,0 +1,524 @@
+package Auditoria;
+
+import Util.AnilloMpsc;
+import Util.Hilos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Bitácora de auditoría de solo agregado, en segmentos mapeados en memoria.
+ *
+ * Camino de la solicitud: registrar() solo encola el evento en un
+ * AnilloMpsc (un CAS, sin locks ni E/S). Si el buffer está lleno el evento
+ * se descarta y se cuenta; el escritor deja en la bitácora una marca
+ * PERDIDOS con la cantidad, para que el hueco quede registrado.
+ *
+ * Un único hilo escritor vacía el buffer y copia cada evento al segmento
+ * activo (MappedByteBuffer de tamaño fijo: escribir es copiar memoria).
+ * Cada "fsyncMs" hace force() de lo escrito. Cuando un evento no entra en
+ * el segmento, se cierra (con su índice) y se abre el siguiente.
+ *
+ * Formato de cada registro: [largo int][crc32 int][instante long][tipo byte]
+ * [pacienteId int][usuario: largo short + UTF-8][detalle: largo short + UTF-8].
+ * El largo se escribe último: un registro a medio escribir tiene largo 0 y
+ * marca el fin de los datos; el CRC descarta páginas persistidas a medias.
+ *
+ * Índice por paciente: el segmento activo tiene un índice en memoria
+ * (pacienteId -> posiciones); al rotar se guarda como archivo .idx con los
+ * pares (pacienteId, posición) ordenados, para búsqueda binaria. Los
+ * segmentos sin .idx (caída antes de rotar) se indexan al abrir.
+ *
+ * Archivos: auditoria-NNNNNN.seg, auditoria-NNNNNN.idx y auditoria.lock
+ * (impide dos procesos escribiendo el mismo directorio).
+ */
+public class BitacoraAuditoria implements AutoCloseable {
+
+    private static final int CABECERA = 8;
+    private static final int MAX_USUARIO = 255;
+    private static final int MAX_DETALLE = 1024;
+    private static final int INTENTOS_ENCOLAR = 64;
+
+    private final Path directorio;
+    private final int tamSegmento;
+    private final long fsyncNanos;
+    private final boolean soloLectura;
+
+    // --- Productores ---
+    private final AnilloMpsc<EventoAuditoria> anillo;
+    private final AtomicLong encolados = new AtomicLong();
+    private final AtomicLong perdidos = new AtomicLong();
+    private final AtomicLong perdidosSinMarcar = new AtomicLong();
+
+    // --- Escritor (un solo hilo) ---
+    private Thread escritor;
+    private volatile boolean deteniendo;
+    private FileChannel canal;
+    private FileLock bloqueoArchivo;
+    private MappedByteBuffer mapa;
+    private int posicion;
+    private boolean sinForzar;
+    private long ultimoForce = System.nanoTime();
+    private final ByteBuffer registro = ByteBuffer.allocate(CABECERA + 8 + 1 + 4 + 2 + MAX_USUARIO * 4 + 2 + MAX_DETALLE * 4);
+    private final CRC32 crc = new CRC32();
+    private final AtomicLong escritos = new AtomicLong();
+    private final AtomicLong forces = new AtomicLong();
+    private final AtomicLong rotaciones = new AtomicLong();
+
+    // --- Estado compartido con las búsquedas (bajo "bloqueoIndice") ---
+    private final Object bloqueoIndice = new Object();
+    private int segmentoActivo;
+    private MappedByteBuffer mapaActivo;
+    private final Map<Integer, Posiciones> indiceActivo = new HashMap<>();
+
+    /** Lista creciente de posiciones dentro de un segmento. */
+    private static final class Posiciones {
+        int[] valores = new int[4];
+        int cantidad;
+
+        void agregar(int posicion) {
+            if (cantidad == valores.length) {
+                valores = Arrays.copyOf(valores, cantidad * 2);
+            }
+            valores[cantidad++] = posicion;
+        }
+    }
+
+    @FunctionalInterface
+    private interface VisitanteRegistro {
+        void visitar(int posicion, int pacienteId);
+    }
+
+    private BitacoraAuditoria(Path directorio, int tamSegmento, long fsyncMs, int capacidad, boolean soloLectura) {
+        this.directorio = directorio;
+        this.tamSegmento = tamSegmento;
+        this.fsyncNanos = TimeUnit.MILLISECONDS.toNanos(fsyncMs);
+        this.soloLectura = soloLectura;
+        this.anillo = soloLectura ? null : new AnilloMpsc<>(capacidad);
+    }
+
+    /**
+     * Abre (o crea) la bitácora para escribir e inicia el hilo escritor.
+     *
+     * @param tamSegmento Bytes por segmento
+     * @param fsyncMs Período máximo entre force() de lo escrito
+     * @param capacidad Eventos que puede acumular el buffer antes de descartar
+     */
+    public static BitacoraAuditoria abrir(Path directorio, int tamSegmento, long fsyncMs, int capacidad) throws IOException {
+        BitacoraAuditoria b = new BitacoraAuditoria(directorio, tamSegmento, fsyncMs, capacidad, false);
+        b.recuperar();
+        b.escritor = Hilos.fabrica("auditoria", true).newThread(b::bucleEscritor);
+        b.escritor.start();
+        return b;
+    }
+
+    /**
+     * Abre la bitácora solo para búsquedas (p. ej. mientras otro proceso escribe).
+     */
+    public static BitacoraAuditoria abrirLectura(Path directorio) {
+        BitacoraAuditoria b = new BitacoraAuditoria(directorio, 0, 0, 0, true);
+        b.segmentoActivo = -1;
+        return b;
+    }
+
+    // --- Camino de la solicitud ---
+
+    /**
+     * Encola un evento. Nunca bloquea ni hace E/S.
+     */
+    public void registrar(EventoAuditoria evento) {
+        if (deteniendo) {
+            // El escritor puede haber terminado: no se cuenta como encolado algo que no se va a escribir.
+            perdidos.incrementAndGet();
+            return;
+        }
+        for (int i = 0; i < INTENTOS_ENCOLAR; i++) {
+            if (anillo.ofrecer(evento)) {
+                encolados.incrementAndGet();
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        perdidos.incrementAndGet();
+        perdidosSinMarcar.incrementAndGet();
+    }
+
+    // --- Escritor ---
+
+    private void recuperar() throws IOException {
+        Files.createDirectories(directorio);
+        FileChannel lock = FileChannel.open(directorio.resolve("auditoria.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        bloqueoArchivo = lock.tryLock();
+        if (bloqueoArchivo == null) {
+            lock.close();
+            throw new IOException("Otro proceso está escribiendo la bitácora de auditoría en " + directorio);
+        }
+        List<Integer> segmentos = listarSegmentos();
+        int ultimo = segmentos.isEmpty() ? 1 : segmentos.get(segmentos.size() - 1);
+        for (int n : segmentos) {
+            if (n != ultimo && !Files.exists(rutaIndice(n))) {
+                reconstruirIndice(n);
+            }
+        }
+        abrirSegmento(ultimo);
+        // El segmento activo se recorre para reconstruir su índice y ubicar el final.
+        posicion = recorrer(mapa, (pos, id) -> indiceActivo.computeIfAbsent(id, k -> new Posiciones()).agregar(pos));
+    }
+
+    private void abrirSegmento(int numero) throws IOException {
+        canal = FileChannel.open(rutaSegmento(numero), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamSegmento);
+        posicion = 0;
+        synchronized (bloqueoIndice) {
+            segmentoActivo = numero;
+            mapaActivo = mapa;
+            indiceActivo.clear();
+        }
+    }
+
+    private void bucleEscritor() {
+        try {
+            while (true) {
+                EventoAuditoria e = anillo.sacar();
+                if (e != null) {
+                    escribir(e);
+                } else {
+                    long sinMarcar = perdidosSinMarcar.getAndSet(0);
+                    if (sinMarcar > 0) {
+                        escribir(new EventoAuditoria(System.currentTimeMillis(), EventoAuditoria.Tipo.PERDIDOS,
+                                0, "auditoria", String.valueOf(sinMarcar)));
+                        continue;
+                    }
+                    if (deteniendo) {
+                        break;
+                    }
+                    forzarSiCorresponde();
+                    LockSupport.parkNanos(500_000);
+                    continue;
+                }
+                if ((escritos.get() & 1023) == 0) {
+                    forzarSiCorresponde();
+                }
+            }
+            forzar();
+        } catch (IOException e) {
+            System.err.println("❌ La bitácora de auditoría dejó de escribir: " + e.getMessage());
+        }
+    }
+
+    private void escribir(EventoAuditoria e) throws IOException {
+        byte[] usuario = recortar(e.getUsuario(), MAX_USUARIO);
+        byte[] detalle = recortar(e.getDetalle(), MAX_DETALLE);
+        registro.clear();
+        registro.position(CABECERA);
+        registro.putLong(e.getInstante());
+        registro.put((byte) e.getTipo().ordinal());
+        registro.putInt(e.getPacienteId());
+        registro.putShort((short) usuario.length).put(usuario);
+        registro.putShort((short) detalle.length).put(detalle);
+        int largo = registro.position() - CABECERA;
+        crc.reset();
+        crc.update(registro.array(), CABECERA, largo);
+
+        if (posicion + CABECERA + largo > tamSegmento) {
+            rotar();
+        }
+        int inicio = posicion;
+        mapa.put(inicio + CABECERA, registro.array(), CABECERA, largo);
+        mapa.putInt(inicio + 4, (int) crc.getValue());
+        mapa.putInt(inicio, largo); // último: publica el registro
+        posicion += CABECERA + largo;
+        synchronized (bloqueoIndice) {
+            indiceActivo.computeIfAbsent(e.getPacienteId(), k -> new Posiciones()).agregar(inicio);
+        }
+        sinForzar = true;
+        escritos.incrementAndGet();
+    }
+
+    private void rotar() throws IOException {
+        forzar();
+        int numero;
+        int[] pares;
+        synchronized (bloqueoIndice) {
+            numero = segmentoActivo;
+            pares = paresOrdenados(indiceActivo);
+        }
+        guardarIndice(numero, pares);
+        canal.close();
+        abrirSegmento(numero + 1);
+        rotaciones.incrementAndGet();
+    }
+
+    private void forzarSiCorresponde() {
+        if (sinForzar && System.nanoTime() - ultimoForce >= fsyncNanos) {
+            forzar();
+        }
+    }
+
+    private void forzar() {
+        if (sinForzar) {
+            mapa.force();
+            forces.incrementAndGet();
+            sinForzar = false;
+        }
+        ultimoForce = System.nanoTime();
+    }
+
+    /**
+     * Vacía lo encolado, fuerza a disco y libera el directorio.
+     */
+    @Override
+    public void close() {
+        if (soloLectura || deteniendo) {
+            return;
+        }
+        deteniendo = true;
+        try {
+            escritor.join(TimeUnit.SECONDS.toMillis(10));
+            canal.close();
+            bloqueoArchivo.channel().close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar la bitácora de auditoría: " + e.getMessage());
+        }
+    }
+
+    // --- Búsqueda ---
+
+    /**
+     * Eventos de un paciente, del más reciente al más antiguo.
+     */
+    public List<EventoAuditoria> buscarPorPaciente(int pacienteId, int maximo) throws IOException {
+        List<EventoAuditoria> resultado = new ArrayList<>();
+        int activo;
+        ByteBuffer datosActivo = null;
+        int[] posicionesActivo = null;
+        synchronized (bloqueoIndice) {
+            activo = segmentoActivo;
+            if (mapaActivo != null) {
+                datosActivo = mapaActivo.duplicate();
+                Posiciones p = indiceActivo.get(pacienteId);
+                posicionesActivo = p == null ? new int[0] : Arrays.copyOf(p.valores, p.cantidad);
+            }
+        }
+        if (posicionesActivo != null) {
+            agregarDesde(datosActivo, posicionesActivo, maximo, resultado);
+        }
+
+        List<Integer> segmentos = listarSegmentos();
+        for (int i = segmentos.size() - 1; i >= 0 && resultado.size() < maximo; i--) {
+            int n = segmentos.get(i);
+            if (n >= activo && activo > 0) {
+                continue;
+            }
+            ByteBuffer datos = mapearLectura(rutaSegmento(n));
+            int[] posiciones;
+            if (Files.exists(rutaIndice(n))) {
+                posiciones = buscarEnIndice(n, pacienteId);
+            } else {
+                // Solo lectura: el segmento que otro proceso está escribiendo todavía no tiene .idx.
+                List<Integer> encontradas = new ArrayList<>();
+                recorrer(datos, (pos, id) -> {
+                    if (id == pacienteId) {
+                        encontradas.add(pos);
+                    }
+                });
+                posiciones = encontradas.stream().mapToInt(Integer::intValue).toArray();
+            }
+            agregarDesde(datos, posiciones, maximo, resultado);
+        }
+        return resultado;
+    }
+
+    private static void agregarDesde(ByteBuffer datos, int[] posiciones, int maximo, List<EventoAuditoria> destino) {
+        for (int i = posiciones.length - 1; i >= 0 && destino.size() < maximo; i--) {
+            destino.add(leer(datos, posiciones[i]));
+        }
+    }
+
+    private int[] buscarEnIndice(int numero, int pacienteId) throws IOException {
+        ByteBuffer indice = mapearLectura(rutaIndice(numero));
+        int pares = indice.capacity() / 8;
+        int lo = 0;
+        int hi = pares;
+        while (lo < hi) {
+            int medio = (lo + hi) >>> 1;
+            if (indice.getInt(medio * 8) < pacienteId) {
+                lo = medio + 1;
+            } else {
+                hi = medio;
+            }
+        }
+        int fin = lo;
+        while (fin < pares && indice.getInt(fin * 8) == pacienteId) {
+            fin++;
+        }
+        int[] posiciones = new int[fin - lo];
+        for (int i = lo; i < fin; i++) {
+            posiciones[i - lo] = indice.getInt(i * 8 + 4);
+        }
+        return posiciones;
+    }
+
+    // --- Formato ---
+
+    /**
+     * Recorre los registros válidos desde el inicio.
+     * @return Posición siguiente al último registro válido
+     */
+    private static int recorrer(ByteBuffer datos, VisitanteRegistro visitante) {
+        CRC32 verificador = new CRC32();
+        int pos = 0;
+        int limite = datos.capacity();
+        while (pos + CABECERA <= limite) {
+            int largo = datos.getInt(pos);
+            if (largo <= 0 || pos + CABECERA + largo > limite) {
+                break;
+            }
+            ByteBuffer cuerpo = datos.duplicate();
+            cuerpo.limit(pos + CABECERA + largo).position(pos + CABECERA);
+            verificador.reset();
+            verificador.update(cuerpo);
+            if ((int) verificador.getValue() != datos.getInt(pos + 4)) {
+                break;
+            }
+            visitante.visitar(pos, datos.getInt(pos + CABECERA + 9));
+            pos += CABECERA + largo;
+        }
+        return pos;
+    }
+
+    private static EventoAuditoria leer(ByteBuffer datos, int posicion) {
+        ByteBuffer b = datos.duplicate();
+        b.position(posicion + CABECERA);
+        long instante = b.getLong();
+        EventoAuditoria.Tipo tipo = EventoAuditoria.Tipo.values()[b.get()];
+        int pacienteId = b.getInt();
+        String usuario = leerTexto(b);
+        String detalle = leerTexto(b);
+        return new EventoAuditoria(instante, tipo, pacienteId, usuario, detalle);
+    }
+
+    private static String leerTexto(ByteBuffer b) {
+        byte[] bytes = new byte[b.getShort() & 0xffff];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] recortar(String texto, int maxCaracteres) {
+        String t = texto.length() > maxCaracteres ? texto.substring(0, maxCaracteres) : texto;
+        return t.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // --- Índices y archivos ---
+
+    private void reconstruirIndice(int numero) throws IOException {
+        Map<Integer, Posiciones> indice = new HashMap<>();
+        recorrer(mapearLectura(rutaSegmento(numero)), (pos, id) -> indice.computeIfAbsent(id, k -> new Posiciones()).agregar(pos));
+        guardarIndice(numero, paresOrdenados(indice));
+    }
+
+    /** Pares (pacienteId, posición) aplanados y ordenados por paciente y luego posición. */
+    private static int[] paresOrdenados(Map<Integer, Posiciones> indice) {
+        Integer[] ids = indice.keySet().toArray(new Integer[0]);
+        Arrays.sort(ids);
+        int total = 0;
+        for (Posiciones p : indice.values()) {
+            total += p.cantidad;
+        }
+        int[] pares = new int[total * 2];
+        int i = 0;
+        for (Integer id : ids) {
+            Posiciones p = indice.get(id);
+            for (int j = 0; j < p.cantidad; j++) {
+                pares[i++] = id;
+                pares[i++] = p.valores[j];
+            }
+        }
+        return pares;
+    }
+
+    private void guardarIndice(int numero, int[] pares) throws IOException {
+        Path temporal = directorio.resolve(String.format("auditoria-%06d.idx.tmp", numero));
+        ByteBuffer buffer = ByteBuffer.allocate(pares.length * 4);
+        buffer.asIntBuffer().put(pares);
+        try (FileChannel c = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                c.write(buffer);
+            }
+            c.force(true);
+        }
+        // El .idx aparece completo o no aparece (y entonces se reconstruye al abrir).
+        Files.move(temporal, rutaIndice(numero), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer mapearLectura(Path ruta) throws IOException {
+        try (FileChannel c = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            return c.map(FileChannel.MapMode.READ_ONLY, 0, c.size());
+        }
+    }
+
+    private List<Integer> listarSegmentos() throws IOException {
+        List<Integer> numeros = new ArrayList<>();
+        if (!Files.isDirectory(directorio)) {
+            return numeros;
+        }
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            archivos.map(p -> p.getFileName().toString())
+                    .filter(n -> n.matches("auditoria-\\d{6}\\.seg"))
+                    .forEach(n -> numeros.add(Integer.parseInt(n.substring(10, 16))));
+        }
+        numeros.sort(null);
+        return numeros;
+    }
+
+    private Path rutaSegmento(int numero) {
+        return directorio.resolve(String.format("auditoria-%06d.seg", numero));
+    }
+
+    private Path rutaIndice(int numero) {
+        return directorio.resolve(String.format("auditoria-%06d.idx", numero));
+    }
+
+    // --- Métricas ---
+
+    public long getEncolados() { return encolados.get(); }
+    public long getPerdidos() { return perdidos.get(); }
+    public long getEscritos() { return escritos.get(); }
+    public long getForces() { return forces.get(); }
+    public long getRotaciones() { return rotaciones.get(); }
+    public long getPendientes() { return anillo == null ? 0 : anillo.getPendientes(); }
+
+    public int getSegmentoActivo() {
+        synchronized (bloqueoIndice) {
+            return segmentoActivo;
+        }
+    }
+
+    public String resumen() {
+        return String.format("encolados=%d escritos=%d pendientes=%d perdidos=%d forces=%d rotaciones=%d segmento=%d",
+                getEncolados(), getEscritos(), getPendientes(), getPerdidos(), getForces(), getRotaciones(), getSegmentoActivo());
+    }
+}
@@ -0,0 +1,45 @@
+package Auditoria;
+
+import java.time.Instant;
+
+/**
+ * Un registro de la bitácora de auditoría: quién hizo qué sobre qué
+ * paciente (y su HC) y cuándo.
+ */
+public class EventoAuditoria {
+
+    public enum Tipo {
+        LECTURA,        // getById / buscarPorDni
+        LISTADO,        // aparición en un listado (getAll / página)
+        ALTA,
+        MODIFICACION,
+        BAJA,
+        PERDIDOS        // marca de eventos descartados por buffer lleno (detalle = cantidad)
+    }
+
+    private final long instante;
+    private final Tipo tipo;
+    private final int pacienteId;
+    private final String usuario;
+    private final String detalle;
+
+    public EventoAuditoria(long instante, Tipo tipo, int pacienteId, String usuario, String detalle) {
+        this.instante = instante;
+        this.tipo = tipo;
+        this.pacienteId = pacienteId;
+        this.usuario = usuario != null ? usuario : "";
+        this.detalle = detalle != null ? detalle : "";
+    }
+
+    /** Epoch en milisegundos. */
+    public long getInstante() { return instante; }
+    public Tipo getTipo() { return tipo; }
+    public int getPacienteId() { return pacienteId; }
+    public String getUsuario() { return usuario; }
+    public String getDetalle() { return detalle; }
+
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(instante) + "\t" + tipo + "\t" + pacienteId + "\t" + usuario + "\t" + detalle;
+    }
+}
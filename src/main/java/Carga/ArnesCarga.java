@@ -0,0 +1,374 @@
+package Carga;
+
+import Config.DatabaseConnection;
+import Config.PoolConexiones;
+import Service.PacienteService;
+import Service.PacienteServiceImpl;
+import Util.HistogramaLatencia;
+import Util.Hilos;
+import entities.Paciente;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Arnés de carga y soak test para la capa Service.
+ *
+ * Genera una mezcla configurable de operaciones (insertar, actualizar,
+ * eliminar, getById, buscarPorDni, getAll) a tasa fija en lazo abierto:
+ * un hilo planificador dispara cada solicitud en su instante previsto
+ * (inicio + k / tasa) sin esperar a que terminen las anteriores, y cada
+ * solicitud se ejecuta en su propio hilo (virtual si la JVM lo permite,
+ * ver Hilos.porTarea).
+ *
+ * La latencia se mide desde el instante PREVISTO, no desde que la operación
+ * empezó a correr: si el sistema se atrasa (pool agotado, locks, GC), la
+ * espera en cola entra en la medición. Así se evita la "omisión coordinada"
+ * de los generadores en lazo cerrado, que dejan de enviar justo cuando el
+ * sistema está lento y esconden la cola de la distribución. También se
+ * registra el tiempo de servicio puro para compararlo.
+ *
+ * Cada --intervalo segundos se imprime el throughput y los percentiles del
+ * intervalo (histogramas obtenerYReiniciar); al final, los totales.
+ *
+ * Uso: java ... Main.Main --carga [--objetivo memoria|mysql] [--tasa OPS/S]
+ *      [--duracion S] [--hilos N] [--precarga N] [--intervalo S]
+ *      [--mezcla insertar=10,actualizar=10,eliminar=2,getById=45,buscarPorDni=30,getAll=3]
+ *      [--latencia-simulada US]
+ */
+public class ArnesCarga {
+
+    public enum Operacion { INSERTAR, ACTUALIZAR, ELIMINAR, GET_BY_ID, BUSCAR_POR_DNI, GET_ALL }
+
+    /** Solicitudes pendientes toleradas antes de descartar (evita agotar memoria si el objetivo no da abasto). */
+    private static final int MAX_PENDIENTES = 100_000;
+
+    private final PacienteService service;
+    private final GeneradorDatos generador = new GeneradorDatos(System.currentTimeMillis());
+    private final Conocidos conocidos = new Conocidos(1 << 16);
+    private final Operacion[] tablaMezcla;
+    private final ExecutorService ejecutor;
+
+    private final Map<Operacion, HistogramaLatencia> latencias = new EnumMap<>(Operacion.class);
+    private final Map<Operacion, HistogramaLatencia> totales = new EnumMap<>(Operacion.class);
+    private final HistogramaLatencia servicio = new HistogramaLatencia();
+    private final HistogramaLatencia servicioTotal = new HistogramaLatencia();
+    private final Map<Operacion, AtomicLong> errores = new EnumMap<>(Operacion.class);
+    private final AtomicInteger pendientes = new AtomicInteger();
+    private final AtomicLong descartadas = new AtomicLong();
+
+    public ArnesCarga(PacienteService service, Map<Operacion, Integer> mezcla, int hilos) {
+        this.service = service;
+        this.tablaMezcla = armarTablaMezcla(mezcla);
+        this.ejecutor = Hilos.porTarea("carga", hilos);
+        for (Operacion op : Operacion.values()) {
+            latencias.put(op, new HistogramaLatencia());
+            totales.put(op, new HistogramaLatencia());
+            errores.put(op, new AtomicLong());
+        }
+    }
+
+    /**
+     * Punto de entrada desde Main: ver el uso en el comentario de la clase.
+     */
+    public static void main(String[] args) throws Exception {
+        String objetivo = "memoria";
+        double tasa = 500;
+        int duracionS = 60;
+        int hilos = 64;
+        int precarga = 1_000;
+        int intervaloS = 5;
+        long latenciaSimuladaUs = 0;
+        String mezcla = "insertar=10,actualizar=10,eliminar=2,getById=45,buscarPorDni=30,getAll=3";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--objetivo": objetivo = args[++i]; break;
+                case "--tasa": tasa = Double.parseDouble(args[++i]); break;
+                case "--duracion": duracionS = Integer.parseInt(args[++i]); break;
+                case "--hilos": hilos = Integer.parseInt(args[++i]); break;
+                case "--precarga": precarga = Integer.parseInt(args[++i]); break;
+                case "--intervalo": intervaloS = Integer.parseInt(args[++i]); break;
+                case "--mezcla": mezcla = args[++i]; break;
+                case "--latencia-simulada": latenciaSimuladaUs = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+        if (tasa <= 0 || duracionS < 1 || intervaloS < 1) {
+            throw new IllegalArgumentException("--tasa, --duracion e --intervalo deben ser positivos");
+        }
+
+        PacienteService service = "mysql".equals(objetivo)
+                ? new PacienteServiceImpl()
+                : new PacienteServiceEnMemoria(latenciaSimuladaUs);
+        ArnesCarga arnes = new ArnesCarga(service, parsearMezcla(mezcla), hilos);
+        System.out.printf("# objetivo=%s tasa=%.0f/s duracion=%ds hilos=%s mezcla=%s%n", objetivo, tasa, duracionS,
+                Hilos.hayHilosVirtuales() ? "virtuales" : String.valueOf(hilos), mezcla);
+        arnes.precargar(precarga);
+        arnes.ejecutar(tasa, TimeUnit.SECONDS.toNanos(duracionS), TimeUnit.SECONDS.toNanos(intervaloS));
+    }
+
+    /**
+     * Inserta "cantidad" pacientes antes de medir, para que las lecturas,
+     * actualizaciones y bajas tengan sobre qué operar.
+     */
+    public void precargar(int cantidad) throws Exception {
+        long inicio = System.nanoTime();
+        for (int i = 0; i < cantidad; i++) {
+            Paciente p = generador.nuevoPaciente();
+            service.insertar(p);
+            conocidos.agregar(p.getId(), p.getDni());
+        }
+        if (cantidad > 0) {
+            System.out.printf("# precarga: %d pacientes en %d ms%n", cantidad,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        }
+    }
+
+    /**
+     * Corre la carga a tasa fija durante "duracionNanos", reportando cada "intervaloNanos".
+     */
+    public void ejecutar(double tasaPorSegundo, long duracionNanos, long intervaloNanos) throws InterruptedException {
+        double periodo = 1_000_000_000.0 / tasaPorSegundo;
+        long inicio = System.nanoTime();
+        long fin = inicio + duracionNanos;
+        long proximoReporte = inicio + intervaloNanos;
+        long intervaloAnterior = inicio;
+        long total = 0;
+
+        for (long k = 0; ; k++) {
+            long previsto = inicio + (long) (k * periodo);
+            if (previsto >= fin) {
+                break;
+            }
+            long ahora;
+            while ((ahora = System.nanoTime()) < previsto) {
+                LockSupport.parkNanos(previsto - ahora);
+            }
+            if (ahora >= proximoReporte) {
+                reportar(ahora - inicio, ahora - intervaloAnterior);
+                intervaloAnterior = ahora;
+                proximoReporte += intervaloNanos;
+            }
+            disparar(elegirOperacion(), previsto);
+            total++;
+        }
+
+        ejecutor.shutdown();
+        if (!ejecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+            System.out.println("# aviso: quedaron solicitudes sin terminar tras 30 s");
+            ejecutor.shutdownNow();
+        }
+        long ahora = System.nanoTime();
+        reportar(ahora - inicio, ahora - intervaloAnterior);
+        reportarTotales(total, ahora - inicio);
+    }
+
+    private void disparar(Operacion op, long previsto) {
+        if (pendientes.incrementAndGet() > MAX_PENDIENTES) {
+            pendientes.decrementAndGet();
+            descartadas.incrementAndGet();
+            return;
+        }
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    long inicioReal = System.nanoTime();
+                    try {
+                        operar(op);
+                    } catch (Exception e) {
+                        errores.get(op).incrementAndGet();
+                    }
+                    long finReal = System.nanoTime();
+                    latencias.get(op).registrar(finReal - previsto);
+                    servicio.registrar(finReal - inicioReal);
+                } finally {
+                    pendientes.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendientes.decrementAndGet();
+            descartadas.incrementAndGet();
+        }
+    }
+
+    private void operar(Operacion op) throws Exception {
+        SplittableRandom r = GeneradorDatos.aleatorio();
+        switch (op) {
+            case INSERTAR: {
+                Paciente p = generador.nuevoPaciente();
+                service.insertar(p);
+                conocidos.agregar(p.getId(), p.getDni());
+                break;
+            }
+            case ACTUALIZAR: {
+                Paciente p = service.getById(conocidos.idAlAzar(r));
+                if (p != null) {
+                    generador.modificar(p);
+                    service.actualizar(p);
+                }
+                break;
+            }
+            case ELIMINAR:
+                service.eliminar(conocidos.idAlAzar(r));
+                break;
+            case GET_BY_ID:
+                service.getById(conocidos.idAlAzar(r));
+                break;
+            case BUSCAR_POR_DNI:
+                service.buscarPorDni(conocidos.dniAlAzar(r));
+                break;
+            case GET_ALL:
+                service.getAll();
+                break;
+            default:
+                throw new IllegalStateException(op.name());
+        }
+    }
+
+    private Operacion elegirOperacion() {
+        return tablaMezcla[GeneradorDatos.aleatorio().nextInt(tablaMezcla.length)];
+    }
+
+    // --- Reportes ---
+
+    private void reportar(long transcurridoNanos, long duracionIntervaloNanos) {
+        long ops = 0;
+        StringBuilder detalle = new StringBuilder();
+        for (Operacion op : Operacion.values()) {
+            HistogramaLatencia h = latencias.get(op).obtenerYReiniciar();
+            totales.get(op).agregar(h);
+            ops += h.getCantidad();
+            if (h.getCantidad() > 0) {
+                detalle.append(String.format("#   %-15s %s%n", op, h.resumen()));
+            }
+        }
+        HistogramaLatencia s = servicio.obtenerYReiniciar();
+        servicioTotal.agregar(s);
+        Runtime rt = Runtime.getRuntime();
+        System.out.printf("# t=%ds ops/s=%.0f pendientes=%d descartadas=%d heap=%dMB%s%n",
+                TimeUnit.NANOSECONDS.toSeconds(transcurridoNanos),
+                ops * 1_000_000_000.0 / Math.max(1, duracionIntervaloNanos),
+                pendientes.get(), descartadas.get(),
+                (rt.totalMemory() - rt.freeMemory()) >> 20, estadoPool());
+        System.out.print(detalle);
+        System.out.printf("#   %-15s %s%n", "(servicio)", s.resumen());
+    }
+
+    private void reportarTotales(long disparadas, long transcurridoNanos) {
+        HistogramaLatencia global = new HistogramaLatencia();
+        System.out.printf("# TOTAL disparadas=%d descartadas=%d duracion=%ds%n", disparadas, descartadas.get(),
+                TimeUnit.NANOSECONDS.toSeconds(transcurridoNanos));
+        for (Operacion op : Operacion.values()) {
+            HistogramaLatencia h = totales.get(op);
+            global.agregar(h);
+            if (h.getCantidad() > 0) {
+                System.out.printf("#   %-15s errores=%d %s%n", op, errores.get(op).get(), h.resumen());
+            }
+        }
+        System.out.printf("#   %-15s ops/s=%.0f %s%n", "(todas)",
+                global.getCantidad() * 1_000_000_000.0 / Math.max(1, transcurridoNanos), global.resumen());
+        System.out.printf("#   %-15s %s%n", "(servicio)", servicioTotal.resumen());
+    }
+
+    private String estadoPool() {
+        // Con el sustituto en memoria no se toca DatabaseConnection (su inicialización exige el driver).
+        if (!(service instanceof PacienteServiceImpl)) {
+            return "";
+        }
+        PoolConexiones pool = DatabaseConnection.getPool();
+        if (pool == null) {
+            return "";
+        }
+        return String.format(" pool=%d/%d espera=%d", pool.getEnUso(), pool.getMaximo(), pool.getEnEspera());
+    }
+
+    // --- Mezcla ---
+
+    /**
+     * "insertar=10,getById=50,..." -> pesos por operación (las omitidas quedan en 0).
+     */
+    static Map<Operacion, Integer> parsearMezcla(String texto) {
+        Map<Operacion, Integer> pesos = new EnumMap<>(Operacion.class);
+        for (String parte : texto.split(",")) {
+            String[] kv = parte.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Mezcla inválida: " + parte);
+            }
+            pesos.put(operacionPorNombre(kv[0].trim()), Integer.parseInt(kv[1].trim()));
+        }
+        return pesos;
+    }
+
+    private static Operacion operacionPorNombre(String nombre) {
+        switch (nombre.toLowerCase()) {
+            case "insertar": return Operacion.INSERTAR;
+            case "actualizar": return Operacion.ACTUALIZAR;
+            case "eliminar": return Operacion.ELIMINAR;
+            case "getbyid": return Operacion.GET_BY_ID;
+            case "buscarpordni": return Operacion.BUSCAR_POR_DNI;
+            case "getall": return Operacion.GET_ALL;
+            default: throw new IllegalArgumentException("Operación desconocida en la mezcla: " + nombre);
+        }
+    }
+
+    /** Tabla con una entrada por unidad de peso, para elegir la operación con un solo nextInt. */
+    private static Operacion[] armarTablaMezcla(Map<Operacion, Integer> pesos) {
+        int suma = pesos.values().stream().mapToInt(Integer::intValue).sum();
+        if (suma <= 0) {
+            throw new IllegalArgumentException("La mezcla debe tener al menos una operación con peso positivo");
+        }
+        Operacion[] tabla = new Operacion[suma];
+        int i = 0;
+        for (Map.Entry<Operacion, Integer> e : pesos.entrySet()) {
+            for (int j = 0; j < e.getValue(); j++) {
+                tabla[i++] = e.getKey();
+            }
+        }
+        return tabla;
+    }
+
+    /**
+     * Anillo de IDs/DNI ya insertados, para elegir objetivos de lectura y
+     * escritura al azar sin recorrer el Service. Al llenarse se pisan los
+     * más viejos; un ID dado de baja sigue pudiendo salir (lectura fallida),
+     * como pasa en la realidad con datos obsoletos en pantalla.
+     */
+    private static final class Conocidos {
+        private final AtomicIntegerArray ids;
+        private final AtomicReferenceArray<String> dnis;
+        private final AtomicLong cantidad = new AtomicLong();
+        private final int mascara;
+
+        Conocidos(int capacidadPotenciaDe2) {
+            this.ids = new AtomicIntegerArray(capacidadPotenciaDe2);
+            this.dnis = new AtomicReferenceArray<>(capacidadPotenciaDe2);
+            this.mascara = capacidadPotenciaDe2 - 1;
+        }
+
+        void agregar(int id, String dni) {
+            int slot = (int) (cantidad.getAndIncrement() & mascara);
+            ids.set(slot, id);
+            dnis.set(slot, dni);
+        }
+
+        int idAlAzar(SplittableRandom r) {
+            int n = (int) Math.min(cantidad.get(), ids.length());
+            return n == 0 ? 0 : ids.get(r.nextInt(n));
+        }
+
+        String dniAlAzar(SplittableRandom r) {
+            int n = (int) Math.min(cantidad.get(), dnis.length());
+            String dni = n == 0 ? null : dnis.get(r.nextInt(n));
+            return dni == null ? "0" : dni;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package Carga;
+
+import entities.HistoriaClinica;
+import entities.HistoriaClinica.GrupoSanguineo;
+import entities.Paciente;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador de pacientes e historias clínicas sintéticos pero verosímiles.
+ *
+ * - Apellidos y nombres frecuentes en Argentina con distribución sesgada
+ *   (los primeros de cada lista aparecen mucho más, como en la realidad),
+ *   lo que importa para índices, diccionarios y búsquedas por prefijo.
+ * - DNI únicos de 15 dígitos (el máximo válido: nunca coinciden con un DNI
+ *   real de 7 u 8) y Nro. de HC únicos a partir de un contador, en un
+ *   bloque elegido por la semilla de la corrida entre 90 millones, para no
+ *   chocar con datos de corridas previas.
+ * - Edades de 0 a 95 años y grupos sanguíneos con frecuencias aproximadas
+ *   de la población local (O+ y A+ dominan).
+ * - Textos clínicos armados con frases típicas, de largo variable.
+ *
+ * Es thread-safe: cada hilo usa su propio SplittableRandom (ver aleatorio()).
+ */
+public class GeneradorDatos {
+
+    private static final String[] APELLIDOS = {
+        "González", "Rodríguez", "Gómez", "Fernández", "López", "Díaz", "Martínez", "Pérez", "García",
+        "Sánchez", "Romero", "Sosa", "Álvarez", "Torres", "Ruiz", "Ramírez", "Flores", "Benítez",
+        "Acosta", "Medina", "Herrera", "Suárez", "Aguirre", "Giménez", "Gutiérrez", "Pereyra", "Rojas",
+        "Molina", "Castro", "Ortiz", "Silva", "Núñez", "Luna", "Juárez", "Cabrera", "Ríos", "Ferreyra",
+        "Godoy", "Morales", "Domínguez", "Moreno", "Peralta", "Vega", "Carrizo", "Quiroga", "Castillo",
+        "Ledesma", "Muñoz", "Ojeda", "Ponce", "Vera", "Vázquez", "Villalba", "Cardozo", "Navarro"
+    };
+
+    private static final String[] NOMBRES = {
+        "María", "Juan", "José", "Ana", "Carlos", "Laura", "Jorge", "Marta", "Luis", "Silvia", "Miguel",
+        "Graciela", "Daniel", "Patricia", "Roberto", "Claudia", "Mario", "Susana", "Ricardo", "Norma",
+        "Sofía", "Mateo", "Valentina", "Santiago", "Martina", "Benjamín", "Catalina", "Thiago", "Lucía",
+        "Joaquín", "Emilia", "Bautista", "Julieta", "Tomás", "Camila", "Facundo", "Agustina", "Lautaro"
+    };
+
+    /** Frecuencias aproximadas (por mil) en el mismo orden que GrupoSanguineo.values(). */
+    private static final int[] FRECUENCIA_GRUPOS = {300, 30, 90, 8, 20, 2, 500, 50};
+
+    private static final String[] ANTECEDENTES = {
+        "Hipertensión arterial en tratamiento.", "Diabetes tipo 2.", "Asma bronquial leve.",
+        "Apendicectomía en la infancia.", "Alergia a penicilina.", "Sin antecedentes de relevancia.",
+        "Hipotiroidismo.", "Dislipemia.", "Ex tabaquista.", "Fractura de radio distal.",
+        "Antecedentes familiares de cardiopatía isquémica.", "Cesárea previa."
+    };
+
+    private static final String[] MEDICACION = {
+        "Enalapril 10 mg cada 12 hs.", "Metformina 850 mg con el almuerzo.", "Levotiroxina 50 mcg en ayunas.",
+        "Salbutamol a demanda.", "Atorvastatina 20 mg por la noche.", "Ninguna.", "Losartán 50 mg diario.",
+        "Omeprazol 20 mg en ayunas."
+    };
+
+    private static final String[] OBSERVACIONES = {
+        "Control anual.", "Paciente refiere buena adherencia al tratamiento.", "Se solicita laboratorio de rutina.",
+        "Derivado a cardiología.", "Vacunación al día.", "Próximo control en seis meses.",
+        "Se indica dieta hiposódica.", "Refiere cefaleas ocasionales."
+    };
+
+    /** Cada corrida usa un bloque de 10 millones de DNI dentro de los de 15 dígitos. */
+    private static final long TAMANO_BLOQUE = 10_000_000L;
+    private static final long BLOQUES = 90_000_000L;
+    private static final long PRIMER_DNI = 100_000_000_000_000L;
+
+    private static final ThreadLocal<SplittableRandom> ALEATORIO = new ThreadLocal<>();
+    private static final AtomicLong SEMILLAS = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong secuencia = new AtomicLong();
+    private final long baseDni;
+    private final String prefijoHc;
+
+    /**
+     * @param semillaCorrida Diferencia DNI/Nro. HC entre corridas (p. ej. System.currentTimeMillis())
+     */
+    public GeneradorDatos(long semillaCorrida) {
+        // La semilla se mezcla: dos corridas cercanas (o separadas justo por un ciclo) no caen en bloques vecinos.
+        long bloque = new SplittableRandom(semillaCorrida).nextLong(BLOQUES);
+        this.baseDni = PRIMER_DNI + bloque * TAMANO_BLOQUE;
+        this.prefijoHc = "HC" + Long.toString(bloque, 36).toUpperCase() + "-";
+    }
+
+    /**
+     * Paciente nuevo (sin ID) con su HistoriaClinica.
+     */
+    public Paciente nuevoPaciente() {
+        SplittableRandom r = aleatorio();
+        long n = secuencia.incrementAndGet();
+        Paciente p = new Paciente();
+        p.setApellido(sesgado(r, APELLIDOS));
+        p.setNombre(sesgado(r, NOMBRES));
+        p.setDni(String.valueOf(baseDni + n % TAMANO_BLOQUE));
+        p.setFechaNacimiento(LocalDate.now().minusDays(r.nextInt(95 * 365)));
+
+        HistoriaClinica hc = new HistoriaClinica();
+        hc.setNroHistoria(prefijoHc + n);
+        hc.setGrupoSanguineo(grupo(r));
+        hc.setAntecedentes(texto(r, ANTECEDENTES, 1 + r.nextInt(4)));
+        hc.setMedicacionActual(texto(r, MEDICACION, r.nextInt(3)));
+        hc.setObservaciones(texto(r, OBSERVACIONES, 1 + r.nextInt(3)));
+        p.setHistoriaClinica(hc);
+        return p;
+    }
+
+    /**
+     * Aplica una modificación típica de recepción (corrección de nombre,
+     * nueva observación o cambio de medicación) sobre un paciente existente.
+     */
+    public void modificar(Paciente p) {
+        SplittableRandom r = aleatorio();
+        HistoriaClinica hc = p.getHistoriaClinica();
+        switch (r.nextInt(3)) {
+            case 0:
+                p.setNombre(sesgado(r, NOMBRES));
+                break;
+            case 1:
+                if (hc != null) {
+                    String previas = hc.getObservaciones() == null ? "" : hc.getObservaciones() + " ";
+                    hc.setObservaciones(previas + OBSERVACIONES[r.nextInt(OBSERVACIONES.length)]);
+                }
+                break;
+            default:
+                if (hc != null) {
+                    hc.setMedicacionActual(texto(r, MEDICACION, 1 + r.nextInt(2)));
+                }
+        }
+    }
+
+    public static SplittableRandom aleatorio() {
+        SplittableRandom r = ALEATORIO.get();
+        if (r == null) {
+            r = new SplittableRandom(SEMILLAS.getAndAdd(0x9E3779B97F4A7C15L));
+            ALEATORIO.set(r);
+        }
+        return r;
+    }
+
+    /** Elige con sesgo hacia el principio de la lista (mínimo de dos uniformes). */
+    private static String sesgado(SplittableRandom r, String[] valores) {
+        return valores[Math.min(r.nextInt(valores.length), r.nextInt(valores.length))];
+    }
+
+    private static GrupoSanguineo grupo(SplittableRandom r) {
+        int x = r.nextInt(1000);
+        GrupoSanguineo[] grupos = GrupoSanguineo.values();
+        for (int i = 0; i < grupos.length; i++) {
+            x -= FRECUENCIA_GRUPOS[i];
+            if (x < 0) {
+                return grupos[i];
+            }
+        }
+        return GrupoSanguineo.O_MAS;
+    }
+
+    private static String texto(SplittableRandom r, String[] frases, int cantidad) {
+        if (cantidad == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cantidad; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(frases[r.nextInt(frases.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,146 @@
+package Carga;
+
+import Service.PacienteService;
+import entities.HistoriaClinica;
+import entities.Paciente;
+import exceptions.ServiceException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sustituto en memoria de PacienteServiceImpl para el arnés de carga.
+ *
+ * Permite medir el propio arnés (y el código por encima del Service) sin
+ * MySQL. Respeta las mismas reglas visibles: unicidad de DNI y Nro. HC,
+ * baja lógica, orden apellido/nombre/id y copias defensivas. Opcionalmente
+ * agrega una latencia fija por operación para simular el viaje a la BD.
+ */
+public class PacienteServiceEnMemoria implements PacienteService {
+
+    private static final Comparator<Paciente> ORDEN = Comparator
+            .comparing(Paciente::getApellido)
+            .thenComparing(Paciente::getNombre)
+            .thenComparingInt(Paciente::getId);
+
+    private final ConcurrentSkipListMap<Paciente, Paciente> ordenados = new ConcurrentSkipListMap<>(ORDEN);
+    private final ConcurrentHashMap<Integer, Paciente> porId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> porDni = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> porNroHistoria = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final long latenciaNanos;
+
+    /**
+     * @param latenciaSimuladaMicros Demora agregada a cada operación (0 = ninguna)
+     */
+    public PacienteServiceEnMemoria(long latenciaSimuladaMicros) {
+        this.latenciaNanos = TimeUnit.MICROSECONDS.toNanos(latenciaSimuladaMicros);
+    }
+
+    @Override
+    public void insertar(Paciente p) throws Exception {
+        demorar();
+        if (p.getDni() == null || p.getHistoriaClinica() == null || p.getHistoriaClinica().getNroHistoria() == null) {
+            throw new ServiceException("Debe ingresar DNI e Historia Clínica.");
+        }
+        int id = ids.incrementAndGet();
+        if (porDni.putIfAbsent(p.getDni(), id) != null) {
+            throw new ServiceException("Error de unicidad (DNI/Nro. HC ya existen).");
+        }
+        if (porNroHistoria.putIfAbsent(p.getHistoriaClinica().getNroHistoria(), id) != null) {
+            porDni.remove(p.getDni(), id);
+            throw new ServiceException("Error de unicidad (DNI/Nro. HC ya existen).");
+        }
+        p.setId(id);
+        HistoriaClinica hc = p.getHistoriaClinica();
+        hc.setId(id);
+        hc.setPacienteId((long) id);
+        guardar(p.copiar());
+    }
+
+    @Override
+    public void actualizar(Paciente p) throws Exception {
+        demorar();
+        synchronized (this) {
+            Paciente actual = porId.get(p.getId());
+            if (actual == null) {
+                return; // como el UPDATE ... WHERE eliminado = FALSE: no afecta filas
+            }
+            if (!actual.getDni().equals(p.getDni())) {
+                if (porDni.putIfAbsent(p.getDni(), p.getId()) != null) {
+                    throw new ServiceException("Fallo la actualización transaccional: DNI duplicado");
+                }
+                porDni.remove(actual.getDni(), p.getId());
+            }
+            ordenados.remove(actual);
+            guardar(p.copiar());
+        }
+    }
+
+    @Override
+    public void eliminar(int id) throws Exception {
+        demorar();
+        synchronized (this) {
+            Paciente actual = porId.remove(id);
+            if (actual != null) {
+                ordenados.remove(actual);
+                // El DNI y el Nro. HC siguen reservados, como con la restricción UNIQUE en la BD.
+            }
+        }
+    }
+
+    @Override
+    public Paciente getById(int id) throws Exception {
+        demorar();
+        Paciente p = porId.get(id);
+        return p == null ? null : p.copiar();
+    }
+
+    @Override
+    public Paciente buscarPorDni(String dni) throws Exception {
+        demorar();
+        Integer id = porDni.get(dni);
+        Paciente p = id == null ? null : porId.get(id);
+        return p == null ? null : p.copiar();
+    }
+
+    @Override
+    public List<Paciente> getAll() throws Exception {
+        demorar();
+        List<Paciente> lista = new ArrayList<>(ordenados.size());
+        for (Paciente p : ordenados.values()) {
+            lista.add(p.copiar());
+        }
+        return lista;
+    }
+
+    @Override
+    public List<Paciente> getPagina(Paciente despuesDe, int limite) throws Exception {
+        demorar();
+        List<Paciente> lista = new ArrayList<>(limite);
+        for (Paciente p : (despuesDe == null ? ordenados : ordenados.tailMap(despuesDe, false)).values()) {
+            if (lista.size() == limite) {
+                break;
+            }
+            lista.add(p.copiar());
+        }
+        return lista;
+    }
+
+    private void guardar(Paciente p) {
+        porId.put(p.getId(), p);
+        ordenados.put(p, p);
+    }
+
+    private void demorar() {
+        if (latenciaNanos > 0) {
+            LockSupport.parkNanos(latenciaNanos);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package Config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Anillo de hash consistente de ShardRouter: "nodosVirtuales" puntos por
+ * shard, ordenados por hash. Una clave va al primer punto con hash >= el
+ * suyo (el anillo da la vuelta al final), así que al agregar un shard solo
+ * cambia de lugar ~1/N de las claves.
+ *
+ * Inmutable; no depende de la configuración (se prueba sin -Ddb.shards).
+ */
+final class AnilloShards {
+
+    private final long[] hashes;
+    private final int[] shards;
+
+    AnilloShards(int cantidadShards, int nodosVirtuales) {
+        long[] puntos = new long[cantidadShards * nodosVirtuales];
+        for (int s = 0; s < cantidadShards; s++) {
+            for (int v = 0; v < nodosVirtuales; v++) {
+                puntos[s * nodosVirtuales + v] = hash("shard-" + s + "#" + v);
+            }
+        }
+        Integer[] orden = new Integer[puntos.length];
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (a, b) -> Long.compare(puntos[a], puntos[b]));
+        this.hashes = new long[puntos.length];
+        this.shards = new int[puntos.length];
+        for (int i = 0; i < orden.length; i++) {
+            hashes[i] = puntos[orden[i]];
+            shards[i] = orden[i] / nodosVirtuales;
+        }
+    }
+
+    /**
+     * Shard de la clave (primer nodo del anillo con hash >= hash(clave)).
+     */
+    int shardDe(String clave) {
+        long h = hash(clave);
+        int i = Arrays.binarySearch(hashes, h);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return shards[i == hashes.length ? 0 : i];
+    }
+
+    /** FNV-1a de 64 bits + mezcla final de MurmurHash3 (mejor dispersión en el anillo). */
+    static long hash(String texto) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : texto.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,38 @@
+package Config;
+
+/**
+ * Compartimento (bulkhead) al que pertenece el trabajo del hilo actual.
+ * Cada uno tiene su propio límite de concurrencia contra la BD (ver
+ * LimitadorConcurrencia), para que un listado o un recorrido masivo no
+ * deje sin conexiones a las consultas de la recepción.
+ */
+public enum Compartimento {
+    /** Consultas y cambios puntuales (por defecto). */
+    INTERACTIVO,
+    /** Listados completos, recorridos, reportes, sincronización, archivado. */
+    MASIVO;
+
+    private static final ThreadLocal<Compartimento> ACTUAL = new ThreadLocal<>();
+
+    public static Compartimento actual() {
+        Compartimento c = ACTUAL.get();
+        return c != null ? c : INTERACTIVO;
+    }
+
+    /**
+     * Ejecuta la tarea dentro de este compartimento (y restaura el anterior).
+     */
+    public <T> T ejecutar(Plazo.Tarea<T> tarea) throws Exception {
+        Compartimento anterior = ACTUAL.get();
+        ACTUAL.set(this);
+        try {
+            return tarea.ejecutar();
+        } finally {
+            if (anterior == null) {
+                ACTUAL.remove();
+            } else {
+                ACTUAL.set(anterior);
+            }
+        }
+    }
+}
@@ -19,6 +19,14 @@ import java.sql.SQLException;
  *
  * Override mediante system properties:
  * - java -Ddb.url=... -Ddb.user=... -Ddb.password=...
+ *
+ * Pooling opcional (por defecto desactivado):
+ * - -Ddb.pool.max=N       activa un pool de hasta N conexiones (ver PoolConexiones)
+ * - -Ddb.pool.esperaMs=T  espera máxima por una conexión libre (default 5000)
+ * - -Ddb.pool.validarTrasMs=T  ociosa más de T ms: se valida antes de entregarla (default 30000)
+ *
+ * Límite de concurrencia adaptativo opcional:
+ * - -Ddb.limite=true      un límite por Compartimento delante del pool (ver LimitesConcurrencia)
  */
 public final class DatabaseConnection {
     /** URL de conexión JDBC. Configurable via -Ddb.url */
@@ -30,6 +38,12 @@ public final class DatabaseConnection {
     /** Contraseña del usuario. Configurable via -Ddb.password */
     private static final String PASSWORD = System.getProperty("db.password", "");
 
+    /** Pool de conexiones, o null si -Ddb.pool.max no está configurado (una conexión nueva por llamada). */
+    private static final PoolConexiones POOL = crearPool();
+
+    /** Límites por compartimento, o null si -Ddb.limite no está activo. */
+    private static final LimitesConcurrencia LIMITES = LimitesConcurrencia.desdePropiedades();
+
     /**
      * Bloque de inicialización estática.
      * Se ejecuta UNA SOLA VEZ cuando la clase se carga en memoria.
@@ -67,7 +81,8 @@ public final class DatabaseConnection {
      * Obtiene una nueva conexión a la base de datos.
      *
      * Importante:
-     * - Cada llamada crea una NUEVA conexión (no hay pooling)
+     * - Sin -Ddb.pool.max cada llamada crea una NUEVA conexión; con pool,
+     *   la conexión es prestada y close() la devuelve al pool
      * - El caller es responsable de cerrar la conexión (usar try-with-resources)
      * - La configuración ya fue validada en el bloque static
      *
@@ -82,7 +97,45 @@ public final class DatabaseConnection {
      * @throws SQLException Si no se puede establecer la conexión
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        if (LIMITES != null) {
+            return LIMITES.conectar(DatabaseConnection::abrir);
+        }
+        return abrir();
+    }
+
+    private static Connection abrir() throws SQLException {
+        // Con un Plazo en el hilo, cada Statement recibe el tiempo restante (ver Plazo).
+        if (POOL != null) {
+            return Plazo.envolver(POOL.obtener());
+        }
+        Plazo plazo = Plazo.actual();
+        if (plazo != null) {
+            plazo.verificar("abriendo conexión");
+        }
+        return Plazo.envolver(DriverManager.getConnection(URL, USER, PASSWORD));
+    }
+
+    /**
+     * Pool activo (para métricas), o null si no hay pooling.
+     */
+    public static PoolConexiones getPool() {
+        return POOL;
+    }
+
+    /**
+     * Límites de concurrencia (para métricas), o null si no están activos.
+     */
+    public static LimitesConcurrencia getLimites() {
+        return LIMITES;
+    }
+
+    private static PoolConexiones crearPool() {
+        int maximo = Integer.getInteger("db.pool.max", 0);
+        if (maximo <= 0) {
+            return null;
+        }
+        long esperaMs = Long.getLong("db.pool.esperaMs", 5_000L);
+        return new PoolConexiones(() -> DriverManager.getConnection(URL, USER, PASSWORD), maximo, esperaMs);
     }
 
     /**
@@ -0,0 +1,301 @@
+package Config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Límite de concurrencia adaptativo (AIMD) de un compartimento contra una base.
+ *
+ * Cada conexión entregada ocupa un lugar hasta su close(); el tiempo que se
+ * tuvo la conexión es la muestra de latencia. Por ventanas de muestras:
+ * - Si la latencia promedio supera "tolerancia" veces la latencia base (la
+ *   mínima observada) o hubo timeouts, el límite baja multiplicativamente.
+ * - Si no, y la ventana llegó a usar todo el límite, sube de a uno.
+ * La latencia base solo sube si la latencia sigue alta aun con el límite en
+ * el mínimo: entonces la lentitud no la causa la concurrencia sino un
+ * cambio permanente (más datos, otro servidor) y se toma como nueva base.
+ *
+ * Sin lugar libre se espera en una cola acotada; con la cola llena, o al
+ * vencer la espera, se rechaza en seguida con SaturacionException. Las
+ * conexiones retenidas más de "muestraMaxMs" (p. ej. un recorrido completo)
+ * cuentan para la concurrencia pero no como muestra de latencia.
+ */
+public final class LimitadorConcurrencia {
+
+    private static final double FACTOR_BAJA = 0.9;
+    private static final int MUESTRAS_MIN_VENTANA = 10;
+
+    private final String nombre;
+    private final int minimo;
+    private final int maximo;
+    private final int maxCola;
+    private final long esperaMaximaMs;
+    private final double tolerancia;
+    private final long muestraMaxNanos;
+
+    private final ReentrantLock bloqueo = new ReentrantLock();
+    private final Condition libre = bloqueo.newCondition();
+
+    // Protegidos por "bloqueo".
+    private double limite;
+    private int enCurso;
+    private int enCola;
+    private long latenciaBaseNanos = Long.MAX_VALUE;
+    private int muestrasVentana;
+    private long sumaVentanaNanos;
+    private long minimoVentanaNanos = Long.MAX_VALUE;
+    private int maxEnCursoVentana;
+    private boolean sobrecargaVentana;
+    private long rechazos;
+    private long bajas;
+
+    /**
+     * @param nombre Para mensajes y métricas (p. ej. "interactivo")
+     * @param inicial Límite inicial
+     * @param minimo Límite mínimo (nunca baja de aquí)
+     * @param maximo Límite máximo
+     * @param maxCola Hilos que pueden esperar un lugar; el resto se rechaza
+     * @param esperaMaximaMs Espera máxima en la cola
+     * @param tolerancia Latencia aceptada como múltiplo de la latencia base
+     * @param muestraMaxMs Retenciones más largas no se toman como muestra
+     */
+    public LimitadorConcurrencia(String nombre, int inicial, int minimo, int maximo, int maxCola,
+                                 long esperaMaximaMs, double tolerancia, long muestraMaxMs) {
+        if (minimo < 1 || maximo < minimo || maxCola < 0 || tolerancia <= 1) {
+            throw new IllegalArgumentException("Límites inválidos para el compartimento " + nombre);
+        }
+        this.nombre = nombre;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.maxCola = maxCola;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.tolerancia = tolerancia;
+        this.muestraMaxNanos = TimeUnit.MILLISECONDS.toNanos(muestraMaxMs);
+        this.limite = Math.max(minimo, Math.min(maximo, inicial));
+    }
+
+    /**
+     * Ocupa un lugar, obtiene la conexión de la fábrica y la devuelve
+     * envuelta: su close() libera el lugar y registra la latencia.
+     *
+     * @throws SaturacionException si no hay lugar y la cola está llena o la espera venció
+     * @throws SQLTimeoutException si el Plazo del hilo vence mientras espera
+     */
+    public Connection conectar(PoolConexiones.FabricaConexiones fabrica) throws SQLException {
+        adquirir();
+        long inicio = System.nanoTime();
+        Connection conn;
+        try {
+            conn = fabrica.crear();
+        } catch (SQLException | RuntimeException e) {
+            // Sin conexión (pool agotado, plazo vencido): señal de sobrecarga.
+            liberar(-1, e instanceof SQLTimeoutException || e instanceof SQLTransientConnectionException);
+            throw e;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConexionLimitada(conn, inicio));
+    }
+
+    private void adquirir() throws SQLException {
+        Plazo plazo = Plazo.actual();
+        bloqueo.lock();
+        try {
+            if (enCurso < (int) limite) {
+                ocupar();
+                return;
+            }
+            if (enCola >= maxCola) {
+                rechazos++;
+                throw new SaturacionException("Base de datos saturada (compartimento " + nombre
+                        + ": " + enCurso + " en curso, límite " + (int) limite + ", cola llena)");
+            }
+            long espera = TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+            if (plazo != null) {
+                espera = Math.min(espera, plazo.restanteNanos());
+            }
+            enCola++;
+            try {
+                while (enCurso >= (int) limite) {
+                    if (espera <= 0) {
+                        if (plazo != null && plazo.vencido()) {
+                            throw new SQLTimeoutException("Plazo vencido esperando lugar en el compartimento " + nombre);
+                        }
+                        rechazos++;
+                        throw new SaturacionException("Base de datos saturada (compartimento " + nombre
+                                + ": sin lugar tras " + esperaMaximaMs + " ms en cola)");
+                    }
+                    espera = libre.awaitNanos(espera);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrumpido esperando lugar en el compartimento " + nombre, e);
+            } finally {
+                enCola--;
+            }
+            ocupar();
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    private void ocupar() {
+        enCurso++;
+        maxEnCursoVentana = Math.max(maxEnCursoVentana, enCurso);
+    }
+
+    /**
+     * @param latenciaNanos Tiempo de retención, o -1 si no hay muestra
+     * @param sobrecarga true si la operación terminó por timeout o falta de conexiones
+     */
+    private void liberar(long latenciaNanos, boolean sobrecarga) {
+        bloqueo.lock();
+        try {
+            enCurso--;
+            sobrecargaVentana |= sobrecarga;
+            if (latenciaNanos >= 0 && latenciaNanos <= muestraMaxNanos) {
+                muestrasVentana++;
+                sumaVentanaNanos += latenciaNanos;
+                minimoVentanaNanos = Math.min(minimoVentanaNanos, latenciaNanos);
+                latenciaBaseNanos = Math.min(latenciaBaseNanos, latenciaNanos);
+            }
+            if (muestrasVentana >= Math.max(MUESTRAS_MIN_VENTANA, (int) limite)
+                    || (sobrecargaVentana && muestrasVentana > 0)) {
+                cerrarVentana();
+            }
+            libre.signalAll(); // el límite pudo subir: puede haber más de un lugar
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    private void cerrarVentana() {
+        long promedio = sumaVentanaNanos / muestrasVentana;
+        if (sobrecargaVentana || promedio > latenciaBaseNanos * tolerancia) {
+            if (limite <= minimo && !sobrecargaVentana) {
+                latenciaBaseNanos = minimoVentanaNanos;
+            }
+            limite = Math.max(minimo, limite * FACTOR_BAJA);
+            bajas++;
+        } else if (maxEnCursoVentana >= (int) limite) {
+            limite = Math.min(maximo, limite + 1);
+        }
+        muestrasVentana = 0;
+        sumaVentanaNanos = 0;
+        minimoVentanaNanos = Long.MAX_VALUE;
+        maxEnCursoVentana = enCurso;
+        sobrecargaVentana = false;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /** Límite vigente. */
+    public int getLimite() {
+        bloqueo.lock();
+        try {
+            return (int) limite;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /** Conexiones entregadas y aún no cerradas. */
+    public int getEnCurso() {
+        bloqueo.lock();
+        try {
+            return enCurso;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /** Hilos esperando lugar. */
+    public int getEnCola() {
+        bloqueo.lock();
+        try {
+            return enCola;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /** Pedidos rechazados por saturación. */
+    public long getRechazos() {
+        bloqueo.lock();
+        try {
+            return rechazos;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /** Veces que el límite bajó. */
+    public long getBajas() {
+        bloqueo.lock();
+        try {
+            return bajas;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /** Latencia base en microsegundos, o -1 si todavía no hay muestras. */
+    public long getLatenciaBaseMicros() {
+        bloqueo.lock();
+        try {
+            return latenciaBaseNanos == Long.MAX_VALUE ? -1 : latenciaBaseNanos / 1_000;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /**
+     * Handler del proxy: libera el lugar en el primer close(). Un
+     * SQLTimeoutException de la propia conexión (commit, etc.) marca sobrecarga.
+     */
+    private final class ConexionLimitada implements InvocationHandler {
+        private final Connection conn;
+        private final long inicio;
+        private boolean liberada;
+        private boolean timeout;
+
+        ConexionLimitada(Connection conn, long inicio) {
+            this.conn = conn;
+            this.inicio = inicio;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("unwrap") && args != null && args[0] == Connection.class) {
+                return proxy;
+            }
+            if (method.getName().equals("close")) {
+                try {
+                    conn.close();
+                } finally {
+                    if (!liberada) {
+                        liberada = true;
+                        liberar(System.nanoTime() - inicio, timeout);
+                    }
+                }
+                return null;
+            }
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                timeout |= e.getCause() instanceof SQLTimeoutException;
+                throw e.getCause();
+            }
+        }
+    }
+}
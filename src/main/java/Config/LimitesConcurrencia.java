@@ -0,0 +1,65 @@
+package Config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Un LimitadorConcurrencia por Compartimento para una misma base (o shard).
+ *
+ * Se activa con -Ddb.limite=true. Por compartimento ("interactivo" o
+ * "masivo") se puede ajustar:
+ * - -Ddb.limite.&lt;c&gt;.inicial / .min / .max   límite de conexiones simultáneas
+ * - -Ddb.limite.&lt;c&gt;.cola                    hilos que pueden esperar lugar
+ * - -Ddb.limite.&lt;c&gt;.esperaMs                espera máxima en la cola
+ * y para ambos -Ddb.limite.tolerancia (default 2.0) y -Ddb.limite.muestraMaxMs
+ * (default 30000).
+ */
+public final class LimitesConcurrencia {
+
+    private final Map<Compartimento, LimitadorConcurrencia> limitadores = new EnumMap<>(Compartimento.class);
+
+    private LimitesConcurrencia() {
+    }
+
+    /**
+     * @return Límites configurados, o null si -Ddb.limite no está activo
+     */
+    public static LimitesConcurrencia desdePropiedades() {
+        if (!Boolean.getBoolean("db.limite")) {
+            return null;
+        }
+        double tolerancia = Double.parseDouble(System.getProperty("db.limite.tolerancia", "2.0"));
+        long muestraMaxMs = Long.getLong("db.limite.muestraMaxMs", 30_000L);
+        LimitesConcurrencia limites = new LimitesConcurrencia();
+        limites.limitadores.put(Compartimento.INTERACTIVO,
+                crear("interactivo", 8, 2, 32, 64, 500, tolerancia, muestraMaxMs));
+        limites.limitadores.put(Compartimento.MASIVO,
+                crear("masivo", 2, 1, 4, 16, 5_000, tolerancia, muestraMaxMs));
+        return limites;
+    }
+
+    private static LimitadorConcurrencia crear(String nombre, int inicial, int minimo, int maximo,
+                                               int cola, long esperaMs, double tolerancia, long muestraMaxMs) {
+        String p = "db.limite." + nombre + ".";
+        return new LimitadorConcurrencia(nombre,
+                Integer.getInteger(p + "inicial", inicial),
+                Integer.getInteger(p + "min", minimo),
+                Integer.getInteger(p + "max", maximo),
+                Integer.getInteger(p + "cola", cola),
+                Long.getLong(p + "esperaMs", esperaMs),
+                tolerancia, muestraMaxMs);
+    }
+
+    /**
+     * Conexión limitada por el compartimento del hilo actual.
+     */
+    public Connection conectar(PoolConexiones.FabricaConexiones fabrica) throws SQLException {
+        return limitadores.get(Compartimento.actual()).conectar(fabrica);
+    }
+
+    public LimitadorConcurrencia get(Compartimento compartimento) {
+        return limitadores.get(compartimento);
+    }
+}
@@ -0,0 +1,195 @@
+package Config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plazo (deadline) de una operación, propagado por hilo desde el Service
+ * hasta JDBC sin cambiar las firmas de DAOs ni de GenericService.
+ *
+ * - Service: ejecutar(plazo, tarea) lo fija en el hilo mientras dura la tarea.
+ * - Conexiones: DatabaseConnection y ShardRouter envuelven la conexión
+ *   (envolver()) para que todo Statement que se cree reciba
+ *   setQueryTimeout() con el tiempo restante. El timeout del driver mata la
+ *   consulta en el servidor (KILL QUERY), también si está esperando un lock.
+ * - Pool: la espera por una conexión libre se corta al vencer el plazo.
+ * - Cancelación: cancelar() desde otro hilo marca el plazo y cancela los
+ *   Statements en curso; la operación termina con SQLTimeoutException.
+ *
+ * Un plazo ya fijado en el hilo tiene prioridad: una llamada anidada con
+ * otro plazo nunca lo extiende. Si el anidado es más próximo queda fijado
+ * mientras dura la llamada, como hijo del de afuera: cancelar el de afuera
+ * cancela también el anidado (y sus Statements en curso).
+ */
+public final class Plazo {
+
+    private static final ThreadLocal<Plazo> ACTUAL = new ThreadLocal<>();
+
+    @FunctionalInterface
+    public interface Tarea<T> {
+        T ejecutar() throws Exception;
+    }
+
+    private final long vencimientoNanos;
+    private volatile boolean cancelado;
+    private final Set<Statement> enCurso = ConcurrentHashMap.newKeySet();
+    private final Set<Plazo> hijos = ConcurrentHashMap.newKeySet();
+
+    private Plazo(long vencimientoNanos) {
+        this.vencimientoNanos = vencimientoNanos;
+    }
+
+    /**
+     * @param ms Milisegundos desde ahora
+     */
+    public static Plazo en(long ms) {
+        return new Plazo(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    /** Plazo del hilo actual, o null si no hay. */
+    public static Plazo actual() {
+        return ACTUAL.get();
+    }
+
+    /**
+     * Ejecuta la tarea con el plazo fijado en el hilo. Si ya había uno, se
+     * conserva el más próximo de los dos.
+     */
+    public static <T> T ejecutar(Plazo plazo, Tarea<T> tarea) throws Exception {
+        Plazo anterior = ACTUAL.get();
+        if (plazo == null || (anterior != null && anterior.vencimientoNanos <= plazo.vencimientoNanos)) {
+            return tarea.ejecutar();
+        }
+        if (anterior != null) {
+            anterior.hijos.add(plazo);
+            if (anterior.cancelado) {
+                // Cancelado antes de ver al hijo.
+                plazo.cancelar();
+            }
+        }
+        ACTUAL.set(plazo);
+        try {
+            return tarea.ejecutar();
+        } finally {
+            if (anterior == null) {
+                ACTUAL.remove();
+            } else {
+                anterior.hijos.remove(plazo);
+                ACTUAL.set(anterior);
+            }
+        }
+    }
+
+    public long restanteNanos() {
+        return vencimientoNanos - System.nanoTime();
+    }
+
+    public long restanteMs() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(restanteNanos()));
+    }
+
+    public boolean vencido() {
+        return cancelado || restanteNanos() <= 0;
+    }
+
+    public boolean isCancelado() {
+        return cancelado;
+    }
+
+    /**
+     * @throws SQLTimeoutException si el plazo venció o fue cancelado
+     */
+    public void verificar(String contexto) throws SQLTimeoutException {
+        if (cancelado) {
+            throw new SQLTimeoutException("Operación cancelada (" + contexto + ")");
+        }
+        if (restanteNanos() <= 0) {
+            throw new SQLTimeoutException("Plazo vencido (" + contexto + ")");
+        }
+    }
+
+    /**
+     * Cancela la operación: los Statements en curso se interrumpen y los
+     * siguientes fallan al crearse (también los de plazos anidados). Puede
+     * llamarse desde cualquier hilo.
+     */
+    public void cancelar() {
+        cancelado = true;
+        for (Plazo hijo : hijos) {
+            hijo.cancelar();
+        }
+        for (Statement st : enCurso) {
+            try {
+                st.cancel();
+            } catch (SQLException e) {
+                // Ya terminado o cerrado: nada que cancelar.
+            }
+        }
+    }
+
+    /**
+     * Envuelve la conexión si hay un plazo en el hilo actual (si no, la
+     * devuelve tal cual).
+     */
+    public static Connection envolver(Connection conn) {
+        Plazo plazo = ACTUAL.get();
+        if (plazo == null) {
+            return conn;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConexionConPlazo(conn, plazo));
+    }
+
+    /**
+     * Aplica el tiempo restante (en segundos, mínimo 1: es la resolución de
+     * JDBC) y registra el Statement para poder cancelarlo.
+     */
+    private void aplicar(Statement st) throws SQLException {
+        verificar("antes de ejecutar");
+        long ms = restanteMs();
+        st.setQueryTimeout((int) Math.max(1, (ms + 999) / 1000));
+        enCurso.add(st);
+    }
+
+    private static final class ConexionConPlazo implements InvocationHandler {
+        private final Connection conn;
+        private final Plazo plazo;
+
+        ConexionConPlazo(Connection conn, Plazo plazo) {
+            this.conn = conn;
+            this.plazo = plazo;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("unwrap") && args != null && args[0] == Connection.class) {
+                return proxy;
+            }
+            Object resultado;
+            try {
+                resultado = method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (resultado instanceof Statement) {
+                // prepareStatement / prepareCall / createStatement
+                try {
+                    plazo.aplicar((Statement) resultado);
+                } catch (SQLException e) {
+                    ((Statement) resultado).close();
+                    throw e;
+                }
+            }
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package Config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool mínimo de conexiones JDBC.
+ *
+ * Se activa desde DatabaseConnection cuando -Ddb.pool.max es mayor a 0.
+ * Los DAOs no cambian: siguen usando try-with-resources sobre
+ * DatabaseConnection.getConnection(), pero close() devuelve la conexión al
+ * pool en lugar de cerrarla (la conexión entregada es un proxy).
+ *
+ * Reglas:
+ * - Como máximo "maximo" conexiones físicas abiertas a la vez.
+ * - Si no hay conexión libre se espera hasta "esperaMaximaMs" y luego se
+ *   lanza SQLTransientConnectionException.
+ * - Al devolver una conexión con autocommit desactivado se hace rollback
+ *   y se restaura autocommit, para no filtrar transacciones entre usuarios.
+ * - Si el hilo tiene un Plazo, la espera no lo supera; al vencer se lanza
+ *   SQLTimeoutException.
+ * - Una conexión ociosa por más de -Ddb.pool.validarTrasMs (default 30000)
+ *   se valida con isValid() antes de entregarla: el servidor pudo haberla
+ *   cerrado (wait_timeout, reinicio, red) sin que isClosed() se entere. Si
+ *   no responde se descarta y se prueba la siguiente (o se abre una nueva).
+ */
+public final class PoolConexiones {
+
+    /** Fábrica de conexiones físicas (DriverManager en producción). */
+    @FunctionalInterface
+    public interface FabricaConexiones {
+        Connection crear() throws SQLException;
+    }
+
+    private static final long VALIDAR_TRAS_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("db.pool.validarTrasMs", 30_000L));
+    /** Segundos que espera isValid() (el mínimo de JDBC). */
+    private static final int ESPERA_VALIDACION_S = 1;
+
+    /** Conexión física libre y desde cuándo. */
+    private static final class Ociosa {
+        final Connection fisica;
+        final long desdeNanos;
+
+        Ociosa(Connection fisica) {
+            this.fisica = fisica;
+            this.desdeNanos = System.nanoTime();
+        }
+    }
+
+    private final FabricaConexiones fabrica;
+    private final int maximo;
+    private final BlockingQueue<Ociosa> libres;
+    private final Semaphore permisos;
+    private final long esperaMaximaMs;
+
+    public PoolConexiones(FabricaConexiones fabrica, int maximo, long esperaMaximaMs) {
+        if (maximo < 1) {
+            throw new IllegalArgumentException("El pool necesita al menos una conexión");
+        }
+        this.fabrica = fabrica;
+        this.maximo = maximo;
+        this.libres = new ArrayBlockingQueue<>(maximo);
+        this.permisos = new Semaphore(maximo, true);
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    /**
+     * Obtiene una conexión del pool (o abre una nueva si hay cupo).
+     * @return Proxy cuya llamada a close() devuelve la conexión al pool
+     */
+    public Connection obtener() throws SQLException {
+        Plazo plazo = Plazo.actual();
+        if (plazo == null) {
+            return obtener(esperaMaximaMs);
+        }
+        plazo.verificar("esperando una conexión del pool");
+        try {
+            return obtener(Math.min(esperaMaximaMs, plazo.restanteMs()));
+        } catch (SQLTransientConnectionException e) {
+            if (plazo.vencido()) {
+                throw new SQLTimeoutException("Plazo vencido esperando una conexión del pool", e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Igual que obtener(), pero con una espera máxima explícita.
+     */
+    public Connection obtener(long esperaMs) throws SQLException {
+        try {
+            if (!permisos.tryAcquire(Math.max(0, esperaMs), TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "No hay conexiones disponibles en el pool (espera " + esperaMs + " ms)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrumpido esperando una conexión del pool", e);
+        }
+
+        try {
+            Ociosa ociosa;
+            while ((ociosa = libres.poll()) != null) {
+                if (sigueViva(ociosa)) {
+                    return envolver(ociosa.fisica);
+                }
+            }
+            return envolver(fabrica.crear());
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Si la conexión ociosa se puede entregar; si no, la cierra.
+     */
+    private static boolean sigueViva(Ociosa ociosa) {
+        Connection fisica = ociosa.fisica;
+        try {
+            if (fisica.isClosed()) {
+                return false;
+            }
+            if (System.nanoTime() - ociosa.desdeNanos < VALIDAR_TRAS_NANOS || fisica.isValid(ESPERA_VALIDACION_S)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            // Igual que una que no responde.
+        }
+        try {
+            fisica.close();
+        } catch (SQLException ignorada) {
+            // ya no se puede hacer nada con ella
+        }
+        return false;
+    }
+
+    /** Máximo de conexiones físicas simultáneas. */
+    public int getMaximo() {
+        return maximo;
+    }
+
+    /** Conexiones ociosas actualmente en el pool. */
+    public int getLibres() {
+        return libres.size();
+    }
+
+    /** Conexiones prestadas en este momento. */
+    public int getEnUso() {
+        return maximo - permisos.availablePermits();
+    }
+
+    /** Hilos esperando una conexión. */
+    public int getEnEspera() {
+        return permisos.getQueueLength();
+    }
+
+    private Connection envolver(Connection fisica) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConexionPrestada(fisica));
+    }
+
+    private void devolver(Connection fisica) {
+        try {
+            if (!fisica.isClosed()) {
+                if (!fisica.getAutoCommit()) {
+                    fisica.rollback();
+                    fisica.setAutoCommit(true);
+                }
+                if (!libres.offer(new Ociosa(fisica))) {
+                    fisica.close();
+                }
+            }
+        } catch (SQLException e) {
+            // Conexión en mal estado: se descarta.
+            try {
+                fisica.close();
+            } catch (SQLException ignorada) {
+                // ya no se puede hacer nada con ella
+            }
+        } finally {
+            permisos.release();
+        }
+    }
+
+    /**
+     * Handler del proxy: delega todo en la conexión física salvo close()/isClosed().
+     */
+    private final class ConexionPrestada implements InvocationHandler {
+        private final Connection fisica;
+        private boolean cerrada;
+
+        ConexionPrestada(Connection fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!cerrada) {
+                        cerrada = true;
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return cerrada || fisica.isClosed();
+                case "unwrap":
+                    if (args != null && args[0] == Connection.class) {
+                        return proxy;
+                    }
+                    break;
+                default:
+                    if (cerrada) {
+                        throw new SQLException("La conexión ya fue devuelta al pool");
+                    }
+            }
+            try {
+                return method.invoke(fisica, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package Config;
+
+import java.sql.SQLTransientException;
+
+/**
+ * Rechazo inmediato: el compartimento alcanzó su límite de concurrencia y
+ * su cola está llena (o la espera en la cola venció). No se abrió ninguna
+ * conexión; reintentar más tarde.
+ */
+public class SaturacionException extends SQLTransientException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SaturacionException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,212 @@
+package Config;
+
+import Util.Hilos;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Ruteo de pacientes entre varias bases MySQL (shards).
+ *
+ * Se activa con -Ddb.shards=url1,url2,... (mismas credenciales que
+ * -Ddb.user / -Ddb.password). Sin esa propiedad no hay sharding y todo
+ * sigue pasando por DatabaseConnection.
+ *
+ * Reglas:
+ * - Cada paciente y su HistoriaClinica viven en el shard que indica un hash
+ *   consistente del DNI (anillo con nodos virtuales): al agregar un shard
+ *   solo cambia de lugar ~1/N de los DNI.
+ * - Los IDs son únicos entre shards: cada conexión fija
+ *   auto_increment_increment = N y auto_increment_offset = shard + 1, así
+ *   el shard k genera k+1, k+1+N, k+1+2N, ... Eso además da una primera
+ *   pista del shard a partir del ID (ver shardSugerido).
+ * - Un directorio acotado ID -> shard (LRU) evita repetir la búsqueda en
+ *   todos los shards para los IDs ya vistos.
+ * - Con -Ddb.pool.max cada shard tiene su propio PoolConexiones, y con
+ *   -Ddb.limite sus propios LimitesConcurrencia.
+ */
+public final class ShardRouter {
+
+    /** Consulta a ejecutar sobre la conexión de un shard. */
+    @FunctionalInterface
+    public interface ConsultaShard<T> {
+        T ejecutar(int shard, Connection conn) throws Exception;
+    }
+
+    private static final int NODOS_VIRTUALES = 160;
+
+    private static final String[] URLS = leerUrls();
+    private static final PoolConexiones[] POOLS = new PoolConexiones[URLS.length];
+    private static final LimitesConcurrencia[] LIMITES = new LimitesConcurrencia[URLS.length];
+    private static final AnilloShards ANILLO = new AnilloShards(URLS.length, NODOS_VIRTUALES);
+    private static final Map<Integer, Integer> DIRECTORIO;
+    private static final ExecutorService FAN_OUT;
+
+    static {
+        if (URLS.length > 0) {
+            try {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            } catch (ClassNotFoundException e) {
+                throw new ExceptionInInitializerError("Error: No se encontró el driver JDBC de MySQL: " + e.getMessage());
+            }
+        }
+        int maximoPool = Integer.getInteger("db.pool.max", 0);
+        long esperaMs = Long.getLong("db.pool.esperaMs", 5_000L);
+        for (int s = 0; s < URLS.length; s++) {
+            int shard = s;
+            POOLS[s] = maximoPool > 0 ? new PoolConexiones(() -> abrir(shard), maximoPool, esperaMs) : null;
+            LIMITES[s] = LimitesConcurrencia.desdePropiedades();
+        }
+
+        int capacidad = Integer.getInteger("db.shards.directorio", 100_000);
+        DIRECTORIO = new LinkedHashMap<Integer, Integer>(1024, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > capacidad;
+            }
+        };
+        FAN_OUT = URLS.length > 0 ? Hilos.porTarea("shards", URLS.length * 4) : null;
+    }
+
+    private ShardRouter() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * @return true si hay shards configurados (-Ddb.shards)
+     */
+    public static boolean estaActivo() {
+        return URLS.length > 0;
+    }
+
+    public static int getCantidad() {
+        return URLS.length;
+    }
+
+    /**
+     * Shard al que pertenece un DNI (ver AnilloShards).
+     */
+    public static int shardPorDni(String dni) {
+        return ANILLO.shardDe(dni.trim());
+    }
+
+    /**
+     * Shard que generó el ID según los offsets de auto_increment. Es solo una
+     * pista: si el paciente se movió de shard (p. ej. al agregar shards) no coincide.
+     */
+    public static int shardSugerido(int id) {
+        return Math.floorMod(id - 1, URLS.length);
+    }
+
+    /**
+     * Shard registrado en el directorio para el ID, o -1 si no se conoce.
+     */
+    public static int shardConocido(int id) {
+        synchronized (DIRECTORIO) {
+            Integer shard = DIRECTORIO.get(id);
+            return shard == null ? -1 : shard;
+        }
+    }
+
+    public static void registrarId(int id, int shard) {
+        synchronized (DIRECTORIO) {
+            DIRECTORIO.put(id, shard);
+        }
+    }
+
+    /**
+     * Conexión al shard indicado (prestada del pool si hay pooling).
+     * El caller es responsable de cerrarla, igual que con DatabaseConnection.
+     */
+    public static Connection getConnection(int shard) throws SQLException {
+        if (LIMITES[shard] != null) {
+            return LIMITES[shard].conectar(() -> conexionSinLimite(shard));
+        }
+        return conexionSinLimite(shard);
+    }
+
+    /**
+     * Límites de concurrencia del shard (para métricas), o null si no están activos.
+     */
+    public static LimitesConcurrencia getLimites(int shard) {
+        return LIMITES[shard];
+    }
+
+    private static Connection conexionSinLimite(int shard) throws SQLException {
+        if (POOLS[shard] != null) {
+            return Plazo.envolver(POOLS[shard].obtener());
+        }
+        return Plazo.envolver(abrir(shard));
+    }
+
+    /**
+     * Ejecuta la consulta en todos los shards en paralelo (una conexión por
+     * shard) y devuelve los resultados en orden de shard. Si algún shard
+     * falla se propaga la primera excepción.
+     */
+    public static <T> List<T> enTodos(ConsultaShard<T> consulta) throws Exception {
+        List<Future<T>> futuros = new ArrayList<>(URLS.length);
+        // Los hilos del fan-out heredan el plazo y el compartimento del llamador.
+        Plazo plazo = Plazo.actual();
+        Compartimento compartimento = Compartimento.actual();
+        for (int s = 0; s < URLS.length; s++) {
+            int shard = s;
+            futuros.add(FAN_OUT.submit(() -> compartimento.ejecutar(() -> Plazo.ejecutar(plazo, () -> {
+                try (Connection conn = getConnection(shard)) {
+                    return consulta.ejecutar(shard, conn);
+                }
+            }))));
+        }
+        List<T> resultados = new ArrayList<>(URLS.length);
+        try {
+            for (Future<T> f : futuros) {
+                resultados.add(f.get());
+            }
+        } catch (ExecutionException e) {
+            for (Future<T> f : futuros) {
+                f.cancel(true);
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        return resultados;
+    }
+
+    private static Connection abrir(int shard) throws SQLException {
+        Connection conn = DriverManager.getConnection(URLS[shard],
+                System.getProperty("db.user", "root"), System.getProperty("db.password", ""));
+        try (Statement st = conn.createStatement()) {
+            st.execute("SET SESSION auto_increment_increment = " + URLS.length
+                    + ", auto_increment_offset = " + (shard + 1));
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    private static String[] leerUrls() {
+        String valor = System.getProperty("db.shards", "").trim();
+        if (valor.isEmpty()) {
+            return new String[0];
+        }
+        String[] urls = valor.split(",");
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = urls[i].trim();
+            if (urls[i].isEmpty()) {
+                throw new ExceptionInInitializerError("Error en la configuración de shards: URL vacía en -Ddb.shards");
+            }
+        }
+        return urls;
+    }
+}
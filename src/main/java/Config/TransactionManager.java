@@ -26,6 +26,10 @@ public class TransactionManager implements AutoCloseable {
         if (conn.isClosed()) {
             throw new SQLException("No se puede iniciar la transacción: conexión cerrada");
         }
+        Plazo plazo = Plazo.actual();
+        if (plazo != null) {
+            plazo.verificar("inicio de transacción");
+        }
         conn.setAutoCommit(false);
         transactionActive = true;
     }
@@ -0,0 +1,195 @@
+package Dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Acceso a las tablas de archivo (PacienteArchivo, HistoriaClinicaArchivo y
+ * RevisionHistoriaArchivo): pacientes dados de baja hace tiempo, movidos
+ * fuera de las tablas activas junto con su HC y las revisiones de sus
+ * textos. Todos los métodos usan una conexión externa cuya transacción
+ * gestiona el llamador (ver Service.ArchivadorBajas).
+ *
+ * Las revisiones se mueven siempre que la base tenga la tabla
+ * RevisionHistoria, con o sin -Dhc.revisiones en esta JVM: otra instancia
+ * pudo haberlas escrito, y su clave foránea impide borrar la HC.
+ */
+public class ArchivoDAO {
+
+    // SKIP LOCKED: las filas bloqueadas por otra transacción se dejan para la próxima pasada.
+    private final String SELECT_PARA_ARCHIVAR = "SELECT id FROM Paciente WHERE eliminado = TRUE AND eliminadoEn < ? "
+                                              + "ORDER BY eliminadoEn, id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private final String CONTAR_PARA_ARCHIVAR = "SELECT COUNT(*) FROM Paciente WHERE eliminado = TRUE AND eliminadoEn < ?";
+
+    private final String COPIAR_PACIENTES = "INSERT INTO PacienteArchivo (id, nombre, apellido, dni, fechaNacimiento, eliminadoEn, archivadoEn) "
+                                          + "SELECT id, nombre, apellido, dni, fechaNacimiento, eliminadoEn, NOW() FROM Paciente WHERE id IN ";
+    private final String COPIAR_HISTORIAS = "INSERT INTO HistoriaClinicaArchivo (id, nroHistoria, grupoSanguineo, antecedentes, medicacionActual, observaciones, paciente_id) "
+                                          + "SELECT id, nroHistoria, grupoSanguineo, antecedentes, medicacionActual, observaciones, paciente_id "
+                                          + "FROM HistoriaClinica WHERE paciente_id IN ";
+    // Revisiones de los textos (si existe la tabla): se archivan y restauran con su HC.
+    private final String COPIAR_REVISIONES = "INSERT INTO RevisionHistoriaArchivo (historia_id, revision, completa, contenido, creadoEn) "
+                                           + "SELECT r.historia_id, r.revision, r.completa, r.contenido, r.creadoEn "
+                                           + "FROM RevisionHistoria r JOIN HistoriaClinica hc ON hc.id = r.historia_id WHERE hc.paciente_id IN ";
+    private final String BORRAR_REVISIONES = "DELETE r FROM RevisionHistoria r JOIN HistoriaClinica hc ON hc.id = r.historia_id WHERE hc.paciente_id IN ";
+    private final String BORRAR_HISTORIAS = "DELETE FROM HistoriaClinica WHERE paciente_id IN ";
+    private final String BORRAR_PACIENTES = "DELETE FROM Paciente WHERE eliminado = TRUE AND id IN ";
+
+    // La restauración devuelve el paciente activo (eliminado = FALSE) con sus IDs originales.
+    private final String RESTAURAR_PACIENTE = "INSERT INTO Paciente (id, eliminado, nombre, apellido, dni, fechaNacimiento, eliminadoEn) "
+                                            + "SELECT id, FALSE, nombre, apellido, dni, fechaNacimiento, NULL FROM PacienteArchivo WHERE id = ?";
+    private final String RESTAURAR_HISTORIA = "INSERT INTO HistoriaClinica (id, eliminado, nroHistoria, grupoSanguineo, antecedentes, medicacionActual, observaciones, paciente_id) "
+                                            + "SELECT id, FALSE, nroHistoria, grupoSanguineo, antecedentes, medicacionActual, observaciones, paciente_id "
+                                            + "FROM HistoriaClinicaArchivo WHERE paciente_id = ?";
+    private final String RESTAURAR_REVISIONES = "INSERT INTO RevisionHistoria (historia_id, revision, completa, contenido, creadoEn) "
+                                              + "SELECT r.historia_id, r.revision, r.completa, r.contenido, r.creadoEn "
+                                              + "FROM RevisionHistoriaArchivo r JOIN HistoriaClinicaArchivo hc ON hc.id = r.historia_id WHERE hc.paciente_id = ?";
+    private final String QUITAR_REVISIONES_ARCHIVADAS = "DELETE r FROM RevisionHistoriaArchivo r JOIN HistoriaClinicaArchivo hc ON hc.id = r.historia_id "
+                                                      + "WHERE hc.paciente_id = ?";
+    private final String QUITAR_HISTORIA_ARCHIVADA = "DELETE FROM HistoriaClinicaArchivo WHERE paciente_id = ?";
+    private final String QUITAR_PACIENTE_ARCHIVADO = "DELETE FROM PacienteArchivo WHERE id = ?";
+    private final String TABLAS_REVISIONES = "SELECT TABLE_NAME FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() "
+                                           + "AND TABLE_NAME IN ('RevisionHistoria', 'RevisionHistoriaArchivo')";
+    private final String ULTIMO_ARCHIVADO_POR_DNI = "SELECT id FROM PacienteArchivo WHERE dni = ? ORDER BY archivadoEn DESC, id DESC LIMIT 1";
+
+    /** Bases (URL + esquema) con las dos tablas de revisiones; una ausencia no se recuerda, la tabla puede crearse después. */
+    private static final Set<String> CON_REVISIONES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Bloquea y devuelve hasta "cantidad" IDs de pacientes dados de baja antes de "limite".
+     */
+    public List<Integer> seleccionarParaArchivarTx(Timestamp limite, int cantidad, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_PARA_ARCHIVAR)) {
+            ps.setTimestamp(1, limite);
+            ps.setInt(2, cantidad);
+            List<Integer> ids = new ArrayList<>(cantidad);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw new Exception("Error al seleccionar Pacientes para archivar: " + e.getMessage(), e);
+        }
+    }
+
+    public long contarParaArchivarTx(Timestamp limite, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(CONTAR_PARA_ARCHIVAR)) {
+            ps.setTimestamp(1, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al contar Pacientes para archivar: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copia los pacientes (ya bloqueados) y sus HCs al archivo y los borra
+     * de las tablas activas.
+     *
+     * @return Cantidad de pacientes archivados
+     */
+    public int archivarTx(List<Integer> ids, Connection conn) throws Exception {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String lista = "(" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        try {
+            ejecutarConIds(COPIAR_PACIENTES + lista, ids, conn);
+            ejecutarConIds(COPIAR_HISTORIAS + lista, ids, conn);
+            if (hayRevisiones(conn)) {
+                ejecutarConIds(COPIAR_REVISIONES + lista, ids, conn);
+                ejecutarConIds(BORRAR_REVISIONES + lista, ids, conn);
+            }
+            ejecutarConIds(BORRAR_HISTORIAS + lista, ids, conn);
+            return ejecutarConIds(BORRAR_PACIENTES + lista, ids, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al archivar Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    private static int ejecutarConIds(String sql, List<Integer> ids, Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) {
+                ps.setInt(i + 1, ids.get(i));
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * true si la base tiene RevisionHistoria (y entonces también debe tener
+     * RevisionHistoriaArchivo); false si no usa revisiones.
+     */
+    private boolean hayRevisiones(Connection conn) throws SQLException {
+        String base = conn.getMetaData().getURL() + "/" + conn.getCatalog();
+        if (CON_REVISIONES.contains(base)) {
+            return true;
+        }
+        boolean revisiones = false;
+        boolean archivo = false;
+        try (PreparedStatement ps = conn.prepareStatement(TABLAS_REVISIONES);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String tabla = rs.getString(1);
+                revisiones |= "RevisionHistoria".equalsIgnoreCase(tabla);
+                archivo |= "RevisionHistoriaArchivo".equalsIgnoreCase(tabla);
+            }
+        }
+        if (!revisiones) {
+            return false;
+        }
+        if (!archivo) {
+            // Sin la tabla de archivo las revisiones se perderían (o la FK haría fallar cada lote).
+            throw new SQLException("La base tiene RevisionHistoria pero no RevisionHistoriaArchivo: crearla antes de archivar (ver README)");
+        }
+        CON_REVISIONES.add(base);
+        return true;
+    }
+
+    /**
+     * Devuelve el paciente archivado (y su HC) a las tablas activas.
+     *
+     * @return false si el ID no está en el archivo
+     */
+    public boolean restaurarTx(int pacienteId, Connection conn) throws Exception {
+        try {
+            if (ejecutarConIds(RESTAURAR_PACIENTE, Collections.singletonList(pacienteId), conn) == 0) {
+                return false;
+            }
+            ejecutarConIds(RESTAURAR_HISTORIA, Collections.singletonList(pacienteId), conn);
+            if (hayRevisiones(conn)) {
+                ejecutarConIds(RESTAURAR_REVISIONES, Collections.singletonList(pacienteId), conn);
+                ejecutarConIds(QUITAR_REVISIONES_ARCHIVADAS, Collections.singletonList(pacienteId), conn);
+            }
+            ejecutarConIds(QUITAR_HISTORIA_ARCHIVADA, Collections.singletonList(pacienteId), conn);
+            ejecutarConIds(QUITAR_PACIENTE_ARCHIVADO, Collections.singletonList(pacienteId), conn);
+            return true;
+        } catch (SQLException e) {
+            throw new Exception("Error al restaurar Paciente archivado: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return ID del último paciente archivado con ese DNI, o null
+     */
+    public Integer buscarArchivadoPorDniTx(String dni, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(ULTIMO_ARCHIVADO_POR_DNI)) {
+            ps.setString(1, dni);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar Paciente archivado por DNI: " + e.getMessage(), e);
+        }
+    }
+}
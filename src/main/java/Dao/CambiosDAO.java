@@ -0,0 +1,72 @@
+package Dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectura de la columna actualizadoEn de Paciente e HistoriaClinica, que
+ * avanzan todas las escrituras de los DAOs: permite que cada instancia de la
+ * aplicación se entere de lo que cambiaron las demás (ver Service.CoherenciaCache).
+ */
+public class CambiosDAO {
+
+    /** Una fila cambiada, identificada por el ID del paciente al que pertenece. */
+    public static final class Cambio {
+        public final int pacienteId;
+        /** true si la fila cambiada es la HC del paciente. */
+        public final boolean historia;
+        public final Timestamp actualizadoEn;
+
+        public Cambio(int pacienteId, boolean historia, Timestamp actualizadoEn) {
+            this.pacienteId = pacienteId;
+            this.historia = historia;
+            this.actualizadoEn = actualizadoEn;
+        }
+    }
+
+    private final String AHORA = "SELECT NOW(6)";
+    // Cada rama usa su índice idx_actualizado_en.
+    private final String SELECT_CAMBIOS = "(SELECT id, FALSE, actualizadoEn FROM Paciente WHERE actualizadoEn >= ?) "
+                                        + "UNION ALL "
+                                        + "(SELECT paciente_id, TRUE, actualizadoEn FROM HistoriaClinica WHERE actualizadoEn >= ?) "
+                                        + "LIMIT ?";
+
+    /**
+     * @return Hora actual del servidor de BD (la misma escala que actualizadoEn)
+     */
+    public Timestamp ahoraTx(Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(AHORA);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1);
+        } catch (SQLException e) {
+            throw new Exception("Error al leer la hora de la BD: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Filas de Paciente e HistoriaClinica con actualizadoEn >= "desde", como
+     * mucho "limite" (el llamador detecta el exceso pidiendo una más).
+     */
+    public List<Cambio> getCambiosDesdeTx(Timestamp desde, int limite, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_CAMBIOS)) {
+            ps.setTimestamp(1, desde);
+            ps.setTimestamp(2, desde);
+            ps.setInt(3, limite);
+            List<Cambio> cambios = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    cambios.add(new Cambio(rs.getInt(1), rs.getBoolean(2), rs.getTimestamp(3)));
+                }
+            }
+            return cambios;
+        } catch (SQLException e) {
+            throw new Exception("Error al leer cambios de Pacientes: " + e.getMessage(), e);
+        }
+    }
+}
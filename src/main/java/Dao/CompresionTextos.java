@@ -0,0 +1,213 @@
+package Dao;
+
+import Config.ShardRouter;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresión de los campos TEXT de HistoriaClinica (antecedentes,
+ * medicacionActual, observaciones).
+ *
+ * Formato guardado en la misma columna TEXT:
+ * <pre>
+ * \u001Fz&lt;diccionario&gt;:&lt;Deflate crudo en Base64&gt;
+ * </pre>
+ * El prefijo (un caracter de control que no aparece en texto escrito) es la
+ * marca de formato: una fila sin él es texto plano, así que filas
+ * comprimidas y sin comprimir conviven durante la migración. El
+ * diccionario 0 es "sin diccionario"; los demás son diccionarios del
+ * dominio entrenados con notas existentes (tabla DiccionarioTexto, ver
+ * Service.CompresionHistorias) y el más reciente es el que se usa al escribir.
+ *
+ * Se activa con -Dhc.compresion=true; solo se comprimen los textos de al
+ * menos -Dhc.compresion.umbral bytes (default 256) y solo si el resultado
+ * es más corto. La lectura reconoce el formato siempre, activo o no.
+ */
+public final class CompresionTextos {
+
+    static final String MARCA = "\u001Fz";
+
+    private static final boolean ACTIVO = Boolean.getBoolean("hc.compresion");
+    private static final int UMBRAL = Integer.getInteger("hc.compresion.umbral", 256);
+    private static final long RECARGA_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private static final DiccionarioTextoDAO DICCIONARIOS_DAO = new DiccionarioTextoDAO();
+    private static final Map<Integer, byte[]> DICCIONARIOS = new ConcurrentHashMap<>();
+    private static volatile int diccionarioActual;
+    private static volatile long proximaRecarga = Long.MIN_VALUE;
+
+    private CompresionTextos() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    public static boolean estaActivo() {
+        return ACTIVO;
+    }
+
+    /**
+     * Carga (o recarga, cada 5 minutos) los diccionarios. Los DAOs que
+     * escriben lo llaman antes de paraGuardar(); los recorridos en streaming,
+     * antes de abrir el cursor (no se puede consultar en medio). Con
+     * -Ddb.shards no se cargan: se comprime sin diccionario.
+     */
+    public static void preparar(Connection conn) throws SQLException {
+        if (ACTIVO && !ShardRouter.estaActivo() && System.nanoTime() - proximaRecarga >= 0) {
+            recargar(conn);
+        }
+    }
+
+    /**
+     * Fuerza la recarga (p. ej. después de entrenar un diccionario nuevo).
+     */
+    public static synchronized void recargar(Connection conn) throws SQLException {
+        Map<Integer, byte[]> cargados = DICCIONARIOS_DAO.cargarTodosTx(conn);
+        DICCIONARIOS.putAll(cargados);
+        int ultimo = 0;
+        for (int id : cargados.keySet()) {
+            ultimo = Math.max(ultimo, id);
+        }
+        diccionarioActual = ultimo;
+        proximaRecarga = System.nanoTime() + RECARGA_NANOS;
+    }
+
+    public static boolean estaComprimido(String valor) {
+        return valor != null && valor.startsWith(MARCA);
+    }
+
+    /**
+     * Forma a guardar en la columna: comprimida si el modo está activo, el
+     * texto supera el umbral y comprimirlo conviene; si no, el texto tal cual.
+     */
+    public static String paraGuardar(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        // Un texto plano que empezara con la marca se leería como comprimido: se comprime siempre.
+        boolean ambiguo = texto.startsWith(MARCA);
+        if (!ambiguo && (!ACTIVO || texto.length() < UMBRAL / 4)) {
+            return texto;
+        }
+        byte[] plano = texto.getBytes(StandardCharsets.UTF_8);
+        if (!ambiguo && plano.length < UMBRAL) {
+            return texto;
+        }
+        int diccionario = ACTIVO ? diccionarioActual : 0;
+        String comprimido = MARCA + diccionario + ":"
+                + Base64.getEncoder().withoutPadding().encodeToString(deflate(plano, DICCIONARIOS.get(diccionario)));
+        return ambiguo || comprimido.length() < texto.length() ? comprimido : texto;
+    }
+
+    /**
+     * Valor legible de una columna (texto plano o comprimido).
+     *
+     * @throws IllegalStateException si el diccionario no está cargado o el valor está dañado
+     */
+    public static String expandir(String valor) {
+        if (!estaComprimido(valor)) {
+            return valor;
+        }
+        int separador = valor.indexOf(':', MARCA.length());
+        if (separador < 0) {
+            throw new IllegalStateException("Texto comprimido mal formado");
+        }
+        int diccionario = Integer.parseInt(valor.substring(MARCA.length(), separador));
+        byte[] dic = DICCIONARIOS.get(diccionario);
+        if (diccionario != 0 && dic == null) {
+            throw new IllegalStateException("Diccionario de textos " + diccionario + " no cargado");
+        }
+        byte[] comprimido = Base64.getDecoder().decode(valor.substring(separador + 1));
+        return new String(inflate(comprimido, dic), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Expansión diferida al primer acceso (ver HistoriaClinica). Si el
+     * diccionario del valor todavía no está cargado, se carga ahora con
+     * "conn" (null en recorridos en streaming, que llaman a preparar antes).
+     */
+    public static Supplier<String> diferido(String valor, Connection conn) throws SQLException {
+        if (!estaComprimido(valor)) {
+            return () -> valor;
+        }
+        if (conn != null && !diccionarioCargado(valor)) {
+            recargar(conn);
+        }
+        return () -> expandir(valor);
+    }
+
+    private static boolean diccionarioCargado(String valor) {
+        int separador = valor.indexOf(':', MARCA.length());
+        if (separador < 0) {
+            return true; // mal formado: lo informa expandir()
+        }
+        int diccionario = Integer.parseInt(valor.substring(MARCA.length(), separador));
+        return diccionario == 0 || DICCIONARIOS.containsKey(diccionario);
+    }
+
+    /**
+     * Bytes que ocuparía el texto comprimido con ese diccionario (null = sin
+     * diccionario), antes de Base64. Para evaluar diccionarios.
+     */
+    public static int comprimidoBytes(byte[] plano, byte[] diccionario) {
+        return deflate(plano, diccionario).length;
+    }
+
+    static byte[] deflate(byte[] plano, byte[] diccionario) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            if (diccionario != null) {
+                deflater.setDictionary(diccionario);
+            }
+            deflater.setInput(plano);
+            deflater.finish();
+            byte[] salida = new byte[Math.max(64, plano.length / 2)];
+            int largo = 0;
+            while (!deflater.finished()) {
+                if (largo == salida.length) {
+                    salida = Arrays.copyOf(salida, salida.length * 2);
+                }
+                largo += deflater.deflate(salida, largo, salida.length - largo);
+            }
+            return Arrays.copyOf(salida, largo);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] inflate(byte[] comprimido, byte[] diccionario) {
+        Inflater inflater = new Inflater(true);
+        try {
+            if (diccionario != null) {
+                inflater.setDictionary(diccionario);
+            }
+            inflater.setInput(comprimido);
+            byte[] salida = new byte[Math.max(256, comprimido.length * 4)];
+            int largo = 0;
+            while (!inflater.finished()) {
+                if (largo == salida.length) {
+                    salida = Arrays.copyOf(salida, salida.length * 2);
+                }
+                int n = inflater.inflate(salida, largo, salida.length - largo);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Texto comprimido truncado");
+                }
+                largo += n;
+            }
+            return Arrays.copyOf(salida, largo);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Texto comprimido dañado: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package Dao;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Formato binario de las revisiones de los textos de una HC (ver
+ * RevisionHistoriaDAO). Una revisión son los tres textos (antecedentes,
+ * medicacionActual, observaciones), cada uno codificado como una operación
+ * sobre el mismo texto de la revisión anterior:
+ * <pre>
+ * IGUAL                                  sin cambios
+ * NULO                                   pasa a null
+ * TEXTO    &lt;largo&gt; &lt;UTF-8&gt;               texto completo
+ * EMPALME  &lt;prefijo&gt; &lt;sufijo&gt; &lt;largo&gt; &lt;UTF-8&gt;
+ *          se conservan "prefijo" caracteres del inicio y "sufijo" del
+ *          final del texto anterior, y en el medio va el texto nuevo
+ * </pre>
+ * Los números son varints. Una revisión completa (keyframe) usa solo NULO y
+ * TEXTO y se lee sin la anterior. El primer byte indica si el resto está
+ * comprimido con Deflate (solo si conviene).
+ *
+ * El empalme cubre en pocos bytes las ediciones típicas (agregar una nota,
+ * corregir un tramo); un texto reescrito entero queda como TEXTO.
+ */
+final class DeltaTextos {
+
+    static final int CAMPOS = 3;
+
+    private static final int IGUAL = 0;
+    private static final int NULO = 1;
+    private static final int TEXTO = 2;
+    private static final int EMPALME = 3;
+
+    private static final int PLANO = 0;
+    private static final int DEFLATE = 1;
+
+    private DeltaTextos() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /** Revisión completa: se reconstruye sin la anterior. */
+    static byte[] completa(String[] textos) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String texto : textos) {
+            escribirTexto(out, texto);
+        }
+        return cerrar(out);
+    }
+
+    /** Revisión como diferencia contra "anterior". */
+    static byte[] delta(String[] anterior, String[] nuevo) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int c = 0; c < CAMPOS; c++) {
+            String a = anterior[c];
+            String b = nuevo[c];
+            if (Objects.equals(a, b)) {
+                out.write(IGUAL);
+            } else if (a == null || b == null) {
+                escribirTexto(out, b);
+            } else {
+                escribirEmpalme(out, a, b);
+            }
+        }
+        return cerrar(out);
+    }
+
+    /**
+     * Aplica una revisión sobre los textos de la anterior (null si es completa).
+     *
+     * @throws IllegalStateException si el contenido está dañado o no corresponde a "base"
+     */
+    static String[] aplicar(String[] base, byte[] revision) {
+        Lector in = new Lector(abrir(revision));
+        String[] textos = new String[CAMPOS];
+        for (int c = 0; c < CAMPOS; c++) {
+            int op = in.byteSinSigno();
+            switch (op) {
+                case NULO:
+                    textos[c] = null;
+                    break;
+                case TEXTO:
+                    textos[c] = in.texto();
+                    break;
+                case IGUAL:
+                    textos[c] = anterior(base, c);
+                    break;
+                case EMPALME: {
+                    String a = anterior(base, c);
+                    int prefijo = in.varint();
+                    int sufijo = in.varint();
+                    String medio = in.texto();
+                    if (a == null || prefijo + sufijo > a.length()) {
+                        throw new IllegalStateException("Revisión dañada: el empalme no corresponde a la revisión anterior");
+                    }
+                    textos[c] = a.substring(0, prefijo) + medio + a.substring(a.length() - sufijo);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Revisión dañada: operación " + op);
+            }
+        }
+        if (in.quedan()) {
+            throw new IllegalStateException("Revisión dañada: sobran bytes");
+        }
+        return textos;
+    }
+
+    private static String anterior(String[] base, int campo) {
+        if (base == null) {
+            throw new IllegalStateException("Revisión dañada: diferencia sin revisión anterior");
+        }
+        return base[campo];
+    }
+
+    // --- Escritura ---
+
+    private static void escribirTexto(ByteArrayOutputStream out, String texto) {
+        if (texto == null) {
+            out.write(NULO);
+        } else {
+            out.write(TEXTO);
+            escribirUtf8(out, texto);
+        }
+    }
+
+    private static void escribirEmpalme(ByteArrayOutputStream out, String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int prefijo = 0;
+        while (prefijo < max && a.charAt(prefijo) == b.charAt(prefijo)) {
+            prefijo++;
+        }
+        // No cortar un par sustituto: el tramo del medio tiene que ser UTF-16 válido.
+        if (prefijo > 0 && Character.isHighSurrogate(a.charAt(prefijo - 1))) {
+            prefijo--;
+        }
+        int sufijo = 0;
+        while (sufijo < max - prefijo && a.charAt(a.length() - 1 - sufijo) == b.charAt(b.length() - 1 - sufijo)) {
+            sufijo++;
+        }
+        if (sufijo > 0 && Character.isLowSurrogate(a.charAt(a.length() - sufijo))) {
+            sufijo--;
+        }
+        if (prefijo == 0 && sufijo == 0) {
+            escribirTexto(out, b);
+            return;
+        }
+        out.write(EMPALME);
+        escribirVarint(out, prefijo);
+        escribirVarint(out, sufijo);
+        escribirUtf8(out, b.substring(prefijo, b.length() - sufijo));
+    }
+
+    private static void escribirUtf8(ByteArrayOutputStream out, String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        escribirVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void escribirVarint(ByteArrayOutputStream out, int valor) {
+        while ((valor & ~0x7F) != 0) {
+            out.write((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        out.write(valor);
+    }
+
+    private static byte[] cerrar(ByteArrayOutputStream out) {
+        byte[] plano = out.toByteArray();
+        byte[] comprimido = CompresionTextos.deflate(plano, null);
+        byte[] resultado;
+        if (comprimido.length < plano.length) {
+            resultado = new byte[comprimido.length + 1];
+            resultado[0] = DEFLATE;
+            System.arraycopy(comprimido, 0, resultado, 1, comprimido.length);
+        } else {
+            resultado = new byte[plano.length + 1];
+            resultado[0] = PLANO;
+            System.arraycopy(plano, 0, resultado, 1, plano.length);
+        }
+        return resultado;
+    }
+
+    // --- Lectura ---
+
+    private static byte[] abrir(byte[] revision) {
+        if (revision == null || revision.length == 0) {
+            throw new IllegalStateException("Revisión dañada: contenido vacío");
+        }
+        byte[] cuerpo = Arrays.copyOfRange(revision, 1, revision.length);
+        switch (revision[0]) {
+            case PLANO:
+                return cuerpo;
+            case DEFLATE:
+                return CompresionTextos.inflate(cuerpo, null);
+            default:
+                throw new IllegalStateException("Revisión dañada: formato " + revision[0]);
+        }
+    }
+
+    private static final class Lector {
+        private final byte[] datos;
+        private int pos;
+
+        Lector(byte[] datos) {
+            this.datos = datos;
+        }
+
+        int byteSinSigno() {
+            if (pos >= datos.length) {
+                throw new IllegalStateException("Revisión dañada: contenido truncado");
+            }
+            return datos[pos++] & 0xFF;
+        }
+
+        int varint() {
+            int valor = 0;
+            for (int desplazamiento = 0; desplazamiento < 32; desplazamiento += 7) {
+                int b = byteSinSigno();
+                valor |= (b & 0x7F) << desplazamiento;
+                if ((b & 0x80) == 0) {
+                    if (valor < 0) {
+                        break;
+                    }
+                    return valor;
+                }
+            }
+            throw new IllegalStateException("Revisión dañada: número inválido");
+        }
+
+        String texto() {
+            int largo = varint();
+            if (largo > datos.length - pos) {
+                throw new IllegalStateException("Revisión dañada: contenido truncado");
+            }
+            String texto = new String(datos, pos, largo, StandardCharsets.UTF_8);
+            pos += largo;
+            return texto;
+        }
+
+        boolean quedan() {
+            return pos < datos.length;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package Dao;
+
+import entities.HistoriaClinica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Diccionarios de compresión de textos clínicos (tabla DiccionarioTexto) y
+ * los recorridos que usan su entrenamiento y la migración de filas
+ * existentes (ver CompresionTextos y Service.CompresionHistorias).
+ */
+public class DiccionarioTextoDAO {
+
+    private static final int TABLA_INEXISTENTE = 1146;
+
+    private final String SELECT_TODOS = "SELECT id, contenido FROM DiccionarioTexto";
+    private final String INSERT = "INSERT INTO DiccionarioTexto (contenido, creadoEn) VALUES (?, NOW())";
+    private final String SELECT_MUESTRA = "SELECT antecedentes, medicacionActual, observaciones FROM HistoriaClinica "
+                                        + "WHERE eliminado = FALSE ORDER BY id DESC LIMIT ?";
+    // FOR UPDATE: una modificación concurrente espera a que se reescriba el lote (no se pisa).
+    private final String SELECT_TEXTOS_DESDE = "SELECT id, antecedentes, medicacionActual, observaciones FROM HistoriaClinica "
+                                             + "WHERE id > ? ORDER BY id LIMIT ? FOR UPDATE";
+    private final String UPDATE_TEXTOS = "UPDATE HistoriaClinica SET antecedentes = ?, medicacionActual = ?, observaciones = ? WHERE id = ?";
+
+    /**
+     * @return Diccionarios por ID (vacío si la tabla todavía no existe)
+     */
+    public Map<Integer, byte[]> cargarTodosTx(Connection conn) throws SQLException {
+        Map<Integer, byte[]> diccionarios = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_TODOS);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                diccionarios.put(rs.getInt(1), rs.getBytes(2));
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() != TABLA_INEXISTENTE) {
+                throw e;
+            }
+        }
+        return diccionarios;
+    }
+
+    /**
+     * @return ID del diccionario nuevo (pasa a ser el de escritura)
+     */
+    public int insertarTx(byte[] contenido, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setBytes(1, contenido);
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No se obtuvo el ID del diccionario.");
+                }
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al guardar diccionario de textos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Entrega los textos (expandidos, sin null) de las "cantidad" HCs activas más recientes.
+     */
+    public void recorrerMuestraTx(int cantidad, Consumer<String> consumidor, Connection conn) throws Exception {
+        CompresionTextos.recargar(conn);
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_MUESTRA)) {
+            ps.setInt(1, cantidad);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    for (int c = 1; c <= 3; c++) {
+                        String texto = CompresionTextos.expandir(rs.getString(c));
+                        if (texto != null && !texto.isEmpty()) {
+                            consumidor.accept(texto);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al leer textos de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Bloquea y devuelve un lote de HCs (incluidas las bajas) con ID mayor a
+     * "despuesDe", con los textos tal como están guardados.
+     */
+    public List<HistoriaClinica> getTextosDesdeTx(int despuesDe, int limite, Connection conn) throws Exception {
+        List<HistoriaClinica> lote = new ArrayList<>(limite);
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_TEXTOS_DESDE)) {
+            ps.setInt(1, despuesDe);
+            ps.setInt(2, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    HistoriaClinica hc = new HistoriaClinica();
+                    hc.setId(rs.getInt(1));
+                    hc.setAntecedentes(rs.getString(2));
+                    hc.setMedicacionActual(rs.getString(3));
+                    hc.setObservaciones(rs.getString(4));
+                    lote.add(hc);
+                }
+            }
+            return lote;
+        } catch (SQLException e) {
+            throw new Exception("Error al leer textos de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reescribe los textos tal como vienen (ya en su forma guardada).
+     */
+    public void actualizarTextosBatchTx(List<HistoriaClinica> historias, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE_TEXTOS)) {
+            for (HistoriaClinica hc : historias) {
+                ps.setString(1, hc.getAntecedentes());
+                ps.setString(2, hc.getMedicacionActual());
+                ps.setString(3, hc.getObservaciones());
+                ps.setInt(4, hc.getId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new Exception("Error al reescribir textos de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+}
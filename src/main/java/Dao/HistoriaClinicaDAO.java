@@ -1,20 +1,67 @@
 package Dao;
 
 import Config.DatabaseConnection;
+import Config.TransactionManager;
 import entities.HistoriaClinica;
+import entities.RevisionHistoria;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+/**
+ * Con -Dhc.compresion=true los textos largos se guardan comprimidos (ver CompresionTextos).
+ * Con -Dhc.revisiones=true cada actualización de los textos deja su revisión (ver RevisionHistoriaDAO).
+ */
 public class HistoriaClinicaDAO implements GenericDAO<HistoriaClinica> {
     
     // Consultas SQL
-    private final String INSERT = "INSERT INTO HistoriaClinica (nroHistoria, grupoSanguineo, antecedentes, medicacionActual, observaciones, paciente_id) VALUES (?, ?, ?, ?, ?, ?)";
-    private final String UPDATE = "UPDATE HistoriaClinica SET nroHistoria=?, grupoSanguineo=?, antecedentes=?, medicacionActual=?, observaciones=? WHERE id=? AND eliminado = FALSE";
-    private final String DELETE_LOGICO = "UPDATE HistoriaClinica SET eliminado = TRUE WHERE paciente_id = ?"; // Baja por ID del Paciente asociado
+    // Columnas y vinculación generadas a partir de las @Columna de la entidad (ver HistoriaClinicaFilas).
+    private final String INSERT = "INSERT INTO HistoriaClinica (" + HistoriaClinicaFilas.COLUMNAS + ", paciente_id) "
+                                + "VALUES (" + HistoriaClinicaFilas.MARCADORES + ", ?)";
+    private final String UPDATE = "UPDATE HistoriaClinica SET " + HistoriaClinicaFilas.ASIGNACIONES + ", actualizadoEn = NOW(6) "
+                                + "WHERE id=? AND eliminado = FALSE";
+    private final String DELETE_LOGICO = "UPDATE HistoriaClinica SET actualizadoEn = IF(eliminado, actualizadoEn, NOW(6)), eliminado = TRUE WHERE paciente_id = ?"; // Baja por ID del Paciente asociado
+    private final String EXISTE_NRO_HISTORIA = "SELECT 1 FROM HistoriaClinica WHERE nroHistoria = ? LIMIT 1";
+    private final String SELECT_NROS_HISTORIA = "SELECT nroHistoria FROM HistoriaClinica";
+    // IGNORE: si el Nro. HC o el paciente_id ya existen, la fila se saltea (se cuenta por el update count).
+    private final String INSERT_IGNORE_MINIMA = "INSERT IGNORE INTO HistoriaClinica (nroHistoria, grupoSanguineo, paciente_id) VALUES (?, ?, ?)";
+    // FOR UPDATE: las revisiones de una misma HC se registran de a una (ver RevisionHistoriaDAO).
+    private final String SELECT_TEXTOS_PARA_ACTUALIZAR = "SELECT antecedentes, medicacionActual, observaciones, actualizadoEn "
+                                                       + "FROM HistoriaClinica WHERE id = ? AND eliminado = FALSE FOR UPDATE";
+    private final String REACTIVAR = "UPDATE HistoriaClinica SET actualizadoEn = IF(eliminado, NOW(6), actualizadoEn), eliminado = FALSE WHERE paciente_id = ?";
+
+    // Lecturas de HCs activas, sin pasar por el JOIN de PacienteDAO. La lista de columnas
+    // depende de los campos pedidos (ver select()); cada filtro usa un índice:
+    // PK, UNIQUE nroHistoria (también para el orden del paginado) o UNIQUE paciente_id.
+    private final String WHERE_ID = "WHERE hc.id = ? AND hc.eliminado = FALSE";
+    private final String WHERE_NRO_HISTORIA = "WHERE hc.nroHistoria = ? AND hc.eliminado = FALSE";
+    private final String WHERE_PAGINA_INICIO = "WHERE hc.eliminado = FALSE ORDER BY hc.nroHistoria LIMIT ?";
+    private final String WHERE_PAGINA = "WHERE hc.eliminado = FALSE AND hc.nroHistoria > ? ORDER BY hc.nroHistoria LIMIT ?";
+    private final String WHERE_TODAS = "WHERE hc.eliminado = FALSE ORDER BY hc.nroHistoria";
+    private final String WHERE_PACIENTES = "WHERE hc.eliminado = FALSE AND hc.paciente_id IN ";
+
+    /** Campos de una HC sin los textos clínicos (los TEXT), para búsquedas y listados. */
+    public static final Set<String> CAMPOS_RESUMEN = Set.of("nroHistoria", "grupoSanguineo");
+    /** Todos los campos (incluidos los textos). */
+    public static final Set<String> CAMPOS_TODOS = HistoriaClinicaFilas.CAMPOS;
+
+    // Tamaño máximo de cada IN (...) en getPorPacienteIdsTx.
+    private static final int IDS_POR_CONSULTA = 500;
+
+    private final RevisionHistoriaDAO revisiones = new RevisionHistoriaDAO();
 
     // --- Métodos Transaccionales (usan Connection externa) ---
     
@@ -22,12 +69,9 @@ public class HistoriaClinicaDAO implements GenericDAO<HistoriaClinica> {
     public void insertTx(HistoriaClinica entidad, Connection conn) throws Exception {
         // Implementación de crear transaccional.
         try (PreparedStatement ps = conn.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, entidad.getNroHistoria());
-            ps.setString(2, entidad.getGrupoSanguineo().getSimbolo()); 
-            ps.setString(3, entidad.getAntecedentes());
-            ps.setString(4, entidad.getMedicacionActual());
-            ps.setString(5, entidad.getObservaciones());
-            ps.setLong(6, entidad.getPacienteId()); // CLAVE: Usa el ID del Paciente (Long)
+            CompresionTextos.preparar(conn);
+            int i = HistoriaClinicaFilas.vincular(ps, 1, entidad);
+            ps.setLong(i, entidad.getPacienteId()); // CLAVE: Usa el ID del Paciente (Long)
 
             if (ps.executeUpdate() > 0) {
                 try (ResultSet rs = ps.getGeneratedKeys()) {
@@ -46,20 +90,76 @@ public class HistoriaClinicaDAO implements GenericDAO<HistoriaClinica> {
     // --- Métodos que participan en la transacción (usados en Service) ---
     
     // Se crea una variante transaccional de actualizar y eliminar que se usará en el Service
+    // Con -Dhc.revisiones=true, si cambió algún texto se guarda la revisión en la misma transacción.
     public void actualizarTx(HistoriaClinica entidad, Connection conn) throws Exception {
         try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
-            ps.setString(1, entidad.getNroHistoria());
-            ps.setString(2, entidad.getGrupoSanguineo().getSimbolo());
-            ps.setString(3, entidad.getAntecedentes());
-            ps.setString(4, entidad.getMedicacionActual());
-            ps.setString(5, entidad.getObservaciones());
-            ps.setInt(6, entidad.getId()); 
-            ps.executeUpdate();
+            CompresionTextos.preparar(conn);
+            TextosVigentes anteriores = RevisionHistoriaDAO.estaActivo() ? bloquearTextosTx(entidad.getId(), conn) : null;
+            int i = HistoriaClinicaFilas.vincular(ps, 1, entidad);
+            ps.setInt(i, entidad.getId()); 
+            if (ps.executeUpdate() > 0 && anteriores != null) {
+                String[] nuevos = { entidad.getAntecedentes(), entidad.getMedicacionActual(), entidad.getObservaciones() };
+                if (!Arrays.equals(anteriores.textos, nuevos)) {
+                    revisiones.registrarTx(entidad.getId(), anteriores.textos, anteriores.actualizadoEn, nuevos, conn);
+                }
+            }
         } catch (SQLException e) {
              throw new Exception("Error al actualizar HistoriaClinica en transacción: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Actualiza varias HCs en la transacción del llamador con un único UPDATE
+     * por lotes (escritura diferida, ver Service.EscrituraDiferida). Con
+     * revisiones activas va de a una: cada revisión necesita los textos previos.
+     */
+    public void actualizarBatchTx(List<HistoriaClinica> historias, Connection conn) throws Exception {
+        if (RevisionHistoriaDAO.estaActivo()) {
+            for (HistoriaClinica hc : historias) {
+                actualizarTx(hc, conn);
+            }
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+            CompresionTextos.preparar(conn);
+            for (HistoriaClinica hc : historias) {
+                int i = HistoriaClinicaFilas.vincular(ps, 1, hc);
+                ps.setInt(i, hc.getId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new Exception("Error en la actualización por lote de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
+    /** Textos (expandidos) y actualizadoEn de una HC antes de actualizarla. */
+    private static final class TextosVigentes {
+        final String[] textos;
+        final Timestamp actualizadoEn;
+
+        TextosVigentes(String[] textos, Timestamp actualizadoEn) {
+            this.textos = textos;
+            this.actualizadoEn = actualizadoEn;
+        }
+    }
+
+    private TextosVigentes bloquearTextosTx(int id, Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_TEXTOS_PARA_ACTUALIZAR)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                String[] textos = new String[3];
+                for (int c = 0; c < textos.length; c++) {
+                    textos[c] = CompresionTextos.diferido(rs.getString(c + 1), conn).get();
+                }
+                return new TextosVigentes(textos, rs.getTimestamp(4));
+            }
+        }
+    }
+
     public void eliminarPorPacienteIdTx(long pacienteId, Connection conn) throws Exception {
         // Se ejecuta la baja lógica de HC usando el ID del Paciente asociado.
         try (PreparedStatement ps = conn.prepareStatement(DELETE_LOGICO)) {
@@ -70,16 +170,262 @@ public class HistoriaClinicaDAO implements GenericDAO<HistoriaClinica> {
         }
     }
 
+    /**
+     * Indica si el Nro. de HC ya está usado (incluso por una HC dada de baja).
+     */
+    public boolean existeNroHistoriaTx(String nroHistoria, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(EXISTE_NRO_HISTORIA)) {
+            ps.setString(1, nroHistoria);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al verificar Nro. de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recorre en streaming todos los Nro. de HC (incluidas las bajas lógicas).
+     */
+    public void recorrerNrosHistoriaTx(Consumer<String> consumidor, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_NROS_HISTORIA, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.accept(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al recorrer Nros. de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Crea en lote HCs mínimas (Nro., grupo y paciente) para pacientes que
+     * no tienen. Las que chocan con un Nro. HC existente se saltean.
+     *
+     * @return Cantidad de HCs efectivamente creadas
+     */
+    public int insertarMinimasBatchTx(List<HistoriaClinica> historias, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_IGNORE_MINIMA)) {
+            for (HistoriaClinica hc : historias) {
+                ps.setString(1, hc.getNroHistoria());
+                ps.setString(2, hc.getGrupoSanguineo().getSimbolo());
+                ps.setLong(3, hc.getPacienteId());
+                ps.addBatch();
+            }
+            int creadas = 0;
+            for (int n : ps.executeBatch()) {
+                if (n > 0) {
+                    creadas += n;
+                } else if (n == Statement.SUCCESS_NO_INFO) {
+                    creadas = -1; // lote reescrito por el driver: no hay cuenta por fila
+                    break;
+                }
+            }
+            return creadas >= 0 ? creadas : historias.size();
+        } catch (SQLException e) {
+            throw new Exception("Error al crear HistoriasClinicas por lote: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reactiva (eliminado = FALSE) las HCs de los pacientes indicados.
+     */
+    public void reactivarPorPacienteIdsBatchTx(List<Integer> pacienteIds, Connection conn) throws Exception {
+        ejecutarPorPacienteIds(REACTIVAR, pacienteIds, conn);
+    }
+
+    /**
+     * Baja lógica en lote de las HCs de los pacientes indicados.
+     */
+    public void eliminarPorPacienteIdsBatchTx(List<Integer> pacienteIds, Connection conn) throws Exception {
+        ejecutarPorPacienteIds(DELETE_LOGICO, pacienteIds, conn);
+    }
+
+    private void ejecutarPorPacienteIds(String sql, List<Integer> pacienteIds, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int id : pacienteIds) {
+                ps.setLong(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new Exception("Error en la actualización por lote de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
+    // --- Lecturas (solo los campos pedidos; el id y el pacienteId siempre) ---
+
+    private String select(Set<String> campos) {
+        return "SELECT " + HistoriaClinicaFilas.seleccion("hc", "", campos) + ", hc.paciente_id FROM HistoriaClinica hc ";
+    }
+
+    private List<HistoriaClinica> leer(PreparedStatement ps, Connection conn) throws SQLException {
+        List<HistoriaClinica> historias = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            HistoriaClinicaFilas.Indices ix = HistoriaClinicaFilas.indices(rs, conn);
+            int pacienteId = rs.findColumn("paciente_id");
+            while (rs.next()) {
+                HistoriaClinica hc = HistoriaClinicaFilas.leer(rs, ix);
+                hc.setPacienteId(rs.getLong(pacienteId));
+                historias.add(hc);
+            }
+        }
+        return historias;
+    }
+
+    public HistoriaClinica getByIdTx(int id, Set<String> campos, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(select(campos) + WHERE_ID)) {
+            ps.setInt(1, id);
+            List<HistoriaClinica> historias = leer(ps, conn);
+            return historias.isEmpty() ? null : historias.get(0);
+        } catch (SQLException e) {
+            throw new Exception("Error al leer HistoriaClinica por ID: " + e.getMessage(), e);
+        }
+    }
+
+    public HistoriaClinica buscarPorNroHistoriaTx(String nroHistoria, Set<String> campos, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(select(campos) + WHERE_NRO_HISTORIA)) {
+            ps.setString(1, nroHistoria);
+            List<HistoriaClinica> historias = leer(ps, conn);
+            return historias.isEmpty() ? null : historias.get(0);
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar HistoriaClinica por Nro.: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * HCs activas de los pacientes indicados, en consultas de a
+     * IDS_POR_CONSULTA IDs.
+     *
+     * @return HC por ID de paciente (los que no tienen HC activa no aparecen)
+     */
+    public Map<Integer, HistoriaClinica> getPorPacienteIdsTx(Collection<Integer> pacienteIds, Set<String> campos, Connection conn) throws Exception {
+        Map<Integer, HistoriaClinica> historias = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(pacienteIds));
+        try {
+            for (int desde = 0; desde < ids.size(); desde += IDS_POR_CONSULTA) {
+                List<Integer> tramo = ids.subList(desde, Math.min(ids.size(), desde + IDS_POR_CONSULTA));
+                String marcadores = String.join(", ", Collections.nCopies(tramo.size(), "?"));
+                try (PreparedStatement ps = conn.prepareStatement(select(campos) + WHERE_PACIENTES + "(" + marcadores + ")")) {
+                    int i = 1;
+                    for (int id : tramo) {
+                        ps.setInt(i++, id);
+                    }
+                    for (HistoriaClinica hc : leer(ps, conn)) {
+                        historias.put(hc.getPacienteId().intValue(), hc);
+                    }
+                }
+            }
+            return historias;
+        } catch (SQLException e) {
+            throw new Exception("Error al leer HistoriasClinicas por Paciente: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Página de HCs activas en orden de Nro. de HC (keyset sobre el índice UNIQUE).
+     *
+     * @param despuesDe Último Nro. de la página anterior (null = primera página)
+     */
+    public List<HistoriaClinica> getPaginaTx(String despuesDe, int limite, Set<String> campos, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(select(campos) + (despuesDe == null ? WHERE_PAGINA_INICIO : WHERE_PAGINA))) {
+            int i = 1;
+            if (despuesDe != null) {
+                ps.setString(i++, despuesDe);
+            }
+            ps.setInt(i, limite);
+            return leer(ps, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al listar página de HistoriasClinicas: " + e.getMessage(), e);
+        }
+    }
+
+    public List<HistoriaClinica> getAllTx(Set<String> campos, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(select(campos) + WHERE_TODAS)) {
+            return leer(ps, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al listar HistoriasClinicas: " + e.getMessage(), e);
+        }
+    }
+
+    public HistoriaClinica getById(int id, Set<String> campos) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getByIdTx(id, campos, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al leer HistoriaClinica por ID: " + e.getMessage(), e);
+        }
+    }
+
+    public HistoriaClinica buscarPorNroHistoria(String nroHistoria, Set<String> campos) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return buscarPorNroHistoriaTx(nroHistoria, campos, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar HistoriaClinica por Nro.: " + e.getMessage(), e);
+        }
+    }
+
+    public Map<Integer, HistoriaClinica> getPorPacienteIds(Collection<Integer> pacienteIds, Set<String> campos) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getPorPacienteIdsTx(pacienteIds, campos, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al leer HistoriasClinicas por Paciente: " + e.getMessage(), e);
+        }
+    }
+
+    public List<HistoriaClinica> getPagina(String despuesDe, int limite, Set<String> campos) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getPaginaTx(despuesDe, limite, campos, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al listar página de HistoriasClinicas: " + e.getMessage(), e);
+        }
+    }
+
+    public List<HistoriaClinica> getAll(Set<String> campos) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getAllTx(campos, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al listar HistoriasClinicas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Revisiones de los textos de una HC (ver RevisionHistoriaDAO), sin los textos.
+     */
+    public List<RevisionHistoria> getRevisiones(int historiaId) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return revisiones.getRevisionesTx(historiaId, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al listar revisiones de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Una revisión de los textos de una HC, reconstruida.
+     * @return La revisión, o null si no existe
+     */
+    public RevisionHistoria getRevision(int historiaId, int revision) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return revisiones.getRevisionTx(historiaId, revision, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al leer revisión de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
     // --- Métodos de GenericDAO (Implementación Mínima o Lógica Propia) ---
     
     @Override
     public HistoriaClinica getById(int id) throws Exception {
-        throw new UnsupportedOperationException("No implementado: El acceso a HC se realiza principalmente vía PacienteDao.");
+        return getById(id, CAMPOS_TODOS);
     }
 
+    /**
+     * Todas las HCs activas con todos sus campos, en orden de Nro. de HC.
+     */
     @Override
     public List<HistoriaClinica> getAll() throws Exception {
-        throw new UnsupportedOperationException("No implementado: El listado se realiza a través de PacienteDao.");
+        return getAll(CAMPOS_TODOS);
     }
     
     @Override
@@ -94,7 +440,22 @@ public class HistoriaClinicaDAO implements GenericDAO<HistoriaClinica> {
     @Override
     public void actualizar(HistoriaClinica entidad) throws Exception {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            actualizarTx(entidad, conn);
+            actualizarEnTransaccion(entidad, conn);
+        }
+    }
+
+    /**
+     * actualizarTx en una transacción propia sobre "conn": con revisiones
+     * activas, el bloqueo de la HC, el UPDATE y la revisión se confirman
+     * juntos (en autocommit el FOR UPDATE no retiene nada).
+     */
+    protected void actualizarEnTransaccion(HistoriaClinica entidad, Connection conn) throws Exception {
+        try (TransactionManager tx = new TransactionManager(conn)) {
+            tx.startTransaction();
+            actualizarTx(entidad, tx.getConnection());
+            tx.commit();
+        } catch (SQLException e) {
+            throw new Exception("Error al actualizar HistoriaClinica: " + e.getMessage(), e);
         }
     }
   
@@ -0,0 +1,120 @@
+package Dao;
+
+import Config.ShardRouter;
+import entities.HistoriaClinica;
+import entities.RevisionHistoria;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.Collator;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HistoriaClinicaDAO repartido entre shards: la HC vive siempre en el
+ * mismo shard que su Paciente.
+ *
+ * Solo cambian los métodos con conexión propia; los *Tx usan la conexión
+ * del shard que eligió el Service. Las lecturas por ID o Nro. de HC van a
+ * todos los shards en paralelo (a lo sumo uno la tiene), igual que las de
+ * revisiones (viven en el shard de su HC); los listados se
+ * fusionan por Nro. de HC (ver KWayMerge).
+ */
+public class HistoriaClinicaDAOShardeado extends HistoriaClinicaDAO {
+
+    private final PacienteDAOShardeado pacientes = new PacienteDAOShardeado();
+    private final RevisionHistoriaDAO revisiones = new RevisionHistoriaDAO();
+
+    @Override
+    public void insertar(HistoriaClinica entidad) throws Exception {
+        int shard = pacientes.ubicar(entidad.getPacienteId().intValue());
+        if (shard < 0) {
+            throw new Exception("Error al insertar HistoriaClinica: no existe el Paciente ID " + entidad.getPacienteId());
+        }
+        try (Connection conn = ShardRouter.getConnection(shard)) {
+            insertTx(entidad, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al insertar HistoriaClinica (simple): " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Los IDs de HC son únicos entre shards (offsets de auto_increment), así
+     * que el UPDATE se envía a todos en paralelo y afecta a una sola fila.
+     */
+    @Override
+    public void actualizar(HistoriaClinica entidad) throws Exception {
+        ShardRouter.enTodos((shard, conn) -> {
+            actualizarEnTransaccion(entidad, conn);
+            return null;
+        });
+    }
+
+    @Override
+    public HistoriaClinica getById(int id, Set<String> campos) throws Exception {
+        return primera(ShardRouter.enTodos((shard, conn) -> getByIdTx(id, campos, conn)));
+    }
+
+    @Override
+    public HistoriaClinica buscarPorNroHistoria(String nroHistoria, Set<String> campos) throws Exception {
+        return primera(ShardRouter.enTodos((shard, conn) -> buscarPorNroHistoriaTx(nroHistoria, campos, conn)));
+    }
+
+    @Override
+    public Map<Integer, HistoriaClinica> getPorPacienteIds(Collection<Integer> pacienteIds, Set<String> campos) throws Exception {
+        Map<Integer, HistoriaClinica> historias = new HashMap<>();
+        for (Map<Integer, HistoriaClinica> deShard : ShardRouter.enTodos((shard, conn) -> getPorPacienteIdsTx(pacienteIds, campos, conn))) {
+            historias.putAll(deShard);
+        }
+        return historias;
+    }
+
+    @Override
+    public List<HistoriaClinica> getPagina(String despuesDe, int limite, Set<String> campos) throws Exception {
+        return KWayMerge.fusionar(ShardRouter.enTodos((shard, conn) -> getPaginaTx(despuesDe, limite, campos, conn)), ordenNroHistoria(), limite);
+    }
+
+    @Override
+    public List<HistoriaClinica> getAll(Set<String> campos) throws Exception {
+        return KWayMerge.fusionar(ShardRouter.enTodos((shard, conn) -> getAllTx(campos, conn)), ordenNroHistoria(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<RevisionHistoria> getRevisiones(int historiaId) throws Exception {
+        for (List<RevisionHistoria> deShard : ShardRouter.enTodos((shard, conn) -> revisiones.getRevisionesTx(historiaId, conn))) {
+            if (!deShard.isEmpty()) {
+                return deShard;
+            }
+        }
+        return List.of();
+    }
+
+    @Override
+    public RevisionHistoria getRevision(int historiaId, int revision) throws Exception {
+        return primera(ShardRouter.enTodos((shard, conn) -> revisiones.getRevisionTx(historiaId, revision, conn)));
+    }
+
+    private static <T> T primera(List<T> porShard) {
+        for (T t : porShard) {
+            if (t != null) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Orden equivalente al ORDER BY nroHistoria de MySQL (collation _ai_ci,
+     * ver PacienteDAOShardeado.ordenListado).
+     */
+    private static Comparator<HistoriaClinica> ordenNroHistoria() {
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        return Comparator.comparing(HistoriaClinica::getNroHistoria, collator);
+    }
+}
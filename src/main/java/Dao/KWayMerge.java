@@ -0,0 +1,82 @@
+package Dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Fusión de K listas ya ordenadas (una por shard) en una sola lista ordenada,
+ * o de K iteradores ordenados en streaming.
+ *
+ * Usa un heap con el elemento actual de cada lista: O(total * log K) y
+ * corta en cuanto se alcanza el límite, sin ordenar todo de nuevo.
+ */
+public final class KWayMerge {
+
+    private KWayMerge() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * @param listas Listas ordenadas según "orden"
+     * @param orden Mismo criterio con el que se ordenó cada lista
+     * @param limite Máximo de elementos a devolver (Integer.MAX_VALUE = todos)
+     */
+    public static <T> List<T> fusionar(List<? extends List<T>> listas, Comparator<? super T> orden, int limite) {
+        int total = 0;
+        for (List<T> l : listas) {
+            total += l.size();
+        }
+        List<T> resultado = new ArrayList<>(Math.min(total, limite));
+        // Cada entrada del heap es {lista, posición}.
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, listas.size()),
+                (a, b) -> orden.compare(listas.get(a[0]).get(a[1]), listas.get(b[0]).get(b[1])));
+        for (int i = 0; i < listas.size(); i++) {
+            if (!listas.get(i).isEmpty()) {
+                heap.add(new int[]{i, 0});
+            }
+        }
+        while (!heap.isEmpty() && resultado.size() < limite) {
+            int[] cabeza = heap.poll();
+            List<T> lista = listas.get(cabeza[0]);
+            resultado.add(lista.get(cabeza[1]));
+            if (++cabeza[1] < lista.size()) {
+                heap.add(cabeza);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Variante en streaming: consume K iteradores ya ordenados y entrega los
+     * elementos en orden a "consumidor", sin materializar ninguna lista (ver
+     * LecturaParalela.recorrerOrdenado). Cada iterador se avanza recién
+     * cuando se entregó su elemento actual.
+     */
+    public static <T> void fusionar(List<? extends Iterator<T>> fuentes, Comparator<? super T> orden, Consumer<? super T> consumidor) {
+        // Cada entrada del heap es {elemento actual, índice de la fuente}.
+        PriorityQueue<Object[]> heap = new PriorityQueue<>(Math.max(1, fuentes.size()), (a, b) -> {
+            @SuppressWarnings("unchecked") T x = (T) a[0];
+            @SuppressWarnings("unchecked") T y = (T) b[0];
+            return orden.compare(x, y);
+        });
+        for (int i = 0; i < fuentes.size(); i++) {
+            if (fuentes.get(i).hasNext()) {
+                heap.add(new Object[]{fuentes.get(i).next(), i});
+            }
+        }
+        while (!heap.isEmpty()) {
+            Object[] cabeza = heap.poll();
+            @SuppressWarnings("unchecked") T elemento = (T) cabeza[0];
+            consumidor.accept(elemento);
+            Iterator<T> fuente = fuentes.get((Integer) cabeza[1]);
+            if (fuente.hasNext()) {
+                cabeza[0] = fuente.next();
+                heap.add(cabeza);
+            }
+        }
+    }
+}
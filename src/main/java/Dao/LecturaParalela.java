@@ -0,0 +1,350 @@
+package Dao;
+
+import Config.Compartimento;
+import Config.Plazo;
+import Config.PoolConexiones.FabricaConexiones;
+import Util.Hilos;
+import entities.Paciente;
+
+import java.sql.Connection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lectura completa de los pacientes activos repartida en rangos de ID, cada
+ * uno leído con su propia conexión (del pool, si hay) en un result set en
+ * streaming, para que un recálculo, una exportación o la reconstrucción de
+ * un índice no queden limitados por un único SELECT_ALL en serie.
+ *
+ * - consultar/recorrer: los rangos forman un Spliterator que se reparte
+ *   entre "paralelismo" hilos de un ForkJoinPool propio; las filas se mapean
+ *   en esos hilos y el consumidor debe ser thread-safe. Se arman varios
+ *   rangos por hilo (RANGOS_POR_HILO) para compensar IDs salteados.
+ * - recorrerOrdenado: "paralelismo" rangos ordenados por apellido, nombre,
+ *   id en la BD y fusión K-way en el hilo llamador, que recibe el orden
+ *   global del listado (ver PacienteDAOShardeado.ordenListado).
+ *
+ * Con sharding cada shard es una fuente con sus propios rangos. Los hilos
+ * heredan el plazo y el compartimento del llamador (como ShardRouter.enTodos).
+ */
+public class LecturaParalela {
+
+    private static final int RANGOS_POR_HILO = 4;
+    /** Filas por consulta cuando el Spliterator avanza de a una (tryAdvance). */
+    private static final int LOTE_AVANCE = 1_000;
+    /** Filas ya mapeadas que cada rango puede adelantar a la fusión ordenada. */
+    private static final int COLA_FUSION = 1_024;
+
+    private final PacienteDAO dao;
+    private final List<FabricaConexiones> fuentes;
+    private final int paralelismo;
+    private final boolean conTextos;
+
+    LecturaParalela(PacienteDAO dao, List<FabricaConexiones> fuentes, int paralelismo, boolean conTextos) {
+        if (paralelismo < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser positivo");
+        }
+        this.dao = dao;
+        this.fuentes = fuentes;
+        this.paralelismo = paralelismo;
+        this.conTextos = conTextos;
+    }
+
+    public int getParalelismo() {
+        return paralelismo;
+    }
+
+    /**
+     * Aplica "operacion" a un Stream paralelo de todos los pacientes activos
+     * (sin orden definido), dentro de un ForkJoinPool de "paralelismo" hilos.
+     * Ej.: {@code lectura.consultar(s -> s.collect(groupingBy(...)))}.
+     */
+    public <R> R consultar(Function<Stream<Paciente>, R> operacion) throws Exception {
+        List<Rango> rangos = rangos(paralelismo * RANGOS_POR_HILO);
+        Plazo plazo = Plazo.actual();
+        Compartimento compartimento = Compartimento.actual();
+        AtomicInteger numero = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(paralelismo, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("lectura-paralela-" + numero.incrementAndGet());
+            return t;
+        }, null, false);
+        try {
+            // Una operación de Stream lanzada desde un hilo del pool se reparte en ese mismo pool.
+            return pool.submit(() -> operacion.apply(StreamSupport.stream(
+                    new Rangos(rangos, 0, rangos.size(), plazo, compartimento), true))).get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof ErrorLectura) {
+                throw (Exception) causa.getCause();
+            }
+            throw causa instanceof Exception ? (Exception) causa : e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Entrega todos los pacientes activos, en paralelo y sin orden definido.
+     * @param consumidor Debe ser thread-safe
+     */
+    public void recorrer(Consumer<? super Paciente> consumidor) throws Exception {
+        consultar(s -> {
+            s.forEach(consumidor);
+            return null;
+        });
+    }
+
+    /**
+     * Entrega todos los pacientes activos en orden apellido, nombre, id, en
+     * el hilo llamador. Cada rango se ordena en la BD y se lee en paralelo;
+     * hay un rango abierto (una conexión) por hilo durante todo el recorrido.
+     */
+    public void recorrerOrdenado(Consumer<? super Paciente> consumidor) throws Exception {
+        List<Rango> rangos = rangos(paralelismo);
+        Plazo plazo = Plazo.actual();
+        Compartimento compartimento = Compartimento.actual();
+        ExecutorService hilos = Executors.newFixedThreadPool(Math.max(1, rangos.size()), Hilos.fabrica("lectura-ordenada", true));
+        try {
+            List<Iterator<Paciente>> colas = new ArrayList<>(rangos.size());
+            for (Rango r : rangos) {
+                ColaRango cola = new ColaRango();
+                colas.add(cola);
+                hilos.execute(() -> cola.llenar(r, plazo, compartimento));
+            }
+            KWayMerge.fusionar(colas, PacienteDAOShardeado.ordenListado(), consumidor);
+        } catch (ErrorLectura e) {
+            throw (Exception) e.getCause();
+        } finally {
+            // Interrumpe a los productores que quedaron esperando lugar en su cola.
+            hilos.shutdownNow();
+        }
+    }
+
+    // --- Rangos ---
+
+    /** IDs en (despuesDe, hasta] de una fuente. */
+    private static final class Rango {
+        final FabricaConexiones fuente;
+        final int despuesDe;
+        final int hasta;
+
+        Rango(FabricaConexiones fuente, int despuesDe, int hasta) {
+            this.fuente = fuente;
+            this.despuesDe = despuesDe;
+            this.hasta = hasta;
+        }
+    }
+
+    /**
+     * Reparte el ID de cada fuente en rangos de igual ancho ("cantidad" en
+     * total, al menos uno por fuente con datos).
+     */
+    private List<Rango> rangos(int cantidad) throws Exception {
+        List<Rango> rangos = new ArrayList<>();
+        int porFuente = Math.max(1, (cantidad + fuentes.size() - 1) / fuentes.size());
+        for (FabricaConexiones fuente : fuentes) {
+            int[] extremos;
+            try (Connection conn = fuente.crear()) {
+                extremos = dao.extremosIdTx(conn);
+            }
+            if (extremos == null) {
+                continue;
+            }
+            long desde = extremos[0] - 1L;
+            long ancho = extremos[1] - desde;
+            int partes = (int) Math.min(porFuente, ancho);
+            for (int i = 0; i < partes; i++) {
+                rangos.add(new Rango(fuente, (int) (desde + ancho * i / partes), (int) (desde + ancho * (i + 1) / partes)));
+            }
+        }
+        return rangos;
+    }
+
+    private void leer(Rango r, int despuesDe, int limite, boolean porListado, Consumer<Paciente> consumidor,
+                      Plazo plazo, Compartimento compartimento) {
+        try {
+            compartimento.ejecutar(() -> Plazo.ejecutar(plazo, () -> {
+                try (Connection conn = r.fuente.crear()) {
+                    dao.recorrerRangoTx(despuesDe, r.hasta, limite, porListado, conTextos, consumidor, conn);
+                }
+                return null;
+            }));
+        } catch (ErrorLectura e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ErrorLectura(e);
+        }
+    }
+
+    /** Lleva un error de lectura a través del Stream/la fusión hasta el llamador. */
+    private static final class ErrorLectura extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ErrorLectura(Exception causa) {
+            super(causa);
+        }
+    }
+
+    /**
+     * Spliterator sobre los rangos [inicio, fin): trySplit parte la lista a la
+     * mitad; forEachRemaining lee cada rango en streaming y tryAdvance, de a
+     * LOTE_AVANCE filas por ID.
+     */
+    private final class Rangos implements Spliterator<Paciente> {
+        private final List<Rango> rangos;
+        private int inicio;
+        private final int fin;
+        private final Plazo plazo;
+        private final Compartimento compartimento;
+        private final ArrayDeque<Paciente> lote = new ArrayDeque<>();
+        private int ultimoId;
+
+        Rangos(List<Rango> rangos, int inicio, int fin, Plazo plazo, Compartimento compartimento) {
+            this.rangos = rangos;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.plazo = plazo;
+            this.compartimento = compartimento;
+            this.ultimoId = inicio < fin ? rangos.get(inicio).despuesDe : 0;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Paciente> accion) {
+            while (lote.isEmpty() && inicio < fin) {
+                Rango r = rangos.get(inicio);
+                leer(r, ultimoId, LOTE_AVANCE, false, lote::add, plazo, compartimento);
+                if (lote.size() < LOTE_AVANCE) {
+                    siguienteRango();
+                } else {
+                    ultimoId = lote.getLast().getId();
+                }
+            }
+            Paciente p = lote.poll();
+            if (p == null) {
+                return false;
+            }
+            accion.accept(p);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Paciente> accion) {
+            Paciente p;
+            while ((p = lote.poll()) != null) {
+                accion.accept(p);
+            }
+            for (; inicio < fin; siguienteRango()) {
+                leer(rangos.get(inicio), ultimoId, Integer.MAX_VALUE, false, accion::accept, plazo, compartimento);
+            }
+        }
+
+        private void siguienteRango() {
+            inicio++;
+            if (inicio < fin) {
+                ultimoId = rangos.get(inicio).despuesDe;
+            }
+        }
+
+        @Override
+        public Spliterator<Paciente> trySplit() {
+            // Solo se reparten rangos enteros: el que ya empezó a leerse queda acá.
+            boolean sinEmpezar = lote.isEmpty() && inicio < fin && ultimoId == rangos.get(inicio).despuesDe;
+            if (!sinEmpezar || fin - inicio < 2) {
+                return null;
+            }
+            int medio = (inicio + fin) >>> 1;
+            Rangos prefijo = new Rangos(rangos, inicio, medio, plazo, compartimento);
+            inicio = medio;
+            ultimoId = rangos.get(inicio).despuesDe;
+            return prefijo;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | DISTINCT;
+        }
+    }
+
+    /**
+     * Cola acotada entre el hilo que lee un rango ordenado y la fusión:
+     * FIN marca el final y un ErrorLectura, la falla del productor.
+     */
+    private final class ColaRango implements Iterator<Paciente> {
+        private final BlockingQueue<Object> cola = new ArrayBlockingQueue<>(COLA_FUSION);
+        private Object siguiente;
+
+        void llenar(Rango r, Plazo plazo, Compartimento compartimento) {
+            Object ultimo = FIN;
+            try {
+                leer(r, r.despuesDe, Integer.MAX_VALUE, true, this::poner, plazo, compartimento);
+            } catch (ErrorLectura e) {
+                ultimo = e;
+            }
+            try {
+                poner(ultimo);
+            } catch (ErrorLectura e) {
+                // Nadie espera ya este rango.
+            }
+        }
+
+        private void poner(Object o) {
+            try {
+                cola.put(o);
+            } catch (InterruptedException e) {
+                // La fusión terminó (o falló): se abandona el rango.
+                Thread.currentThread().interrupt();
+                throw new ErrorLectura(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (siguiente == null) {
+                try {
+                    siguiente = cola.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ErrorLectura(e);
+                }
+            }
+            if (siguiente instanceof ErrorLectura) {
+                throw (ErrorLectura) siguiente;
+            }
+            return siguiente != FIN;
+        }
+
+        @Override
+        public Paciente next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Paciente p = (Paciente) siguiente;
+            siguiente = null;
+            return p;
+        }
+    }
+
+    private static final Object FIN = new Object();
+}
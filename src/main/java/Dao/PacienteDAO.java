@@ -2,71 +2,95 @@ package Dao;
 import Config.DatabaseConnection;
 import entities.Paciente;
 import entities.HistoriaClinica;
-import entities.HistoriaClinica.GrupoSanguineo;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class PacienteDAO implements GenericDAO<Paciente> {
     
     // --- Consultas SQL ---
-    private final String INSERT = "INSERT INTO Paciente (nombre, apellido, dni, fechaNacimiento) VALUES (?, ?, ?, ?)";
+    // Columnas, mapeo y vinculación generados a partir de las @Columna de la entidad (ver PacienteFilas).
+    private final String INSERT = "INSERT INTO Paciente (" + PacienteFilas.COLUMNAS + ") VALUES (" + PacienteFilas.MARCADORES + ")";
+    // Alta de Paciente + HC en un único viaje a la BD (procedimiento del README, ver insertarConHc).
+    private final String CALL_CREAR_CON_HC = "CALL crear_paciente_con_hc(?, ?, ?, ?, ?, ?, ?, ?, ?)";
     
-    // Base de la consulta con LEFT JOIN para traer la HistoriaClinica (1:1)
-    private final String SELECT_BASE = "SELECT p.*, hc.id as hc_id, hc.nroHistoria, hc.grupoSanguineo, hc.antecedentes, hc.medicacionActual, hc.observaciones "
+    // Base de la consulta con LEFT JOIN para traer la HistoriaClinica (1:1), con sus columnas como hc_*
+    private static final String COLUMNAS_HC = HistoriaClinicaFilas.seleccion("hc", "hc_");
+    private final String SELECT_BASE = "SELECT p.*, " + COLUMNAS_HC + " "
                                       + "FROM Paciente p LEFT JOIN HistoriaClinica hc ON p.id = hc.paciente_id ";
     
     private final String SELECT_BY_ID = SELECT_BASE + "WHERE p.id = ? AND p.eliminado = FALSE";
     private final String SELECT_ALL = SELECT_BASE + "WHERE p.eliminado = FALSE ORDER BY p.apellido, p.nombre";
     private final String SELECT_BY_DNI = SELECT_BASE + "WHERE p.dni = ? AND p.eliminado = FALSE"; 
+
+    // Paginado por "keyset" sobre (apellido, nombre, id): usa idx_apellido_nombre
+    // y su costo no crece con el número de página (a diferencia de OFFSET).
+    private final String SELECT_PAGINA_INICIO = SELECT_BASE + "WHERE p.eliminado = FALSE ORDER BY p.apellido, p.nombre, p.id LIMIT ?";
+    private final String SELECT_PAGINA = SELECT_BASE + "WHERE p.eliminado = FALSE AND (p.apellido, p.nombre, p.id) > (?, ?, ?) "
+                                       + "ORDER BY p.apellido, p.nombre, p.id LIMIT ?";
     
-    private final String UPDATE = "UPDATE Paciente SET nombre=?, apellido=?, dni=?, fechaNacimiento=? WHERE id=? AND eliminado = FALSE";
-    private final String DELETE_LOGICO = "UPDATE Paciente SET eliminado = TRUE WHERE id=?";
-
-    // --- Mapeo de Resultados (ResultSet a Objeto Paciente) ---
-    private Paciente mapPaciente(ResultSet rs) throws SQLException {
-        Paciente p = new Paciente();
-        
-        // Mapeo de campos heredados de Base (int id, boolean eliminado)
-        p.setId(rs.getInt("id")); 
-        p.setEliminado(rs.getBoolean("eliminado"));
-        
-        // Mapeo de campos propios de Paciente
-        p.setNombre(rs.getString("nombre"));
-        p.setApellido(rs.getString("apellido"));
-        p.setDni(rs.getString("dni"));
-        
-        Date fechaSql = rs.getDate("fechaNacimiento");
-        if (fechaSql != null) {
-            p.setFechaNacimiento(fechaSql.toLocalDate()); 
-        }
-        
-        // Mapeo de la HistoriaClinica (Clave de la relación 1:1)
-        if (rs.getInt("hc_id") > 0) { // Verifica si el LEFT JOIN trajo una HC válida
-            HistoriaClinica hc = new HistoriaClinica();
-            
-            // Mapeo de campos heredados de Base para HC
-            hc.setId(rs.getInt("hc_id"));
-            
-            // Mapeo de campos propios de HC
-            hc.setNroHistoria(rs.getString("nroHistoria"));
-            
-            String gsString = rs.getString("grupoSanguineo");
-            if (gsString != null) {
-                // 💡 --- CORRECCIÓN CRÍTICA ---
-                // Conversión robusta de String (A+) a Enum (A_MAS)
-                String gsEnumStr = gsString.replace("+", "_MAS").replace("-", "_MENOS");
-                hc.setGrupoSanguineo(GrupoSanguineo.valueOf(gsEnumStr));
-            }
-            
-            hc.setAntecedentes(rs.getString("antecedentes"));
-            hc.setMedicacionActual(rs.getString("medicacionActual"));
-            hc.setObservaciones(rs.getString("observaciones"));
-            
-            p.setHistoriaClinica(hc); // Asignación de la Entidad B a la Entidad A
+    // Por fecha de nacimiento (idx_fecha_nacimiento) y por cumpleaños (idx_mes_dia sobre la
+    // columna generada mesDia = mes * 100 + día), paginados por keyset.
+    private final String SELECT_POR_FECHA_NACIMIENTO = SELECT_BASE + "WHERE p.eliminado = FALSE AND p.fechaNacimiento BETWEEN ? AND ? "
+                                                     + "AND (p.fechaNacimiento, p.id) > (?, ?) ORDER BY p.fechaNacimiento, p.id LIMIT ?";
+    private final String SELECT_POR_MES_DIA = SELECT_BASE + "WHERE p.eliminado = FALSE AND p.mesDia BETWEEN ? AND ? "
+                                            + "AND (p.mesDia, p.id) > (?, ?) ORDER BY p.mesDia, p.id LIMIT ?";
+
+    // Cambios desde una marca, para réplicas de clientes (ver getCambiosDesde). La tabla derivada
+    // usa idx_actualizado_en de cada tabla: el costo depende de lo que cambió, no del total.
+    // Incluye las bajas lógicas (eliminado = TRUE), que el cliente usa como lápidas.
+    private final String SELECT_CAMBIOS = "SELECT p.*, " + COLUMNAS_HC + ", "
+                                        + "GREATEST(p.actualizadoEn, COALESCE(hc.actualizadoEn, p.actualizadoEn)) AS marca "
+                                        + "FROM (SELECT id FROM Paciente WHERE actualizadoEn >= ? "
+                                        + "UNION SELECT paciente_id FROM HistoriaClinica WHERE actualizadoEn >= ?) c "
+                                        + "JOIN Paciente p ON p.id = c.id LEFT JOIN HistoriaClinica hc ON p.id = hc.paciente_id "
+                                        + "HAVING (marca, p.id) > (?, ?) ORDER BY marca, p.id LIMIT ?";
+    
+    // Resumen para recorridos completos: sin los campos TEXT de la HC (los más pesados).
+    private final String SELECT_RESUMEN = "SELECT p.id, p.nombre, p.apellido, p.dni, p.fechaNacimiento, hc.id AS hc_id, hc.nroHistoria AS hc_nroHistoria, hc.grupoSanguineo AS hc_grupoSanguineo "
+                                        + "FROM Paciente p LEFT JOIN HistoriaClinica hc ON p.id = hc.paciente_id WHERE p.eliminado = FALSE";
+    
+    // Lectura paralela por rangos de ID (ver LecturaParalela): cada rango es un recorrido del PK.
+    private final String SELECT_EXTREMOS_ID = "SELECT MIN(id), MAX(id) FROM Paciente";
+    private final String FILTRO_RANGO = " AND p.id > ? AND p.id <= ? ";
+    private final String SELECT_RANGO_COMPLETO = SELECT_BASE + "WHERE p.eliminado = FALSE" + FILTRO_RANGO;
+    private final String SELECT_RANGO_RESUMEN = SELECT_RESUMEN + FILTRO_RANGO;
+    
+    private final String EXISTE_ID = "SELECT 1 FROM Paciente WHERE id = ?";
+    // Sin filtrar por eliminado: la restricción UNIQUE también cubre las bajas lógicas.
+    private final String EXISTE_DNI = "SELECT 1 FROM Paciente WHERE dni = ? LIMIT 1";
+    private final String SELECT_DNIS = "SELECT dni FROM Paciente";
+
+    // Sincronización con el padrón externo (ver SincronizadorPadron).
+    private final String SELECT_SINCRONIZACION = "SELECT p.id, p.dni, p.nombre, p.apellido, p.fechaNacimiento, p.eliminado, hc.id AS hc_id "
+                                               + "FROM Paciente p LEFT JOIN HistoriaClinica hc ON p.id = hc.paciente_id";
+    private final String UPSERT_POR_DNI = "INSERT INTO Paciente (" + PacienteFilas.COLUMNAS + ") VALUES (" + PacienteFilas.MARCADORES + ") "
+                                        + "ON DUPLICATE KEY UPDATE "
+                                        // Primero actualizadoEn (compara con los valores viejos): solo avanza si algo cambia.
+                                        + "actualizadoEn = IF(nombre <=> VALUES(nombre) AND apellido <=> VALUES(apellido) "
+                                        + "AND fechaNacimiento <=> VALUES(fechaNacimiento) AND NOT eliminado, actualizadoEn, NOW(6)), "
+                                        + "nombre = VALUES(nombre), apellido = VALUES(apellido), "
+                                        + "fechaNacimiento = VALUES(fechaNacimiento), eliminado = FALSE, eliminadoEn = NULL";
+    private final String SELECT_ID_POR_DNI = "SELECT id FROM Paciente WHERE dni = ?";
+    
+    // Toda escritura avanza actualizadoEn: de ahí leen los cambios las otras instancias (ver CambiosDAO).
+    private final String UPDATE = "UPDATE Paciente SET " + PacienteFilas.ASIGNACIONES + ", actualizadoEn = NOW(6) "
+                                + "WHERE id=? AND eliminado = FALSE";
+    // eliminadoEn registra cuándo se dio de baja (solo la primera vez): lo usa el archivado (ver ArchivadorBajas).
+    private final String DELETE_LOGICO = "UPDATE Paciente SET actualizadoEn = IF(eliminado, actualizadoEn, NOW(6)), "
+                                       + "eliminadoEn = IF(eliminado, eliminadoEn, NOW()), eliminado = TRUE WHERE id=?";
+
+    /** Paciente cambiado (o dado de baja) y la marca de su último cambio (paciente o HC). */
+    public static final class Cambio {
+        public final Paciente paciente;
+        public final Timestamp marca;
+
+        public Cambio(Paciente paciente, Timestamp marca) {
+            this.paciente = paciente;
+            this.marca = marca;
         }
-        return p;
     }
 
     // --- Métodos Transaccionales (usan Connection externa) ---
@@ -74,10 +98,7 @@ public class PacienteDAO implements GenericDAO<Paciente> {
     @Override
     public void insertTx(Paciente entidad, Connection conn) throws Exception {
         try (PreparedStatement ps = conn.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, entidad.getNombre());
-            ps.setString(2, entidad.getApellido());
-            ps.setString(3, entidad.getDni());
-            ps.setDate(4, (entidad.getFechaNacimiento() != null) ? Date.valueOf(entidad.getFechaNacimiento()) : null);
+            PacienteFilas.vincular(ps, 1, entidad);
 
             if (ps.executeUpdate() > 0) {
                 try (ResultSet rs = ps.getGeneratedKeys()) {
@@ -94,16 +115,57 @@ public class PacienteDAO implements GenericDAO<Paciente> {
         }
     }
     
+    /**
+     * Crea el Paciente y su HC con el procedimiento crear_paciente_con_hc,
+     * que abre y confirma su propia transacción (o la revierte y relanza el
+     * error, p. ej. 1062) y devuelve ambos IDs en un result set: un solo
+     * viaje de ida y vuelta en lugar de cinco.
+     *
+     * La conexión debe estar en autocommit y fuera de una transacción: el
+     * START TRANSACTION del procedimiento confirmaría implícitamente la del
+     * llamador. Se usa un PreparedStatement y no un CallableStatement porque
+     * este último hace que el driver consulte los metadatos del
+     * procedimiento (otro viaje) y no hay parámetros OUT.
+     */
+    public void insertarConHc(Paciente p, Connection conn) throws Exception {
+        HistoriaClinica hc = p.getHistoriaClinica();
+        try (PreparedStatement ps = conn.prepareStatement(CALL_CREAR_CON_HC)) {
+            CompresionTextos.preparar(conn);
+            int i = PacienteFilas.vincular(ps, 1, p);
+            HistoriaClinicaFilas.vincular(ps, i, hc);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("crear_paciente_con_hc no devolvió los IDs generados.");
+                }
+                p.setId(rs.getInt(1));
+                hc.setId(rs.getInt(2));
+                hc.setPacienteId((long) p.getId());
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al insertar Paciente y HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
     // --- Métodos de Lectura (usan Connection propia) ---
 
     @Override
     public Paciente getById(int id) throws Exception {
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getByIdTx(id, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al leer Paciente por ID: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Variante de getById que usa una conexión externa (modo batch / transacciones agrupadas).
+     */
+    public Paciente getByIdTx(int id, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
             ps.setInt(1, id); // Usar int para el ID
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return mapPaciente(rs);
+                    return PacienteFilas.leer(rs, PacienteFilas.indices(rs));
                 }
             }
             return null;
@@ -112,15 +174,142 @@ public class PacienteDAO implements GenericDAO<Paciente> {
         }
     }
 
+    /**
+     * Indica si existe una fila con ese ID en la BD de la conexión, incluso
+     * dada de baja (usado para ubicar al paciente entre shards).
+     */
+    public boolean existeIdTx(int id, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(EXISTE_ID)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al verificar ID de Paciente: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Indica si el DNI ya está usado (incluso por un paciente dado de baja).
+     * Consulta solo el índice UNIQUE de dni.
+     */
+    public boolean existeDniTx(String dni, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(EXISTE_DNI)) {
+            ps.setString(1, dni);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al verificar DNI de Paciente: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recorre en streaming todos los DNI (incluidas las bajas lógicas).
+     */
+    public void recorrerDnisTx(Consumer<String> consumidor, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_DNIS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.accept(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al recorrer DNI de Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recorre en streaming todos los pacientes (incluidas las bajas) con lo
+     * necesario para compararlos con el padrón: id, dni, nombre, apellido,
+     * fecha, eliminado y, si tiene, el ID de su HC (sin los campos TEXT).
+     */
+    public void recorrerParaSincronizacionTx(Consumer<Paciente> consumidor, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_SINCRONIZACION, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                // Sin columnas de texto: la HC solo trae su ID.
+                PacienteFilas.Indices ix = PacienteFilas.indices(rs, null);
+                while (rs.next()) {
+                    consumidor.accept(PacienteFilas.leer(rs, ix));
+                }
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al recorrer Pacientes para sincronizar: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Alta o modificación por DNI en lote (INSERT ... ON DUPLICATE KEY
+     * UPDATE): si el DNI existe se actualizan nombre, apellido y fecha y se
+     * reactiva el paciente. Con rewriteBatchedStatements=true en la URL el
+     * driver lo envía como un único INSERT de varias filas.
+     */
+    public void upsertPorDniBatchTx(List<Paciente> pacientes, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_POR_DNI)) {
+            for (Paciente p : pacientes) {
+                PacienteFilas.vincular(ps, 1, p);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new Exception("Error en el alta/modificación por lote de Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Asigna a cada paciente el ID que tiene en la BD según su DNI (los
+     * que no existen quedan con ID 0).
+     */
+    public void asignarIdsPorDniTx(List<Paciente> pacientes, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_ID_POR_DNI)) {
+            for (Paciente p : pacientes) {
+                ps.setString(1, p.getDni());
+                try (ResultSet rs = ps.executeQuery()) {
+                    p.setId(rs.next() ? rs.getInt(1) : 0);
+                }
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al obtener IDs de Pacientes por DNI: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Baja lógica en lote.
+     */
+    public void eliminarBatchTx(List<Integer> ids, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(DELETE_LOGICO)) {
+            for (int id : ids) {
+                ps.setInt(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new Exception("Error en la baja por lote de Pacientes: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public List<Paciente> getAll() throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getAllTx(conn);
+        } catch (SQLException e) {
+             throw new Exception("Error al listar Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Variante de getAll que usa una conexión externa.
+     */
+    public List<Paciente> getAllTx(Connection conn) throws Exception {
         List<Paciente> pacientes = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_ALL);
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_ALL);
              ResultSet rs = ps.executeQuery()) {
             
+            PacienteFilas.Indices ix = PacienteFilas.indices(rs);
             while (rs.next()) {
-                pacientes.add(mapPaciente(rs));
+                pacientes.add(PacienteFilas.leer(rs, ix));
             }
             return pacientes;
         } catch (SQLException e) {
@@ -128,6 +317,241 @@ public class PacienteDAO implements GenericDAO<Paciente> {
         }
     }
 
+    /**
+     * Página de pacientes activos en orden apellido, nombre, id.
+     *
+     * @param despuesDe Último paciente de la página anterior (null = primera página)
+     * @param limite Cantidad máxima de filas
+     */
+    public List<Paciente> getPagina(Paciente despuesDe, int limite) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getPaginaTx(despuesDe, limite, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al listar página de Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Variante de getPagina que usa una conexión externa.
+     */
+    public List<Paciente> getPaginaTx(Paciente despuesDe, int limite, Connection conn) throws Exception {
+        List<Paciente> pacientes = new ArrayList<>(Math.min(limite, 1_000));
+        try (PreparedStatement ps = conn.prepareStatement(despuesDe == null ? SELECT_PAGINA_INICIO : SELECT_PAGINA)) {
+            int i = 1;
+            if (despuesDe != null) {
+                ps.setString(i++, despuesDe.getApellido());
+                ps.setString(i++, despuesDe.getNombre());
+                ps.setInt(i++, despuesDe.getId());
+            }
+            ps.setInt(i, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                PacienteFilas.Indices ix = PacienteFilas.indices(rs);
+                while (rs.next()) {
+                    pacientes.add(PacienteFilas.leer(rs, ix));
+                }
+            }
+            return pacientes;
+        } catch (SQLException e) {
+            throw new Exception("Error al listar página de Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Clave de cumpleaños de una fecha, igual a la columna generada mesDia.
+     */
+    public static int mesDia(LocalDate fecha) {
+        return fecha.getMonthValue() * 100 + fecha.getDayOfMonth();
+    }
+
+    /**
+     * Página de pacientes activos nacidos entre "desde" y "hasta" (inclusive),
+     * en orden de fecha de nacimiento e ID.
+     *
+     * @param despuesDe Último paciente de la página anterior (null = primera página)
+     */
+    public List<Paciente> getPorFechaNacimiento(LocalDate desde, LocalDate hasta, Paciente despuesDe, int limite) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getPorFechaNacimientoTx(desde, hasta, despuesDe, limite, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al listar Pacientes por fecha de nacimiento: " + e.getMessage(), e);
+        }
+    }
+
+    public List<Paciente> getPorFechaNacimientoTx(LocalDate desde, LocalDate hasta, Paciente despuesDe, int limite, Connection conn) throws Exception {
+        List<Paciente> pacientes = new ArrayList<>(Math.min(limite, 1_000));
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_POR_FECHA_NACIMIENTO)) {
+            ps.setDate(1, Date.valueOf(desde));
+            ps.setDate(2, Date.valueOf(hasta));
+            // Sin página anterior: (desde, 0) deja pasar todas las filas de la primera fecha.
+            ps.setDate(3, Date.valueOf(despuesDe != null ? despuesDe.getFechaNacimiento() : desde));
+            ps.setInt(4, despuesDe != null ? despuesDe.getId() : 0);
+            ps.setInt(5, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                PacienteFilas.Indices ix = PacienteFilas.indices(rs);
+                while (rs.next()) {
+                    pacientes.add(PacienteFilas.leer(rs, ix));
+                }
+            }
+            return pacientes;
+        } catch (SQLException e) {
+            throw new Exception("Error al listar Pacientes por fecha de nacimiento: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Página de pacientes activos que cumplen años entre dos claves mesDia
+     * (inclusive, sin dar la vuelta al año), en orden de mesDia e ID.
+     *
+     * @param despuesDe Último paciente de la página anterior (null = primera página)
+     */
+    public List<Paciente> getPorMesDia(int mesDiaDesde, int mesDiaHasta, Paciente despuesDe, int limite) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getPorMesDiaTx(mesDiaDesde, mesDiaHasta, despuesDe, limite, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al listar Pacientes por cumpleaños: " + e.getMessage(), e);
+        }
+    }
+
+    public List<Paciente> getPorMesDiaTx(int mesDiaDesde, int mesDiaHasta, Paciente despuesDe, int limite, Connection conn) throws Exception {
+        List<Paciente> pacientes = new ArrayList<>(Math.min(limite, 1_000));
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_POR_MES_DIA)) {
+            ps.setInt(1, mesDiaDesde);
+            ps.setInt(2, mesDiaHasta);
+            ps.setInt(3, despuesDe != null ? mesDia(despuesDe.getFechaNacimiento()) : mesDiaDesde);
+            ps.setInt(4, despuesDe != null ? despuesDe.getId() : 0);
+            ps.setInt(5, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                PacienteFilas.Indices ix = PacienteFilas.indices(rs);
+                while (rs.next()) {
+                    pacientes.add(PacienteFilas.leer(rs, ix));
+                }
+            }
+            return pacientes;
+        } catch (SQLException e) {
+            throw new Exception("Error al listar Pacientes por cumpleaños: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Pacientes (incluidas las bajas) cuyo último cambio, del paciente o de
+     * su HC, es posterior a (desde, despuesDeId), en orden de marca e ID.
+     *
+     * @param desde Marca del último cambio ya recibido
+     * @param despuesDeId ID del último paciente recibido con esa marca (0 = ninguno)
+     * @param limite Cantidad máxima de filas
+     */
+    public List<Cambio> getCambiosDesdeTx(Timestamp desde, int despuesDeId, int limite, Connection conn) throws Exception {
+        List<Cambio> cambios = new ArrayList<>(Math.min(limite, 1_000));
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_CAMBIOS)) {
+            ps.setTimestamp(1, desde);
+            ps.setTimestamp(2, desde);
+            ps.setTimestamp(3, desde);
+            ps.setInt(4, despuesDeId);
+            ps.setInt(5, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                PacienteFilas.Indices ix = PacienteFilas.indices(rs);
+                int marca = rs.findColumn("marca");
+                while (rs.next()) {
+                    cambios.add(new Cambio(PacienteFilas.leer(rs, ix), rs.getTimestamp(marca)));
+                }
+            }
+            return cambios;
+        } catch (SQLException e) {
+            throw new Exception("Error al leer cambios de Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recorre en streaming todos los pacientes activos (sin antecedentes,
+     * medicación ni observaciones), entregándolos de a uno al consumidor.
+     *
+     * Con fetchSize = Integer.MIN_VALUE el driver de MySQL no carga el
+     * resultado completo en memoria: lee fila por fila del socket. Mientras
+     * dura el recorrido la conexión no puede usarse para otra consulta.
+     */
+    public void recorrerResumen(Consumer<Paciente> consumidor) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            recorrerResumenTx(consumidor, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al recorrer Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Variante de recorrerResumen que usa una conexión externa.
+     */
+    public void recorrerResumenTx(Consumer<Paciente> consumidor, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_RESUMEN, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                PacienteFilas.Indices ix = PacienteFilas.indices(rs, null);
+                while (rs.next()) {
+                    consumidor.accept(PacienteFilas.leer(rs, ix));
+                }
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al recorrer Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lectura completa de los pacientes activos en paralelo, repartida en
+     * rangos de ID (ver LecturaParalela).
+     *
+     * @param paralelismo Hilos y conexiones simultáneas
+     * @param conTextos true para traer también los campos TEXT de la HC
+     */
+    public LecturaParalela lecturaParalela(int paralelismo, boolean conTextos) {
+        return new LecturaParalela(this, List.of(DatabaseConnection::getConnection), paralelismo, conTextos);
+    }
+
+    /**
+     * @return {menor, mayor} ID de la tabla (incluidas las bajas), o null si está vacía
+     */
+    int[] extremosIdTx(Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_EXTREMOS_ID);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            int menor = rs.getInt(1);
+            return rs.wasNull() ? null : new int[]{menor, rs.getInt(2)};
+        } catch (SQLException e) {
+            throw new Exception("Error al leer el rango de IDs de Paciente: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Pacientes activos con ID en (despuesDe, hasta], en orden de ID y como
+     * mucho "limite" (Integer.MAX_VALUE = todos, en streaming: mientras dura
+     * el recorrido la conexión no puede usarse para otra consulta).
+     *
+     * @param porListado true para ordenar por apellido, nombre, id (sin límite)
+     */
+    void recorrerRangoTx(int despuesDe, int hasta, int limite, boolean porListado, boolean conTextos,
+                         Consumer<Paciente> consumidor, Connection conn) throws Exception {
+        boolean streaming = limite == Integer.MAX_VALUE;
+        String sql = (conTextos ? SELECT_RANGO_COMPLETO : SELECT_RANGO_RESUMEN)
+                + (porListado ? "ORDER BY p.apellido, p.nombre, p.id" : "ORDER BY p.id")
+                + (streaming ? "" : " LIMIT " + limite);
+        try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            if (streaming) {
+                ps.setFetchSize(Integer.MIN_VALUE);
+                if (conTextos) {
+                    CompresionTextos.preparar(conn);
+                }
+            }
+            ps.setInt(1, despuesDe);
+            ps.setInt(2, hasta);
+            try (ResultSet rs = ps.executeQuery()) {
+                PacienteFilas.Indices ix = PacienteFilas.indices(rs, streaming ? null : conn);
+                while (rs.next()) {
+                    consumidor.accept(PacienteFilas.leer(rs, ix));
+                }
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al leer rango de Pacientes: " + e.getMessage(), e);
+        }
+    }
+
     // --- Métodos de GenericDAO (con conexión propia) ---
     
     @Override
@@ -165,12 +589,22 @@ public class PacienteDAO implements GenericDAO<Paciente> {
      * Búsqueda por DNI (campo relevante).
      */
     public Paciente buscarPorDni(String dni) throws Exception {
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_DNI)) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return buscarPorDniTx(dni, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar Paciente por DNI: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Variante de buscarPorDni que usa una conexión externa.
+     */
+    public Paciente buscarPorDniTx(String dni, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_DNI)) {
             ps.setString(1, dni);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return mapPaciente(rs);
+                    return PacienteFilas.leer(rs, PacienteFilas.indices(rs));
                 }
             }
             return null;
@@ -184,16 +618,30 @@ public class PacienteDAO implements GenericDAO<Paciente> {
      */
     public void actualizarTx(Paciente entidad, Connection conn) throws Exception {
         try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
-            ps.setString(1, entidad.getNombre());
-            ps.setString(2, entidad.getApellido());
-            ps.setString(3, entidad.getDni());
-            ps.setDate(4, (entidad.getFechaNacimiento() != null) ? Date.valueOf(entidad.getFechaNacimiento()) : null);
-            ps.setInt(5, entidad.getId()); 
+            int i = PacienteFilas.vincular(ps, 1, entidad);
+            ps.setInt(i, entidad.getId()); 
             ps.executeUpdate();
         } catch (SQLException e) {
             throw new Exception("Error al actualizar Paciente en transacción: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Actualiza varios pacientes con un único UPDATE por lotes (escritura
+     * diferida, ver Service.EscrituraDiferida).
+     */
+    public void actualizarBatchTx(List<Paciente> pacientes, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+            for (Paciente p : pacientes) {
+                int i = PacienteFilas.vincular(ps, 1, p);
+                ps.setInt(i, p.getId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new Exception("Error en la actualización por lote de Pacientes: " + e.getMessage(), e);
+        }
+    }
     
     /**
      * Variante transaccional de Eliminar (usada por el Service).
@@ -0,0 +1,199 @@
+package Dao;
+
+import Config.PoolConexiones.FabricaConexiones;
+import Config.ShardRouter;
+import entities.Paciente;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.Collator;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * PacienteDAO repartido entre los shards de ShardRouter.
+ *
+ * - Por DNI: se consulta solo el shard del DNI.
+ * - Por ID: directorio ID -> shard; si el ID no está, se prueba el shard
+ *   sugerido por el ID y luego todos los demás en paralelo.
+ * - Lectura paralela: rangos de ID de cada shard (ver LecturaParalela).
+ * - Listados (getAll, getPagina): la misma consulta en todos los shards en
+ *   paralelo y fusión K-way por apellido, nombre, id. Cada shard devuelve
+ *   a lo sumo "limite" filas, así la página global sale de la fusión. Lo
+ *   mismo por fecha de nacimiento o cumpleaños, con su propio orden.
+ *
+ * Los métodos *Tx heredados no cambian: operan sobre la conexión recibida,
+ * que el Service obtiene del shard correcto.
+ */
+public class PacienteDAOShardeado extends PacienteDAO {
+
+    /**
+     * Orden de textos de la collation _ai_ci de MySQL (sin distinguir acentos
+     * ni mayúsculas). Collator no es thread-safe, por eso se crea uno por
+     * llamada: quien lo use desde varios hilos debe pedir uno por hilo.
+     */
+    public static Comparator<String> ordenTexto() {
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        return collator::compare;
+    }
+
+    /**
+     * Orden de listado equivalente al ORDER BY apellido, nombre, id de MySQL
+     * (ver ordenTexto); uno por fusión.
+     */
+    static Comparator<Paciente> ordenListado() {
+        Comparator<String> texto = ordenTexto();
+        return Comparator.comparing(Paciente::getApellido, texto)
+                .thenComparing(Paciente::getNombre, texto)
+                .thenComparingInt(Paciente::getId);
+    }
+
+    /**
+     * Shard donde está el paciente con ese ID (incluso dado de baja), o -1 si no existe.
+     */
+    public int ubicar(int id) throws Exception {
+        int conocido = ShardRouter.shardConocido(id);
+        if (conocido >= 0) {
+            return conocido;
+        }
+        int sugerido = ShardRouter.shardSugerido(id);
+        try (Connection conn = ShardRouter.getConnection(sugerido)) {
+            if (existeIdTx(id, conn)) {
+                ShardRouter.registrarId(id, sugerido);
+                return sugerido;
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al ubicar Paciente por ID: " + e.getMessage(), e);
+        }
+        List<Boolean> encontrado = ShardRouter.enTodos((shard, conn) -> shard != sugerido && existeIdTx(id, conn));
+        for (int s = 0; s < encontrado.size(); s++) {
+            if (encontrado.get(s)) {
+                ShardRouter.registrarId(id, s);
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Paciente getById(int id) throws Exception {
+        int shard = ubicar(id);
+        if (shard < 0) {
+            return null;
+        }
+        try (Connection conn = ShardRouter.getConnection(shard)) {
+            return getByIdTx(id, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al leer Paciente por ID: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Paciente buscarPorDni(String dni) throws Exception {
+        int shard = ShardRouter.shardPorDni(dni);
+        try (Connection conn = ShardRouter.getConnection(shard)) {
+            Paciente p = buscarPorDniTx(dni, conn);
+            if (p != null) {
+                ShardRouter.registrarId(p.getId(), shard);
+            }
+            return p;
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar Paciente por DNI: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<Paciente> getAll() throws Exception {
+        return KWayMerge.fusionar(ShardRouter.enTodos((shard, conn) -> getAllTx(conn)), ordenListado(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Paciente> getPagina(Paciente despuesDe, int limite) throws Exception {
+        return KWayMerge.fusionar(ShardRouter.enTodos((shard, conn) -> getPaginaTx(despuesDe, limite, conn)), ordenListado(), limite);
+    }
+
+    @Override
+    public List<Paciente> getPorFechaNacimiento(LocalDate desde, LocalDate hasta, Paciente despuesDe, int limite) throws Exception {
+        return KWayMerge.fusionar(ShardRouter.enTodos((shard, conn) -> getPorFechaNacimientoTx(desde, hasta, despuesDe, limite, conn)),
+                Comparator.comparing(Paciente::getFechaNacimiento).thenComparingInt(Paciente::getId), limite);
+    }
+
+    @Override
+    public List<Paciente> getPorMesDia(int mesDiaDesde, int mesDiaHasta, Paciente despuesDe, int limite) throws Exception {
+        return KWayMerge.fusionar(ShardRouter.enTodos((shard, conn) -> getPorMesDiaTx(mesDiaDesde, mesDiaHasta, despuesDe, limite, conn)),
+                Comparator.comparingInt((Paciente p) -> mesDia(p.getFechaNacimiento())).thenComparingInt(Paciente::getId), limite);
+    }
+
+    /**
+     * Recorre los shards uno tras otro (el consumidor no necesita ser
+     * thread-safe); el orden de entrega no es el del listado.
+     */
+    @Override
+    public void recorrerResumen(Consumer<Paciente> consumidor) throws Exception {
+        for (int s = 0; s < ShardRouter.getCantidad(); s++) {
+            try (Connection conn = ShardRouter.getConnection(s)) {
+                recorrerResumenTx(consumidor, conn);
+            } catch (SQLException e) {
+                throw new Exception("Error al recorrer Pacientes: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Cada shard es una fuente con sus propios rangos de ID (los IDs de los
+     * shards se intercalan, así que cada uno cubre todo el rango).
+     */
+    @Override
+    public LecturaParalela lecturaParalela(int paralelismo, boolean conTextos) {
+        List<FabricaConexiones> fuentes = new ArrayList<>(ShardRouter.getCantidad());
+        for (int s = 0; s < ShardRouter.getCantidad(); s++) {
+            int shard = s;
+            fuentes.add(() -> ShardRouter.getConnection(shard));
+        }
+        return new LecturaParalela(this, fuentes, paralelismo, conTextos);
+    }
+
+    // --- Escrituras con conexión propia (GenericDAO) ---
+
+    @Override
+    public void insertar(Paciente entidad) throws Exception {
+        int shard = ShardRouter.shardPorDni(entidad.getDni());
+        try (Connection conn = ShardRouter.getConnection(shard)) {
+            insertTx(entidad, conn);
+            ShardRouter.registrarId(entidad.getId(), shard);
+        } catch (SQLException e) {
+            throw new Exception("Error al insertar Paciente (simple): " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void actualizar(Paciente entidad) throws Exception {
+        int shard = ubicar(entidad.getId());
+        if (shard < 0) {
+            return;
+        }
+        try (Connection conn = ShardRouter.getConnection(shard)) {
+            actualizarTx(entidad, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al actualizar Paciente: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void eliminar(int id) throws Exception {
+        int shard = ubicar(id);
+        if (shard < 0) {
+            return;
+        }
+        try (Connection conn = ShardRouter.getConnection(shard)) {
+            eliminarTx(id, conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al eliminar (lógicamente) Paciente: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package Dao;
+
+import entities.RevisionHistoria;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Revisiones de los textos clínicos de cada HC (tabla RevisionHistoria).
+ *
+ * La HC sigue guardando solo la versión vigente (su lectura no cambia);
+ * cada actualización que modifica algún texto agrega una fila con la
+ * diferencia contra la versión anterior (ver DeltaTextos). Cada
+ * -Dhc.revisiones.intervalo revisiones (default 16), o cuando la diferencia
+ * no es más chica que el texto completo, se guarda una revisión completa:
+ * reconstruir cualquier revisión lee a lo sumo ese número de filas,
+ * contiguas en la clave primaria (historia_id, revision).
+ *
+ * La primera actualización de una HC sin revisiones guarda antes la
+ * versión previa como revisión 1, con su actualizadoEn como fecha: el
+ * alta no escribe nada acá. Lo mismo si los textos vigentes no son los de
+ * la última revisión (se cambiaron sin registrar: otra instancia sin
+ * -Dhc.revisiones, o la propiedad estuvo apagada): esa versión entra
+ * completa antes de la nueva, y la diferencia se calcula siempre contra
+ * lo que la cadena reconstruye.
+ *
+ * Se activa con -Dhc.revisiones=true (requiere la tabla, ver README).
+ */
+public class RevisionHistoriaDAO {
+
+    private static final boolean ACTIVO = Boolean.getBoolean("hc.revisiones");
+    private static final int INTERVALO = Math.max(1, Integer.getInteger("hc.revisiones.intervalo", 16));
+
+    private final String SELECT_ULTIMAS = "SELECT MAX(revision), MAX(IF(completa, revision, 0)) FROM RevisionHistoria WHERE historia_id = ?";
+    private final String INSERT = "INSERT INTO RevisionHistoria (historia_id, revision, completa, contenido, creadoEn) "
+                                + "VALUES (?, ?, ?, ?, COALESCE(?, NOW(6)))";
+    // Desde la última revisión completa hasta la pedida: a lo sumo INTERVALO filas.
+    private final String SELECT_CADENA = "SELECT r.revision, r.completa, r.contenido, r.creadoEn, hc.paciente_id "
+                                       + "FROM RevisionHistoria r JOIN HistoriaClinica hc ON hc.id = r.historia_id "
+                                       + "WHERE r.historia_id = ? AND r.revision <= ? AND r.revision >= "
+                                       + "(SELECT MAX(k.revision) FROM RevisionHistoria k WHERE k.historia_id = ? AND k.completa = TRUE AND k.revision <= ?) "
+                                       + "ORDER BY r.revision";
+    private final String SELECT_LISTADO = "SELECT r.revision, r.completa, LENGTH(r.contenido), r.creadoEn, hc.paciente_id "
+                                        + "FROM RevisionHistoria r JOIN HistoriaClinica hc ON hc.id = r.historia_id "
+                                        + "WHERE r.historia_id = ? ORDER BY r.revision";
+
+    public static boolean estaActivo() {
+        return ACTIVO;
+    }
+
+    /**
+     * Registra la nueva versión de los textos de una HC. El llamador tiene
+     * bloqueada la fila de la HC (SELECT ... FOR UPDATE), así que las
+     * revisiones de una misma HC no se intercalan.
+     *
+     * @param anteriores Textos vigentes hasta ahora (expandidos)
+     * @param fechaAnterior actualizadoEn de la HC antes de esta actualización
+     * @param nuevos Textos que quedan vigentes (expandidos)
+     */
+    public void registrarTx(int historiaId, String[] anteriores, Timestamp fechaAnterior, String[] nuevos, Connection conn) throws Exception {
+        try {
+            int ultima = 0;
+            int ultimaCompleta = 0;
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_ULTIMAS)) {
+                ps.setInt(1, historiaId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        ultima = rs.getInt(1);
+                        ultimaCompleta = rs.getInt(2);
+                    }
+                }
+            }
+            // La base de la diferencia es la última revisión tal como se va a reconstruir.
+            String[] base = ultima == 0 ? null : textosTx(historiaId, ultima, conn);
+            try (PreparedStatement ps = conn.prepareStatement(INSERT)) {
+                if (base == null || !Arrays.equals(base, anteriores)) {
+                    // Primera revisión, o cambios sin registrar: la versión previa a esta actualización.
+                    ultima = ultimaCompleta = ultima + 1;
+                    insertar(ps, historiaId, ultima, true, DeltaTextos.completa(anteriores), fechaAnterior);
+                }
+                int revision = ultima + 1;
+                byte[] completa = DeltaTextos.completa(nuevos);
+                if (revision - ultimaCompleta >= INTERVALO) {
+                    insertar(ps, historiaId, revision, true, completa, null);
+                } else {
+                    byte[] delta = DeltaTextos.delta(anteriores, nuevos);
+                    boolean conviene = delta.length < completa.length;
+                    insertar(ps, historiaId, revision, !conviene, conviene ? delta : completa, null);
+                }
+                ps.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al registrar revisión de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+
+    private void insertar(PreparedStatement ps, int historiaId, int revision, boolean completa, byte[] contenido, Timestamp fecha) throws SQLException {
+        ps.setInt(1, historiaId);
+        ps.setInt(2, revision);
+        ps.setBoolean(3, completa);
+        ps.setBytes(4, contenido);
+        ps.setTimestamp(5, fecha);
+        ps.addBatch();
+    }
+
+    /** Textos de una revisión existente (reconstruidos igual que getRevisionTx). */
+    private String[] textosTx(int historiaId, int revision, Connection conn) throws Exception {
+        RevisionHistoria r = getRevisionTx(historiaId, revision, conn);
+        if (r == null) {
+            throw new Exception("Falta la revisión " + revision + " de la HistoriaClinica " + historiaId);
+        }
+        return new String[]{r.getAntecedentes(), r.getMedicacionActual(), r.getObservaciones()};
+    }
+
+    /**
+     * Reconstruye una revisión con sus textos.
+     *
+     * @return La revisión, o null si la HC no la tiene
+     */
+    public RevisionHistoria getRevisionTx(int historiaId, int revision, Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_CADENA)) {
+            ps.setInt(1, historiaId);
+            ps.setInt(2, revision);
+            ps.setInt(3, historiaId);
+            ps.setInt(4, revision);
+            try (ResultSet rs = ps.executeQuery()) {
+                String[] textos = null;
+                int leida = 0;
+                int bytes = 0;
+                boolean completa = false;
+                Timestamp fecha = null;
+                long pacienteId = 0;
+                while (rs.next()) {
+                    leida = rs.getInt(1);
+                    completa = rs.getBoolean(2);
+                    byte[] contenido = rs.getBytes(3);
+                    bytes = contenido.length;
+                    fecha = rs.getTimestamp(4);
+                    pacienteId = rs.getLong(5);
+                    textos = DeltaTextos.aplicar(completa ? null : textos, contenido);
+                }
+                if (leida != revision) {
+                    return null;
+                }
+                return new RevisionHistoria(historiaId, revision, pacienteId, fecha.toLocalDateTime(), completa, bytes,
+                        textos[0], textos[1], textos[2]);
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al leer revisión de HistoriaClinica: " + e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            throw new Exception("Error al reconstruir la revisión " + revision + " de la HistoriaClinica " + historiaId + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Revisiones de una HC en orden, sin los textos.
+     */
+    public List<RevisionHistoria> getRevisionesTx(int historiaId, Connection conn) throws Exception {
+        List<RevisionHistoria> revisiones = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_LISTADO)) {
+            ps.setInt(1, historiaId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    revisiones.add(new RevisionHistoria(historiaId, rs.getInt(1), rs.getLong(5), rs.getTimestamp(4).toLocalDateTime(),
+                            rs.getBoolean(2), rs.getInt(3), null, null, null));
+                }
+            }
+            return revisiones;
+        } catch (SQLException e) {
+            throw new Exception("Error al listar revisiones de HistoriaClinica: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package Dao;
+
+import entities.HistoriaClinica;
+import entities.HistoriaClinica.GrupoSanguineo;
+import entities.Paciente;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Lectura y carga completas de Paciente + HistoriaClinica para los
+ * snapshots binarios (ver Respaldo.SnapshotPacientes). A diferencia del
+ * resto de los DAOs incluye las bajas lógicas y conserva los IDs.
+ */
+public class SnapshotDAO {
+
+    /** Fila completa: el paciente (con su HC, si tiene) y el momento de su baja. */
+    public static final class Fila {
+        public final Paciente paciente;
+        /** null si el paciente está activo o la baja es anterior a la columna. */
+        public final Timestamp eliminadoEn;
+
+        public Fila(Paciente paciente, Timestamp eliminadoEn) {
+            this.paciente = paciente;
+            this.eliminadoEn = eliminadoEn;
+        }
+    }
+
+    // Una sola sentencia: InnoDB la resuelve sobre una vista consistente, sin bloquear escrituras.
+    private final String SELECT_COMPLETO = "SELECT p.id, p.eliminado, p.nombre, p.apellido, p.dni, p.fechaNacimiento, p.eliminadoEn, "
+                                         + "hc.id, hc.eliminado, hc.nroHistoria, hc.grupoSanguineo, hc.antecedentes, hc.medicacionActual, hc.observaciones "
+                                         + "FROM Paciente p LEFT JOIN HistoriaClinica hc ON p.id = hc.paciente_id ORDER BY p.id";
+    private final String CONTAR = "SELECT (SELECT COUNT(*) FROM Paciente) + (SELECT COUNT(*) FROM HistoriaClinica)";
+    private final String INSERT_PACIENTE = "INSERT INTO Paciente (id, eliminado, nombre, apellido, dni, fechaNacimiento, eliminadoEn) "
+                                         + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private final String INSERT_HISTORIA = "INSERT INTO HistoriaClinica (id, eliminado, nroHistoria, grupoSanguineo, antecedentes, "
+                                         + "medicacionActual, observaciones, paciente_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Recorre en streaming todos los pacientes (incluidas las bajas) en orden
+     * de ID, con los textos de la HC ya expandidos.
+     */
+    public void recorrerCompletoTx(Consumer<Fila> consumidor, Connection conn) throws Exception {
+        try {
+            // Con el cursor abierto no se puede consultar: los diccionarios se cargan antes.
+            CompresionTextos.recargar(conn);
+        } catch (SQLException e) {
+            throw new Exception("Error al cargar diccionarios de textos: " + e.getMessage(), e);
+        }
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_COMPLETO, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Paciente p = new Paciente();
+                    p.setId(rs.getInt(1));
+                    p.setEliminado(rs.getBoolean(2));
+                    p.setNombre(rs.getString(3));
+                    p.setApellido(rs.getString(4));
+                    p.setDni(rs.getString(5));
+                    Date fechaSql = rs.getDate(6);
+                    if (fechaSql != null) {
+                        p.setFechaNacimiento(fechaSql.toLocalDate());
+                    }
+                    Timestamp eliminadoEn = rs.getTimestamp(7);
+                    int hcId = rs.getInt(8);
+                    if (hcId > 0) {
+                        String gs = rs.getString(11);
+                        p.setHistoriaClinica(new HistoriaClinica(hcId, rs.getBoolean(9), rs.getString(10),
+                                gs != null ? GrupoSanguineo.desdeSimbolo(gs) : null,
+                                CompresionTextos.expandir(rs.getString(12)), CompresionTextos.expandir(rs.getString(13)),
+                                CompresionTextos.expandir(rs.getString(14)), (long) p.getId()));
+                    }
+                    consumidor.accept(new Fila(p, eliminadoEn));
+                }
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al recorrer Pacientes para el snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return Filas en Paciente más filas en HistoriaClinica
+     */
+    public long contarFilasTx(Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement(CONTAR);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new Exception("Error al contar Pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Inserta las filas con sus IDs originales: primero los pacientes, después
+     * las HCs (por la clave foránea). Con rewriteBatchedStatements=true en la
+     * URL cada lote viaja como un único INSERT de varias filas.
+     */
+    public void insertarBatchTx(List<Fila> filas, Connection conn) throws Exception {
+        try {
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_PACIENTE)) {
+                for (Fila f : filas) {
+                    Paciente p = f.paciente;
+                    ps.setInt(1, p.getId());
+                    ps.setBoolean(2, p.isEliminado());
+                    ps.setString(3, p.getNombre());
+                    ps.setString(4, p.getApellido());
+                    ps.setString(5, p.getDni());
+                    ps.setDate(6, (p.getFechaNacimiento() != null) ? Date.valueOf(p.getFechaNacimiento()) : null);
+                    ps.setTimestamp(7, f.eliminadoEn);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            CompresionTextos.preparar(conn);
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_HISTORIA)) {
+                for (Fila f : filas) {
+                    HistoriaClinica hc = f.paciente.getHistoriaClinica();
+                    if (hc == null) {
+                        continue;
+                    }
+                    ps.setInt(1, hc.getId());
+                    ps.setBoolean(2, hc.isEliminado());
+                    ps.setString(3, hc.getNroHistoria());
+                    if (hc.getGrupoSanguineo() != null) {
+                        ps.setString(4, hc.getGrupoSanguineo().getSimbolo());
+                    } else {
+                        ps.setNull(4, Types.VARCHAR);
+                    }
+                    ps.setString(5, CompresionTextos.paraGuardar(hc.getAntecedentes()));
+                    ps.setString(6, CompresionTextos.paraGuardar(hc.getMedicacionActual()));
+                    ps.setString(7, CompresionTextos.paraGuardar(hc.getObservaciones()));
+                    ps.setInt(8, f.paciente.getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al cargar lote del snapshot: " + e.getMessage(), e);
+        }
+    }
+}
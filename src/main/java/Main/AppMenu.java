@@ -15,7 +15,7 @@ public class AppMenu {
         
         // 2. Crear las instancias de AMBOS servicios
         PacienteServiceImpl pacienteService = new PacienteServiceImpl();
-        HistoriaClinicaServiceImpl historiaClinicaService = new HistoriaClinicaServiceImpl();
+        HistoriaClinicaServiceImpl historiaClinicaService = new HistoriaClinicaServiceImpl(pacienteService.getEscrituraDiferida());
         
         // 3. Inyectar TODAS las dependencias (3 argumentos) al MenuHandler
         this.menuHandler = new MenuHandler(scanner, pacienteService, historiaClinicaService);
@@ -56,6 +56,7 @@ public class AppMenu {
             case 4: menuHandler.eliminarPaciente(); break;
             case 5: menuHandler.buscarPacientePorDni(); break;
             case 6: menuHandler.leerPacientePorId(); break;
+            case 7: menuHandler.buscarHistoriaPorNro(); break;
             case 0:
                 System.out.println("Saliendo...");
                 running = false;
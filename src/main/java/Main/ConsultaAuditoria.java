@@ -0,0 +1,51 @@
+package Main;
+
+import Auditoria.BitacoraAuditoria;
+import Auditoria.EventoAuditoria;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Consulta de la bitácora de auditoría por paciente, del evento más reciente
+ * al más antiguo. Solo lee: puede ejecutarse mientras otro proceso escribe.
+ *
+ * Uso: java ... Main.Main --auditoria pacienteId [--dir DIRECTORIO] [--max 100]
+ *      (sin --dir se usa -Dauditoria.dir)
+ *
+ * Salida (stdout, TSV): instante  tipo  paciente_id  usuario  detalle
+ */
+public class ConsultaAuditoria {
+
+    /**
+     * Punto de entrada desde Main: args = pacienteId [--dir D] [--max N]
+     */
+    public static void main(String[] args) throws Exception {
+        Integer pacienteId = null;
+        String dir = System.getProperty("auditoria.dir");
+        int maximo = 100;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--dir": dir = args[++i]; break;
+                case "--max": maximo = Integer.parseInt(args[++i]); break;
+                default:
+                    if (args[i].startsWith("--") || pacienteId != null) {
+                        throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+                    }
+                    pacienteId = Integer.parseInt(args[i]);
+            }
+        }
+        if (pacienteId == null || dir == null) {
+            System.err.println("❌ Uso: --auditoria pacienteId [--dir DIRECTORIO] [--max N]");
+            return;
+        }
+
+        List<EventoAuditoria> eventos = BitacoraAuditoria.abrirLectura(Paths.get(dir)).buscarPorPaciente(pacienteId, maximo);
+        StringBuilder sb = new StringBuilder();
+        for (EventoAuditoria e : eventos) {
+            sb.append(e).append('\n');
+        }
+        System.out.print(sb);
+        System.out.println("# eventos=" + eventos.size());
+    }
+}
@@ -1,9 +1,53 @@
 package Main;
 
+import java.util.Arrays;
+
 public class Main {
     
-    public static void main(String[] args) {
-        AppMenu app = new AppMenu();
-        app.run();
+    public static void main(String[] args) throws Exception {
+        // Sin argumentos: menú interactivo. El primer argumento elige un modo no interactivo.
+        String modo = args.length > 0 ? args[0] : "";
+        String[] resto = args.length > 0 ? Arrays.copyOfRange(args, 1, args.length) : args;
+        switch (modo) {
+            case "--batch":
+                ModoBatch.main(resto);
+                break;
+            case "--http":
+                ServidorHttp.main(resto);
+                break;
+            case "--duplicados":
+                ReporteDuplicados.main(resto);
+                break;
+            case "--sync":
+                ModoSincronizacion.main(resto);
+                break;
+            case "--auditoria":
+                ConsultaAuditoria.main(resto);
+                break;
+            case "--archivar":
+                ModoArchivo.archivar(resto);
+                break;
+            case "--restaurar":
+                ModoArchivo.restaurar(resto);
+                break;
+            case "--snapshot":
+                ModoSnapshot.escribir(resto);
+                break;
+            case "--restaurar-snapshot":
+                ModoSnapshot.restaurar(resto);
+                break;
+            case "--entrenar-diccionario":
+                ModoCompresion.entrenar(resto);
+                break;
+            case "--comprimir-textos":
+                ModoCompresion.migrar(resto);
+                break;
+            case "--carga":
+                Carga.ArnesCarga.main(resto);
+                break;
+            default:
+                AppMenu app = new AppMenu();
+                app.run();
+        }
     }
-}
\ No newline at end of file
+}
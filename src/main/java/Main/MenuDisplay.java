@@ -10,6 +10,7 @@ public class MenuDisplay {
       System.out.println("4. Eliminar Paciente (Baja Lógica Transaccional)");
       System.out.println("5. Buscar Paciente por DNI (Consulta Relevante)");
       System.out.println("6. Buscar Paciente por ID");
+      System.out.println("7. Buscar Historia Clínica por Nro.");
       System.out.println("0. Salir");
       System.out.print("Ingrese una opcion: ");
     }
@@ -1,14 +1,18 @@
 package Main;
 
+import Dao.HistoriaClinicaDAO;
 import entities.HistoriaClinica;
 import entities.Paciente;
 import entities.HistoriaClinica.GrupoSanguineo;
 import exceptions.ServiceException;
+import Service.DetectorDuplicados;
 import Service.PacienteServiceImpl;
+import Service.RosterPacientes;
 import Service.HistoriaClinicaServiceImpl; // Importar el service de HC
 
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.InputMismatchException; // Aunque usamos parseInt, es bueno tenerlo
 import java.util.List;
 import java.util.Scanner;
@@ -22,6 +26,9 @@ public class MenuHandler {
     private final PacienteServiceImpl pacienteService;
     private final HistoriaClinicaServiceImpl historiaClinicaService; // Servicio de HC
 
+    private static final int FILAS_POR_PAGINA = 25;
+    private final TablaPacientes tabla = new TablaPacientes(System.out);
+
     // Constructor corregido (acepta 3 argumentos)
     public MenuHandler(Scanner scanner, PacienteServiceImpl pacienteService, HistoriaClinicaServiceImpl historiaClinicaService) {
         if (scanner == null || pacienteService == null || historiaClinicaService == null) {
@@ -58,6 +65,11 @@ public class MenuHandler {
             
             p.setHistoriaClinica(hc); // 🔑 Asociar HC al Paciente (Relación 1:1)
 
+            if (!confirmarSiHayDuplicados(p)) {
+                System.out.println("Alta cancelada.");
+                return;
+            }
+
             // 3. Llamada al Service para la transacción
             pacienteService.insertar(p);
             
@@ -72,6 +84,25 @@ public class MenuHandler {
         }
     }
 
+    /**
+     * Muestra los pacientes existentes parecidos al nuevo (errores de tipeo,
+     * DNI con otro formato) y pide confirmación si hay alguno.
+     * @return true si se puede seguir con el alta
+     */
+    private boolean confirmarSiHayDuplicados(Paciente p) throws Exception {
+        List<DetectorDuplicados.Candidato> similares = pacienteService.posiblesDuplicados(p);
+        if (similares.isEmpty()) {
+            return true;
+        }
+        System.out.println("⚠️ Posibles duplicados ya cargados:");
+        for (int i = 0; i < Math.min(5, similares.size()); i++) {
+            DetectorDuplicados.Candidato c = similares.get(i);
+            System.out.printf("   ID %d - %s (similitud %.0f%%)%n", c.getIdB(), c.describirB(), c.getPuntaje() * 100);
+        }
+        System.out.print("¿Crear el paciente de todas formas? (s/N): ");
+        return scanner.nextLine().trim().equalsIgnoreCase("s");
+    }
+
     /**
      * Método auxiliar para encapsular la creación de la HC.
      * Incluye la corrección del Enum.
@@ -104,21 +135,80 @@ public class MenuHandler {
 
     /**
      * Lógica para la Opción 2: Listar Pacientes
+     * Muestra la tabla paginada: cada página se pide a la BD al mostrarla
+     * (la primera aparece sin esperar al resto del listado). El filtro por
+     * apellido trabaja sobre una instantánea compacta del padrón
+     * (RosterPacientes), que se arma una vez por listado.
      */
     public void listarPacientes() {
         System.out.println("\n--- 📄 Listado de Pacientes Activos ---");
-        try {
-            List<Paciente> lista = pacienteService.getAll();
-            if (lista.isEmpty()) {
-                System.out.println("No hay pacientes activos en la base de datos.");
-            } else {
-                lista.forEach(p -> System.out.println(p));
+        try (PaginadorPacientes paginador = new PaginadorPacientes(pacienteService::getPagina, FILAS_POR_PAGINA)) {
+            RosterPacientes roster = null;
+            int pagina = 0;
+            while (true) {
+                List<Paciente> filas = paginador.pagina(pagina);
+                pagina = paginador.getPaginaActual();
+                if (pagina == 0 && filas.isEmpty()) {
+                    System.out.println("No hay pacientes activos en la base de datos.");
+                    return;
+                }
+                tabla.renderizar(filas, "Página " + (pagina + 1) + (paginador.esUltima(pagina) ? " (última)" : ""));
+
+                System.out.print("[Enter] siguiente, [a] anterior, [número] ir a página, [f] filtrar por apellido, [s] salir: ");
+                String comando = scanner.nextLine().trim().toLowerCase();
+                if (comando.equals("s")) {
+                    return;
+                } else if (comando.equals("f")) {
+                    if (roster == null) {
+                        roster = pacienteService.construirRoster(false);
+                    }
+                    listarPorApellido(roster);
+                } else if (comando.isEmpty()) {
+                    if (paginador.esUltima(pagina)) {
+                        return;
+                    }
+                    pagina++;
+                } else if (comando.equals("a")) {
+                    pagina = Math.max(0, pagina - 1);
+                } else {
+                    try {
+                        pagina = Integer.parseInt(comando) - 1;
+                    } catch (NumberFormatException e) {
+                        System.out.println("Comando no válido.");
+                    }
+                }
             }
         } catch (Exception e) {
             System.err.println("❌ ERROR AL LISTAR: " + e.getMessage());
         }
     }
 
+    /**
+     * Filas del roster cuyo apellido empieza con el prefijo ingresado, en el
+     * mismo orden que el listado y de a FILAS_POR_PAGINA.
+     */
+    private void listarPorApellido(RosterPacientes roster) throws Exception {
+        System.out.print("Apellido (o su comienzo): ");
+        int[] rango = roster.rangoPorPrefijoApellido(scanner.nextLine().trim());
+        int total = rango[1] - rango[0];
+        if (total == 0) {
+            System.out.println("⚠️ Ningún paciente activo tiene un apellido con ese comienzo.");
+            return;
+        }
+        for (int desde = rango[0]; desde < rango[1]; desde += FILAS_POR_PAGINA) {
+            int hasta = Math.min(desde + FILAS_POR_PAGINA, rango[1]);
+            List<Paciente> filas = new ArrayList<>(hasta - desde);
+            roster.recorrerOrdenado(desde, hasta, fila -> filas.add(roster.aPaciente(fila)));
+            tabla.renderizar(filas, (hasta - rango[0]) + " de " + total + " coincidencias");
+            if (hasta < rango[1]) {
+                System.out.print("[Enter] siguiente, [s] volver al listado: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("s")) {
+                    return;
+                }
+            }
+        }
+    }
+
     /**
      * Lógica para la Opción 3: Leer Paciente por ID
      */
@@ -170,6 +260,27 @@ public class MenuHandler {
         }
     }
 
+    /**
+     * Lógica para la Opción 7: Buscar Historia Clínica por Nro. (solo la HC, sin el paciente)
+     */
+    public void buscarHistoriaPorNro() {
+        System.out.print("Ingrese Nro. de Historia Clínica a buscar: ");
+        try {
+            String nro = scanner.nextLine();
+            HistoriaClinica hc = historiaClinicaService.buscarPorNroHistoria(nro, HistoriaClinicaDAO.CAMPOS_TODOS);
+
+            if (hc != null) {
+                System.out.println("\n--- Resultado de Búsqueda por Nro. de HC ---");
+                System.out.println(hc);
+                System.out.println("  -> ID Paciente: " + hc.getPacienteId());
+            } else {
+                System.out.println("⚠️ No se encontró una Historia Clínica activa con Nro: " + nro);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ ERROR AL BUSCAR HISTORIA CLÍNICA: " + e.getMessage());
+        }
+    }
+
     /**
      * Lógica para la Opción 5: Actualizar Paciente (Transaccional)
      */
@@ -0,0 +1,64 @@
+package Main;
+
+import Service.ArchivadorBajas;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archivado y restauración de pacientes dados de baja (ver ArchivadorBajas).
+ *
+ * Uso:
+ * <pre>
+ * java ... Main.Main --archivar [--dias 365] [--lote 200] [--ciclo 0.25] [--max N] [--contar]
+ * java ... Main.Main --restaurar id
+ * java ... Main.Main --restaurar --dni 30111222
+ * </pre>
+ */
+public class ModoArchivo {
+
+    /**
+     * Una pasada de archivado (o solo el conteo, con --contar).
+     */
+    public static void archivar(String[] args) throws Exception {
+        int dias = 365;
+        int lote = 200;
+        double ciclo = 0.25;
+        long maximo = Long.MAX_VALUE;
+        boolean soloContar = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--dias": dias = Integer.parseInt(args[++i]); break;
+                case "--lote": lote = Integer.parseInt(args[++i]); break;
+                case "--ciclo": ciclo = Double.parseDouble(args[++i]); break;
+                case "--max": maximo = Long.parseLong(args[++i]); break;
+                case "--contar": soloContar = true; break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+        ArchivadorBajas archivador = new ArchivadorBajas(dias, lote, ciclo, 50);
+        if (soloContar) {
+            System.out.println("# archivo pendientes=" + archivador.contarPendientes() + " dias=" + dias);
+            return;
+        }
+        long inicio = System.nanoTime();
+        archivador.archivar(maximo);
+        System.out.printf("# archivo %s dias=%d duracion_ms=%d%n", archivador.resumen(), dias,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Devuelve un paciente del archivo a las tablas activas, por ID o por DNI.
+     */
+    public static void restaurar(String[] args) throws Exception {
+        ArchivadorBajas archivador = new ArchivadorBajas(365, 1, 1.0, 0);
+        if (args.length == 2 && args[0].equals("--dni")) {
+            Integer id = archivador.restaurarPorDni(args[1]);
+            System.out.println(id != null ? "✅ Paciente restaurado, ID " + id : "❌ No hay pacientes archivados con DNI " + args[1]);
+        } else if (args.length == 1) {
+            int id = Integer.parseInt(args[0]);
+            System.out.println(archivador.restaurar(id) ? "✅ Paciente restaurado, ID " + id : "❌ El ID " + id + " no está en el archivo");
+        } else {
+            System.err.println("❌ Uso: --restaurar id | --restaurar --dni DNI");
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package Main;
+
+import Auditoria.Auditor;
+import Auditoria.EventoAuditoria;
+import Config.DatabaseConnection;
+import Config.ShardRouter;
+import Config.TransactionManager;
+import Service.PacienteServiceImpl;
+import Util.HistogramaLatencia;
+import entities.HistoriaClinica;
+import entities.HistoriaClinica.GrupoSanguineo;
+import entities.Paciente;
+import exceptions.ServiceException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Modo no interactivo: ejecuta un script de comandos (archivo o stdin)
+ * contra PacienteServiceImpl, pensado para scripts de operaciones que
+ * necesitan miles de altas/modificaciones/bajas/consultas.
+ *
+ * Diferencias con el menú interactivo:
+ * - Los comandos se agrupan en transacciones de hasta N comandos (un commit
+ *   por grupo). Cada grupo toma UNA conexión del pool y la devuelve al
+ *   terminar, en lugar de abrir una conexión por acción; un carril no
+ *   retiene una conexión mientras espera comandos. Si un comando falla a nivel de BD, el grupo se revierte y
+ *   se re-ejecuta comando por comando para aislar el error.
+ * - Con --carriles N los comandos se reparten entre N hilos por hash de la
+ *   clave (el DNI en CREAR y BUSCAR_DNI, el id en el resto): el orden se respeta entre comandos de la misma clave,
+ *   pero no entre carriles. Un script que crea un paciente y luego lo
+ *   modifica por ID debe ejecutarse con un solo carril.
+ *
+ * Formato de entrada (un comando por línea, campos separados por '|',
+ * líneas vacías o que empiezan con '#' se ignoran):
+ * <pre>
+ * CREAR|nombre|apellido|dni|AAAA-MM-DD|nroHistoria|grupo|antecedentes|medicacion|observaciones
+ * ACTUALIZAR|id|nombre|apellido|dni|AAAA-MM-DD|antecedentes|medicacion|observaciones   (vacío = mantener)
+ * ELIMINAR|id
+ * BUSCAR_ID|id
+ * BUSCAR_DNI|dni
+ * </pre>
+ *
+ * Salida (stdout, una línea TSV por comando; resúmenes con prefijo '#'):
+ * <pre>
+ * linea  operacion  estado(OK|NO_ENCONTRADO|ERROR)  id  latencia_us  detalle
+ * </pre>
+ *
+ * Uso: java ... Main.Main --batch [archivo|-] [--carriles N] [--grupo G]
+ */
+public class ModoBatch {
+
+    enum Operacion { CREAR, ACTUALIZAR, ELIMINAR, BUSCAR_ID, BUSCAR_DNI }
+
+    enum Estado { OK, NO_ENCONTRADO, ERROR }
+
+    /** Comando leído del script. FIN es la marca de fin de entrada para los carriles. */
+    static final class Comando {
+        static final Comando FIN = new Comando(-1, null, null);
+
+        final long linea;
+        final Operacion operacion;
+        final String[] campos;
+        long inicioNanos;
+        /** Ya tiene línea de salida (lo escribe y lee solo el carril que lo ejecuta). */
+        boolean informado;
+
+        Comando(long linea, Operacion operacion, String[] campos) {
+            this.linea = linea;
+            this.operacion = operacion;
+            this.campos = campos;
+        }
+
+        /** Clave de ruteo entre carriles: DNI (CREAR, BUSCAR_DNI) o ID según la operación. */
+        String clave() {
+            return campo(operacion == Operacion.CREAR ? 3 : 1);
+        }
+
+        String campo(int i) {
+            return i < campos.length ? campos[i].trim() : "";
+        }
+    }
+
+    private static final class Resultado {
+        final Estado estado;
+        final int id;
+        final String detalle;
+
+        Resultado(Estado estado, int id, String detalle) {
+            this.estado = estado;
+            this.id = id;
+            this.detalle = detalle;
+        }
+    }
+
+    private final PacienteServiceImpl pacienteService = new PacienteServiceImpl();
+    private final int carriles;
+    private final int tamanoGrupo;
+    private final PrintWriter salida;
+
+    private final Map<Operacion, HistogramaLatencia> latencias = new EnumMap<>(Operacion.class);
+    private final AtomicLong ok = new AtomicLong();
+    private final AtomicLong noEncontrados = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+
+    public ModoBatch(int carriles, int tamanoGrupo, PrintWriter salida) {
+        if (carriles < 1 || tamanoGrupo < 1) {
+            throw new IllegalArgumentException("Carriles y tamaño de grupo deben ser >= 1");
+        }
+        this.carriles = carriles;
+        this.tamanoGrupo = tamanoGrupo;
+        this.salida = salida;
+        for (Operacion op : Operacion.values()) {
+            latencias.put(op, new HistogramaLatencia());
+        }
+    }
+
+    /**
+     * Punto de entrada desde Main: args = [archivo|-] [--carriles N] [--grupo G]
+     */
+    public static void main(String[] args) {
+        if (ShardRouter.estaActivo()) {
+            // Cada grupo es UNA transacción sobre una conexión, y con shards haría falta una por shard.
+            System.err.println("❌ El modo batch no soporta -Ddb.shards: ejecutarlo contra cada base por separado.");
+            return;
+        }
+        String archivo = "-";
+        int carriles = 1;
+        int grupo = 100;
+        boolean numerosValidos = true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--carriles": carriles = Integer.parseInt(args[++i]); break;
+                    case "--grupo": grupo = Integer.parseInt(args[++i]); break;
+                    default: archivo = args[i];
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            numerosValidos = false;
+        }
+        if (!numerosValidos || carriles < 1 || grupo < 1) {
+            System.err.println("❌ Uso: --batch [archivo|-] [--carriles N>=1] [--grupo G>=1]");
+            return;
+        }
+
+        PrintWriter salida = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16), false);
+        try (InputStream in = "-".equals(archivo) ? System.in : new FileInputStream(archivo)) {
+            new ModoBatch(carriles, grupo, salida).ejecutar(in);
+        } catch (IOException e) {
+            System.err.println("❌ No se pudo leer el script: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("❌ Ejecución batch interrumpida.");
+        } finally {
+            salida.flush();
+        }
+    }
+
+    /**
+     * Lee y ejecuta todos los comandos del stream. Retorna cuando todos los
+     * carriles terminaron y se imprimió el resumen.
+     */
+    public void ejecutar(InputStream entrada) throws IOException, InterruptedException {
+        List<BlockingQueue<Comando>> colas = new ArrayList<>();
+        List<Thread> hilos = new ArrayList<>();
+        for (int i = 0; i < carriles; i++) {
+            BlockingQueue<Comando> cola = new ArrayBlockingQueue<>(tamanoGrupo * 4);
+            colas.add(cola);
+            Thread hilo = new Thread(() -> ejecutarCarril(cola));
+            hilo.setName("batch-carril-" + i);
+            hilos.add(hilo);
+            hilo.start();
+        }
+
+        salida.println("# linea\toperacion\testado\tid\tlatencia_us\tdetalle");
+        long inicio = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8), 1 << 16)) {
+            String linea;
+            long nro = 0;
+            while ((linea = reader.readLine()) != null) {
+                nro++;
+                if (linea.isBlank() || linea.startsWith("#")) {
+                    continue;
+                }
+                String[] campos = linea.split("\\|", -1);
+                Operacion op;
+                try {
+                    op = Operacion.valueOf(campos[0].trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    imprimir(nro, campos[0].trim(), new Resultado(Estado.ERROR, 0, "Operación desconocida"), 0);
+                    errores.incrementAndGet();
+                    continue;
+                }
+                Comando c = new Comando(nro, op, campos);
+                colas.get(Math.floorMod(c.clave().hashCode(), carriles)).put(c);
+            }
+        } finally {
+            for (BlockingQueue<Comando> cola : colas) {
+                cola.put(Comando.FIN);
+            }
+            for (Thread hilo : hilos) {
+                hilo.join();
+            }
+        }
+        imprimirResumen(System.nanoTime() - inicio);
+    }
+
+    // --- Carriles ---
+
+    private void ejecutarCarril(BlockingQueue<Comando> cola) {
+        try {
+            List<Comando> grupo = new ArrayList<>(tamanoGrupo);
+            boolean fin = false;
+            while (!fin) {
+                grupo.clear();
+                grupo.add(cola.take());
+                cola.drainTo(grupo, tamanoGrupo - 1);
+                int idxFin = grupo.indexOf(Comando.FIN);
+                if (idxFin >= 0) {
+                    grupo.subList(idxFin, grupo.size()).clear();
+                    fin = true;
+                }
+                if (!grupo.isEmpty()) {
+                    try (TransactionManager tx = new TransactionManager(DatabaseConnection.getConnection())) {
+                        ejecutarGrupo(grupo, tx);
+                    } catch (Exception e) {
+                        // Falla de conexión/commit: lo no informado queda sin confirmar; el siguiente pide otra conexión.
+                        for (Comando c : grupo) {
+                            if (c.informado) {
+                                continue;
+                            }
+                            registrar(c, new Resultado(Estado.ERROR, 0, "Grupo no confirmado: " + e.getMessage()), System.nanoTime());
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ejecuta un grupo en una sola transacción. Si algún comando falla en la
+     * BD, revierte y re-ejecuta cada comando en su propia transacción (sobre
+     * la misma conexión, que se devuelve al pool al terminar el grupo).
+     */
+    private void ejecutarGrupo(List<Comando> grupo, TransactionManager tx) throws Exception {
+        Resultado[] resultados = new Resultado[grupo.size()];
+        tx.startTransaction();
+        boolean grupoFallido = false;
+        for (int i = 0; i < grupo.size() && !grupoFallido; i++) {
+            Comando c = grupo.get(i);
+            c.inicioNanos = System.nanoTime();
+            try {
+                resultados[i] = ejecutarComando(c, tx.getConnection());
+            } catch (ServiceException | IllegalArgumentException | DateTimeParseException e) {
+                // Errores de validación/formato: no tocaron la BD, el grupo sigue.
+                resultados[i] = new Resultado(Estado.ERROR, 0, e.getMessage());
+            } catch (Exception e) {
+                grupoFallido = true;
+            }
+        }
+
+        if (!grupoFallido) {
+            tx.commit();
+            commits.incrementAndGet();
+            pacienteService.invalidarLecturasEnVuelo();
+            long fin = System.nanoTime();
+            for (int i = 0; i < grupo.size(); i++) {
+                registrar(grupo.get(i), resultados[i], fin);
+            }
+            return;
+        }
+
+        tx.rollback();
+        for (Comando c : grupo) {
+            c.inicioNanos = System.nanoTime();
+            Resultado r;
+            try {
+                tx.startTransaction();
+                r = ejecutarComando(c, tx.getConnection());
+                tx.commit();
+                commits.incrementAndGet();
+                pacienteService.invalidarLecturasEnVuelo();
+            } catch (Exception e) {
+                try {
+                    tx.rollback();
+                } catch (Exception ignorada) {
+                    // La conexión ya no sirve: este comando queda en error y los siguientes fallarán igual.
+                }
+                Exception traducida = c.operacion == Operacion.CREAR ? pacienteService.traducirErrorInsercion(e) : e;
+                r = new Resultado(Estado.ERROR, 0, traducida.getMessage());
+            }
+            registrar(c, r, System.nanoTime());
+        }
+    }
+
+    private Resultado ejecutarComando(Comando c, Connection conn) throws Exception {
+        switch (c.operacion) {
+            case CREAR: {
+                Paciente p = new Paciente();
+                p.setNombre(c.campo(1));
+                p.setApellido(c.campo(2));
+                p.setDni(c.campo(3));
+                p.setFechaNacimiento(c.campo(4).isEmpty() ? null : LocalDate.parse(c.campo(4)));
+                HistoriaClinica hc = new HistoriaClinica();
+                hc.setNroHistoria(c.campo(5));
+                hc.setGrupoSanguineo(GrupoSanguineo.desdeSimbolo(c.campo(6)));
+                hc.setAntecedentes(c.campo(7));
+                hc.setMedicacionActual(c.campo(8));
+                hc.setObservaciones(c.campo(9));
+                p.setHistoriaClinica(hc);
+                pacienteService.insertarTx(p, conn);
+                return new Resultado(Estado.OK, p.getId(), "hc_id=" + hc.getId());
+            }
+            case ACTUALIZAR: {
+                int id = Integer.parseInt(c.campo(1));
+                Paciente p = pacienteService.getByIdTx(id, conn);
+                if (p == null) {
+                    return new Resultado(Estado.NO_ENCONTRADO, id, "");
+                }
+                // Igual que en el menú: campo vacío = mantener valor actual.
+                if (!c.campo(2).isEmpty()) p.setNombre(c.campo(2));
+                if (!c.campo(3).isEmpty()) p.setApellido(c.campo(3));
+                if (!c.campo(4).isEmpty()) p.setDni(c.campo(4));
+                if (!c.campo(5).isEmpty()) p.setFechaNacimiento(LocalDate.parse(c.campo(5)));
+                HistoriaClinica hc = p.getHistoriaClinica();
+                if (hc != null) {
+                    if (!c.campo(6).isEmpty()) hc.setAntecedentes(c.campo(6));
+                    if (!c.campo(7).isEmpty()) hc.setMedicacionActual(c.campo(7));
+                    if (!c.campo(8).isEmpty()) hc.setObservaciones(c.campo(8));
+                }
+                pacienteService.actualizarTx(p, conn);
+                return new Resultado(Estado.OK, id, "");
+            }
+            case ELIMINAR: {
+                int id = Integer.parseInt(c.campo(1));
+                pacienteService.eliminarTx(id, conn);
+                return new Resultado(Estado.OK, id, "");
+            }
+            case BUSCAR_ID: {
+                int id = Integer.parseInt(c.campo(1));
+                return resultadoLectura(pacienteService.getByIdTx(id, conn));
+            }
+            case BUSCAR_DNI:
+                return resultadoLectura(pacienteService.buscarPorDniTx(c.campo(1), conn));
+            default:
+                throw new IllegalArgumentException("Operación no soportada: " + c.operacion);
+        }
+    }
+
+    private static Resultado resultadoLectura(Paciente p) {
+        if (p == null) {
+            return new Resultado(Estado.NO_ENCONTRADO, 0, "");
+        }
+        String hc = p.getHistoriaClinica() != null ? p.getHistoriaClinica().getNroHistoria() : "";
+        return new Resultado(Estado.OK, p.getId(), p.getDni() + " " + p.getApellido() + ", " + p.getNombre() + " hc=" + hc);
+    }
+
+    // --- Salida ---
+
+    private void registrar(Comando c, Resultado r, long finNanos) {
+        c.informado = true;
+        long latencia = c.inicioNanos == 0 ? 0 : finNanos - c.inicioNanos;
+        latencias.get(c.operacion).registrar(latencia);
+        switch (r.estado) {
+            case OK:
+                ok.incrementAndGet();
+                // Solo se llega con OK después del commit del comando (o de su grupo).
+                Auditor.registrar(tipoAuditoria(c.operacion), r.id, "batch linea " + c.linea);
+                break;
+            case NO_ENCONTRADO: noEncontrados.incrementAndGet(); break;
+            default: errores.incrementAndGet();
+        }
+        imprimir(c.linea, c.operacion.name(), r, latencia);
+    }
+
+    private static EventoAuditoria.Tipo tipoAuditoria(Operacion operacion) {
+        switch (operacion) {
+            case CREAR: return EventoAuditoria.Tipo.ALTA;
+            case ACTUALIZAR: return EventoAuditoria.Tipo.MODIFICACION;
+            case ELIMINAR: return EventoAuditoria.Tipo.BAJA;
+            default: return EventoAuditoria.Tipo.LECTURA;
+        }
+    }
+
+    private void imprimir(long linea, String operacion, Resultado r, long latenciaNanos) {
+        String detalle = r.detalle == null ? "" : r.detalle.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        synchronized (salida) {
+            salida.print(linea);
+            salida.print('\t');
+            salida.print(operacion);
+            salida.print('\t');
+            salida.print(r.estado.name());
+            salida.print('\t');
+            salida.print(r.id);
+            salida.print('\t');
+            salida.print(latenciaNanos / 1_000);
+            salida.print('\t');
+            salida.println(detalle);
+        }
+    }
+
+    private void imprimirResumen(long duracionNanos) {
+        long total = ok.get() + noEncontrados.get() + errores.get();
+        double segundos = duracionNanos / 1e9;
+        HistogramaLatencia global = new HistogramaLatencia();
+        synchronized (salida) {
+            salida.printf("# resumen total=%d ok=%d no_encontrados=%d errores=%d commits=%d carriles=%d grupo=%d%n",
+                    total, ok.get(), noEncontrados.get(), errores.get(), commits.get(), carriles, tamanoGrupo);
+            salida.printf("# throughput duracion=%.3fs comandos_por_seg=%.1f%n", segundos, segundos > 0 ? total / segundos : 0.0);
+            if (pacienteService.getFiltrosUnicidad() != null) {
+                salida.println("# unicidad " + pacienteService.getFiltrosUnicidad().resumen());
+            }
+            if (Auditor.estaActivo()) {
+                salida.println("# auditoria " + Auditor.getBitacora().resumen());
+            }
+            for (Map.Entry<Operacion, HistogramaLatencia> e : latencias.entrySet()) {
+                if (e.getValue().getCantidad() > 0) {
+                    salida.println("# latencia " + e.getKey() + " " + e.getValue().resumen());
+                    global.agregar(e.getValue());
+                }
+            }
+            salida.println("# latencia TOTAL " + global.resumen());
+            salida.flush();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package Main;
+
+import Service.CompresionHistorias;
+
+/**
+ * Compresión de los textos clínicos (ver Dao.CompresionTextos).
+ *
+ * Uso:
+ * <pre>
+ * java ... Main.Main --entrenar-diccionario [--muestras 5000] [--tamano 32768]
+ * java -Dhc.compresion=true ... Main.Main --comprimir-textos [--lote 500]
+ * java ... Main.Main --comprimir-textos --expandir [--lote 500]
+ * </pre>
+ */
+public class ModoCompresion {
+
+    public static void entrenar(String[] args) throws Exception {
+        int muestras = 5_000;
+        int tamano = 32 * 1024;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--muestras": muestras = Integer.parseInt(args[++i]); break;
+                case "--tamano": tamano = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+        System.out.println("# diccionario " + new CompresionHistorias().entrenar(muestras, tamano));
+    }
+
+    public static void migrar(String[] args) throws Exception {
+        int lote = 500;
+        boolean expandir = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--lote": lote = Integer.parseInt(args[++i]); break;
+                case "--expandir": expandir = true; break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+        System.out.println("# textos " + new CompresionHistorias().migrar(lote, expandir));
+    }
+}
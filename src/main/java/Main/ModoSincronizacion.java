@@ -0,0 +1,68 @@
+package Main;
+
+import Config.ShardRouter;
+import Service.SincronizadorPadron;
+import Util.LectorCsv;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sincronización con un padrón maestro externo en CSV (ver SincronizadorPadron).
+ *
+ * Uso: java ... Main.Main --sync padron.csv|- [--separador ;] [--lote 1000]
+ *      [--bajas] [--max-bajas-pct 5] [--simular]
+ *
+ * Salida (stdout): una línea de resumen con prefijo '#'. Las filas
+ * rechazadas y los lotes revertidos se informan por stderr.
+ */
+public class ModoSincronizacion {
+
+    /**
+     * Punto de entrada desde Main: args = archivo|- [opciones]
+     */
+    public static void main(String[] args) throws Exception {
+        String archivo = null;
+        char separador = ',';
+        int lote = 1000;
+        boolean bajas = false;
+        double maxBajasPct = 5.0;
+        boolean simular = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--separador": separador = args[++i].charAt(0); break;
+                case "--lote": lote = Integer.parseInt(args[++i]); break;
+                case "--bajas": bajas = true; break;
+                case "--max-bajas-pct": maxBajasPct = Double.parseDouble(args[++i]); break;
+                case "--simular": simular = true; break;
+                default:
+                    if (args[i].startsWith("--") || archivo != null) {
+                        throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+                    }
+                    archivo = args[i];
+            }
+        }
+        if (archivo == null) {
+            System.err.println("❌ Falta el archivo del padrón (o '-' para stdin).");
+            return;
+        }
+        if (ShardRouter.estaActivo()) {
+            System.err.println("❌ La sincronización no soporta -Ddb.shards: ejecutarla contra cada base por separado.");
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        InputStream in = "-".equals(archivo) ? System.in : new FileInputStream(archivo);
+        SincronizadorPadron.Resumen resumen;
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            resumen = new SincronizadorPadron(lote, bajas, maxBajasPct, simular)
+                    .sincronizar(new LectorCsv(lector, separador));
+        }
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        System.out.printf("# sync %s%s duracion_ms=%d%n", simular ? "(simulado) " : "", resumen, ms);
+    }
+}
@@ -0,0 +1,58 @@
+package Main;
+
+import Respaldo.SnapshotPacientes;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Respaldo y restauración con snapshots binarios (ver Respaldo.SnapshotPacientes).
+ *
+ * Uso:
+ * <pre>
+ * java ... Main.Main --snapshot archivo.snap [--hilos 4] [--filas-bloque 4096]
+ * java ... Main.Main --restaurar-snapshot archivo.snap [--hilos 4]
+ * </pre>
+ *
+ * Para que los lotes viajen como INSERT de varias filas conviene agregar
+ * rewriteBatchedStatements=true a -Ddb.url.
+ */
+public class ModoSnapshot {
+
+    public static void escribir(String[] args) throws Exception {
+        Opciones o = Opciones.leer(args, "--snapshot");
+        SnapshotPacientes.Resumen r = new SnapshotPacientes(o.hilos, o.filasPorBloque).escribir(o.archivo);
+        System.out.println("# snapshot " + r + " archivo=" + o.archivo);
+    }
+
+    public static void restaurar(String[] args) throws Exception {
+        Opciones o = Opciones.leer(args, "--restaurar-snapshot");
+        SnapshotPacientes.Resumen r = new SnapshotPacientes(o.hilos, o.filasPorBloque).restaurar(o.archivo);
+        System.out.println("# restauracion " + r + " archivo=" + o.archivo);
+    }
+
+    private static final class Opciones {
+        Path archivo;
+        int hilos = Math.min(4, Runtime.getRuntime().availableProcessors());
+        int filasPorBloque = 4096;
+
+        static Opciones leer(String[] args, String modo) {
+            Opciones o = new Opciones();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--hilos": o.hilos = Integer.parseInt(args[++i]); break;
+                    case "--filas-bloque": o.filasPorBloque = Integer.parseInt(args[++i]); break;
+                    default:
+                        if (args[i].startsWith("--") || o.archivo != null) {
+                            throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+                        }
+                        o.archivo = Paths.get(args[i]);
+                }
+            }
+            if (o.archivo == null) {
+                throw new IllegalArgumentException("Uso: " + modo + " archivo [--hilos N]");
+            }
+            return o;
+        }
+    }
+}
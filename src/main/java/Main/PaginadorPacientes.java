@@ -0,0 +1,142 @@
+package Main;
+
+import Util.Hilos;
+import entities.Paciente;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fuente incremental de páginas para el listado de pacientes.
+ *
+ * Pide a la BD solo la página que se va a mostrar (paginado keyset, ver
+ * PacienteDAO.getPagina), por lo que la primera página aparece enseguida
+ * aunque la tabla sea grande. Mientras el usuario lee, la página siguiente
+ * se precarga en segundo plano.
+ *
+ * Como el keyset no permite saltar directo a la página N, se recuerda el
+ * cursor (último paciente) de cada página ya visitada; un salto hacia
+ * adelante recorre las páginas intermedias una sola vez.
+ */
+public class PaginadorPacientes implements AutoCloseable {
+
+    /** Origen de datos: la página que sigue a "despuesDe" (null = primera). */
+    @FunctionalInterface
+    public interface FuentePaginada {
+        List<Paciente> pagina(Paciente despuesDe, int limite) throws Exception;
+    }
+
+    private static final int PAGINAS_EN_CACHE = 8;
+
+    private final FuentePaginada fuente;
+    private final int tamanoPagina;
+    /** cursores.get(n) = cursor con el que se pide la página n (null para la 0). */
+    private final List<Paciente> cursores = new ArrayList<>();
+    private final Map<Integer, List<Paciente>> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Paciente>> eldest) {
+            return size() > PAGINAS_EN_CACHE;
+        }
+    };
+    private final ExecutorService precarga = Executors.newSingleThreadExecutor(Hilos.fabrica("listado-precarga", true));
+    private CompletableFuture<List<Paciente>> paginaPrecargada;
+    private int nroPrecargado = -1;
+    /** Índice de la última página (la primera con menos filas que el tamaño), -1 si aún no se conoce. */
+    private int ultima = -1;
+    private int paginaActual;
+
+    public PaginadorPacientes(FuentePaginada fuente, int tamanoPagina) {
+        this.fuente = fuente;
+        this.tamanoPagina = tamanoPagina;
+        cursores.add(null);
+    }
+
+    /**
+     * Devuelve la página n (base 0). Si n supera el final, devuelve la última.
+     */
+    public synchronized List<Paciente> pagina(int n) throws Exception {
+        int objetivo = Math.max(0, n);
+        // Se arranca desde la página conocida más cercana (no desde la 0).
+        int actual = Math.min(objetivo, cursores.size() - 1);
+        List<Paciente> filas = obtener(actual);
+        while (actual < objetivo && !esUltima(actual)) {
+            actual++;
+            filas = obtener(actual);
+        }
+        if (filas.isEmpty() && actual > 0) {
+            // La página anterior estaba completa pero no había más filas.
+            ultima = actual - 1;
+            actual = ultima;
+            filas = obtener(actual);
+        }
+        paginaActual = actual;
+        precargar(actual + 1);
+        return filas;
+    }
+
+    /**
+     * Número (base 0) de la página devuelta por la última llamada a pagina().
+     */
+    public synchronized int getPaginaActual() {
+        return paginaActual;
+    }
+
+    public synchronized boolean esUltima(int n) {
+        return ultima >= 0 && n >= ultima;
+    }
+
+    @Override
+    public void close() {
+        precarga.shutdownNow();
+    }
+
+    private List<Paciente> obtener(int n) throws Exception {
+        List<Paciente> filas = cache.get(n);
+        if (filas == null) {
+            filas = (n == nroPrecargado && paginaPrecargada != null) ? esperarPrecarga() : fuente.pagina(cursores.get(n), tamanoPagina);
+            cache.put(n, filas);
+        }
+        if (filas.size() < tamanoPagina) {
+            ultima = n;
+        } else if (cursores.size() == n + 1) {
+            cursores.add(filas.get(filas.size() - 1));
+        }
+        return filas;
+    }
+
+    private void precargar(int n) {
+        if (esUltima(n - 1) || cache.containsKey(n) || n == nroPrecargado || cursores.size() <= n) {
+            return;
+        }
+        Paciente cursor = cursores.get(n);
+        nroPrecargado = n;
+        paginaPrecargada = CompletableFuture.supplyAsync(() -> {
+            try {
+                return fuente.pagina(cursor, tamanoPagina);
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }, precarga);
+    }
+
+    private List<Paciente> esperarPrecarga() throws Exception {
+        CompletableFuture<List<Paciente>> f = paginaPrecargada;
+        paginaPrecargada = null;
+        nroPrecargado = -1;
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause() instanceof IllegalStateException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            throw causa instanceof Exception ? (Exception) causa : new Exception(causa);
+        }
+    }
+}
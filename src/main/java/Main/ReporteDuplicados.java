@@ -0,0 +1,50 @@
+package Main;
+
+import Service.DetectorDuplicados;
+import Service.PacienteServiceImpl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reporte de posibles pacientes duplicados (candidatos a fusión), de mayor
+ * a menor puntaje. Recorre la tabla en streaming y compara por bloques en
+ * paralelo (ver DetectorDuplicados).
+ *
+ * Uso: java ... Main.Main --duplicados [--umbral 0.85] [--max 500]
+ *
+ * Salida (stdout, TSV): puntaje  id_a  paciente_a  id_b  paciente_b  detalle
+ */
+public class ReporteDuplicados {
+
+    /**
+     * Punto de entrada desde Main: args = [--umbral U] [--max N]
+     */
+    public static void main(String[] args) throws Exception {
+        double umbral = 0.85;
+        int maximo = 500;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--umbral": umbral = Double.parseDouble(args[++i]); break;
+                case "--max": maximo = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+
+        long inicio = System.nanoTime();
+        DetectorDuplicados detector = new PacienteServiceImpl().construirDetectorDuplicados(umbral);
+        long indexado = System.nanoTime();
+        List<DetectorDuplicados.Candidato> candidatos = detector.detectar(maximo);
+        long fin = System.nanoTime();
+
+        StringBuilder sb = new StringBuilder();
+        for (DetectorDuplicados.Candidato c : candidatos) {
+            sb.append(String.format("%.3f\t%d\t%s\t%d\t%s\t%s%n",
+                    c.getPuntaje(), c.getIdA(), c.describirA(), c.getIdB(), c.describirB(), c.getMotivo()));
+        }
+        System.out.print(sb);
+        System.out.printf("# pacientes=%d candidatos=%d indexado_ms=%d comparacion_ms=%d umbral=%.2f%n",
+                detector.getCantidad(), candidatos.size(),
+                TimeUnit.NANOSECONDS.toMillis(indexado - inicio), TimeUnit.NANOSECONDS.toMillis(fin - indexado), umbral);
+    }
+}
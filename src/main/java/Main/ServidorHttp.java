@@ -0,0 +1,638 @@
+package Main;
+
+import Auditoria.Auditor;
+import Auditoria.BitacoraAuditoria;
+import Config.Compartimento;
+import Config.DatabaseConnection;
+import Config.LimitadorConcurrencia;
+import Config.LimitesConcurrencia;
+import Config.PoolConexiones;
+import Config.ShardRouter;
+import Service.ArchivadorBajas;
+import Service.CachePacientes;
+import Service.CoherenciaCache;
+import Service.DeltaPacientes;
+import Service.EscrituraDiferida;
+import Service.FiltrosUnicidad;
+import Service.PacienteServiceImpl;
+import Util.Apagado;
+import Util.HistogramaLatencia;
+import Util.Hilos;
+import Util.JsonReader;
+import Util.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import entities.HistoriaClinica;
+import entities.HistoriaClinica.GrupoSanguineo;
+import entities.Paciente;
+import exceptions.SaturacionServiceException;
+import exceptions.ServiceException;
+import exceptions.TimeoutServiceException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * API HTTP/JSON liviana sobre PacienteServiceImpl, para que otras
+ * aplicaciones internas consulten pacientes sin pasar por el menú.
+ *
+ * Usa el HttpServer incluido en el JDK. Cada solicitud se atiende en un
+ * hilo virtual si la JVM lo soporta (21+), o en un pool fijo de hilos de
+ * plataforma en Java 17 (ver Util.Hilos).
+ *
+ * Endpoints:
+ * <pre>
+ * GET    /pacientes/{id}                         -> getById
+ * GET    /pacientes?dni=...                      -> buscarPorDni
+ * GET    /pacientes?limite=50[&apellido=&nombre=&id=]  -> página (keyset, ver "siguiente")
+ * GET    /pacientes/cambios?desde=&limite=500    -> cambios y bajas desde la marca (réplicas, ver DeltaPacientes)
+ * POST   /pacientes                              -> insertar (Paciente + HC)
+ * PUT    /pacientes/{id}                         -> actualizar (solo los campos enviados)
+ * DELETE /pacientes/{id}                         -> baja lógica
+ * GET    /metricas                               -> latencia por endpoint, estado del pool, cache y límites
+ * </pre>
+ *
+ * Con la auditoría activa (-Dauditoria.dir), el usuario de cada evento es
+ * el del encabezado X-Usuario o, si falta, la dirección IP del cliente.
+ *
+ * Con -Darchivo.periodoMin=N (> 0) se archivan en segundo plano, cada N
+ * minutos, los pacientes dados de baja hace más de -Darchivo.dias (365),
+ * en lotes de -Darchivo.lote (200) con ciclo de trabajo -Darchivo.ciclo (0.25).
+ *
+ * Las respuestas se escriben con JsonWriter directamente sobre el stream
+ * de la respuesta (chunked), por lo que la conexión se mantiene viva
+ * (keep-alive de HTTP/1.1) entre solicitudes del mismo cliente.
+ *
+ * Para throughput real conviene activar el pool: -Ddb.pool.max=N. Con
+ * -Ddb.limite=true, cuando la BD se satura las solicitudes se rechazan en
+ * seguida con 503 en lugar de acumularse (ver Config.LimitadorConcurrencia).
+ *
+ * Uso: java ... Main.Main --http [--puerto 8080] [--hilos 64] [--max-cuerpo 65536]
+ */
+public class ServidorHttp {
+
+    private static final String BASE = "/pacientes";
+
+    @FunctionalInterface
+    private interface Cuerpo {
+        void escribir(JsonWriter w) throws IOException;
+    }
+
+    /** Error con código HTTP asociado (400, 404, 413...). */
+    private static final class ErrorHttp extends Exception {
+        private static final long serialVersionUID = 1L;
+        final int estado;
+
+        ErrorHttp(int estado, String mensaje) {
+            super(mensaje);
+            this.estado = estado;
+        }
+    }
+
+    private final PacienteServiceImpl pacienteService = new PacienteServiceImpl();
+    private final int maxCuerpo;
+    private final Map<String, HistogramaLatencia> latencias = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicLong> respuestasPorEstado = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService ejecutor;
+    private ArchivadorBajas archivador;
+
+    public ServidorHttp(int maxCuerpo) {
+        this.maxCuerpo = maxCuerpo;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int puerto = 8080;
+        int hilos = 64;
+        int maxCuerpo = 64 * 1024;
+        boolean numerosValidos = true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--puerto": puerto = Integer.parseInt(args[++i]); break;
+                    case "--hilos": hilos = Integer.parseInt(args[++i]); break;
+                    case "--max-cuerpo": maxCuerpo = Integer.parseInt(args[++i]); break;
+                    default: throw new IllegalArgumentException("Argumento desconocido: " + args[i]);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            numerosValidos = false;
+        }
+        if (!numerosValidos || puerto < 0 || puerto > 65535 || hilos < 1 || maxCuerpo < 0) {
+            System.err.println("❌ Uso: --http [--puerto 0-65535] [--hilos N>=1] [--max-cuerpo BYTES]");
+            return;
+        }
+        ServidorHttp servidor = new ServidorHttp(maxCuerpo);
+        servidor.iniciar(puerto, hilos);
+        Apagado.alApagar(Apagado.Fase.ENTRADA, servidor::detener);
+        System.out.println("✅ API HTTP escuchando en el puerto " + puerto
+                + (Hilos.hayHilosVirtuales() ? " (hilos virtuales)" : " (" + hilos + " hilos)"));
+    }
+
+    public void iniciar(int puerto, int hilos) throws IOException {
+        // Parámetros de keep-alive del HttpServer del JDK (se leen al crear el primer servidor).
+        System.getProperties().putIfAbsent("sun.net.httpserver.maxIdleConnections", "1000");
+        System.getProperties().putIfAbsent("sun.net.httpserver.idleInterval", "30");
+
+        server = HttpServer.create(new InetSocketAddress(puerto), 1024);
+        ejecutor = Hilos.porTarea("http", hilos);
+        server.setExecutor(ejecutor);
+        server.createContext(BASE, this::manejarPacientes);
+        server.createContext("/metricas", this::manejarMetricas);
+        server.start();
+
+        long periodoArchivoMin = Long.getLong("archivo.periodoMin", 0L);
+        if (periodoArchivoMin > 0) {
+            archivador = new ArchivadorBajas(Integer.getInteger("archivo.dias", 365), Integer.getInteger("archivo.lote", 200),
+                    Double.parseDouble(System.getProperty("archivo.ciclo", "0.25")), 50);
+            archivador.iniciar(periodoArchivoMin);
+        }
+    }
+
+    public void detener() {
+        if (server != null) {
+            server.stop(1);
+            ejecutor.shutdown();
+            if (archivador != null) {
+                archivador.detener();
+            }
+        }
+    }
+
+    // --- /pacientes ---
+
+    private void manejarPacientes(HttpExchange ex) {
+        long inicio = System.nanoTime();
+        String endpoint = ex.getRequestMethod() + " " + BASE;
+        int estado = 500;
+        try {
+            String usuario = ex.getRequestHeaders().getFirst("X-Usuario");
+            Auditor.setUsuario(usuario != null && !usuario.isEmpty() ? usuario
+                    : ex.getRemoteAddress().getAddress().getHostAddress());
+            String metodo = ex.getRequestMethod();
+            String resto = ex.getRequestURI().getPath().substring(BASE.length());
+            if (resto.isEmpty() || resto.equals("/")) {
+                Map<String, String> query = parsearQuery(ex.getRequestURI().getRawQuery());
+                if (metodo.equals("GET") && query.containsKey("dni")) {
+                    endpoint = "GET /pacientes?dni";
+                    estado = buscarPorDni(ex, query.get("dni"));
+                } else if (metodo.equals("GET")) {
+                    estado = listar(ex, query);
+                } else if (metodo.equals("POST")) {
+                    estado = crear(ex);
+                } else {
+                    throw new ErrorHttp(405, "Método no permitido");
+                }
+            } else if (resto.equals("/cambios")) {
+                endpoint = metodo + " " + BASE + "/cambios";
+                if (!metodo.equals("GET")) {
+                    throw new ErrorHttp(405, "Método no permitido");
+                }
+                estado = cambios(ex, parsearQuery(ex.getRequestURI().getRawQuery()));
+            } else {
+                endpoint = metodo + " " + BASE + "/{id}";
+                int id = parsearId(resto.substring(1));
+                switch (metodo) {
+                    case "GET": estado = obtener(ex, id); break;
+                    case "PUT": estado = actualizar(ex, id); break;
+                    case "DELETE": estado = eliminar(ex, id); break;
+                    default: throw new ErrorHttp(405, "Método no permitido");
+                }
+            }
+        } catch (ErrorHttp e) {
+            estado = responderError(ex, e.estado, e.getMessage());
+        } catch (ServiceException e) {
+            estado = responderError(ex, estadoPara(e), e.getMessage());
+        } catch (Exception e) {
+            estado = responderError(ex, 500, e.getMessage());
+        } finally {
+            Auditor.setUsuario(null);
+            ex.close();
+            registrar(endpoint, estado, System.nanoTime() - inicio);
+        }
+    }
+
+    private int obtener(HttpExchange ex, int id) throws Exception {
+        Paciente p = pacienteService.getById(id);
+        if (p == null) {
+            throw new ErrorHttp(404, "Paciente no encontrado: " + id);
+        }
+        return responder(ex, 200, w -> escribirPaciente(w, p));
+    }
+
+    private int buscarPorDni(HttpExchange ex, String dni) throws Exception {
+        Paciente p = pacienteService.buscarPorDni(dni);
+        if (p == null) {
+            throw new ErrorHttp(404, "No existe un paciente activo con DNI " + dni);
+        }
+        return responder(ex, 200, w -> escribirPaciente(w, p));
+    }
+
+    private int listar(HttpExchange ex, Map<String, String> query) throws Exception {
+        int limite = query.containsKey("limite") ? parsearEntero(query.get("limite"), "limite") : 50;
+        Paciente despuesDe = null;
+        if (query.containsKey("id")) {
+            despuesDe = new Paciente();
+            despuesDe.setId(parsearEntero(query.get("id"), "id"));
+            despuesDe.setApellido(query.getOrDefault("apellido", ""));
+            despuesDe.setNombre(query.getOrDefault("nombre", ""));
+        }
+        List<Paciente> pagina = pacienteService.getPagina(despuesDe, limite);
+        return responder(ex, 200, w -> {
+            w.inicioObjeto().nombre("pacientes").inicioArreglo();
+            for (Paciente p : pagina) {
+                escribirPaciente(w, p);
+            }
+            w.finArreglo().nombre("siguiente");
+            if (pagina.size() < limite) {
+                w.nulo();
+            } else {
+                Paciente ultimo = pagina.get(pagina.size() - 1);
+                w.inicioObjeto()
+                        .nombre("apellido").valor(ultimo.getApellido())
+                        .nombre("nombre").valor(ultimo.getNombre())
+                        .nombre("id").valor(ultimo.getId())
+                        .finObjeto();
+            }
+            w.finObjeto();
+        });
+    }
+
+    private int cambios(HttpExchange ex, Map<String, String> query) throws Exception {
+        int limite = query.containsKey("limite") ? parsearEntero(query.get("limite"), "limite") : 500;
+        DeltaPacientes delta = pacienteService.cambiosDesde(query.get("desde"), limite);
+        return responder(ex, 200, w -> {
+            w.inicioObjeto().nombre("pacientes").inicioArreglo();
+            for (Paciente p : delta.getCambios()) {
+                escribirPaciente(w, p);
+            }
+            w.finArreglo().nombre("eliminados").inicioArreglo();
+            for (int id : delta.getEliminados()) {
+                w.valor(id);
+            }
+            w.finArreglo()
+                    .nombre("siguiente").valor(delta.getSiguiente())
+                    .nombre("completo").valor(delta.isCompleto())
+                    .finObjeto();
+        });
+    }
+
+    private int crear(HttpExchange ex) throws Exception {
+        Map<String, Object> json = leerCuerpo(ex);
+        Paciente p = new Paciente();
+        p.setHistoriaClinica(new HistoriaClinica());
+        aplicarCampos(p, json);
+        pacienteService.insertar(p);
+        return responder(ex, 201, w -> escribirPaciente(w, p));
+    }
+
+    private int actualizar(HttpExchange ex, int id) throws Exception {
+        Map<String, Object> json = leerCuerpo(ex);
+        Paciente p = pacienteService.getById(id);
+        if (p == null) {
+            throw new ErrorHttp(404, "Paciente no encontrado: " + id);
+        }
+        aplicarCampos(p, json);
+        pacienteService.actualizar(p);
+        return responder(ex, 200, w -> escribirPaciente(w, p));
+    }
+
+    private int eliminar(HttpExchange ex, int id) throws Exception {
+        pacienteService.eliminar(id);
+        ex.sendResponseHeaders(204, -1);
+        return 204;
+    }
+
+    // --- /metricas ---
+
+    private void manejarMetricas(HttpExchange ex) {
+        int estado = 500;
+        try {
+            estado = responder(ex, 200, w -> {
+                w.inicioObjeto().nombre("endpoints").inicioObjeto();
+                for (Map.Entry<String, HistogramaLatencia> e : latencias.entrySet()) {
+                    HistogramaLatencia h = e.getValue();
+                    w.nombre(e.getKey()).inicioObjeto()
+                            .nombre("n").valor(h.getCantidad())
+                            .nombre("prom_us").valor(h.getPromedio() / 1_000.0)
+                            .nombre("p50_us").valor(h.percentil(50) / 1_000)
+                            .nombre("p90_us").valor(h.percentil(90) / 1_000)
+                            .nombre("p99_us").valor(h.percentil(99) / 1_000)
+                            .nombre("max_us").valor(h.getMaximo() / 1_000)
+                            .finObjeto();
+                }
+                w.finObjeto().nombre("respuestas").inicioObjeto();
+                for (Map.Entry<Integer, AtomicLong> e : respuestasPorEstado.entrySet()) {
+                    w.nombre(String.valueOf(e.getKey())).valor(e.getValue().get());
+                }
+                w.finObjeto();
+                PoolConexiones pool = DatabaseConnection.getPool();
+                w.nombre("pool");
+                if (pool == null) {
+                    w.nulo();
+                } else {
+                    w.inicioObjeto()
+                            .nombre("maximo").valor(pool.getMaximo())
+                            .nombre("en_uso").valor(pool.getEnUso())
+                            .nombre("libres").valor(pool.getLibres())
+                            .nombre("en_espera").valor(pool.getEnEspera())
+                            .finObjeto();
+                }
+                FiltrosUnicidad filtros = pacienteService.getFiltrosUnicidad();
+                w.nombre("unicidad");
+                if (filtros == null) {
+                    w.nulo();
+                } else {
+                    w.inicioObjeto()
+                            .nombre("activo").valor(filtros.estaActivo())
+                            .nombre("consultas").valor(filtros.getConsultas())
+                            .nombre("descartes_rapidos").valor(filtros.getDescartesRapidos())
+                            .nombre("verificaciones_bd").valor(filtros.getVerificacionesEnBd())
+                            .nombre("duplicados_evitados").valor(filtros.getDuplicadosEvitados())
+                            .nombre("falsos_positivos").valor(filtros.getFalsosPositivos())
+                            .nombre("fp_observada").valor(filtros.tasaFalsosPositivosObservada())
+                            .nombre("fp_estimada").valor(filtros.tasaFalsosPositivosEstimada())
+                            .nombre("reconstrucciones").valor(filtros.getReconstrucciones())
+                            .finObjeto();
+                }
+                CachePacientes cache = pacienteService.getCache();
+                CoherenciaCache coherencia = pacienteService.getCoherenciaCache();
+                w.nombre("cache");
+                if (cache == null) {
+                    w.nulo();
+                } else {
+                    w.inicioObjeto()
+                            .nombre("tamano").valor(cache.tamano())
+                            .nombre("capacidad").valor(cache.getCapacidad())
+                            .nombre("aciertos").valor(cache.getAciertos())
+                            .nombre("fallos").valor(cache.getFallos())
+                            .nombre("invalidaciones").valor(cache.getInvalidaciones())
+                            .nombre("descartes").valor(cache.getDescartes())
+                            .nombre("sondeos").valor(coherencia.getPasadas())
+                            .nombre("cambios_remotos").valor(coherencia.getCambiosAplicados())
+                            .nombre("vaciados").valor(coherencia.getVaciados())
+                            .nombre("errores_sondeo").valor(coherencia.getErrores())
+                            .finObjeto();
+                }
+                EscrituraDiferida diferida = pacienteService.getEscrituraDiferida();
+                w.nombre("escritura_diferida");
+                if (diferida == null) {
+                    w.nulo();
+                } else {
+                    w.inicioObjeto()
+                            .nombre("pendientes").valor(diferida.tamano())
+                            .nombre("encoladas").valor(diferida.getEncoladas())
+                            .nombre("combinadas").valor(diferida.getCombinadas())
+                            .nombre("lotes").valor(diferida.getLotes())
+                            .nombre("escritas").valor(diferida.getEscritas())
+                            .nombre("rechazadas").valor(diferida.getRechazadas())
+                            .nombre("errores").valor(diferida.getErrores())
+                            .finObjeto();
+                }
+                w.nombre("archivo");
+                if (archivador == null) {
+                    w.nulo();
+                } else {
+                    w.inicioObjeto()
+                            .nombre("archivados").valor(archivador.getArchivados())
+                            .nombre("lotes").valor(archivador.getLotes())
+                            .nombre("reintentos").valor(archivador.getReintentos())
+                            .nombre("restaurados").valor(archivador.getRestaurados())
+                            .finObjeto();
+                }
+                escribirLimites(w);
+                BitacoraAuditoria bitacora = Auditor.getBitacora();
+                w.nombre("auditoria");
+                if (bitacora == null) {
+                    w.nulo();
+                } else {
+                    w.inicioObjeto()
+                            .nombre("encolados").valor(bitacora.getEncolados())
+                            .nombre("escritos").valor(bitacora.getEscritos())
+                            .nombre("pendientes").valor(bitacora.getPendientes())
+                            .nombre("perdidos").valor(bitacora.getPerdidos())
+                            .nombre("forces").valor(bitacora.getForces())
+                            .nombre("rotaciones").valor(bitacora.getRotaciones())
+                            .nombre("segmento").valor(bitacora.getSegmentoActivo())
+                            .finObjeto();
+                }
+                w.finObjeto();
+            });
+        } catch (Exception e) {
+            estado = responderError(ex, 500, e.getMessage());
+        } finally {
+            ex.close();
+        }
+    }
+
+    /**
+     * "limites": por compartimento (o por shard y compartimento), o null si
+     * -Ddb.limite no está activo.
+     */
+    private static void escribirLimites(JsonWriter w) throws IOException {
+        w.nombre("limites");
+        if (ShardRouter.estaActivo()) {
+            if (ShardRouter.getLimites(0) == null) {
+                w.nulo();
+                return;
+            }
+            w.inicioObjeto();
+            for (int s = 0; s < ShardRouter.getCantidad(); s++) {
+                w.nombre("shard" + s);
+                escribirLimites(w, ShardRouter.getLimites(s));
+            }
+            w.finObjeto();
+        } else if (DatabaseConnection.getLimites() == null) {
+            w.nulo();
+        } else {
+            escribirLimites(w, DatabaseConnection.getLimites());
+        }
+    }
+
+    private static void escribirLimites(JsonWriter w, LimitesConcurrencia limites) throws IOException {
+        w.inicioObjeto();
+        for (Compartimento c : Compartimento.values()) {
+            LimitadorConcurrencia l = limites.get(c);
+            w.nombre(l.getNombre()).inicioObjeto()
+                    .nombre("limite").valor(l.getLimite())
+                    .nombre("en_curso").valor(l.getEnCurso())
+                    .nombre("en_cola").valor(l.getEnCola())
+                    .nombre("rechazos").valor(l.getRechazos())
+                    .nombre("bajas").valor(l.getBajas())
+                    .nombre("latencia_base_us").valor(l.getLatenciaBaseMicros())
+                    .finObjeto();
+        }
+        w.finObjeto();
+    }
+
+    private void registrar(String endpoint, int estado, long nanos) {
+        latencias.computeIfAbsent(endpoint, k -> new HistogramaLatencia()).registrar(nanos);
+        respuestasPorEstado.computeIfAbsent(estado, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    // --- Entrada ---
+
+    /**
+     * Lee el cuerpo respetando el límite de tamaño (413 si se excede, tanto
+     * por Content-Length declarado como por bytes efectivamente recibidos).
+     * Un Content-Length que no es un número válido es un 400.
+     */
+    private Map<String, Object> leerCuerpo(HttpExchange ex) throws IOException, ErrorHttp {
+        String declarado = ex.getRequestHeaders().getFirst("Content-Length");
+        if (declarado != null) {
+            long largo;
+            try {
+                largo = Long.parseLong(declarado.trim());
+            } catch (NumberFormatException e) {
+                throw new ErrorHttp(400, "Content-Length inválido: " + declarado);
+            }
+            if (largo < 0) {
+                throw new ErrorHttp(400, "Content-Length inválido: " + declarado);
+            }
+            if (largo > maxCuerpo) {
+                throw new ErrorHttp(413, "El cuerpo supera el máximo de " + maxCuerpo + " bytes");
+            }
+        }
+        byte[] datos;
+        try (InputStream in = ex.getRequestBody()) {
+            datos = in.readNBytes(maxCuerpo + 1);
+        }
+        if (datos.length > maxCuerpo) {
+            throw new ErrorHttp(413, "El cuerpo supera el máximo de " + maxCuerpo + " bytes");
+        }
+        try {
+            return JsonReader.parsearObjeto(new String(datos, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ErrorHttp(400, e.getMessage());
+        }
+    }
+
+    /**
+     * Copia al paciente solo los campos presentes en el JSON (PUT parcial).
+     */
+    @SuppressWarnings("unchecked")
+    private static void aplicarCampos(Paciente p, Map<String, Object> json) throws ErrorHttp {
+        try {
+            if (json.containsKey("nombre")) p.setNombre((String) json.get("nombre"));
+            if (json.containsKey("apellido")) p.setApellido((String) json.get("apellido"));
+            if (json.containsKey("dni")) p.setDni((String) json.get("dni"));
+            if (json.containsKey("fechaNacimiento")) {
+                String f = (String) json.get("fechaNacimiento");
+                p.setFechaNacimiento(f == null || f.isEmpty() ? null : LocalDate.parse(f));
+            }
+            Object hcJson = json.get("historiaClinica");
+            if (hcJson instanceof Map && p.getHistoriaClinica() != null) {
+                Map<String, Object> m = (Map<String, Object>) hcJson;
+                HistoriaClinica hc = p.getHistoriaClinica();
+                if (m.containsKey("nroHistoria")) hc.setNroHistoria((String) m.get("nroHistoria"));
+                if (m.containsKey("grupoSanguineo")) hc.setGrupoSanguineo(GrupoSanguineo.desdeSimbolo((String) m.get("grupoSanguineo")));
+                if (m.containsKey("antecedentes")) hc.setAntecedentes((String) m.get("antecedentes"));
+                if (m.containsKey("medicacionActual")) hc.setMedicacionActual((String) m.get("medicacionActual"));
+                if (m.containsKey("observaciones")) hc.setObservaciones((String) m.get("observaciones"));
+            }
+        } catch (ClassCastException | DateTimeParseException e) {
+            throw new ErrorHttp(400, "Tipo o formato de campo inválido: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new ErrorHttp(400, e.getMessage());
+        }
+    }
+
+    private static Map<String, String> parsearQuery(String raw) {
+        Map<String, String> query = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return query;
+        }
+        for (String par : raw.split("&")) {
+            int eq = par.indexOf('=');
+            String k = eq < 0 ? par : par.substring(0, eq);
+            String v = eq < 0 ? "" : par.substring(eq + 1);
+            query.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static int parsearId(String s) throws ErrorHttp {
+        return parsearEntero(s, "id");
+    }
+
+    private static int parsearEntero(String s, String campo) throws ErrorHttp {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new ErrorHttp(400, "El parámetro '" + campo + "' debe ser un entero: " + s);
+        }
+    }
+
+    /**
+     * 409 para violaciones de unicidad (MySQL 1062), 400 para validaciones
+     * de negocio sin causa técnica, 500 para el resto.
+     */
+    private static int estadoPara(ServiceException e) {
+        if (e instanceof TimeoutServiceException || e instanceof SaturacionServiceException) {
+            return 503; // plazo vencido o BD saturada: el cliente debe reintentar más tarde, no en seguida
+        }
+        if (e.getCause() instanceof SQLException && ((SQLException) e.getCause()).getErrorCode() == 1062) {
+            return 409;
+        }
+        return e.getCause() == null ? 400 : 500;
+    }
+
+    // --- Salida ---
+
+    private int responder(HttpExchange ex, int estado, Cuerpo cuerpo) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(estado, 0); // 0 = chunked: se escribe sin conocer el largo
+        OutputStream out = ex.getResponseBody();
+        JsonWriter w = new JsonWriter(out);
+        cuerpo.escribir(w);
+        w.flush();
+        out.close();
+        return estado;
+    }
+
+    private int responderError(HttpExchange ex, int estado, String mensaje) {
+        try {
+            return responder(ex, estado, w -> w.inicioObjeto().nombre("error").valor(mensaje).finObjeto());
+        } catch (IOException | IllegalStateException e) {
+            // Los encabezados ya se habían enviado o el cliente cortó la conexión.
+            return estado;
+        }
+    }
+
+    static void escribirPaciente(JsonWriter w, Paciente p) throws IOException {
+        w.inicioObjeto()
+                .nombre("id").valor(p.getId())
+                .nombre("nombre").valor(p.getNombre())
+                .nombre("apellido").valor(p.getApellido())
+                .nombre("dni").valor(p.getDni())
+                .nombre("fechaNacimiento").valor(p.getFechaNacimiento() != null ? p.getFechaNacimiento().toString() : null)
+                .nombre("historiaClinica");
+        HistoriaClinica hc = p.getHistoriaClinica();
+        if (hc == null) {
+            w.nulo();
+        } else {
+            w.inicioObjeto()
+                    .nombre("id").valor(hc.getId())
+                    .nombre("nroHistoria").valor(hc.getNroHistoria())
+                    .nombre("grupoSanguineo").valor(hc.getGrupoSanguineo() != null ? hc.getGrupoSanguineo().getSimbolo() : null)
+                    .nombre("antecedentes").valor(hc.getAntecedentes())
+                    .nombre("medicacionActual").valor(hc.getMedicacionActual())
+                    .nombre("observaciones").valor(hc.getObservaciones())
+                    .finObjeto();
+        }
+        w.finObjeto();
+    }
+}
@@ -0,0 +1,153 @@
+package Main;
+
+import entities.HistoriaClinica;
+import entities.Paciente;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Renderizador de pacientes en tabla de columnas fijas para la consola.
+ *
+ * En lugar de un System.out.println(p) por fila (una escritura sincrónica
+ * con flush automático + concatenación en Paciente.toString()), cada página
+ * se formatea en un StringBuilder reutilizable y se escribe de una sola vez
+ * a través de un BufferedWriter grande, con un único flush por página.
+ */
+public class TablaPacientes {
+
+    private static final int[] ANCHOS = {7, 20, 20, 12, 10, 12, 5};
+    private static final String[] TITULOS = {"ID", "Apellido", "Nombre", "DNI", "Nacim.", "Nro. HC", "Grupo"};
+    private static final int TAMANO_CHUNK = 32 * 1024;
+
+    private final Writer salida;
+    private final StringBuilder buffer = new StringBuilder(TAMANO_CHUNK + 512);
+    private char[] chars = new char[TAMANO_CHUNK + 512];
+    private final char[] fecha = new char[10];
+
+    public TablaPacientes(PrintStream consola) {
+        this.salida = new BufferedWriter(new OutputStreamWriter(consola, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /**
+     * Escribe una página completa (encabezado, filas y pie) y hace flush.
+     *
+     * @param filas Pacientes de la página
+     * @param pie Texto del pie (p. ej. "Página 3"), o null
+     */
+    public void renderizar(List<Paciente> filas, String pie) throws IOException {
+        buffer.setLength(0);
+        separador();
+        for (int i = 0; i < TITULOS.length; i++) {
+            celda(TITULOS[i], ANCHOS[i], false);
+        }
+        buffer.append('\n');
+        separador();
+        for (Paciente p : filas) {
+            fila(p);
+            if (buffer.length() >= TAMANO_CHUNK) {
+                volcar();
+            }
+        }
+        separador();
+        if (pie != null) {
+            buffer.append(pie).append('\n');
+        }
+        volcar();
+        salida.flush();
+    }
+
+    private void fila(Paciente p) {
+        celdaNumero(p.getId(), ANCHOS[0]);
+        celda(p.getApellido(), ANCHOS[1], false);
+        celda(p.getNombre(), ANCHOS[2], false);
+        celda(p.getDni(), ANCHOS[3], false);
+        celdaFecha(p.getFechaNacimiento(), ANCHOS[4]);
+        HistoriaClinica hc = p.getHistoriaClinica();
+        celda(hc != null ? hc.getNroHistoria() : "-", ANCHOS[5], false);
+        celda(hc != null && hc.getGrupoSanguineo() != null ? hc.getGrupoSanguineo().getSimbolo() : "-", ANCHOS[6], false);
+        buffer.append('\n');
+    }
+
+    /** Agrega "valor" ajustado al ancho: recorta con '…' o rellena con espacios. */
+    private void celda(String valor, int ancho, boolean alinearDerecha) {
+        String v = valor == null ? "" : valor;
+        buffer.append(' ');
+        if (v.length() > ancho) {
+            buffer.append(v, 0, ancho - 1).append('…');
+        } else {
+            int relleno = ancho - v.length();
+            if (alinearDerecha) {
+                espacios(relleno);
+                buffer.append(v);
+            } else {
+                buffer.append(v);
+                espacios(relleno);
+            }
+        }
+        buffer.append(" |");
+    }
+
+    private void celdaNumero(int valor, int ancho) {
+        int digitos = valor <= 0 ? 1 : (int) Math.log10(valor) + 1;
+        buffer.append(' ');
+        espacios(Math.max(0, ancho - digitos));
+        buffer.append(valor);
+        buffer.append(" |");
+    }
+
+    private void celdaFecha(LocalDate f, int ancho) {
+        if (f == null) {
+            celda("-", ancho, false);
+            return;
+        }
+        // AAAA-MM-DD sin pasar por LocalDate.toString()
+        int anio = f.getYear();
+        fecha[0] = (char) ('0' + anio / 1000 % 10);
+        fecha[1] = (char) ('0' + anio / 100 % 10);
+        fecha[2] = (char) ('0' + anio / 10 % 10);
+        fecha[3] = (char) ('0' + anio % 10);
+        fecha[4] = '-';
+        fecha[5] = (char) ('0' + f.getMonthValue() / 10);
+        fecha[6] = (char) ('0' + f.getMonthValue() % 10);
+        fecha[7] = '-';
+        fecha[8] = (char) ('0' + f.getDayOfMonth() / 10);
+        fecha[9] = (char) ('0' + f.getDayOfMonth() % 10);
+        buffer.append(' ').append(fecha, 0, 10);
+        espacios(ancho - 10);
+        buffer.append(" |");
+    }
+
+    private void separador() {
+        for (int ancho : ANCHOS) {
+            for (int i = 0; i < ancho + 2; i++) {
+                buffer.append('-');
+            }
+            buffer.append('+');
+        }
+        buffer.append('\n');
+    }
+
+    private void espacios(int n) {
+        for (int i = 0; i < n; i++) {
+            buffer.append(' ');
+        }
+    }
+
+    private void volcar() throws IOException {
+        // Se copia a un char[] reutilizable: Writer.append(buffer) haría un toString() por volcado.
+        int n = buffer.length();
+        if (n > chars.length) {
+            chars = new char[n];
+        }
+        buffer.getChars(0, n, chars, 0);
+        salida.write(chars, 0, n);
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,398 @@
+package Respaldo;
+
+import Dao.SnapshotDAO;
+import entities.HistoriaClinica;
+import entities.HistoriaClinica.GrupoSanguineo;
+import entities.Paciente;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codificación de un bloque del snapshot: un grupo de filas que se
+ * codifica y decodifica sin depender de los demás bloques (cada uno con su
+ * diccionario), así varios hilos pueden trabajar a la vez.
+ *
+ * Marco en el archivo (enteros big-endian):
+ * <pre>
+ * u8  tipo (1 = bloque; 0 = fin del archivo, ver SnapshotPacientes)
+ * int cantidad de filas
+ * int largo de la sección de datos
+ * int largo de la sección de textos sin comprimir
+ * int largo de la sección de textos comprimida
+ * int CRC-32C de ambas secciones (tal como están en el archivo)
+ * datos, textos comprimidos
+ * </pre>
+ *
+ * Datos: diccionario de nombres y apellidos (varint n + cadenas) y por fila:
+ * delta del ID (zigzag), banderas, índices de nombre y apellido, DNI,
+ * fecha de nacimiento en días desde 1970 (zigzag), baja en ms desde 1970 y,
+ * si tiene HC, delta de su ID, Nro. HC y ordinal del grupo sanguíneo.
+ * Textos (Deflater): antecedentes, medicación y observaciones de cada HC.
+ * Las cadenas van como varint (largo + 1, 0 = null) seguido de UTF-8.
+ */
+final class BloqueSnapshot {
+
+    static final int TIPO_FIN = 0;
+    static final int TIPO_BLOQUE = 1;
+
+    private static final int ELIMINADO = 1;
+    private static final int CON_FECHA = 1 << 1;
+    private static final int CON_BAJA = 1 << 2;
+    private static final int CON_HC = 1 << 3;
+    private static final int HC_ELIMINADA = 1 << 4;
+    private static final int SIN_GRUPO = 0xFF;
+
+    /** Bloque leído del archivo, todavía sin verificar ni decodificar. */
+    static final class Crudo {
+        final long numero;
+        final int cantidad;
+        final int largoDatos;
+        final int largoTextos;
+        final int crc;
+        final byte[] cuerpo;
+
+        Crudo(long numero, int cantidad, int largoDatos, int largoTextos, int crc, byte[] cuerpo) {
+            this.numero = numero;
+            this.cantidad = cantidad;
+            this.largoDatos = largoDatos;
+            this.largoTextos = largoTextos;
+            this.crc = crc;
+            this.cuerpo = cuerpo;
+        }
+    }
+
+    private BloqueSnapshot() {
+    }
+
+    /**
+     * @return Marco completo, listo para escribir en el archivo
+     */
+    static byte[] codificar(List<SnapshotDAO.Fila> filas) {
+        Map<String, Integer> diccionario = new HashMap<>();
+        List<String> nombres = new ArrayList<>();
+        for (SnapshotDAO.Fila f : filas) {
+            for (String s : new String[] {f.paciente.getNombre(), f.paciente.getApellido()}) {
+                if (s != null && diccionario.putIfAbsent(s, nombres.size()) == null) {
+                    nombres.add(s);
+                }
+            }
+        }
+
+        Buffer datos = new Buffer(filas.size() * 32);
+        Buffer textos = new Buffer(filas.size() * 64);
+        datos.varint(nombres.size());
+        for (String s : nombres) {
+            datos.cadena(s);
+        }
+        long idAnterior = 0;
+        long hcAnterior = 0;
+        for (SnapshotDAO.Fila f : filas) {
+            Paciente p = f.paciente;
+            HistoriaClinica hc = p.getHistoriaClinica();
+            int banderas = (p.isEliminado() ? ELIMINADO : 0)
+                    | (p.getFechaNacimiento() != null ? CON_FECHA : 0)
+                    | (f.eliminadoEn != null ? CON_BAJA : 0)
+                    | (hc != null ? CON_HC : 0)
+                    | (hc != null && hc.isEliminado() ? HC_ELIMINADA : 0);
+            datos.zigzag(p.getId() - idAnterior);
+            idAnterior = p.getId();
+            datos.u8(banderas);
+            datos.varint(p.getNombre() == null ? 0 : diccionario.get(p.getNombre()) + 1);
+            datos.varint(p.getApellido() == null ? 0 : diccionario.get(p.getApellido()) + 1);
+            datos.cadena(p.getDni());
+            if (p.getFechaNacimiento() != null) {
+                datos.zigzag(p.getFechaNacimiento().toEpochDay());
+            }
+            if (f.eliminadoEn != null) {
+                datos.zigzag(f.eliminadoEn.getTime());
+            }
+            if (hc != null) {
+                datos.zigzag(hc.getId() - hcAnterior);
+                hcAnterior = hc.getId();
+                datos.cadena(hc.getNroHistoria());
+                datos.u8(hc.getGrupoSanguineo() != null ? hc.getGrupoSanguineo().ordinal() : SIN_GRUPO);
+                textos.cadena(hc.getAntecedentes());
+                textos.cadena(hc.getMedicacionActual());
+                textos.cadena(hc.getObservaciones());
+            }
+        }
+
+        byte[] comprimidos = comprimir(textos.bytes, textos.largo);
+        CRC32C crc = new CRC32C();
+        crc.update(datos.bytes, 0, datos.largo);
+        crc.update(comprimidos);
+
+        Buffer marco = new Buffer(21 + datos.largo + comprimidos.length);
+        marco.u8(TIPO_BLOQUE);
+        marco.int32(filas.size());
+        marco.int32(datos.largo);
+        marco.int32(textos.largo);
+        marco.int32(comprimidos.length);
+        marco.int32((int) crc.getValue());
+        marco.copiar(datos.bytes, datos.largo);
+        marco.copiar(comprimidos, comprimidos.length);
+        return Arrays.copyOf(marco.bytes, marco.largo);
+    }
+
+    /**
+     * Lee el siguiente marco.
+     *
+     * @return El bloque, o null si se llegó al marcador de fin
+     * @throws IOException si el archivo está truncado o el tipo es desconocido
+     */
+    static Crudo leer(DataInputStream in, long numero) throws IOException {
+        int tipo = in.read();
+        if (tipo == TIPO_FIN) {
+            return null;
+        }
+        if (tipo != TIPO_BLOQUE) {
+            throw new IOException(tipo < 0 ? "Snapshot truncado: falta el marcador de fin"
+                                           : "Tipo de bloque desconocido (" + tipo + ") en el bloque " + numero);
+        }
+        int cantidad = in.readInt();
+        int largoDatos = in.readInt();
+        int largoTextos = in.readInt();
+        int largoComprimido = in.readInt();
+        int crc = in.readInt();
+        if (cantidad < 0 || largoDatos < 0 || largoTextos < 0 || largoComprimido < 0) {
+            throw new IOException("Encabezado inválido en el bloque " + numero);
+        }
+        byte[] cuerpo = new byte[largoDatos + largoComprimido];
+        try {
+            in.readFully(cuerpo);
+        } catch (EOFException e) {
+            throw new IOException("Snapshot truncado en el bloque " + numero, e);
+        }
+        return new Crudo(numero, cantidad, largoDatos, largoTextos, crc, cuerpo);
+    }
+
+    /**
+     * Verifica el CRC y decodifica las filas.
+     *
+     * @throws IOException si el bloque está dañado
+     */
+    static List<SnapshotDAO.Fila> decodificar(Crudo b) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(b.cuerpo);
+        if ((int) crc.getValue() != b.crc) {
+            throw new IOException("CRC inválido en el bloque " + b.numero + " del snapshot");
+        }
+        byte[] textosPlanos = descomprimir(b.cuerpo, b.largoDatos, b.cuerpo.length - b.largoDatos, b.largoTextos, b.numero);
+        try {
+            Lector datos = new Lector(b.cuerpo, 0, b.largoDatos);
+            Lector textos = new Lector(textosPlanos, 0, textosPlanos.length);
+            String[] nombres = new String[(int) datos.varint()];
+            for (int i = 0; i < nombres.length; i++) {
+                nombres[i] = datos.cadena();
+            }
+            GrupoSanguineo[] grupos = GrupoSanguineo.values();
+            List<SnapshotDAO.Fila> filas = new ArrayList<>(b.cantidad);
+            long id = 0;
+            long hcId = 0;
+            for (int i = 0; i < b.cantidad; i++) {
+                id += datos.zigzag();
+                int banderas = datos.u8();
+                Paciente p = new Paciente();
+                p.setId((int) id);
+                p.setEliminado((banderas & ELIMINADO) != 0);
+                int nombre = (int) datos.varint();
+                int apellido = (int) datos.varint();
+                p.setNombre(nombre == 0 ? null : nombres[nombre - 1]);
+                p.setApellido(apellido == 0 ? null : nombres[apellido - 1]);
+                p.setDni(datos.cadena());
+                if ((banderas & CON_FECHA) != 0) {
+                    p.setFechaNacimiento(LocalDate.ofEpochDay(datos.zigzag()));
+                }
+                Timestamp eliminadoEn = (banderas & CON_BAJA) != 0 ? new Timestamp(datos.zigzag()) : null;
+                if ((banderas & CON_HC) != 0) {
+                    hcId += datos.zigzag();
+                    String nro = datos.cadena();
+                    int grupo = datos.u8();
+                    p.setHistoriaClinica(new HistoriaClinica((int) hcId, (banderas & HC_ELIMINADA) != 0, nro,
+                            grupo == SIN_GRUPO ? null : grupos[grupo],
+                            textos.cadena(), textos.cadena(), textos.cadena(), id));
+                }
+                filas.add(new SnapshotDAO.Fila(p, eliminadoEn));
+            }
+            return filas;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Bloque " + b.numero + " del snapshot mal formado", e);
+        }
+    }
+
+    /** Escribe el marcador de fin. */
+    static void escribirFin(DataOutputStream out) throws IOException {
+        out.write(TIPO_FIN);
+    }
+
+    private static byte[] comprimir(byte[] datos, int largo) {
+        if (largo == 0) {
+            return new byte[0];
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(datos, 0, largo);
+            deflater.finish();
+            Buffer salida = new Buffer(Math.max(64, largo / 3));
+            while (!deflater.finished()) {
+                salida.asegurar(4096);
+                salida.largo += deflater.deflate(salida.bytes, salida.largo, salida.bytes.length - salida.largo);
+            }
+            return Arrays.copyOf(salida.bytes, salida.largo);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] descomprimir(byte[] origen, int desde, int largo, int largoPlano, long numero) throws IOException {
+        byte[] plano = new byte[largoPlano];
+        if (largoPlano == 0) {
+            return plano;
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(origen, desde, largo);
+            int leidos = 0;
+            while (leidos < largoPlano) {
+                int n = inflater.inflate(plano, leidos, largoPlano - leidos);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                leidos += n;
+            }
+            if (leidos != largoPlano) {
+                throw new IOException("Textos incompletos en el bloque " + numero + " del snapshot");
+            }
+            return plano;
+        } catch (DataFormatException e) {
+            throw new IOException("Textos dañados en el bloque " + numero + " del snapshot", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Arreglo de bytes que crece (sin sincronización, a diferencia de ByteArrayOutputStream). */
+    private static final class Buffer {
+        byte[] bytes;
+        int largo;
+
+        Buffer(int capacidad) {
+            bytes = new byte[Math.max(16, capacidad)];
+        }
+
+        void asegurar(int extra) {
+            if (largo + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, largo + extra));
+            }
+        }
+
+        void u8(int v) {
+            asegurar(1);
+            bytes[largo++] = (byte) v;
+        }
+
+        void int32(int v) {
+            asegurar(4);
+            bytes[largo++] = (byte) (v >>> 24);
+            bytes[largo++] = (byte) (v >>> 16);
+            bytes[largo++] = (byte) (v >>> 8);
+            bytes[largo++] = (byte) v;
+        }
+
+        void varint(long v) {
+            asegurar(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[largo++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[largo++] = (byte) v;
+        }
+
+        void zigzag(long v) {
+            varint((v << 1) ^ (v >> 63));
+        }
+
+        void cadena(String s) {
+            if (s == null) {
+                varint(0);
+                return;
+            }
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + 1L);
+            copiar(utf8, utf8.length);
+        }
+
+        void copiar(byte[] origen, int n) {
+            asegurar(n);
+            System.arraycopy(origen, 0, bytes, largo, n);
+            largo += n;
+        }
+    }
+
+    private static final class Lector {
+        private final byte[] bytes;
+        private int pos;
+        private final int fin;
+
+        Lector(byte[] bytes, int desde, int largo) {
+            this.bytes = bytes;
+            this.pos = desde;
+            this.fin = desde + largo;
+        }
+
+        int u8() {
+            verificar(1);
+            return bytes[pos++] & 0xFF;
+        }
+
+        long varint() {
+            long v = 0;
+            for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+                int b = u8();
+                v |= (long) (b & 0x7F) << desplazamiento;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new ArrayIndexOutOfBoundsException("varint demasiado largo");
+        }
+
+        long zigzag() {
+            long v = varint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        String cadena() {
+            long n = varint();
+            if (n == 0) {
+                return null;
+            }
+            int largo = (int) (n - 1);
+            verificar(largo);
+            String s = new String(bytes, pos, largo, StandardCharsets.UTF_8);
+            pos += largo;
+            return s;
+        }
+
+        private void verificar(int n) {
+            if (n < 0 || pos + n > fin) {
+                throw new ArrayIndexOutOfBoundsException("lectura fuera del bloque");
+            }
+        }
+    }
+}
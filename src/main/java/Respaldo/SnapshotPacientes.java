@@ -0,0 +1,312 @@
+package Respaldo;
+
+import Config.Compartimento;
+import Config.DatabaseConnection;
+import Config.ShardRouter;
+import Config.TransactionManager;
+import Dao.SnapshotDAO;
+import Util.Hilos;
+import exceptions.ServiceException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot binario de todos los pacientes (incluidas las bajas) y sus HCs,
+ * para respaldar y restaurar mucho más rápido que con un dump SQL.
+ *
+ * No incluye las tablas de archivo, DiccionarioTexto (los textos van
+ * expandidos y se recomprimen al restaurar) ni RevisionHistoria (las HCs
+ * restauradas empiezan sin revisiones anteriores).
+ *
+ * Archivo:
+ * <pre>
+ * "TPIS" | u16 versión | u16 reservado | long creado (ms desde 1970)
+ * bloques (ver BloqueSnapshot)
+ * u8 0 | long pacientes | long historias | long bloques
+ * </pre>
+ *
+ * - Escritura: las filas se leen en streaming (una única consulta, vista
+ *   consistente) y los bloques se codifican en paralelo; se escriben en
+ *   orden en un archivo temporal que al final reemplaza al destino.
+ * - Restauración: los bloques se leen en orden y cada hilo verifica,
+ *   decodifica e inserta los suyos en su propia transacción (INSERT por
+ *   lotes). La base debe estar vacía; si la restauración falla a mitad,
+ *   hay que vaciar las tablas antes de reintentar.
+ *
+ * No incluye las tablas de archivo ni soporta -Ddb.shards.
+ */
+public class SnapshotPacientes {
+
+    private static final int MAGICO = 0x54504953; // "TPIS"
+    private static final int VERSION = 1;
+
+    /** Totales de una escritura o restauración. */
+    public static final class Resumen {
+        private final long pacientes;
+        private final long historias;
+        private final long bloques;
+        private final long bytes;
+        private final long duracionMs;
+
+        Resumen(long pacientes, long historias, long bloques, long bytes, long duracionMs) {
+            this.pacientes = pacientes;
+            this.historias = historias;
+            this.bloques = bloques;
+            this.bytes = bytes;
+            this.duracionMs = duracionMs;
+        }
+
+        public long getPacientes() { return pacientes; }
+        public long getHistorias() { return historias; }
+        public long getBloques() { return bloques; }
+        public long getBytes() { return bytes; }
+        public long getDuracionMs() { return duracionMs; }
+
+        @Override
+        public String toString() {
+            return String.format("pacientes=%d historias=%d bloques=%d bytes=%d duracion_ms=%d",
+                    pacientes, historias, bloques, bytes, duracionMs);
+        }
+    }
+
+    private final SnapshotDAO snapshotDao = new SnapshotDAO();
+    private final int hilos;
+    private final int filasPorBloque;
+
+    /**
+     * @param hilos Hilos de codificación / decodificación y carga
+     * @param filasPorBloque Filas por bloque (solo al escribir)
+     */
+    public SnapshotPacientes(int hilos, int filasPorBloque) {
+        if (hilos < 1 || filasPorBloque < 1) {
+            throw new IllegalArgumentException("Hilos y filas por bloque deben ser positivos");
+        }
+        this.hilos = hilos;
+        this.filasPorBloque = filasPorBloque;
+    }
+
+    /**
+     * Escribe el snapshot en "destino" (reemplazándolo al terminar).
+     */
+    public Resumen escribir(Path destino) throws Exception {
+        verificarSinShards();
+        long inicio = System.nanoTime();
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        ExecutorService codificadores = Executors.newFixedThreadPool(hilos, Hilos.fabrica("snapshot", true));
+        Escritura escritura;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 16))) {
+            out.writeInt(MAGICO);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeLong(System.currentTimeMillis());
+
+            escritura = new Escritura(out, codificadores);
+            Compartimento.MASIVO.ejecutar(() -> {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    snapshotDao.recorrerCompletoTx(escritura, conn);
+                }
+                return null;
+            });
+            escritura.terminar();
+            BloqueSnapshot.escribirFin(out);
+            out.writeLong(escritura.pacientes);
+            out.writeLong(escritura.historias);
+            out.writeLong(escritura.bloques);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temporal);
+            throw e.getCause();
+        } catch (Exception e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        } finally {
+            codificadores.shutdownNow();
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Resumen(escritura.pacientes, escritura.historias, escritura.bloques, Files.size(destino),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Arma los bloques a medida que llegan las filas, los manda a codificar
+     * y escribe en orden los ya codificados (como mucho 2 por hilo en memoria).
+     */
+    private final class Escritura implements Consumer<SnapshotDAO.Fila> {
+        private final DataOutputStream out;
+        private final ExecutorService codificadores;
+        private final Deque<Future<byte[]>> pendientes = new ArrayDeque<>();
+        private List<SnapshotDAO.Fila> lote = new ArrayList<>(filasPorBloque);
+        long pacientes;
+        long historias;
+        long bloques;
+
+        Escritura(DataOutputStream out, ExecutorService codificadores) {
+            this.out = out;
+            this.codificadores = codificadores;
+        }
+
+        @Override
+        public void accept(SnapshotDAO.Fila f) {
+            pacientes++;
+            if (f.paciente.getHistoriaClinica() != null) {
+                historias++;
+            }
+            lote.add(f);
+            if (lote.size() == filasPorBloque) {
+                enviar();
+                while (pendientes.size() > hilos * 2) {
+                    escribirSiguiente();
+                }
+            }
+        }
+
+        void terminar() {
+            if (!lote.isEmpty()) {
+                enviar();
+            }
+            while (!pendientes.isEmpty()) {
+                escribirSiguiente();
+            }
+        }
+
+        private void enviar() {
+            List<SnapshotDAO.Fila> completo = lote;
+            lote = new ArrayList<>(filasPorBloque);
+            pendientes.add(codificadores.submit(() -> BloqueSnapshot.codificar(completo)));
+        }
+
+        private void escribirSiguiente() {
+            try {
+                out.write(pendientes.poll().get());
+                bloques++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Snapshot interrumpido", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Fallo la codificación de un bloque: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Carga el snapshot en una base vacía, conservando los IDs.
+     *
+     * @throws ServiceException si la base no está vacía o el archivo no es un snapshot válido
+     */
+    public Resumen restaurar(Path origen) throws Exception {
+        verificarSinShards();
+        long inicio = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            long existentes = snapshotDao.contarFilasTx(conn);
+            if (existentes > 0) {
+                throw new ServiceException("La base ya tiene " + existentes
+                        + " filas en Paciente/HistoriaClinica: el snapshot solo se restaura en una base vacía.");
+            }
+        }
+
+        ExecutorService cargadores = Executors.newFixedThreadPool(hilos, Hilos.fabrica("restauracion", true));
+        long pacientes = 0;
+        long historias = 0;
+        long bloques = 0;
+        Deque<Future<long[]>> pendientes = new ArrayDeque<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(origen), 1 << 16))) {
+            if (in.readInt() != MAGICO) {
+                throw new ServiceException("El archivo " + origen + " no es un snapshot de pacientes.");
+            }
+            int version = in.readUnsignedShort();
+            if (version != VERSION) {
+                throw new ServiceException("Versión de snapshot no soportada: " + version);
+            }
+            in.readUnsignedShort();
+            in.readLong();
+
+            BloqueSnapshot.Crudo crudo;
+            while ((crudo = BloqueSnapshot.leer(in, bloques)) != null) {
+                BloqueSnapshot.Crudo bloque = crudo;
+                pendientes.add(cargadores.submit(() -> Compartimento.MASIVO.ejecutar(() -> cargar(bloque))));
+                bloques++;
+                while (pendientes.size() > hilos * 2) {
+                    long[] n = esperarCarga(pendientes.poll());
+                    pacientes += n[0];
+                    historias += n[1];
+                }
+            }
+            while (!pendientes.isEmpty()) {
+                long[] n = esperarCarga(pendientes.poll());
+                pacientes += n[0];
+                historias += n[1];
+            }
+            long esperadosPacientes = in.readLong();
+            long esperadosHistorias = in.readLong();
+            long esperadosBloques = in.readLong();
+            if (esperadosPacientes != pacientes || esperadosHistorias != historias || esperadosBloques != bloques) {
+                throw new ServiceException(String.format("Snapshot incompleto: se cargaron %d pacientes, %d historias y %d bloques "
+                        + "de %d, %d y %d.", pacientes, historias, bloques, esperadosPacientes, esperadosHistorias, esperadosBloques));
+            }
+        } catch (Exception e) {
+            for (Future<long[]> f : pendientes) {
+                f.cancel(true);
+            }
+            throw e;
+        } finally {
+            cargadores.shutdownNow();
+        }
+        return new Resumen(pacientes, historias, bloques, Files.size(origen),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Verifica, decodifica e inserta un bloque en su propia transacción.
+     *
+     * @return {pacientes, historias}
+     */
+    private long[] cargar(BloqueSnapshot.Crudo bloque) throws Exception {
+        List<SnapshotDAO.Fila> filas = BloqueSnapshot.decodificar(bloque);
+        try (TransactionManager tx = new TransactionManager(DatabaseConnection.getConnection())) {
+            tx.startTransaction();
+            snapshotDao.insertarBatchTx(filas, tx.getConnection());
+            tx.commit();
+        }
+        long historias = 0;
+        for (SnapshotDAO.Fila f : filas) {
+            if (f.paciente.getHistoriaClinica() != null) {
+                historias++;
+            }
+        }
+        return new long[] {filas.size(), historias};
+    }
+
+    private static long[] esperarCarga(Future<long[]> carga) throws Exception {
+        try {
+            return carga.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static void verificarSinShards() throws ServiceException {
+        if (ShardRouter.estaActivo()) {
+            throw new ServiceException("El snapshot no soporta -Ddb.shards: generarlo o restaurarlo por cada base.");
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package Service;
+
+import Auditoria.Auditor;
+import Auditoria.EventoAuditoria;
+import Config.Compartimento;
+import Config.DatabaseConnection;
+import Config.ShardRouter;
+import Config.TransactionManager;
+import Dao.ArchivoDAO;
+import Util.Hilos;
+import exceptions.ServiceException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Archiva los pacientes dados de baja hace más de N días: los mueve, junto
+ * con su HC, a PacienteArchivo / HistoriaClinicaArchivo para que las tablas
+ * e índices activos no crezcan con filas muertas.
+ *
+ * Para no competir con la operación normal ni atrasar las réplicas:
+ * - Lotes chicos (una transacción por lote, FOR UPDATE SKIP LOCKED).
+ * - Ciclo de trabajo: después de cada lote se duerme lo necesario para que
+ *   el archivador ocupe como máximo la fracción "cicloTrabajo" del tiempo
+ *   (con 0.25, un lote de 40 ms va seguido de 120 ms de pausa).
+ * - innodb_lock_wait_timeout corto en su sesión: ante una espera de lock o
+ *   un deadlock (1205/1213) se revierte el lote, se duplica la pausa y se
+ *   reintenta, en lugar de quedar bloqueando a los demás.
+ *
+ * Corre en el compartimento MASIVO (con -Ddb.limite no le quita lugar a
+ * las consultas interactivas). Con -Ddb.shards se recorre cada shard por separado. La restauración
+ * devuelve el paciente activo con sus IDs originales; falla si mientras
+ * tanto su DNI o Nro. HC se asignaron a otro paciente.
+ */
+public class ArchivadorBajas {
+
+    /** Conexión a una base (o shard). */
+    @FunctionalInterface
+    private interface Base {
+        Connection conectar() throws SQLException;
+    }
+
+    private static final int ESPERA_LOCK_SEG = 2;
+    private static final int MAX_REINTENTOS = 5;
+
+    private final ArchivoDAO archivoDao = new ArchivoDAO();
+    private final Base[] bases;
+    private final int diasRetencion;
+    private final int tamLote;
+    private final double cicloTrabajo;
+    private final long pausaMinimaMs;
+
+    private final ScheduledExecutorService programador =
+            Executors.newSingleThreadScheduledExecutor(Hilos.fabrica("archivador", true));
+    private final AtomicLong archivados = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong reintentos = new AtomicLong();
+    private final AtomicLong restaurados = new AtomicLong();
+
+    /**
+     * @param diasRetencion Días desde la baja antes de archivar
+     * @param tamLote Pacientes por transacción
+     * @param cicloTrabajo Fracción del tiempo (0..1] que puede ocupar el archivador
+     * @param pausaMinimaMs Pausa mínima entre lotes
+     */
+    public ArchivadorBajas(int diasRetencion, int tamLote, double cicloTrabajo, long pausaMinimaMs) {
+        if (tamLote <= 0 || cicloTrabajo <= 0 || cicloTrabajo > 1) {
+            throw new IllegalArgumentException("Lote debe ser positivo y el ciclo de trabajo estar en (0, 1]");
+        }
+        this.diasRetencion = diasRetencion;
+        this.tamLote = tamLote;
+        this.cicloTrabajo = cicloTrabajo;
+        this.pausaMinimaMs = pausaMinimaMs;
+        if (ShardRouter.estaActivo()) {
+            bases = new Base[ShardRouter.getCantidad()];
+            for (int s = 0; s < bases.length; s++) {
+                final int shard = s;
+                bases[s] = () -> ShardRouter.getConnection(shard);
+            }
+        } else {
+            bases = new Base[] {DatabaseConnection::getConnection};
+        }
+    }
+
+    /**
+     * Programa una pasada completa cada "periodoMin" minutos (la primera, ya).
+     */
+    public void iniciar(long periodoMin) {
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                archivar(Long.MAX_VALUE);
+            } catch (Exception e) {
+                System.err.println("⚠️ Archivado de bajas interrumpido: " + e.getMessage());
+            }
+        }, 0, periodoMin, TimeUnit.MINUTES);
+    }
+
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /**
+     * Una pasada: archiva lotes hasta que no queden candidatos o se llegue a "maximo".
+     *
+     * @return Pacientes archivados en esta pasada
+     */
+    public long archivar(long maximo) throws Exception {
+        Timestamp limite = Timestamp.from(Instant.now().minus(Duration.ofDays(diasRetencion)));
+        return Compartimento.MASIVO.ejecutar(() -> {
+            long total = 0;
+            for (Base base : bases) {
+                while (total < maximo) {
+                    int n = archivarLote(base, limite, (int) Math.min(tamLote, maximo - total));
+                    if (n == 0) {
+                        break;
+                    }
+                    total += n;
+                }
+            }
+            return total;
+        });
+    }
+
+    /**
+     * Pacientes que la próxima pasada archivaría.
+     */
+    public long contarPendientes() throws Exception {
+        Timestamp limite = Timestamp.from(Instant.now().minus(Duration.ofDays(diasRetencion)));
+        return Compartimento.MASIVO.ejecutar(() -> {
+            long total = 0;
+            for (Base base : bases) {
+                try (Connection conn = base.conectar()) {
+                    total += archivoDao.contarParaArchivarTx(limite, conn);
+                }
+            }
+            return total;
+        });
+    }
+
+    private int archivarLote(Base base, Timestamp limite, int cantidad) throws Exception {
+        long pausa = pausaMinimaMs;
+        for (int intento = 0; ; intento++) {
+            long inicio = System.nanoTime();
+            List<Integer> ids;
+            try (Connection conn = base.conectar()) {
+                // Sin try-with-resources del TransactionManager: su close() cerraría la
+                // conexión antes de restaurar la variable de sesión.
+                int esperaAnterior = fijarEsperaLock(conn, ESPERA_LOCK_SEG);
+                TransactionManager tx = new TransactionManager(conn);
+                try {
+                    tx.startTransaction();
+                    ids = archivoDao.seleccionarParaArchivarTx(limite, cantidad, conn);
+                    archivoDao.archivarTx(ids, conn);
+                    tx.commit();
+                } finally {
+                    tx.rollback(); // no hace nada si ya hubo commit
+                    conn.setAutoCommit(true);
+                    fijarEsperaLock(conn, esperaAnterior); // la conexión puede volver a un pool
+                }
+            } catch (Exception e) {
+                if (!esContencion(e) || intento >= MAX_REINTENTOS) {
+                    throw e;
+                }
+                reintentos.incrementAndGet();
+                pausa *= 2;
+                Thread.sleep(Math.max(pausa, 10));
+                continue;
+            }
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            archivados.addAndGet(ids.size());
+            lotes.incrementAndGet();
+            for (int id : ids) {
+                Auditor.registrar(EventoAuditoria.Tipo.BAJA, id, "archivado");
+            }
+            long trabajoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+            Thread.sleep(Math.max(pausa, (long) (trabajoMs * (1 - cicloTrabajo) / cicloTrabajo)));
+            return ids.size();
+        }
+    }
+
+    /**
+     * Devuelve un paciente archivado a las tablas activas (dado de alta).
+     *
+     * @return false si el ID no está en el archivo
+     */
+    public boolean restaurar(int pacienteId) throws ServiceException {
+        for (Base base : bases) {
+            try (Connection conn = base.conectar();
+                 TransactionManager tx = new TransactionManager(conn)) {
+                tx.startTransaction();
+                boolean restaurado = archivoDao.restaurarTx(pacienteId, conn);
+                tx.commit();
+                if (restaurado) {
+                    restaurados.incrementAndGet();
+                    Auditor.registrar(EventoAuditoria.Tipo.ALTA, pacienteId, "restaurado del archivo");
+                    return true;
+                }
+            } catch (Exception e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                if (causa instanceof SQLException && ((SQLException) causa).getErrorCode() == 1062) {
+                    throw new ServiceException("No se puede restaurar: el DNI o el Nro. HC ya pertenecen a otro paciente.", causa);
+                }
+                throw new ServiceException("Fallo la restauración del Paciente ID " + pacienteId + ": " + e.getMessage(), e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restaura el último paciente archivado con ese DNI.
+     *
+     * @return ID restaurado, o null si el DNI no está en el archivo
+     */
+    public Integer restaurarPorDni(String dni) throws ServiceException {
+        for (Base base : bases) {
+            Integer id;
+            try (Connection conn = base.conectar()) {
+                id = archivoDao.buscarArchivadoPorDniTx(dni, conn);
+            } catch (Exception e) {
+                throw new ServiceException("Fallo la búsqueda en el archivo: " + e.getMessage(), e);
+            }
+            if (id != null) {
+                return restaurar(id) ? id : null;
+            }
+        }
+        return null;
+    }
+
+    private static int fijarEsperaLock(Connection conn, int segundos) throws SQLException {
+        int anterior;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT @@SESSION.innodb_lock_wait_timeout");
+             ResultSet rs = ps.executeQuery()) {
+            anterior = rs.next() ? rs.getInt(1) : 50;
+        }
+        if (anterior != segundos) {
+            try (PreparedStatement ps = conn.prepareStatement("SET SESSION innodb_lock_wait_timeout = " + segundos)) {
+                ps.execute();
+            }
+        }
+        return anterior;
+    }
+
+    /** Lock wait timeout (1205) o deadlock (1213): vale la pena reintentar más tarde. */
+    private static boolean esContencion(Exception e) {
+        Throwable causa = e instanceof SQLException ? e : e.getCause();
+        if (!(causa instanceof SQLException)) {
+            return false;
+        }
+        int codigo = ((SQLException) causa).getErrorCode();
+        return codigo == 1205 || codigo == 1213;
+    }
+
+    public long getArchivados() { return archivados.get(); }
+    public long getLotes() { return lotes.get(); }
+    public long getReintentos() { return reintentos.get(); }
+    public long getRestaurados() { return restaurados.get(); }
+
+    public String resumen() {
+        return String.format("archivados=%d lotes=%d reintentos=%d restaurados=%d",
+                getArchivados(), getLotes(), getReintentos(), getRestaurados());
+    }
+}
@@ -0,0 +1,144 @@
+package Service;
+
+import entities.Paciente;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU en memoria de pacientes activos (con su HC), por ID y por DNI.
+ *
+ * Guarda y entrega copias (Paciente.copiar): nadie comparte un objeto
+ * mutable con la cache. No guarda ausencias: un ID o DNI inexistente
+ * siempre va a la BD.
+ *
+ * Carrera lectura/invalidación: el lector toma la época antes de consultar
+ * la BD y guardar() descarta el resultado si entre tanto hubo alguna
+ * invalidación (podría ser anterior a ella). Es el mismo criterio que
+ * SingleFlight.
+ *
+ * Las escrituras de esta instancia invalidan al confirmar; las de otras
+ * instancias llegan por CoherenciaCache.
+ */
+public class CachePacientes {
+
+    private final int capacidad;
+    private final LinkedHashMap<Integer, Paciente> porId;
+    private final Map<String, Integer> idPorDni = new HashMap<>();
+    private long epoca;
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+    private final AtomicLong descartes = new AtomicLong();
+
+    /**
+     * @param capacidad Máximo de pacientes en memoria (se desalojan los menos usados)
+     */
+    public CachePacientes(int capacidad) {
+        if (capacidad < 1) {
+            throw new IllegalArgumentException("La capacidad de la cache debe ser positiva");
+        }
+        this.capacidad = capacidad;
+        this.porId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Paciente> mayor) {
+                if (size() > CachePacientes.this.capacidad) {
+                    idPorDni.remove(mayor.getValue().getDni(), mayor.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    /** Época actual: tomarla antes de consultar la BD y pasarla a guardar(). */
+    public synchronized long epoca() {
+        return epoca;
+    }
+
+    /** @return Copia del paciente, o null si no está en la cache */
+    public Paciente getPorId(int id) {
+        Paciente p;
+        synchronized (this) {
+            p = porId.get(id);
+        }
+        return contar(p);
+    }
+
+    /** @return Copia del paciente, o null si no está en la cache */
+    public Paciente getPorDni(String dni) {
+        Paciente p = null;
+        synchronized (this) {
+            Integer id = idPorDni.get(dni);
+            if (id != null) {
+                p = porId.get(id);
+            }
+        }
+        return contar(p);
+    }
+
+    private Paciente contar(Paciente p) {
+        if (p == null) {
+            fallos.incrementAndGet();
+            return null;
+        }
+        aciertos.incrementAndGet();
+        return p.copiar();
+    }
+
+    /**
+     * Guarda una copia del paciente leído de la BD, salvo que haya habido
+     * una invalidación desde "epocaLectura".
+     */
+    public void guardar(Paciente p, long epocaLectura) {
+        if (p == null || p.isEliminado()) {
+            return;
+        }
+        Paciente copia = p.copiar();
+        synchronized (this) {
+            if (epocaLectura != epoca) {
+                descartes.incrementAndGet();
+                return;
+            }
+            Paciente anterior = porId.put(copia.getId(), copia);
+            if (anterior != null) {
+                idPorDni.remove(anterior.getDni(), anterior.getId());
+            }
+            if (copia.getDni() != null) {
+                idPorDni.put(copia.getDni(), copia.getId());
+            }
+        }
+    }
+
+    public synchronized void invalidar(int id) {
+        epoca++;
+        Paciente p = porId.remove(id);
+        if (p != null) {
+            idPorDni.remove(p.getDni(), id);
+            invalidaciones.incrementAndGet();
+        }
+    }
+
+    public synchronized void invalidarTodo() {
+        epoca++;
+        invalidaciones.addAndGet(porId.size());
+        porId.clear();
+        idPorDni.clear();
+    }
+
+    public synchronized int tamano() {
+        return porId.size();
+    }
+
+    public long getAciertos() { return aciertos.get(); }
+    public long getFallos() { return fallos.get(); }
+    public long getInvalidaciones() { return invalidaciones.get(); }
+    public long getDescartes() { return descartes.get(); }
+}
@@ -0,0 +1,156 @@
+package Service;
+
+import Config.DatabaseConnection;
+import Config.ShardRouter;
+import Dao.CambiosDAO;
+import Util.Hilos;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mantiene coherente la CachePacientes de esta instancia con las escrituras
+ * de las demás, sin broker de mensajes: cada "periodoMs" consulta (una sola
+ * consulta indexada por base) qué filas tienen actualizadoEn posterior a la
+ * última pasada e invalida exactamente esos pacientes.
+ *
+ * actualizadoEn es la hora de la sentencia, no la del commit: una
+ * transacción larga puede confirmar una fila con una hora ya pasada. Por eso
+ * cada pasada vuelve a mirar "margenMs" hacia atrás (debe cubrir la
+ * transacción de escritura más larga, p. ej. plazo.escrituraMs) y recuerda
+ * qué versiones ya invalidó para no repetirlas. Un cambio se refleja, como
+ * mucho, un período después de confirmado.
+ *
+ * Si en una pasada cambiaron más filas que la capacidad de la cache (p. ej.
+ * una sincronización masiva), se vacía entera: es más barato.
+ */
+public class CoherenciaCache {
+
+    private final CachePacientes cache;
+    private final Runnable antesDeInvalidar;
+    private final CambiosDAO cambiosDao = new CambiosDAO();
+    private final long margenMs;
+    private final ScheduledExecutorService programador =
+            Executors.newSingleThreadScheduledExecutor(Hilos.fabrica("coherencia-cache", true));
+
+    /** Por base (una sin sharding): desde dónde mirar y qué versiones ya se invalidaron. */
+    private final Timestamp[] desde;
+    private final List<Map<Long, Timestamp>> vistos;
+
+    private final AtomicLong pasadas = new AtomicLong();
+    private final AtomicLong cambiosAplicados = new AtomicLong();
+    private final AtomicLong vaciados = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+
+    /**
+     * @param antesDeInvalidar Se ejecuta antes de cada tanda de invalidaciones
+     *                         (p. ej. para que ninguna lectura se una a una
+     *                         consulta en vuelo anterior al cambio, ver SingleFlight)
+     * @param margenMs Cuánto hacia atrás se vuelve a mirar en cada pasada
+     */
+    public CoherenciaCache(CachePacientes cache, Runnable antesDeInvalidar, long margenMs) {
+        this.cache = cache;
+        this.antesDeInvalidar = antesDeInvalidar;
+        this.margenMs = margenMs;
+        int bases = ShardRouter.estaActivo() ? ShardRouter.getCantidad() : 1;
+        this.desde = new Timestamp[bases];
+        this.vistos = new ArrayList<>(bases);
+        for (int i = 0; i < bases; i++) {
+            vistos.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Programa una pasada cada "periodoMs" milisegundos.
+     */
+    public void iniciar(long periodoMs) {
+        programador.scheduleWithFixedDelay(this::sondearSinFallar, 0, periodoMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /**
+     * Una pasada sobre todas las bases (la usa el programador; pública para pruebas).
+     */
+    public void sondear() throws Exception {
+        for (int base = 0; base < desde.length; base++) {
+            try (Connection conn = conexion(base)) {
+                sondear(base, conn);
+            }
+        }
+        pasadas.incrementAndGet();
+    }
+
+    private void sondear(int base, Connection conn) throws Exception {
+        Timestamp corte = cambiosDao.ahoraTx(conn);
+        Timestamp inicio = desde[base];
+        Map<Long, Timestamp> yaVistos = vistos.get(base);
+        Timestamp siguiente = new Timestamp(corte.getTime() - margenMs);
+        if (inicio == null) {
+            // Primera pasada: la cache arranca vacía, solo importa lo que todavía puede confirmarse.
+            inicio = siguiente;
+        }
+
+        List<CambiosDAO.Cambio> cambios = cambiosDao.getCambiosDesdeTx(inicio, cache.getCapacidad() + 1, conn);
+        if (cambios.size() > cache.getCapacidad()) {
+            antesDeInvalidar.run();
+            cache.invalidarTodo();
+            vaciados.incrementAndGet();
+            yaVistos.clear();
+        } else {
+            boolean avisado = false;
+            for (CambiosDAO.Cambio c : cambios) {
+                long clave = ((long) c.pacienteId << 1) | (c.historia ? 1 : 0);
+                if (!c.actualizadoEn.equals(yaVistos.put(clave, c.actualizadoEn))) {
+                    if (!avisado) {
+                        antesDeInvalidar.run();
+                        avisado = true;
+                    }
+                    cache.invalidar(c.pacienteId);
+                    cambiosAplicados.incrementAndGet();
+                }
+            }
+        }
+
+        for (Iterator<Timestamp> it = yaVistos.values().iterator(); it.hasNext(); ) {
+            if (it.next().before(siguiente)) {
+                it.remove();
+            }
+        }
+        desde[base] = siguiente;
+    }
+
+    private void sondearSinFallar() {
+        try {
+            sondear();
+        } catch (Exception e) {
+            // La próxima pasada retoma desde el mismo punto; mientras tanto no se
+            // sabe qué cambió, así que la cache no puede seguir respondiendo.
+            errores.incrementAndGet();
+            antesDeInvalidar.run();
+            cache.invalidarTodo();
+            System.err.println("⚠️ No se pudieron leer los cambios para la cache: " + e.getMessage());
+        }
+    }
+
+    private static Connection conexion(int base) throws SQLException {
+        return ShardRouter.estaActivo() ? ShardRouter.getConnection(base) : DatabaseConnection.getConnection();
+    }
+
+    public long getPasadas() { return pasadas.get(); }
+    public long getCambiosAplicados() { return cambiosAplicados.get(); }
+    public long getVaciados() { return vaciados.get(); }
+    public long getErrores() { return errores.get(); }
+}
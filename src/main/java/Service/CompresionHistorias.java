@@ -0,0 +1,251 @@
+package Service;
+
+import Config.Compartimento;
+import Config.DatabaseConnection;
+import Config.ShardRouter;
+import Config.TransactionManager;
+import Dao.CompresionTextos;
+import Dao.DiccionarioTextoDAO;
+import entities.HistoriaClinica;
+import exceptions.ServiceException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Entrenamiento del diccionario de compresión de textos clínicos y
+ * migración de las filas existentes (ver Dao.CompresionTextos).
+ *
+ * El diccionario se arma con los fragmentos (de 1 a 8 palabras) que más
+ * bytes ahorrarían: los que aparecen en más notas, ponderados por su largo.
+ * Deflate encuentra antes las coincidencias cercanas al final del
+ * diccionario, así que los más valiosos van al final.
+ *
+ * Con -Ddb.shards no hay diccionario entrenado: se comprime sin diccionario.
+ */
+public class CompresionHistorias {
+
+    private static final int MAX_PALABRAS = 8;
+    private static final int MIN_LARGO_FRAGMENTO = 8;
+    private static final int MAX_LARGO_FRAGMENTO = 96;
+
+    private final DiccionarioTextoDAO diccionarioDao = new DiccionarioTextoDAO();
+
+    /** Resultado del entrenamiento. */
+    public static final class Entrenamiento {
+        public final int diccionarioId;
+        public final int bytesDiccionario;
+        public final int textos;
+        public final long bytesPlanos;
+        public final long bytesSinDiccionario;
+        public final long bytesConDiccionario;
+
+        Entrenamiento(int diccionarioId, int bytesDiccionario, int textos, long bytesPlanos,
+                      long bytesSinDiccionario, long bytesConDiccionario) {
+            this.diccionarioId = diccionarioId;
+            this.bytesDiccionario = bytesDiccionario;
+            this.textos = textos;
+            this.bytesPlanos = bytesPlanos;
+            this.bytesSinDiccionario = bytesSinDiccionario;
+            this.bytesConDiccionario = bytesConDiccionario;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("diccionario=%d bytes_diccionario=%d textos=%d bytes_planos=%d sin_diccionario=%d con_diccionario=%d",
+                    diccionarioId, bytesDiccionario, textos, bytesPlanos, bytesSinDiccionario, bytesConDiccionario);
+        }
+    }
+
+    /**
+     * Entrena un diccionario con los textos de las "muestras" HCs más
+     * recientes y lo guarda; pasa a ser el de escritura.
+     *
+     * @param tamano Bytes del diccionario (Deflate usa como mucho 32 KB)
+     */
+    public Entrenamiento entrenar(int muestras, int tamano) throws Exception {
+        if (ShardRouter.estaActivo()) {
+            throw new ServiceException("El diccionario de textos no está soportado con -Ddb.shards.");
+        }
+        if (tamano < 256 || tamano > 32 * 1024) {
+            throw new ServiceException("El tamaño del diccionario debe estar entre 256 y 32768 bytes.");
+        }
+        List<String> textos = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            Compartimento.MASIVO.ejecutar(() -> {
+                diccionarioDao.recorrerMuestraTx(muestras, textos::add, conn);
+                return null;
+            });
+            if (textos.isEmpty()) {
+                throw new ServiceException("No hay textos clínicos para entrenar el diccionario.");
+            }
+            byte[] diccionario = construirDiccionario(textos, tamano);
+
+            // Evaluación sobre la propia muestra (solo informativa).
+            long planos = 0;
+            long sinDiccionario = 0;
+            long conDiccionario = 0;
+            for (String t : textos) {
+                byte[] b = t.getBytes(StandardCharsets.UTF_8);
+                planos += b.length;
+                sinDiccionario += CompresionTextos.comprimidoBytes(b, null);
+                conDiccionario += CompresionTextos.comprimidoBytes(b, diccionario);
+            }
+
+            int id = diccionarioDao.insertarTx(diccionario, conn);
+            CompresionTextos.recargar(conn);
+            return new Entrenamiento(id, diccionario.length, textos.size(), planos, sinDiccionario, conDiccionario);
+        }
+    }
+
+    /**
+     * Arma el diccionario a partir de las notas de muestra.
+     */
+    static byte[] construirDiccionario(List<String> textos, int tamano) {
+        // Frecuencia por documento: un fragmento repetido dentro de una nota cuenta una vez.
+        Map<String, Integer> frecuencia = new HashMap<>();
+        for (String texto : textos) {
+            String[] palabras = texto.trim().split("\\s+");
+            Set<String> vistos = new HashSet<>();
+            for (int i = 0; i < palabras.length; i++) {
+                StringBuilder fragmento = new StringBuilder();
+                for (int n = 0; n < MAX_PALABRAS && i + n < palabras.length; n++) {
+                    if (n > 0) {
+                        fragmento.append(' ');
+                    }
+                    fragmento.append(palabras[i + n]);
+                    if (fragmento.length() > MAX_LARGO_FRAGMENTO) {
+                        break;
+                    }
+                    if (fragmento.length() >= MIN_LARGO_FRAGMENTO && vistos.add(fragmento.toString())) {
+                        frecuencia.merge(fragmento.toString(), 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> candidatos = new ArrayList<>();
+        for (Map.Entry<String, Integer> e : frecuencia.entrySet()) {
+            if (e.getValue() > 1) {
+                candidatos.add(e);
+            }
+        }
+        // Ahorro estimado: (apariciones - 1) * largo.
+        candidatos.sort((a, b) -> Long.compare(
+                (long) (b.getValue() - 1) * b.getKey().length(),
+                (long) (a.getValue() - 1) * a.getKey().length()));
+
+        List<String> elegidos = new ArrayList<>();
+        int bytes = 0;
+        for (Map.Entry<String, Integer> e : candidatos) {
+            String f = e.getKey();
+            boolean cubierto = false;
+            for (String elegido : elegidos) {
+                if (elegido.contains(f)) {
+                    cubierto = true;
+                    break;
+                }
+            }
+            if (cubierto) {
+                continue;
+            }
+            int largo = f.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (bytes + largo > tamano) {
+                break;
+            }
+            elegidos.add(f);
+            bytes += largo;
+        }
+
+        // Los más valiosos al final (más cerca de los datos).
+        StringBuilder sb = new StringBuilder(bytes);
+        for (int i = elegidos.size() - 1; i >= 0; i--) {
+            sb.append(elegidos.get(i)).append(' ');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Resultado de la migración. */
+    public static final class Migracion {
+        public long revisadas;
+        public long reescritas;
+        public long bytesAntes;
+        public long bytesDespues;
+
+        @Override
+        public String toString() {
+            return String.format("revisadas=%d reescritas=%d bytes_antes=%d bytes_despues=%d",
+                    revisadas, reescritas, bytesAntes, bytesDespues);
+        }
+    }
+
+    /**
+     * Reescribe los textos de todas las HCs (incluidas las bajas) en su
+     * forma actual: comprime las filas planas y recomprime las que usan un
+     * diccionario anterior. Con "expandir" hace lo inverso (vuelta atrás).
+     * Una transacción por lote: puede interrumpirse y retomarse.
+     */
+    public Migracion migrar(int tamLote, boolean expandir) throws Exception {
+        if (ShardRouter.estaActivo()) {
+            throw new ServiceException("La migración de textos no está soportada con -Ddb.shards.");
+        }
+        if (!expandir && !CompresionTextos.estaActivo()) {
+            throw new ServiceException("Para comprimir hay que activar -Dhc.compresion=true.");
+        }
+        Migracion m = new Migracion();
+        return Compartimento.MASIVO.ejecutar(() -> {
+            int ultimoId = 0;
+            while (true) {
+                List<HistoriaClinica> lote;
+                try (TransactionManager tx = new TransactionManager(DatabaseConnection.getConnection())) {
+                    Connection conn = tx.getConnection();
+                    tx.startTransaction();
+                    CompresionTextos.recargar(conn);
+                    lote = diccionarioDao.getTextosDesdeTx(ultimoId, tamLote, conn);
+                    List<HistoriaClinica> cambios = new ArrayList<>();
+                    for (HistoriaClinica hc : lote) {
+                        m.revisadas++;
+                        String[] antes = {hc.getAntecedentes(), hc.getMedicacionActual(), hc.getObservaciones()};
+                        String[] despues = new String[3];
+                        boolean cambio = false;
+                        for (int c = 0; c < 3; c++) {
+                            String plano = CompresionTextos.expandir(antes[c]);
+                            despues[c] = expandir ? plano : CompresionTextos.paraGuardar(plano);
+                            cambio |= !Objects.equals(antes[c], despues[c]);
+                            m.bytesAntes += largo(antes[c]);
+                            m.bytesDespues += largo(despues[c]);
+                        }
+                        if (cambio) {
+                            HistoriaClinica nueva = new HistoriaClinica();
+                            nueva.setId(hc.getId());
+                            nueva.setAntecedentes(despues[0]);
+                            nueva.setMedicacionActual(despues[1]);
+                            nueva.setObservaciones(despues[2]);
+                            cambios.add(nueva);
+                        }
+                    }
+                    if (!cambios.isEmpty()) {
+                        diccionarioDao.actualizarTextosBatchTx(cambios, conn);
+                        m.reescritas += cambios.size();
+                    }
+                    tx.commit();
+                }
+                if (lote.size() < tamLote) {
+                    return m;
+                }
+                ultimoId = lote.get(lote.size() - 1).getId();
+            }
+        });
+    }
+
+    private static long largo(String s) {
+        return s == null ? 0 : s.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
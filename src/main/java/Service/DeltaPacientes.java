@@ -0,0 +1,101 @@
+package Service;
+
+import entities.Paciente;
+import exceptions.ServiceException;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Página de la sincronización incremental de réplicas de clientes (ver
+ * PacienteServiceImpl.cambiosDesde).
+ *
+ * La marca que recibe y devuelve el cliente es opaca:
+ * <pre>
+ * &lt;desde&gt;.&lt;despuesDeId&gt;.&lt;inicio&gt;   (microsegundos desde 1970 en la hora de la BD)
+ * </pre>
+ * "desde" y "despuesDeId" son la posición (keyset) dentro de los cambios;
+ * "inicio" es la hora de la primera página de la pasada (0 = pasada nueva).
+ *
+ * actualizadoEn es la hora de la sentencia, no la del commit: al terminar
+ * una pasada la marca retrocede "margen" desde su inicio, así que la
+ * siguiente puede repetir algunos pacientes de los últimos segundos (el
+ * cliente los aplica de nuevo, es idempotente) pero no saltearse ninguno.
+ */
+public final class DeltaPacientes {
+
+    private final List<Paciente> cambios;
+    private final List<Integer> eliminados;
+    private final String siguiente;
+    private final boolean completo;
+
+    DeltaPacientes(List<Paciente> cambios, List<Integer> eliminados, String siguiente, boolean completo) {
+        this.cambios = cambios;
+        this.eliminados = eliminados;
+        this.siguiente = siguiente;
+        this.completo = completo;
+    }
+
+    /** Pacientes activos creados o modificados (con su HC). */
+    public List<Paciente> getCambios() { return cambios; }
+
+    /** IDs de los pacientes dados de baja (lápidas: el cliente los quita). */
+    public List<Integer> getEliminados() { return eliminados; }
+
+    /** Marca a enviar en la próxima llamada. */
+    public String getSiguiente() { return siguiente; }
+
+    /** true si no quedan más páginas: la réplica está al día hasta el inicio de la pasada. */
+    public boolean isCompleto() { return completo; }
+
+    // --- Marca ---
+
+    /** Posición decodificada de una marca. */
+    static final class Marca {
+        final long desde;
+        final int despuesDeId;
+        final long inicio;
+
+        Marca(long desde, int despuesDeId, long inicio) {
+            this.desde = desde;
+            this.despuesDeId = despuesDeId;
+            this.inicio = inicio;
+        }
+
+        /** Sin marca: todos los pacientes (sincronización inicial). */
+        static final Marca INICIAL = new Marca(0, 0, 0);
+
+        static Marca parsear(String texto) throws ServiceException {
+            if (texto == null || texto.isEmpty()) {
+                return INICIAL;
+            }
+            String[] partes = texto.split("\\.");
+            try {
+                if (partes.length == 3) {
+                    Marca m = new Marca(Long.parseLong(partes[0]), Integer.parseInt(partes[1]), Long.parseLong(partes[2]));
+                    if (m.desde >= 0 && m.despuesDeId >= 0 && m.inicio >= 0) {
+                        return m;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // Cae al error de abajo.
+            }
+            throw new ServiceException("Marca de sincronización inválida: " + texto);
+        }
+
+        @Override
+        public String toString() {
+            return desde + "." + despuesDeId + "." + inicio;
+        }
+    }
+
+    static long micros(Timestamp t) {
+        return Math.floorDiv(t.getTime(), 1_000L) * 1_000_000L + t.getNanos() / 1_000;
+    }
+
+    static Timestamp timestamp(long micros) {
+        Timestamp t = new Timestamp(Math.floorDiv(micros, 1_000_000L) * 1_000L);
+        t.setNanos((int) Math.floorMod(micros, 1_000_000L) * 1_000);
+        return t;
+    }
+}
@@ -0,0 +1,359 @@
+package Service;
+
+import Util.Similitud;
+import entities.Paciente;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Detección de pacientes probablemente duplicados (errores de tipeo en
+ * nombre/apellido, mismo DNI con otro formato, etc.).
+ *
+ * Para no comparar todos contra todos (O(n²)), cada paciente se ubica en
+ * "bloques" según claves baratas y solo se comparan pares dentro de un
+ * mismo bloque:
+ * - código fonético del apellido + año de nacimiento
+ * - DNI normalizado (solo dígitos, sin ceros a la izquierda)
+ * - fecha de nacimiento completa + inicial del nombre (cubre errores que
+ *   cambian el código fonético del apellido)
+ *
+ * Un bloque muy grande (p. ej. "GNSLS" de 1950) no se compara completo: se
+ * ordena por nombre y DNI y cada registro se compara solo con sus vecinos
+ * (vecindario ordenado), por lo que el costo total es lineal en n.
+ *
+ * Los bloques se procesan en paralelo con fork/join. El índice queda en
+ * memoria para la verificación rápida de un alta (verificar).
+ */
+public class DetectorDuplicados {
+
+    /** Par de pacientes candidato a fusión, con su puntaje (0..1). */
+    public static final class Candidato {
+        private final Registro a;
+        private final Registro b;
+        private final double puntaje;
+        private final String motivo;
+
+        Candidato(Registro a, Registro b, double puntaje, String motivo) {
+            this.a = a;
+            this.b = b;
+            this.puntaje = puntaje;
+            this.motivo = motivo;
+        }
+
+        public int getIdA() { return a.id; }
+        public int getIdB() { return b.id; }
+        public double getPuntaje() { return puntaje; }
+        public String getMotivo() { return motivo; }
+
+        /** "APELLIDO, NOMBRE (dni)" del primer paciente del par. */
+        public String describirA() { return a.describir(); }
+        public String describirB() { return b.describir(); }
+
+        @Override
+        public String toString() {
+            return String.format("%.3f  #%d %s  <->  #%d %s  [%s]", puntaje, a.id, a.describir(), b.id, b.describir(), motivo);
+        }
+    }
+
+    /** Datos normalizados de un paciente (lo único que se guarda por registro). */
+    static final class Registro {
+        final int id;
+        final String apellido;
+        final String nombre;
+        final String dni;
+        /** Días desde 1970-01-01, o Long.MIN_VALUE si no hay fecha. */
+        final long fecha;
+        final String[] claves;
+
+        Registro(Paciente p) {
+            this.id = p.getId();
+            this.apellido = Similitud.normalizar(p.getApellido());
+            this.nombre = Similitud.normalizar(p.getNombre());
+            this.dni = Similitud.normalizarDni(p.getDni());
+            this.fecha = p.getFechaNacimiento() != null ? p.getFechaNacimiento().toEpochDay() : Long.MIN_VALUE;
+            List<String> c = new ArrayList<>(3);
+            String fonetico = Similitud.codigoFonetico(apellido);
+            if (!fonetico.isEmpty()) {
+                c.add("F" + fonetico + (p.getFechaNacimiento() != null ? "|" + p.getFechaNacimiento().getYear() : ""));
+            }
+            if (!dni.isEmpty()) {
+                c.add("D" + dni);
+            }
+            if (p.getFechaNacimiento() != null && !nombre.isEmpty()) {
+                c.add("N" + fecha + "|" + nombre.charAt(0));
+            }
+            this.claves = c.toArray(new String[0]);
+        }
+
+        String describir() {
+            return apellido + ", " + nombre + " (" + dni + ")";
+        }
+    }
+
+    /** Bloques de hasta este tamaño se comparan todos contra todos. */
+    private static final int BLOQUE_COMPLETO = 256;
+    /** Vecinos con los que se compara cada registro en un bloque grande. */
+    private static final int VENTANA = 32;
+    /** Bloques por tarea fork/join antes de dividir. */
+    private static final int BLOQUES_POR_TAREA = 64;
+
+    private final double umbral;
+    private final ConcurrentHashMap<Integer, Registro> porId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Bloque> bloques = new ConcurrentHashMap<>();
+
+    /**
+     * @param umbral Puntaje mínimo (0..1) para reportar un par; 0.85 es un buen punto de partida
+     */
+    public DetectorDuplicados(double umbral) {
+        this.umbral = umbral;
+    }
+
+    /**
+     * Agrega (o reemplaza, si el ID ya estaba) un paciente en el índice.
+     * Es thread-safe y apto como consumidor de PacienteDAO.recorrerResumen.
+     */
+    public void agregar(Paciente p) {
+        Registro nuevo = new Registro(p);
+        Registro anterior = porId.put(nuevo.id, nuevo);
+        if (anterior != null) {
+            quitarDeBloques(anterior);
+        }
+        for (String clave : nuevo.claves) {
+            // compute: el alta y la baja de un bloque vacío no se cruzan con otra alta en la misma clave.
+            bloques.compute(clave, (k, bloque) -> {
+                Bloque b = bloque != null ? bloque : new Bloque();
+                b.agregar(nuevo);
+                return b;
+            });
+        }
+    }
+
+    /** Quita un paciente del índice (p. ej. tras darlo de baja). */
+    public void quitar(int id) {
+        Registro anterior = porId.remove(id);
+        if (anterior != null) {
+            quitarDeBloques(anterior);
+        }
+    }
+
+    public int getCantidad() {
+        return porId.size();
+    }
+
+    /**
+     * Verificación rápida para un alta: compara al paciente solo contra los
+     * de sus bloques. No modifica el índice.
+     *
+     * @return Candidatos ordenados de mayor a menor puntaje
+     */
+    public List<Candidato> verificar(Paciente p) {
+        Registro nuevo = new Registro(p);
+        Map<Integer, Candidato> mejores = new HashMap<>();
+        for (String clave : nuevo.claves) {
+            Bloque bloque = bloques.get(clave);
+            if (bloque == null) {
+                continue;
+            }
+            for (Registro otro : bloque.copia()) {
+                if (otro.id == nuevo.id) {
+                    continue;
+                }
+                Candidato c = comparar(nuevo, otro);
+                if (c != null) {
+                    mejores.merge(otro.id, c, (x, y) -> x.puntaje >= y.puntaje ? x : y);
+                }
+            }
+        }
+        List<Candidato> lista = new ArrayList<>(mejores.values());
+        lista.sort(Comparator.comparingDouble(Candidato::getPuntaje).reversed());
+        return lista;
+    }
+
+    /**
+     * Compara en paralelo los pares de cada bloque y devuelve los mejores
+     * candidatos (cada par una sola vez, con su mejor puntaje).
+     *
+     * @param maximo Cantidad máxima de candidatos a devolver
+     */
+    public List<Candidato> detectar(int maximo) {
+        Registro[][] lista = bloques.values().stream().map(Bloque::copia).filter(b -> b.length > 1).toArray(Registro[][]::new);
+        ConcurrentHashMap<Long, Candidato> pares = new ConcurrentHashMap<>();
+        ForkJoinPool.commonPool().invoke(new TareaBloques(lista, 0, lista.length, pares));
+        List<Candidato> resultado = new ArrayList<>(pares.values());
+        resultado.sort(Comparator.comparingDouble(Candidato::getPuntaje).reversed()
+                .thenComparingInt(Candidato::getIdA).thenComparingInt(Candidato::getIdB));
+        return resultado.size() > maximo ? new ArrayList<>(resultado.subList(0, maximo)) : resultado;
+    }
+
+    private final class TareaBloques extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Registro[][] lista;
+        private final int desde;
+        private final int hasta;
+        private final ConcurrentHashMap<Long, Candidato> pares;
+
+        TareaBloques(Registro[][] lista, int desde, int hasta, ConcurrentHashMap<Long, Candidato> pares) {
+            this.lista = lista;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.pares = pares;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde > BLOQUES_POR_TAREA) {
+                int medio = (desde + hasta) >>> 1;
+                invokeAll(new TareaBloques(lista, desde, medio, pares), new TareaBloques(lista, medio, hasta, pares));
+                return;
+            }
+            for (int i = desde; i < hasta; i++) {
+                compararBloque(lista[i], pares);
+            }
+        }
+    }
+
+    private void compararBloque(Registro[] bloque, ConcurrentHashMap<Long, Candidato> pares) {
+        Registro[] orden = bloque;
+        int ventana = bloque.length;
+        if (bloque.length > BLOQUE_COMPLETO) {
+            orden = bloque.clone();
+            Arrays.sort(orden, Comparator.comparing((Registro r) -> r.nombre).thenComparing(r -> r.dni));
+            ventana = VENTANA;
+        }
+        for (int i = 0; i < orden.length; i++) {
+            int fin = Math.min(orden.length, i + 1 + ventana);
+            for (int j = i + 1; j < fin; j++) {
+                if (orden[i].id == orden[j].id) {
+                    continue;
+                }
+                Candidato c = comparar(orden[i], orden[j]);
+                if (c != null) {
+                    long clave = ((long) Math.min(c.a.id, c.b.id) << 32) | (Math.max(c.a.id, c.b.id) & 0xffffffffL);
+                    pares.merge(clave, c, (x, y) -> x.puntaje >= y.puntaje ? x : y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Puntaje ponderado: apellido 30%, nombre 20%, DNI 30%, fecha 20%.
+     * Nombre y apellido se comparan también cruzados (cargados al revés).
+     */
+    private Candidato comparar(Registro x, Registro y) {
+        Registro a = x.id <= y.id ? x : y;
+        Registro b = a == x ? y : x;
+        double dni = similitudDni(a.dni, b.dni);
+        double fecha = similitudFecha(a.fecha, b.fecha);
+        if (0.5 + 0.3 * dni + 0.2 * fecha < umbral) {
+            return null; // ni con nombres idénticos alcanzaría el umbral: se evita Jaro-Winkler
+        }
+        double ap = Similitud.jaroWinkler(a.apellido, b.apellido);
+        double no = Similitud.jaroWinkler(a.nombre, b.nombre);
+        double cruzado = (Similitud.jaroWinkler(a.apellido, b.nombre) + Similitud.jaroWinkler(a.nombre, b.apellido)) / 2;
+        double nombres = Math.max(0.6 * ap + 0.4 * no, cruzado);
+        double puntaje = 0.5 * nombres + 0.3 * dni + 0.2 * fecha;
+        if (puntaje < umbral) {
+            return null;
+        }
+        String motivo = String.format("apellido=%.2f nombre=%.2f dni=%.2f fecha=%.2f", ap, no, dni, fecha);
+        return new Candidato(a, b, puntaje, motivo);
+    }
+
+    /** 1 si son iguales; 0.8 con un dígito distinto o dos vecinos transpuestos; si no, 0. */
+    private static double similitudDni(String a, String b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0.0;
+        }
+        if (a.equals(b)) {
+            return 1.0;
+        }
+        if (a.length() != b.length()) {
+            return 0.0;
+        }
+        int primera = -1;
+        int diferencias = 0;
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                if (diferencias++ == 0) {
+                    primera = i;
+                }
+            }
+        }
+        if (diferencias == 1) {
+            return 0.8;
+        }
+        boolean transpuestos = diferencias == 2 && primera + 1 < a.length()
+                && a.charAt(primera) == b.charAt(primera + 1) && a.charAt(primera + 1) == b.charAt(primera);
+        return transpuestos ? 0.8 : 0.0;
+    }
+
+    /** 1 misma fecha; 0.7 a un día o con día y mes invertidos; 0.5 sin fecha; 0.3 mismo año. */
+    private static double similitudFecha(long a, long b) {
+        if (a == Long.MIN_VALUE || b == Long.MIN_VALUE) {
+            return 0.5;
+        }
+        if (a == b) {
+            return 1.0;
+        }
+        if (Math.abs(a - b) == 1) {
+            return 0.7;
+        }
+        LocalDate fa = LocalDate.ofEpochDay(a);
+        LocalDate fb = LocalDate.ofEpochDay(b);
+        if (fa.getYear() != fb.getYear()) {
+            return 0.0;
+        }
+        boolean invertidos = fa.getDayOfMonth() == fb.getMonthValue() && fa.getMonthValue() == fb.getDayOfMonth();
+        return invertidos ? 0.7 : 0.3;
+    }
+
+    private void quitarDeBloques(Registro r) {
+        for (String clave : r.claves) {
+            bloques.computeIfPresent(clave, (k, bloque) -> bloque.quitar(r) ? null : bloque);
+        }
+    }
+
+    /**
+     * Registros de un bloque en un arreglo que crece por duplicación: el
+     * alta es O(1) amortizado (copiar el bloque entero en cada alta hacía
+     * cuadrática la carga de un bloque grande). Las lecturas trabajan sobre
+     * una copia, así que no bloquean a las altas mientras comparan.
+     */
+    private static final class Bloque {
+        private Registro[] registros = new Registro[4];
+        private int tamano;
+
+        synchronized void agregar(Registro r) {
+            if (tamano == registros.length) {
+                registros = Arrays.copyOf(registros, tamano * 2);
+            }
+            registros[tamano++] = r;
+        }
+
+        /** @return true si el bloque quedó vacío */
+        synchronized boolean quitar(Registro r) {
+            int destino = 0;
+            for (int i = 0; i < tamano; i++) {
+                if (registros[i] != r) {
+                    registros[destino++] = registros[i];
+                }
+            }
+            Arrays.fill(registros, destino, tamano, null);
+            tamano = destino;
+            return tamano == 0;
+        }
+
+        synchronized Registro[] copia() {
+            return Arrays.copyOf(registros, tamano);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package Service;
+
+import Auditoria.Auditor;
+import Util.Apagado;
+import Util.Hilos;
+import entities.HistoriaClinica;
+import entities.Paciente;
+import exceptions.SaturacionServiceException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Escritura diferida (write-behind) de las modificaciones de pacientes
+ * (ver PacienteServiceImpl.actualizar, -Descritura.diferida=true).
+ *
+ * Cada actualización se confirma al llamador apenas queda en el buffer,
+ * uno por ID de paciente: una actualización posterior del mismo paciente
+ * reemplaza a la pendiente (las dos escriben todas las columnas; si la
+ * nueva no trae HC, se conserva la de la anterior). Se vacía en lotes, un
+ * UPDATE por lotes y un solo commit por shard, cuando se juntan
+ * "maxPendientes" pacientes o cada "periodoMs", lo que ocurra primero.
+ * Los lotes se escriben en orden de ID, así que dos vaciados (de esta u
+ * otra instancia) toman los bloqueos en el mismo orden.
+ *
+ * Durabilidad: una actualización confirmada vive solo en memoria hasta el
+ * siguiente vaciado (a lo sumo "periodoMs" más lo que tarde el lote). Al
+ * cerrar (shutdown hook: fin normal, System.exit, SIGTERM o Ctrl+C) se
+ * vacía lo pendiente y se reintenta si la BD no responde; si aun así no se
+ * puede, los IDs perdidos se informan por stderr. Un corte abrupto (kill
+ * -9, caída de la JVM o del equipo) pierde lo pendiente.
+ *
+ * Si la BD rechaza un lote por los datos (unicidad, datos inválidos) se
+ * reintenta de a un paciente y los rechazados se descartan (se cuentan e
+ * informan por stderr); un error transitorio deja el lote en el buffer
+ * para el próximo vaciado. Con "limite" pacientes pendientes (p. ej. la BD
+ * caída) se rechazan las actualizaciones de pacientes nuevos en el buffer.
+ */
+public class EscrituraDiferida {
+
+    /**
+     * Escribe un lote del mismo shard en una transacción y aplica sus efectos
+     * posteriores al commit. usuarios.get(i) es el usuario de auditoría que
+     * encoló lote.get(i) (el vaciado corre en otro hilo).
+     */
+    @FunctionalInterface
+    public interface Escritor {
+        void escribir(int shard, List<Paciente> lote, List<String> usuarios) throws Exception;
+    }
+
+    private static final class Pendiente {
+        final Paciente paciente;
+        final int shard;
+        final String usuario;
+
+        Pendiente(Paciente paciente, int shard, String usuario) {
+            this.paciente = paciente;
+            this.shard = shard;
+            this.usuario = usuario;
+        }
+    }
+
+    private static final int INTENTOS_AL_CERRAR = 3;
+    private static final long PAUSA_AL_CERRAR_MS = 1_000L;
+
+    private final Escritor escritor;
+    private final int maxPendientes;
+    private final int limite;
+    private final ScheduledExecutorService programador =
+            Executors.newSingleThreadScheduledExecutor(Hilos.fabrica("escritura-diferida", true));
+    private final AtomicBoolean vaciadoPedido = new AtomicBoolean();
+    private final Object bloqueoVaciado = new Object();
+
+    // Protegidos por "this".
+    private final Map<Integer, Pendiente> pendientes = new HashMap<>();
+    private final Map<String, Integer> idPorDni = new HashMap<>();
+    private boolean cerrada;
+
+    private final AtomicLong encoladas = new AtomicLong();
+    private final AtomicLong combinadas = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong escritas = new AtomicLong();
+    private final AtomicLong rechazadas = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+
+    /**
+     * @param maxPendientes Pacientes pendientes que disparan un vaciado (y tamaño máximo de cada lote)
+     * @param limite Pacientes pendientes a partir de los cuales se rechazan los nuevos
+     */
+    public EscrituraDiferida(Escritor escritor, int maxPendientes, int limite) {
+        if (maxPendientes < 1 || limite < maxPendientes) {
+            throw new IllegalArgumentException("Se requiere 1 <= maxPendientes <= limite");
+        }
+        this.escritor = escritor;
+        this.maxPendientes = maxPendientes;
+        this.limite = limite;
+    }
+
+    /**
+     * Programa un vaciado cada "periodoMs" milisegundos y el vaciado final al cerrar la JVM.
+     */
+    public void iniciar(long periodoMs) {
+        programador.scheduleWithFixedDelay(this::vaciarSinFallar, periodoMs, periodoMs, TimeUnit.MILLISECONDS);
+        Apagado.alApagar(Apagado.Fase.ESCRITURAS, this::cerrar);
+    }
+
+    /**
+     * Deja la actualización en el buffer (guarda una copia).
+     *
+     * @return false si ya está cerrada: el llamador debe escribir directamente
+     * @throws SaturacionServiceException si hay "limite" pacientes pendientes y este no es uno de ellos
+     */
+    public boolean encolar(Paciente p, int shard) throws SaturacionServiceException {
+        Paciente copia = p.copiar();
+        String usuario = Auditor.getUsuario();
+        int cantidad;
+        synchronized (this) {
+            if (cerrada) {
+                return false;
+            }
+            Pendiente anterior = pendientes.get(copia.getId());
+            if (anterior == null && pendientes.size() >= limite) {
+                throw new SaturacionServiceException("Escritura diferida saturada: " + pendientes.size()
+                        + " pacientes pendientes de escribir.", null);
+            }
+            if (anterior != null) {
+                combinar(anterior.paciente, copia);
+                idPorDni.remove(anterior.paciente.getDni(), copia.getId());
+                combinadas.incrementAndGet();
+            }
+            pendientes.put(copia.getId(), new Pendiente(copia, shard, usuario));
+            if (copia.getDni() != null) {
+                idPorDni.put(copia.getDni(), copia.getId());
+            }
+            cantidad = pendientes.size();
+        }
+        encoladas.incrementAndGet();
+        if (cantidad >= maxPendientes && vaciadoPedido.compareAndSet(false, true)) {
+            programador.execute(this::vaciarSinFallar);
+        }
+        return true;
+    }
+
+    /** La HC de la actualización anterior sigue pendiente si la nueva no la modifica. */
+    private static void combinar(Paciente anterior, Paciente nuevo) {
+        HistoriaClinica hc = nuevo.getHistoriaClinica();
+        if ((hc == null || hc.getId() <= 0) && anterior.getHistoriaClinica() != null && anterior.getHistoriaClinica().getId() > 0) {
+            nuevo.setHistoriaClinica(anterior.getHistoriaClinica());
+        }
+    }
+
+    /** @return Copia del estado pendiente del paciente, o null si no tiene cambios pendientes */
+    public synchronized Paciente getPorId(int id) {
+        Pendiente p = pendientes.get(id);
+        return p != null ? p.paciente.copiar() : null;
+    }
+
+    /** @return Copia del paciente pendiente con ese DNI, o null */
+    public synchronized Paciente getPorDni(String dni) {
+        Integer id = idPorDni.get(dni);
+        return id != null ? getPorId(id) : null;
+    }
+
+    /**
+     * Reemplaza en el listado (leído de la BD) los pacientes que tienen
+     * cambios pendientes por su estado pendiente. El orden es el de la BD.
+     */
+    public List<Paciente> superponer(List<Paciente> pacientes) {
+        synchronized (this) {
+            if (pendientes.isEmpty()) {
+                return pacientes;
+            }
+        }
+        List<Paciente> resultado = new ArrayList<>(pacientes.size());
+        for (Paciente p : pacientes) {
+            Paciente pendiente = getPorId(p.getId());
+            resultado.add(pendiente != null ? pendiente : p);
+        }
+        return resultado;
+    }
+
+    public synchronized int tamano() {
+        return pendientes.size();
+    }
+
+    // --- Vaciado ---
+
+    /**
+     * Escribe todo lo pendiente hasta ahora (lo que llegue mientras tanto
+     * queda para el siguiente). Lo usan el programador y el cierre.
+     *
+     * @throws Exception el primer error transitorio (esos pacientes siguen pendientes)
+     */
+    public void vaciar() throws Exception {
+        synchronized (bloqueoVaciado) {
+            vaciadoPedido.set(false);
+            List<Pendiente> tanda;
+            synchronized (this) {
+                tanda = new ArrayList<>(pendientes.values());
+            }
+            tanda.sort(Comparator.comparingInt((Pendiente p) -> p.shard).thenComparingInt(p -> p.paciente.getId()));
+
+            Exception primerError = null;
+            int desde = 0;
+            while (desde < tanda.size()) {
+                int shard = tanda.get(desde).shard;
+                int hasta = desde;
+                while (hasta < tanda.size() && hasta - desde < maxPendientes && tanda.get(hasta).shard == shard) {
+                    hasta++;
+                }
+                Exception error = escribirLote(tanda.subList(desde, hasta));
+                if (primerError == null) {
+                    primerError = error;
+                }
+                desde = hasta;
+            }
+            if (primerError != null) {
+                throw primerError;
+            }
+        }
+    }
+
+    /**
+     * Escribe solo la actualización pendiente de ese paciente, si hay.
+     *
+     * @throws Exception si no se pudo escribir (queda pendiente si el error es transitorio)
+     */
+    public void vaciar(int id) throws Exception {
+        synchronized (bloqueoVaciado) {
+            Pendiente p;
+            synchronized (this) {
+                p = pendientes.get(id);
+            }
+            if (p != null) {
+                Exception error = escribirLote(List.of(p));
+                if (error != null) {
+                    throw error;
+                }
+            }
+        }
+    }
+
+    /**
+     * Quita la actualización pendiente del paciente sin escribirla (la
+     * reemplaza una escritura directa del llamador).
+     *
+     * @return Copia de la pendiente, o null
+     */
+    public synchronized Paciente descartar(int id) {
+        Pendiente p = pendientes.remove(id);
+        if (p == null) {
+            return null;
+        }
+        idPorDni.remove(p.paciente.getDni(), id);
+        return p.paciente.copiar();
+    }
+
+    private Exception escribirLote(List<Pendiente> lote) {
+        try {
+            List<String> usuarios = new ArrayList<>(lote.size());
+            for (Pendiente p : lote) {
+                usuarios.add(p.usuario);
+            }
+            escritor.escribir(lote.get(0).shard, pacientes(lote), usuarios);
+            lotes.incrementAndGet();
+            quitar(lote, true);
+            return null;
+        } catch (Exception e) {
+            if (lote.size() == 1) {
+                return descartarSiEsDefinitivo(lote.get(0), e);
+            }
+            if (!esDefinitivo(e)) {
+                errores.incrementAndGet();
+                return e;
+            }
+        }
+        // Algún paciente impide el lote: de a uno, para aislarlo.
+        Exception primerError = null;
+        for (Pendiente p : lote) {
+            Exception error = escribirLote(List.of(p));
+            if (primerError == null) {
+                primerError = error;
+            }
+        }
+        return primerError;
+    }
+
+    private Exception descartarSiEsDefinitivo(Pendiente p, Exception e) {
+        if (!esDefinitivo(e)) {
+            errores.incrementAndGet();
+            return e;
+        }
+        rechazadas.incrementAndGet();
+        quitar(List.of(p), false);
+        System.err.println("⚠️ Escritura diferida: se descartó la actualización del Paciente ID "
+                + p.paciente.getId() + ": " + e.getMessage());
+        return null;
+    }
+
+    /** Rechazos de la BD que no cambian al reintentar: integridad (23xxx) o datos inválidos (22xxx). */
+    private static boolean esDefinitivo(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                String estado = ((SQLException) t).getSQLState();
+                if (estado != null && (estado.startsWith("22") || estado.startsWith("23"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<Paciente> pacientes(List<Pendiente> lote) {
+        List<Paciente> pacientes = new ArrayList<>(lote.size());
+        for (Pendiente p : lote) {
+            pacientes.add(p.paciente);
+        }
+        return pacientes;
+    }
+
+    /**
+     * Quita los escritos (o descartados), salvo los que una actualización
+     * posterior ya reemplazó.
+     */
+    private synchronized void quitar(List<Pendiente> lote, boolean escritos) {
+        for (Pendiente p : lote) {
+            if (pendientes.remove(p.paciente.getId(), p)) {
+                idPorDni.remove(p.paciente.getDni(), p.paciente.getId());
+                if (escritos) {
+                    escritas.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void vaciarSinFallar() {
+        try {
+            vaciar();
+        } catch (Exception e) {
+            // Los pacientes siguen pendientes: el próximo vaciado los reintenta.
+            System.err.println("⚠️ No se pudieron escribir las actualizaciones diferidas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deja de aceptar actualizaciones (las siguientes se escriben
+     * directamente) y vacía lo pendiente, con reintentos.
+     */
+    public void cerrar() {
+        synchronized (this) {
+            if (cerrada) {
+                return;
+            }
+            cerrada = true;
+        }
+        programador.shutdownNow();
+        for (int intento = 1; intento <= INTENTOS_AL_CERRAR; intento++) {
+            try {
+                vaciar();
+                return;
+            } catch (Exception e) {
+                System.err.println("⚠️ Escritura diferida: falló el vaciado final (intento " + intento + "): " + e.getMessage());
+            }
+            if (intento < INTENTOS_AL_CERRAR) {
+                try {
+                    Thread.sleep(PAUSA_AL_CERRAR_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        synchronized (this) {
+            if (!pendientes.isEmpty()) {
+                System.err.println("❌ Escritura diferida: se perdieron las actualizaciones de los Pacientes ID "
+                        + new ArrayList<>(pendientes.keySet()));
+            }
+        }
+    }
+
+    public long getEncoladas() { return encoladas.get(); }
+    public long getCombinadas() { return combinadas.get(); }
+    /** Transacciones confirmadas (una por lote). */
+    public long getLotes() { return lotes.get(); }
+    public long getEscritas() { return escritas.get(); }
+    public long getRechazadas() { return rechazadas.get(); }
+    public long getErrores() { return errores.get(); }
+}
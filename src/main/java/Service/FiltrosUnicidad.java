@@ -0,0 +1,192 @@
+package Service;
+
+import Util.FiltroBloom;
+import Util.Hilos;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Filtros de Bloom de DNI y Nro. de HC ya usados, para evitar INSERTs que
+ * terminarían en error 1062 y rollback.
+ *
+ * - "Seguro que no existe": el alta sigue sin consultar nada.
+ * - "Puede existir": el Service hace una consulta indexada de existencia
+ *   (SELECT 1 ... LIMIT 1) antes de escribir. Si no existía, fue un falso
+ *   positivo y se cuenta para la métrica.
+ *
+ * Los filtros se cargan en segundo plano con un recorrido de todas las filas
+ * (incluidas las dadas de baja, que siguen ocupando el DNI/Nro. HC por la
+ * restricción UNIQUE) y se reconstruyen periódicamente para descartar los
+ * valores que ya no existen y ajustar el tamaño. Mientras no terminó la
+ * primera carga, estaActivo() es false y el alta se comporta como antes.
+ *
+ * Un falso negativo (valor agregado durante una reconstrucción y perdido)
+ * no rompe nada: la restricción UNIQUE de la BD sigue siendo la garantía.
+ */
+public class FiltrosUnicidad {
+
+    /** Origen de los valores existentes (recorrido completo de la BD). */
+    @FunctionalInterface
+    public interface Cargador {
+        void cargar(Consumer<String> dnis, Consumer<String> nrosHistoria) throws Exception;
+    }
+
+    private static final class Par {
+        final FiltroBloom dni;
+        final FiltroBloom nroHistoria;
+
+        Par(long capacidad, double tasa) {
+            this.dni = new FiltroBloom(capacidad, tasa);
+            this.nroHistoria = new FiltroBloom(capacidad, tasa);
+        }
+    }
+
+    private final Cargador cargador;
+    private final long capacidadMinima;
+    private final double tasaObjetivo;
+    private final ScheduledExecutorService programador =
+            Executors.newSingleThreadScheduledExecutor(Hilos.fabrica("filtros-unicidad", true));
+
+    private volatile Par actual;
+    /** Filtros en reconstrucción: también reciben las altas concurrentes. */
+    private volatile Par enConstruccion;
+
+    private final AtomicLong consultas = new AtomicLong();
+    private final AtomicLong descartesRapidos = new AtomicLong();
+    private final AtomicLong verificacionesEnBd = new AtomicLong();
+    private final AtomicLong falsosPositivos = new AtomicLong();
+    private final AtomicLong duplicadosEvitados = new AtomicLong();
+    private final AtomicLong reconstrucciones = new AtomicLong();
+
+    /**
+     * @param cargador Recorre los DNI y Nro. HC existentes
+     * @param capacidadMinima Capacidad mínima de cada filtro (se agranda según las filas encontradas)
+     * @param tasaObjetivo Tasa de falsos positivos deseada (ej. 0.01)
+     */
+    public FiltrosUnicidad(Cargador cargador, long capacidadMinima, double tasaObjetivo) {
+        this.cargador = cargador;
+        this.capacidadMinima = capacidadMinima;
+        this.tasaObjetivo = tasaObjetivo;
+    }
+
+    /**
+     * Programa la carga inicial (ya) y las reconstrucciones cada "periodoMin" minutos (0 = nunca).
+     */
+    public void iniciar(long periodoMin) {
+        programador.execute(this::reconstruirSinFallar);
+        if (periodoMin > 0) {
+            programador.scheduleWithFixedDelay(this::reconstruirSinFallar, periodoMin, periodoMin, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Reconstruye los filtros desde la BD y los reemplaza al terminar.
+     */
+    public void reconstruir() throws Exception {
+        Par anterior = actual;
+        long capacidad = Math.max(capacidadMinima,
+                anterior == null ? 0 : 2 * Math.max(anterior.dni.getCantidad(), anterior.nroHistoria.getCantidad()));
+        Par nuevo = new Par(capacidad, tasaObjetivo);
+        enConstruccion = nuevo;
+        try {
+            cargador.cargar(nuevo.dni::agregar, nuevo.nroHistoria::agregar);
+            actual = nuevo;
+            reconstrucciones.incrementAndGet();
+        } finally {
+            enConstruccion = null;
+        }
+    }
+
+    private void reconstruirSinFallar() {
+        try {
+            reconstruir();
+        } catch (Exception e) {
+            // Se sigue con los filtros anteriores (o sin filtros): la BD valida igual.
+            System.err.println("⚠️ No se pudieron cargar los filtros de unicidad: " + e.getMessage());
+        }
+    }
+
+    public boolean estaActivo() {
+        return actual != null;
+    }
+
+    /** @return false si el DNI seguro no existe; true si hay que verificarlo en la BD */
+    public boolean dniPuedeExistir(String dni) {
+        Par par = actual;
+        return par == null || puedeExistir(par.dni, dni);
+    }
+
+    /** @return false si el Nro. HC seguro no existe; true si hay que verificarlo en la BD */
+    public boolean nroHistoriaPuedeExistir(String nroHistoria) {
+        Par par = actual;
+        return par == null || puedeExistir(par.nroHistoria, nroHistoria);
+    }
+
+    private boolean puedeExistir(FiltroBloom filtro, String valor) {
+        consultas.incrementAndGet();
+        if (filtro.puedeContener(valor)) {
+            verificacionesEnBd.incrementAndGet();
+            return true;
+        }
+        descartesRapidos.incrementAndGet();
+        return false;
+    }
+
+    /** Resultado de la consulta en la BD tras un "puede existir". */
+    public void registrarVerificacion(boolean existia) {
+        (existia ? duplicadosEvitados : falsosPositivos).incrementAndGet();
+    }
+
+    /** Agrega valores recién insertados (o actualizados). Los null se ignoran. */
+    public void registrar(String dni, String nroHistoria) {
+        Par[] destinos = {actual, enConstruccion};
+        for (Par par : destinos) {
+            if (par == null) {
+                continue;
+            }
+            if (dni != null) {
+                par.dni.agregar(dni);
+            }
+            if (nroHistoria != null) {
+                par.nroHistoria.agregar(nroHistoria);
+            }
+        }
+    }
+
+    /**
+     * Tasa de falsos positivos observada: de los valores que no existían,
+     * qué fracción el filtro igual mandó a verificar en la BD.
+     */
+    public double tasaFalsosPositivosObservada() {
+        long fp = falsosPositivos.get();
+        long n = fp + descartesRapidos.get();
+        return n == 0 ? 0.0 : (double) fp / n;
+    }
+
+    /** Tasa teórica según la carga de los filtros actuales (la peor de las dos). */
+    public double tasaFalsosPositivosEstimada() {
+        Par par = actual;
+        return par == null ? 0.0 : Math.max(par.dni.tasaFalsosPositivosEstimada(), par.nroHistoria.tasaFalsosPositivosEstimada());
+    }
+
+    public long getConsultas() { return consultas.get(); }
+    public long getDescartesRapidos() { return descartesRapidos.get(); }
+    public long getVerificacionesEnBd() { return verificacionesEnBd.get(); }
+    public long getFalsosPositivos() { return falsosPositivos.get(); }
+    public long getDuplicadosEvitados() { return duplicadosEvitados.get(); }
+    public long getReconstrucciones() { return reconstrucciones.get(); }
+
+    public String resumen() {
+        Par par = actual;
+        return String.format("activo=%s consultas=%d descartes=%d verificaciones_bd=%d duplicados_evitados=%d "
+                        + "falsos_positivos=%d fp_observada=%.4f fp_estimada=%.4f dni=%d nro_hc=%d reconstrucciones=%d",
+                par != null, getConsultas(), getDescartesRapidos(), getVerificacionesEnBd(), getDuplicadosEvitados(),
+                getFalsosPositivos(), tasaFalsosPositivosObservada(), tasaFalsosPositivosEstimada(),
+                par == null ? 0 : par.dni.getCantidad(), par == null ? 0 : par.nroHistoria.getCantidad(),
+                getReconstrucciones());
+    }
+}
@@ -3,19 +3,59 @@
  * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
  */
 package Service;
+import Auditoria.Auditor;
+import Auditoria.EventoAuditoria;
+import Config.Compartimento;
+import Config.ShardRouter;
 import Dao.HistoriaClinicaDAO;
+import Dao.HistoriaClinicaDAOShardeado;
+import Dao.RevisionHistoriaDAO;
+import Util.DiffLineas;
 import entities.HistoriaClinica;
+import entities.RevisionHistoria;
 import exceptions.ServiceException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service de HistoriaClinica. Dado que la relación es 1:1 unidireccional (A -> B),
  * las operaciones transaccionales compuestas (crear/eliminar) son orquestadas
- * por PacienteServiceImpl. Este Service se enfoca en las operaciones CRUD simples.
+ * por PacienteServiceImpl. Este Service se enfoca en las operaciones CRUD simples
+ * y en las lecturas directas de HC (por ID, por Nro. de HC, por lote de
+ * pacientes y paginadas), sin el JOIN completo de PacienteDAO.
+ *
+ * Las lecturas reciben los campos a traer (HistoriaClinicaDAO.CAMPOS_RESUMEN,
+ * CAMPOS_TODOS o cualquier subconjunto de HistoriaClinicaFilas.CAMPOS); los
+ * que no se piden quedan en null. Se auditan como las de Paciente, con el
+ * ID del paciente de la HC.
+ *
+ * Con la escritura diferida de pacientes activa, la actualización de una HC
+ * escribe antes la modificación pendiente de su paciente: esa lleva una
+ * copia completa de la HC y, escrita después, pisaría la actualización.
  */
 public class HistoriaClinicaServiceImpl implements GenericService<HistoriaClinica> {
 
-    private final HistoriaClinicaDAO historiaClinicaDao = new HistoriaClinicaDAO();
+    private final HistoriaClinicaDAO historiaClinicaDao = ShardRouter.estaActivo() ? new HistoriaClinicaDAOShardeado() : new HistoriaClinicaDAO();
+
+    // Máximo de pacientes por llamada a getPorPacienteIds (el DAO los consulta de a 500).
+    private static final int MAX_LOTE = 10_000;
+
+    /** Buffer de PacienteServiceImpl, o null si no hay escritura diferida. */
+    private final EscrituraDiferida escrituraDiferida;
+
+    public HistoriaClinicaServiceImpl() {
+        this(null);
+    }
+
+    /**
+     * @param escrituraDiferida La de PacienteServiceImpl (getEscrituraDiferida()), o null
+     */
+    public HistoriaClinicaServiceImpl(EscrituraDiferida escrituraDiferida) {
+        this.escrituraDiferida = escrituraDiferida;
+    }
     
     // --- Métodos de GenericService ---
 
@@ -33,9 +73,25 @@ public class HistoriaClinicaServiceImpl implements GenericService<HistoriaClinic
     @Override
     public void actualizar(HistoriaClinica entidad) throws Exception {
         // Operación simple
+        vaciarPendiente(entidad);
         historiaClinicaDao.actualizar(entidad); 
     }
 
+    /**
+     * Escribe la modificación pendiente del paciente de la HC (o todo el
+     * buffer, si la entidad no trae el ID del paciente).
+     */
+    private void vaciarPendiente(HistoriaClinica entidad) throws Exception {
+        if (escrituraDiferida == null) {
+            return;
+        }
+        if (entidad.getPacienteId() != null && entidad.getPacienteId() > 0) {
+            escrituraDiferida.vaciar(entidad.getPacienteId().intValue());
+        } else {
+            escrituraDiferida.vaciar();
+        }
+    }
+
     @Override
     public void eliminar(int id) throws Exception {
         // Se lanza excepción porque la eliminación de HC debe hacerse mediante la eliminación del Paciente.
@@ -44,11 +100,156 @@ public class HistoriaClinicaServiceImpl implements GenericService<HistoriaClinic
 
     @Override
     public HistoriaClinica getById(int id) throws Exception {
-        return historiaClinicaDao.getById(id);
+        return getById(id, HistoriaClinicaDAO.CAMPOS_TODOS);
+    }
+
+    public HistoriaClinica getById(int id, Set<String> campos) throws Exception {
+        if (id <= 0) {
+            throw new ServiceException("El ID de la Historia Clínica debe ser positivo.");
+        }
+        validarCampos(campos);
+        HistoriaClinica hc = historiaClinicaDao.getById(id, campos);
+        auditarLectura(hc, "hc.getById");
+        return hc;
+    }
+
+    /**
+     * Búsqueda por Nro. de HC (lo que se tipea en el archivo), por el índice UNIQUE.
+     * @return La HC activa con ese número, o null
+     */
+    public HistoriaClinica buscarPorNroHistoria(String nroHistoria, Set<String> campos) throws Exception {
+        if (nroHistoria == null || nroHistoria.trim().isEmpty()) {
+            throw new ServiceException("El Nro. de Historia Clínica no puede estar vacío.");
+        }
+        validarCampos(campos);
+        HistoriaClinica hc = historiaClinicaDao.buscarPorNroHistoria(nroHistoria.trim(), campos);
+        auditarLectura(hc, "hc.buscarPorNroHistoria");
+        return hc;
+    }
+
+    /**
+     * HCs activas de un lote de pacientes (p. ej. los de una página del listado).
+     * @return HC por ID de paciente; los que no tienen HC activa no aparecen
+     */
+    public Map<Integer, HistoriaClinica> getPorPacienteIds(Collection<Integer> pacienteIds, Set<String> campos) throws Exception {
+        if (pacienteIds == null || pacienteIds.contains(null)) {
+            throw new ServiceException("La lista de IDs de Paciente no puede ser null ni contener null.");
+        }
+        if (pacienteIds.size() > MAX_LOTE) {
+            throw new ServiceException("Se pueden pedir como máximo " + MAX_LOTE + " pacientes por vez.");
+        }
+        validarCampos(campos);
+        Map<Integer, HistoriaClinica> historias = pacienteIds.isEmpty() ? Map.of() : historiaClinicaDao.getPorPacienteIds(pacienteIds, campos);
+        auditarListado(historias.values(), "hc.getPorPacienteIds");
+        return historias;
+    }
+
+    /**
+     * Listado paginado por Nro. de HC.
+     * @param despuesDe Último Nro. de HC de la página anterior, o null para la primera
+     */
+    public List<HistoriaClinica> getPagina(String despuesDe, int limite, Set<String> campos) throws Exception {
+        if (limite < 1 || limite > 1_000) {
+            throw new ServiceException("El tamaño de página debe estar entre 1 y 1000.");
+        }
+        validarCampos(campos);
+        List<HistoriaClinica> pagina = historiaClinicaDao.getPagina(despuesDe, limite, campos);
+        auditarListado(pagina, "hc.getPagina");
+        return pagina;
     }
 
     @Override
     public List<HistoriaClinica> getAll() throws Exception {
-        return historiaClinicaDao.getAll();
+        // Listado completo: compite con el trabajo masivo, no con las consultas puntuales.
+        List<HistoriaClinica> historias = Compartimento.MASIVO.ejecutar(historiaClinicaDao::getAll);
+        auditarListado(historias, "hc.getAll");
+        return historias;
+    }
+
+    // --- Revisiones de los textos clínicos (ver Dao.RevisionHistoriaDAO) ---
+
+    /**
+     * Revisiones de una HC (número, fecha, tamaño), sin los textos.
+     */
+    public List<RevisionHistoria> getRevisiones(int historiaId) throws Exception {
+        validarRevisiones(historiaId);
+        List<RevisionHistoria> revisiones = historiaClinicaDao.getRevisiones(historiaId);
+        if (!revisiones.isEmpty()) {
+            Auditor.registrar(EventoAuditoria.Tipo.LECTURA, (int) revisiones.get(0).getPacienteId(), "hc.getRevisiones");
+        }
+        return revisiones;
+    }
+
+    /**
+     * Textos de una HC tal como estaban en esa revisión.
+     * @return La revisión, o null si la HC no la tiene
+     */
+    public RevisionHistoria getRevision(int historiaId, int revision) throws Exception {
+        validarRevisiones(historiaId);
+        if (revision <= 0) {
+            throw new ServiceException("El número de revisión debe ser positivo.");
+        }
+        RevisionHistoria r = historiaClinicaDao.getRevision(historiaId, revision);
+        if (r != null) {
+            Auditor.registrar(EventoAuditoria.Tipo.LECTURA, (int) r.getPacienteId(), "hc.getRevision");
+        }
+        return r;
+    }
+
+    /**
+     * Diferencia por líneas de cada texto entre dos revisiones de una HC.
+     * @return Por campo ("antecedentes", "medicacionActual", "observaciones"),
+     *         solo los que cambiaron
+     */
+    public Map<String, List<DiffLineas.Linea>> compararRevisiones(int historiaId, int desde, int hasta) throws Exception {
+        RevisionHistoria a = getRevision(historiaId, desde);
+        RevisionHistoria b = getRevision(historiaId, hasta);
+        if (a == null || b == null) {
+            throw new ServiceException("La Historia Clínica " + historiaId + " no tiene la revisión " + (a == null ? desde : hasta) + ".");
+        }
+        Map<String, List<DiffLineas.Linea>> cambios = new LinkedHashMap<>();
+        agregarDiferencia(cambios, "antecedentes", a.getAntecedentes(), b.getAntecedentes());
+        agregarDiferencia(cambios, "medicacionActual", a.getMedicacionActual(), b.getMedicacionActual());
+        agregarDiferencia(cambios, "observaciones", a.getObservaciones(), b.getObservaciones());
+        return cambios;
+    }
+
+    private static void agregarDiferencia(Map<String, List<DiffLineas.Linea>> cambios, String campo, String antes, String despues) {
+        List<DiffLineas.Linea> diferencia = DiffLineas.comparar(antes, despues);
+        if (DiffLineas.hayCambios(diferencia)) {
+            cambios.put(campo, diferencia);
+        }
+    }
+
+    private static void validarRevisiones(int historiaId) throws ServiceException {
+        if (!RevisionHistoriaDAO.estaActivo()) {
+            throw new ServiceException("Las revisiones de Historia Clínica no están activas (-Dhc.revisiones=true).");
+        }
+        if (historiaId <= 0) {
+            throw new ServiceException("El ID de la Historia Clínica debe ser positivo.");
+        }
+    }
+
+    private static void validarCampos(Set<String> campos) throws ServiceException {
+        if (campos == null || !HistoriaClinicaDAO.CAMPOS_TODOS.containsAll(campos)) {
+            throw new ServiceException("Campos de Historia Clínica inválidos: " + campos
+                    + " (válidos: " + HistoriaClinicaDAO.CAMPOS_TODOS + ").");
+        }
+    }
+
+    // --- Auditoría (ver Auditoria.Auditor; sin efecto si está desactivada) ---
+
+    private static void auditarLectura(HistoriaClinica hc, String detalle) {
+        if (hc != null) {
+            Auditor.registrar(EventoAuditoria.Tipo.LECTURA, hc.getPacienteId().intValue(), detalle);
+        }
+    }
+
+    private static void auditarListado(Collection<HistoriaClinica> historias, String detalle) {
+        if (Auditor.estaActivo()) {
+            for (HistoriaClinica hc : historias) {
+                Auditor.registrar(EventoAuditoria.Tipo.LISTADO, hc.getPacienteId().intValue(), detalle);
+            }
+        }
     }
 }
@@ -0,0 +1,16 @@
+package Service;
+
+import entities.Paciente;
+import java.util.List;
+
+/**
+ * Contrato del Service de Paciente: CRUD genérico más las consultas
+ * propias (DNI y listado paginado).
+ *
+ * PacienteServiceImpl es la implementación sobre MySQL; el arnés de carga
+ * usa además un sustituto en memoria con el mismo contrato.
+ */
+public interface PacienteService extends GenericService<Paciente> {
+    Paciente buscarPorDni(String dni) throws Exception;
+    List<Paciente> getPagina(Paciente despuesDe, int limite) throws Exception;
+}
@@ -1,23 +1,80 @@
 
 package Service;
 
+import Auditoria.Auditor;
+import Auditoria.EventoAuditoria;
+import Config.Compartimento;
 import Config.DatabaseConnection;
+import Config.Plazo;
+import Config.SaturacionException;
+import Config.ShardRouter;
 import Config.TransactionManager;
+import Dao.CambiosDAO;
 import Dao.PacienteDAO; 
+import Dao.PacienteDAOShardeado;
 import Dao.HistoriaClinicaDAO; 
 import entities.Paciente;
 import entities.HistoriaClinica;
+import exceptions.SaturacionServiceException;
 import exceptions.ServiceException;
+import exceptions.TimeoutServiceException;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTimeoutException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 // Implementa la interfaz genérica que definiste
-public class PacienteServiceImpl implements GenericService<Paciente> {
+public class PacienteServiceImpl implements PacienteService {
 
     // Instancias de los DAOs que se inyectan/utilizan
     // (Usando los nombres de clase exactos que definiste en el DAO)
-    private final PacienteDAO pacienteDao = new PacienteDAO();
+    // Con -Ddb.shards el DAO de Paciente reparte las lecturas entre shards (ver ShardRouter).
+    private final PacienteDAOShardeado shards = ShardRouter.estaActivo() ? new PacienteDAOShardeado() : null;
+    private final PacienteDAO pacienteDao = shards != null ? shards : new PacienteDAO();
     private final HistoriaClinicaDAO historiaClinicaDao = new HistoriaClinicaDAO();
+
+    // Coalescencia de lecturas concurrentes idénticas (ver SingleFlight).
+    // Toda escritura confirmada debe llamar a invalidarLecturasEnVuelo().
+    private final SingleFlight<Integer, Paciente> lecturasPorId = new SingleFlight<>(Paciente::copiar);
+    private final SingleFlight<String, Paciente> lecturasPorDni = new SingleFlight<>(Paciente::copiar);
+
+    // Índice de posibles duplicados: se construye en el primer uso (recorrido
+    // completo) y luego se mantiene con cada alta, modificación y baja.
+    private static final double UMBRAL_DUPLICADOS = Double.parseDouble(System.getProperty("dedup.umbral", "0.85"));
+    private final Object bloqueoDetector = new Object();
+    // Recorridos completos en paralelo por rangos de ID con N conexiones (ver LecturaParalela); 1 = en serie.
+    private static final int PARALELISMO_LECTURA = Integer.getInteger("lectura.paralelismo", 1);
+    private volatile DetectorDuplicados detector;
+
+    // Plazos por operación en ms (0 = sin plazo). Un plazo más corto ya fijado
+    // por el llamador (Config.Plazo) tiene prioridad.
+    private static final long PLAZO_LECTURA_MS = Long.getLong("plazo.lecturaMs", 5_000L);
+    private static final long PLAZO_ESCRITURA_MS = Long.getLong("plazo.escrituraMs", 10_000L);
+    private static final long PLAZO_LISTADO_MS = Long.getLong("plazo.listadoMs", 30_000L);
+
+    // Sincronización incremental: cuánto retrocede la marca al cerrar una pasada (debe
+    // cubrir la transacción de escritura más larga, ver DeltaPacientes).
+    private static final long MARGEN_DELTA_MS = Long.getLong("delta.margenMs", 15_000L);
+    private final CambiosDAO cambiosDao = new CambiosDAO();
+
+    // Alta en un solo viaje con el procedimiento crear_paciente_con_hc (opcional, -Dalta.procedimiento=true).
+    private static final boolean ALTA_PROCEDIMIENTO = Boolean.getBoolean("alta.procedimiento");
+
+    // Verificación previa de unicidad con filtros de Bloom (opcional, -Dunicidad.filtros=true).
+    private final FiltrosUnicidad filtrosUnicidad = crearFiltrosUnicidad();
+
+    // Cache de pacientes por ID/DNI (opcional, -Dcache.pacientes=<capacidad>), coherente
+    // con las escrituras de otras instancias por sondeo de actualizadoEn (ver CoherenciaCache).
+    private final CachePacientes cache = crearCache();
+    private final CoherenciaCache coherenciaCache = crearCoherenciaCache();
+
+    // Escritura diferida de las modificaciones (opcional, -Descritura.diferida=true): se
+    // combinan por paciente y se escriben en lotes; las lecturas ven lo pendiente.
+    private final EscrituraDiferida escrituraDiferida = crearEscrituraDiferida();
     
     // --- Lógica de Negocio y Validación ---
     
@@ -38,6 +95,16 @@ public class PacienteServiceImpl implements GenericService<Paciente> {
         }
     }
     
+    private void validarActualizacion(Paciente p) throws ServiceException {
+        // (La validación original aquí podría fallar si solo se quiere actualizar el nombre 
+        // y no se re-envía la HC. Se ajusta la validación de HC para que solo valide 
+        // los campos del Paciente en una actualización)
+        if (p.getNombre() == null || p.getNombre().trim().isEmpty() ||
+            p.getApellido() == null || p.getApellido().trim().isEmpty()) {
+            throw new ServiceException("El nombre y apellido del paciente son obligatorios.");
+        }
+    }
+    
     // --- Métodos de GenericService ---
 
     /**
@@ -45,109 +112,848 @@ public class PacienteServiceImpl implements GenericService<Paciente> {
      */
     @Override
     public void insertar(Paciente p) throws Exception {
+        conPlazo(PLAZO_ESCRITURA_MS, "insertar", () -> {
+            insertarEnPlazo(p);
+            return null;
+        });
+    }
+
+    private void insertarEnPlazo(Paciente p) throws Exception {
         validarPaciente(p); // 1. Validar reglas de negocio
         
         // Uso de try-with-resources con TransactionManager
-        try (TransactionManager tx = new TransactionManager(DatabaseConnection.getConnection())) {
+        // Con shards, Paciente y HC se insertan en el shard del DNI (transacción de un solo shard).
+        int shard = shards != null ? ShardRouter.shardPorDni(p.getDni()) : -1;
+        if (ALTA_PROCEDIMIENTO) {
+            insertarEnUnViaje(p, shard);
+            return;
+        }
+        try {
+            // Antes de abrir la transacción: un duplicado se rechaza sin tomar su conexión ni hacer rollback.
+            verificarUnicidadPrevia(p, shard);
+        } catch (Exception e) {
+            throw traducirErrorInsercion(e);
+        }
+        try (TransactionManager tx = new TransactionManager(conexion(shard))) {
             tx.startTransaction(); // 2. INICIO de la Transacción
 
-            // A. Insertar Paciente (A). El DAO asigna el ID a 'p'.
-            pacienteDao.insertTx(p, tx.getConnection());
-            
-            // B. Preparar la Historia Clínica (B) con el ID (FK) de A.
-            HistoriaClinica hc = p.getHistoriaClinica();
-            hc.setPacienteId((long) p.getId()); // Cast de int a long (p.getId() es int)
-            
-            // C. Insertar Historia Clínica (B)
-            historiaClinicaDao.insertTx(hc, tx.getConnection());
-            
-            // Actualizar la referencia del objeto Paciente con el ID de HC
-            p.setHistoriaClinica(hc); 
+            insertarFilasTx(p, tx.getConnection());
             
             tx.commit(); // 3. COMMIT si todo fue exitoso
+            if (shard >= 0) {
+                ShardRouter.registrarId(p.getId(), shard);
+            }
+            auditarAlta(p);
+            invalidarLecturasEnVuelo();
+            indexarDuplicados(p);
 
         } catch (Exception e) {
             // TransactionManager.close() hará rollback automáticamente si es necesario.
             // Mapeo y relanzamiento de excepciones para la capa superior.
-            if (e.getCause() instanceof SQLException && ((SQLException) e.getCause()).getErrorCode() == 1062) { 
-                throw new ServiceException("Error de unicidad (DNI/Nro. HC ya existen).", e.getCause());
-            }
-            throw new ServiceException("Fallo la inserción transaccional: " + e.getMessage(), e);
+            throw traducirErrorInsercion(e);
+        }
+    }
+
+    /**
+     * Variante de insertar() con el procedimiento almacenado: la atomicidad
+     * la da la transacción dentro del procedimiento, así que la conexión
+     * queda en autocommit. No se hace la verificación previa de unicidad:
+     * un duplicado ya se rechaza en el mismo viaje, sin rollback del lado
+     * del cliente.
+     */
+    private void insertarEnUnViaje(Paciente p, int shard) throws Exception {
+        try (Connection conn = conexion(shard)) {
+            pacienteDao.insertarConHc(p, conn);
+        } catch (Exception e) {
+            throw traducirErrorInsercion(e);
         }
+        if (shard >= 0) {
+            ShardRouter.registrarId(p.getId(), shard);
+        }
+        auditarAlta(p);
+        if (filtrosUnicidad != null) {
+            filtrosUnicidad.registrar(p.getDni(), p.getHistoriaClinica().getNroHistoria());
+        }
+        invalidarLecturasEnVuelo();
+        indexarDuplicados(p);
+    }
+
+    /**
+     * Pasos de la creación (A + B) sobre una conexión cuya transacción
+     * gestiona el llamador (usado por insertar() y por el modo batch, que
+     * agrupa varios comandos en un mismo commit).
+     */
+    public void insertarTx(Paciente p, Connection conn) throws Exception {
+        validarPaciente(p);
+        // En el modo batch la verificación va en la transacción del grupo: ve las altas anteriores del mismo grupo.
+        verificarUnicidadPrevia(p, conn);
+        insertarFilasTx(p, conn);
+    }
+
+    /**
+     * INSERT de Paciente y de su HC (ya validados y verificados).
+     */
+    private void insertarFilasTx(Paciente p, Connection conn) throws Exception {
+        // A. Insertar Paciente (A). El DAO asigna el ID a 'p'.
+        pacienteDao.insertTx(p, conn);
+        
+        // B. Preparar la Historia Clínica (B) con el ID (FK) de A.
+        HistoriaClinica hc = p.getHistoriaClinica();
+        hc.setPacienteId((long) p.getId()); // Cast de int a long (p.getId() es int)
+        
+        // C. Insertar Historia Clínica (B)
+        historiaClinicaDao.insertTx(hc, conn);
+        
+        // Actualizar la referencia del objeto Paciente con el ID de HC
+        p.setHistoriaClinica(hc); 
+        if (filtrosUnicidad != null) {
+            filtrosUnicidad.registrar(p.getDni(), hc.getNroHistoria());
+        }
+    }
+
+    /**
+     * Traduce el error de una inserción a ServiceException, distinguiendo la
+     * violación de unicidad (MySQL 1062) del resto de fallas.
+     */
+    public ServiceException traducirErrorInsercion(Exception e) {
+        if (e instanceof ServiceException) {
+            return (ServiceException) e;
+        }
+        if (e.getCause() instanceof SQLException && ((SQLException) e.getCause()).getErrorCode() == 1062) { 
+            return new ServiceException("Error de unicidad (DNI/Nro. HC ya existen).", e.getCause());
+        }
+        return new ServiceException("Fallo la inserción transaccional: " + e.getMessage(), e);
     }
     
     @Override
     public void actualizar(Paciente p) throws Exception {
+        if (escrituraDiferida != null && encolarActualizacion(p)) {
+            return;
+        }
+        conPlazo(PLAZO_ESCRITURA_MS, "actualizar", () -> {
+            actualizarEnPlazo(p);
+            return null;
+        });
+    }
+
+    private void actualizarEnPlazo(Paciente p) throws Exception {
         // Esta actualización debería ser transaccional si afecta a HC.
-        
-        // (La validación original aquí podría fallar si solo se quiere actualizar el nombre 
-        // y no se re-envía la HC. Se ajusta la validación de HC para que solo valide 
-        // los campos del Paciente en una actualización)
-         if (p.getNombre() == null || p.getNombre().trim().isEmpty() ||
-            p.getApellido() == null || p.getApellido().trim().isEmpty()) {
-            throw new ServiceException("El nombre y apellido del paciente son obligatorios.");
+        validarActualizacion(p);
+
+        Integer shard = shardDeActualizacion(p);
+        if (shard == null) {
+            return; // Igual que el UPDATE sin shards: un ID inexistente no afecta filas.
         }
-        
-        try (TransactionManager tx = new TransactionManager(DatabaseConnection.getConnection())) {
+        vaciarPendiente(p.getId());
+        try (TransactionManager tx = new TransactionManager(conexion(shard))) {
             tx.startTransaction();
 
-            // 1. Actualizar Paciente (A)
-            // (CORREGIDO: Se llama a 'actualizarTx' que existe en el DAO)
-            pacienteDao.actualizarTx(p, tx.getConnection());
-            
-            // 2. Si hay HC asociada, actualizar la HC (B)
-            if (p.getHistoriaClinica() != null && p.getHistoriaClinica().getId() > 0) {
-                 historiaClinicaDao.actualizarTx(p.getHistoriaClinica(), tx.getConnection());
-            }
+            actualizarTx(p, tx.getConnection());
 
             tx.commit();
+            invalidarLecturasEnVuelo();
+            actualizado(p, "actualizar");
+        } catch (ServiceException e) {
+            throw e;
         } catch (Exception e) {
             // El TransactionManager maneja el rollback.
             throw new ServiceException("Fallo la actualización transaccional: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Shard del paciente a actualizar (-1 sin sharding), o null si no está en ninguno.
+     */
+    private Integer shardDeActualizacion(Paciente p) throws ServiceException {
+        if (shards == null) {
+            return -1;
+        }
+        int shard = ubicar(p.getId());
+        if (shard < 0) {
+            return null;
+        }
+        if (p.getDni() != null && ShardRouter.shardPorDni(p.getDni()) != shard) {
+            throw new ServiceException("El nuevo DNI corresponde a otro shard: mover un paciente entre shards no está soportado.");
+        }
+        return shard;
+    }
+
+    /**
+     * Efectos de una actualización ya confirmada (el llamador invalidó antes las lecturas en vuelo).
+     */
+    private void actualizado(Paciente p, String detalle) {
+        actualizado(p, Auditor.getUsuario(), detalle);
+    }
+
+    private void actualizado(Paciente p, String usuario, String detalle) {
+        Auditor.registrar(EventoAuditoria.Tipo.MODIFICACION, p.getId(), usuario, detalle);
+        if (cache != null) {
+            cache.invalidar(p.getId());
+        }
+        indexarDuplicados(p);
+        if (filtrosUnicidad != null) {
+            filtrosUnicidad.registrar(p.getDni(), p.getHistoriaClinica() != null ? p.getHistoriaClinica().getNroHistoria() : null);
+        }
+    }
+
+    // --- Escritura diferida (ver EscrituraDiferida) ---
+
+    /**
+     * Valida la actualización y la deja en el buffer. Que el paciente exista
+     * se verifica solo cuando entra al buffer (sin cambios pendientes), con
+     * la misma lectura que getById.
+     *
+     * @return false si el buffer ya está cerrado (hay que escribir directamente)
+     */
+    private boolean encolarActualizacion(Paciente p) throws Exception {
+        validarActualizacion(p);
+        Integer shard = shardDeActualizacion(p);
+        if (shard == null) {
+            return true;
+        }
+        if (escrituraDiferida.getPorId(p.getId()) == null && leerPorId(p.getId()) == null) {
+            return true; // Igual que el UPDATE directo: un ID inexistente o dado de baja no afecta filas.
+        }
+        return escrituraDiferida.encolar(p, shard);
+    }
+
+    /**
+     * Escribe un lote del buffer (mismo shard, en orden de ID) en una sola
+     * transacción: un UPDATE por lotes de Paciente y otro de HistoriaClinica.
+     */
+    private void escribirLote(int shard, List<Paciente> lote, List<String> usuarios) throws Exception {
+        List<HistoriaClinica> historias = new ArrayList<>(lote.size());
+        for (Paciente p : lote) {
+            if (p.getHistoriaClinica() != null && p.getHistoriaClinica().getId() > 0) {
+                historias.add(p.getHistoriaClinica());
+            }
+        }
+        conPlazo(PLAZO_ESCRITURA_MS, "escritura diferida", () -> Compartimento.MASIVO.ejecutar(() -> {
+            try (TransactionManager tx = new TransactionManager(conexion(shard))) {
+                tx.startTransaction();
+                pacienteDao.actualizarBatchTx(lote, tx.getConnection());
+                historiaClinicaDao.actualizarBatchTx(historias, tx.getConnection());
+                tx.commit();
+            }
+            return null;
+        }));
+        invalidarLecturasEnVuelo();
+        for (int i = 0; i < lote.size(); i++) {
+            actualizado(lote.get(i), usuarios.get(i), "actualizar (diferida)");
+        }
+    }
+
+    /**
+     * Las escrituras que no pasan por el buffer (bajas, actualización con el
+     * buffer cerrado) van después de la pendiente del mismo paciente: se
+     * escribe solo esa, antes de tomar la conexión de la operación.
+     */
+    private void vaciarPendiente(int id) throws Exception {
+        if (escrituraDiferida != null) {
+            escrituraDiferida.vaciar(id);
+        }
+    }
+
+    /**
+     * Quita del buffer la actualización pendiente del paciente (los *Tx ya
+     * tienen conexión y quizá transacción: no se vacía desde adentro).
+     *
+     * @return La pendiente, o null
+     */
+    private Paciente descartarPendiente(int id) {
+        return escrituraDiferida != null ? escrituraDiferida.descartar(id) : null;
+    }
+
+    private EscrituraDiferida crearEscrituraDiferida() {
+        if (!Boolean.getBoolean("escritura.diferida")) {
+            return null;
+        }
+        int maxPendientes = Integer.getInteger("escritura.diferida.maxPendientes", 500);
+        EscrituraDiferida d = new EscrituraDiferida(this::escribirLote, maxPendientes,
+                Integer.getInteger("escritura.diferida.limite", maxPendientes * 20));
+        d.iniciar(Long.getLong("escritura.diferida.ms", 200L));
+        return d;
+    }
+
+    /**
+     * Escritura diferida (para métricas), o null si está desactivada.
+     */
+    public EscrituraDiferida getEscrituraDiferida() {
+        return escrituraDiferida;
+    }
+
+    /**
+     * Pasos de la actualización (A y, si existe, B) sobre una conexión externa.
+     */
+    public void actualizarTx(Paciente p, Connection conn) throws Exception {
+        validarActualizacion(p);
+        // Esta escritura reemplaza a la diferida pendiente; de ella solo queda la HC si "p" no trae una.
+        Paciente pendiente = descartarPendiente(p.getId());
+
+        // 1. Actualizar Paciente (A)
+        // (CORREGIDO: Se llama a 'actualizarTx' que existe en el DAO)
+        pacienteDao.actualizarTx(p, conn);
+        
+        // 2. Si hay HC asociada, actualizar la HC (B)
+        HistoriaClinica hc = p.getHistoriaClinica();
+        if ((hc == null || hc.getId() <= 0) && pendiente != null) {
+            hc = pendiente.getHistoriaClinica();
+        }
+        if (hc != null && hc.getId() > 0) {
+             historiaClinicaDao.actualizarTx(hc, conn);
+        }
+    }
+
     /**
      * Implementa la operación transaccional ELIMINAR (Baja Lógica en A + B).
      */
     @Override
     public void eliminar(int id) throws Exception {
+        conPlazo(PLAZO_ESCRITURA_MS, "eliminar", () -> {
+            eliminarEnPlazo(id);
+            return null;
+        });
+    }
+
+    private void eliminarEnPlazo(int id) throws Exception {
         // Se asegura que la baja lógica de A y B sea atómica.
-        try (TransactionManager tx = new TransactionManager(DatabaseConnection.getConnection())) {
+        int shard = shards != null ? ubicar(id) : -1;
+        if (shards != null && shard < 0) {
+            return;
+        }
+        vaciarPendiente(id);
+        try (TransactionManager tx = new TransactionManager(conexion(shard))) {
             tx.startTransaction(); 
             
-            // 1. Eliminar (baja lógica) HistoriaClinica asociada (B)
-            historiaClinicaDao.eliminarPorPacienteIdTx(id, tx.getConnection());
-            
-            // 2. Eliminar (baja lógica) Paciente (A)
-            // (CORREGIDO: Se llama a 'eliminarTx' que existe en el DAO)
-            pacienteDao.eliminarTx(id, tx.getConnection());
+            eliminarTx(id, tx.getConnection());
 
             tx.commit(); 
+            Auditor.registrar(EventoAuditoria.Tipo.BAJA, id, "eliminar");
+            invalidarLecturasEnVuelo();
+            if (cache != null) {
+                cache.invalidar(id);
+            }
+            DetectorDuplicados d = detector;
+            if (d != null) {
+                d.quitar(id);
+            }
             
         } catch (Exception e) {
             // El TransactionManager maneja el rollback.
             throw new ServiceException("Fallo la eliminación transaccional: Paciente ID " + id, e); 
         }
     }
+
+    /**
+     * Pasos de la baja lógica (B y luego A) sobre una conexión externa.
+     */
+    public void eliminarTx(int id, Connection conn) throws Exception {
+        descartarPendiente(id); // La baja reemplaza a la modificación pendiente.
+
+        // 1. Eliminar (baja lógica) HistoriaClinica asociada (B)
+        historiaClinicaDao.eliminarPorPacienteIdTx(id, conn);
+        
+        // 2. Eliminar (baja lógica) Paciente (A)
+        // (CORREGIDO: Se llama a 'eliminarTx' que existe en el DAO)
+        pacienteDao.eliminarTx(id, conn);
+    }
     
     @Override
     public Paciente getById(int id) throws Exception {
-        // Operación de lectura simple, usa el DAO directamente.
-        return pacienteDao.getById(id);
+        Paciente p = escrituraDiferida != null ? escrituraDiferida.getPorId(id) : null;
+        if (p == null) {
+            p = leerPorId(id);
+        }
+        auditarLectura(p, EventoAuditoria.Tipo.LECTURA, "getById");
+        return p;
+    }
+
+    private Paciente leerPorId(int id) throws Exception {
+        Paciente p = cache != null ? cache.getPorId(id) : null;
+        if (p == null) {
+            // Lecturas concurrentes del mismo ID comparten una única consulta.
+            long epoca = cache != null ? cache.epoca() : 0;
+            p = conPlazo(PLAZO_LECTURA_MS, "getById",
+                    () -> lecturasPorId.ejecutar(id, () -> pacienteDao.getById(id)));
+            if (cache != null) {
+                cache.guardar(p, epoca);
+            }
+        }
+        return p;
     }
     
     @Override
     public List<Paciente> getAll() throws Exception {
-        // Operación de lectura simple.
-        return pacienteDao.getAll();
+        // Listado completo: compite con el trabajo masivo, no con las consultas puntuales.
+        List<Paciente> pacientes = conPendientes(conPlazo(PLAZO_LISTADO_MS, "getAll",
+                () -> Compartimento.MASIVO.ejecutar(pacienteDao::getAll)));
+        auditarListado(pacientes, "getAll");
+        return pacientes;
+    }
+    
+    /**
+     * Listado paginado (orden apellido, nombre, id).
+     * @param despuesDe Último paciente de la página anterior, o null para la primera
+     */
+    @Override
+    public List<Paciente> getPagina(Paciente despuesDe, int limite) throws Exception {
+        if (limite < 1 || limite > 1_000) {
+            throw new ServiceException("El tamaño de página debe estar entre 1 y 1000.");
+        }
+        List<Paciente> pagina = conPendientes(conPlazo(PLAZO_LECTURA_MS, "getPagina", () -> pacienteDao.getPagina(despuesDe, limite)));
+        auditarListado(pagina, "getPagina");
+        return pagina;
+    }
+    
+    // --- Fecha de nacimiento y cumpleaños ---
+
+    // Menor fecha que acepta una columna DATE de MySQL (edad sin tope).
+    private static final LocalDate FECHA_MINIMA = LocalDate.of(1000, 1, 1);
+
+    /**
+     * Pacientes nacidos entre "desde" y "hasta" (inclusive), paginados en
+     * orden de fecha de nacimiento e ID (usa idx_fecha_nacimiento).
+     *
+     * @param despuesDe Último paciente de la página anterior (null = primera página)
+     */
+    public List<Paciente> getPorFechaNacimiento(LocalDate desde, LocalDate hasta, Paciente despuesDe, int limite) throws Exception {
+        if (desde == null || hasta == null || desde.isAfter(hasta)) {
+            throw new ServiceException("El rango de fechas de nacimiento no es válido.");
+        }
+        validarPaginaPorFecha(despuesDe, limite);
+        List<Paciente> pagina = conPendientes(conPlazo(PLAZO_LECTURA_MS, "getPorFechaNacimiento",
+                () -> pacienteDao.getPorFechaNacimiento(desde, hasta, despuesDe, limite)));
+        auditarListado(pagina, "getPorFechaNacimiento");
+        return pagina;
+    }
+
+    /**
+     * Pacientes con edad (a hoy) entre edadMinima y edadMaxima inclusive, del
+     * mayor al menor. Se traduce a un rango de fechas de nacimiento.
+     *
+     * @param edadMaxima null = sin tope (p. ej. "65 o más")
+     */
+    public List<Paciente> getPorEdad(int edadMinima, Integer edadMaxima, Paciente despuesDe, int limite) throws Exception {
+        if (edadMinima < 0 || (edadMaxima != null && edadMaxima < edadMinima)) {
+            throw new ServiceException("El rango de edades no es válido.");
+        }
+        LocalDate hoy = LocalDate.now();
+        LocalDate hasta = hoy.minusYears(edadMinima);
+        // Tiene como mucho edadMaxima años si todavía no cumplió edadMaxima + 1.
+        LocalDate desde = edadMaxima == null ? FECHA_MINIMA : hoy.minusYears(edadMaxima + 1L).plusDays(1);
+        return getPorFechaNacimiento(desde.isBefore(FECHA_MINIMA) ? FECHA_MINIMA : desde, hasta, despuesDe, limite);
+    }
+
+    /**
+     * Pacientes que cumplen años desde hoy hasta dentro de "dias" días
+     * (0 = solo hoy), en orden de cercanía. Usa idx_mes_dia: la columna
+     * generada mesDia (mes * 100 + día) convierte la búsqueda en uno o dos
+     * rangos (dos si el período cruza fin de año).
+     *
+     * @param despuesDe Último paciente de la página anterior (null = primera página)
+     */
+    public List<Paciente> getProximosCumpleanos(int dias, Paciente despuesDe, int limite) throws Exception {
+        if (dias < 0 || dias > 365) {
+            throw new ServiceException("La cantidad de días debe estar entre 0 y 365.");
+        }
+        validarPaginaPorFecha(despuesDe, limite);
+        int[][] tramos = tramosCumpleanos(LocalDate.now(), dias);
+        int primero = 0;
+        if (despuesDe != null) {
+            int md = PacienteDAO.mesDia(despuesDe.getFechaNacimiento());
+            while (primero < tramos.length && (md < tramos[primero][0] || md > tramos[primero][1])) {
+                primero++;
+            }
+        }
+        int desdeTramo = primero;
+        List<Paciente> pagina = conPendientes(conPlazo(PLAZO_LECTURA_MS, "getProximosCumpleanos", () -> {
+            List<Paciente> resultado = new ArrayList<>();
+            for (int t = desdeTramo; t < tramos.length && resultado.size() < limite; t++) {
+                resultado.addAll(pacienteDao.getPorMesDia(tramos[t][0], tramos[t][1],
+                        t == desdeTramo ? despuesDe : null, limite - resultado.size()));
+            }
+            return resultado;
+        }));
+        auditarListado(pagina, "getProximosCumpleanos");
+        return pagina;
+    }
+
+    /**
+     * Rangos de mesDia (inclusive) de hoy a hoy + dias, en orden. En un año
+     * no bisiesto, quien nació un 29/2 cuenta el 28/2.
+     */
+    static int[][] tramosCumpleanos(LocalDate hoy, int dias) {
+        LocalDate fin = hoy.plusDays(dias);
+        int desde = PacienteDAO.mesDia(hoy);
+        int hasta = PacienteDAO.mesDia(fin);
+        if (hasta == 228 && !fin.isLeapYear()) {
+            hasta = 229;
+        }
+        if (fin.getYear() == hoy.getYear()) {
+            return new int[][] {{desde, hasta}};
+        }
+        // Cruza fin de año; con 365 días el segundo tramo no vuelve a incluir hoy.
+        return new int[][] {{desde, 1231}, {101, Math.min(hasta, desde - 1)}};
+    }
+
+    private static void validarPaginaPorFecha(Paciente despuesDe, int limite) throws ServiceException {
+        if (limite < 1 || limite > 1_000) {
+            throw new ServiceException("El tamaño de página debe estar entre 1 y 1000.");
+        }
+        if (despuesDe != null && despuesDe.getFechaNacimiento() == null) {
+            throw new ServiceException("La página anterior debe indicar fecha de nacimiento e ID del último paciente.");
+        }
+    }
+
+    /**
+     * Sincronización incremental para réplicas de clientes: los pacientes
+     * creados, modificados o dados de baja desde la marca, en lugar de un
+     * getAll() completo (ver DeltaPacientes).
+     *
+     * @param marca Marca devuelta por la llamada anterior (null = sincronización inicial)
+     * @param limite Cambios por página (1 a 1000)
+     */
+    public DeltaPacientes cambiosDesde(String marca, int limite) throws Exception {
+        if (shards != null) {
+            throw new ServiceException("La sincronización incremental no está soportada con -Ddb.shards.");
+        }
+        if (limite < 1 || limite > 1_000) {
+            throw new ServiceException("El tamaño de página debe estar entre 1 y 1000.");
+        }
+        DeltaPacientes.Marca m = DeltaPacientes.Marca.parsear(marca);
+        DeltaPacientes delta = conPlazo(PLAZO_LISTADO_MS, "cambiosDesde", () -> Compartimento.MASIVO.ejecutar(() -> {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                long inicio = m.inicio > 0 ? m.inicio : DeltaPacientes.micros(cambiosDao.ahoraTx(conn));
+                List<PacienteDAO.Cambio> filas = pacienteDao.getCambiosDesdeTx(
+                        DeltaPacientes.timestamp(m.desde), m.despuesDeId, limite, conn);
+
+                List<Paciente> cambios = new ArrayList<>(filas.size());
+                List<Integer> eliminados = new ArrayList<>();
+                for (PacienteDAO.Cambio c : filas) {
+                    if (c.paciente.isEliminado()) {
+                        eliminados.add(c.paciente.getId());
+                    } else {
+                        cambios.add(c.paciente);
+                    }
+                }
+                if (filas.size() < limite) {
+                    // Fin de la pasada: la próxima vuelve a mirar el margen anterior a su inicio.
+                    long desde = Math.max(0, inicio - MARGEN_DELTA_MS * 1_000L);
+                    return new DeltaPacientes(cambios, eliminados, new DeltaPacientes.Marca(desde, 0, 0).toString(), true);
+                }
+                PacienteDAO.Cambio ultimo = filas.get(filas.size() - 1);
+                DeltaPacientes.Marca siguiente = new DeltaPacientes.Marca(
+                        DeltaPacientes.micros(ultimo.marca), ultimo.paciente.getId(), inicio);
+                return new DeltaPacientes(cambios, eliminados, siguiente.toString(), false);
+            }
+        }));
+        auditarListado(delta.getCambios(), "cambiosDesde");
+        return delta;
+    }
+
+    /**
+     * Construye una instantánea compacta del padrón a partir de un recorrido
+     * en streaming (no se materializa la lista completa de entidades).
+     * @param fueraDelHeap true para ubicar DNI/Nro. HC en memoria directa
+     */
+    public RosterPacientes construirRoster(boolean fueraDelHeap) throws Exception {
+        RosterPacientes.Constructor constructor = new RosterPacientes.Constructor(fueraDelHeap);
+        Compartimento.MASIVO.ejecutar(() -> {
+            pacienteDao.recorrerResumen(constructor::agregar);
+            return null;
+        });
+        return constructor.construir();
+    }
+    
+    /**
+     * Construye un índice de duplicados nuevo a partir de un recorrido en
+     * streaming de todos los pacientes activos.
+     * @param umbral Puntaje mínimo (0..1) para considerar un par como candidato
+     */
+    public DetectorDuplicados construirDetectorDuplicados(double umbral) throws Exception {
+        DetectorDuplicados d = new DetectorDuplicados(umbral);
+        Compartimento.MASIVO.ejecutar(() -> {
+            if (PARALELISMO_LECTURA > 1) {
+                pacienteDao.lecturaParalela(PARALELISMO_LECTURA, false).recorrer(d::agregar);
+            } else {
+                pacienteDao.recorrerResumen(d::agregar);
+            }
+            return null;
+        });
+        return d;
+    }
+
+    /**
+     * Pacientes existentes parecidos a "p" (verificación previa a un alta).
+     * La primera llamada construye el índice recorriendo toda la tabla.
+     * En cada candidato, B es el paciente existente.
+     */
+    public List<DetectorDuplicados.Candidato> posiblesDuplicados(Paciente p) throws Exception {
+        DetectorDuplicados d = detector;
+        if (d == null) {
+            synchronized (bloqueoDetector) {
+                d = detector;
+                if (d == null) {
+                    d = construirDetectorDuplicados(UMBRAL_DUPLICADOS);
+                    detector = d;
+                }
+            }
+        }
+        return d.verificar(p);
+    }
+
+    // --- Plazos (ver Config.Plazo) ---
+
+    /**
+     * Ejecuta la operación con su plazo y traduce el vencimiento (o la
+     * cancelación) a TimeoutServiceException, sin importar en qué capa se
+     * detectó: pool, timeout de la consulta o espera de una lectura en curso.
+     * Un rechazo por saturación (Config.LimitadorConcurrencia) se traduce a
+     * SaturacionServiceException.
+     */
+    private static <T> T conPlazo(long ms, String operacion, Plazo.Tarea<T> tarea) throws Exception {
+        Plazo[] efectivo = new Plazo[1];
+        try {
+            return Plazo.ejecutar(ms > 0 ? Plazo.en(ms) : null, () -> {
+                efectivo[0] = Plazo.actual();
+                return tarea.ejecutar();
+            });
+        } catch (TimeoutServiceException | SaturacionServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            SaturacionException saturacion = causaDeTipo(e, SaturacionException.class);
+            if (saturacion != null) {
+                throw new SaturacionServiceException("Operación " + operacion + " rechazada: "
+                        + saturacion.getMessage(), saturacion);
+            }
+            Plazo plazo = efectivo[0];
+            boolean validacion = e instanceof ServiceException && e.getCause() == null;
+            if (!validacion && (causaDeTipo(e, SQLTimeoutException.class) != null || (plazo != null && plazo.vencido()))) {
+                boolean cancelada = plazo != null && plazo.isCancelado();
+                throw new TimeoutServiceException(cancelada
+                        ? "Operación " + operacion + " cancelada."
+                        : "La operación " + operacion + " superó su plazo.", cancelada, e);
+            }
+            throw e;
+        }
+    }
+
+    private static <E extends Throwable> E causaDeTipo(Throwable e, Class<E> tipo) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (tipo.isInstance(t)) {
+                return tipo.cast(t);
+            }
+        }
+        return null;
+    }
+
+    /** Listado de la BD con el estado de los pacientes que tienen escrituras diferidas pendientes. */
+    private List<Paciente> conPendientes(List<Paciente> pacientes) {
+        return escrituraDiferida != null ? escrituraDiferida.superponer(pacientes) : pacientes;
+    }
+
+    // --- Auditoría (ver Auditoria.Auditor; sin efecto si está desactivada) ---
+    // Solo se registran operaciones confirmadas: los métodos *Tx los audita
+    // el llamador después de su commit (ver ModoBatch).
+
+    private static void auditarAlta(Paciente p) {
+        HistoriaClinica hc = p.getHistoriaClinica();
+        Auditor.registrar(EventoAuditoria.Tipo.ALTA, p.getId(), hc != null ? "hc=" + hc.getNroHistoria() : "");
+    }
+
+    private static void auditarLectura(Paciente p, EventoAuditoria.Tipo tipo, String detalle) {
+        if (p != null) {
+            Auditor.registrar(tipo, p.getId(), detalle);
+        }
+    }
+
+    private static void auditarListado(List<Paciente> pacientes, String detalle) {
+        if (Auditor.estaActivo()) {
+            for (Paciente p : pacientes) {
+                Auditor.registrar(EventoAuditoria.Tipo.LISTADO, p.getId(), detalle);
+            }
+        }
+    }
+
+    private void indexarDuplicados(Paciente p) {
+        DetectorDuplicados d = detector;
+        if (d != null) {
+            d.agregar(p);
+        }
     }
     
     // --- Métodos Adicionales (Búsqueda por campo relevante) ---
     
+    @Override
     public Paciente buscarPorDni(String dni) throws Exception {
         // Cumple el requisito de búsqueda por campo relevante
         // (CORREGIDO: Ahora 'buscarPorDni' existe en PacienteDao)
-        return pacienteDao.buscarPorDni(dni);
+        Paciente p = escrituraDiferida != null ? escrituraDiferida.getPorDni(dni) : null;
+        if (p == null) {
+            p = cache != null ? cache.getPorDni(dni) : null;
+            if (p == null) {
+                long epoca = cache != null ? cache.epoca() : 0;
+                p = conPlazo(PLAZO_LECTURA_MS, "buscarPorDni",
+                        () -> lecturasPorDni.ejecutar(dni, () -> pacienteDao.buscarPorDni(dni)));
+                if (cache != null) {
+                    cache.guardar(p, epoca);
+                }
+            }
+            if (p != null && escrituraDiferida != null && escrituraDiferida.getPorId(p.getId()) != null) {
+                p = null; // Tiene pendiente un cambio de DNI: ya no es el paciente de este DNI.
+            }
+        }
+        auditarLectura(p, EventoAuditoria.Tipo.LECTURA, "buscarPorDni");
+        return p;
+    }
+
+    /**
+     * Impide que una lectura posterior a una escritura se una a una consulta
+     * iniciada antes de ella. Los métodos insertar/actualizar/eliminar lo
+     * llaman solos; quien use las variantes *Tx debe llamarlo tras su commit.
+     */
+    public void invalidarLecturasEnVuelo() {
+        lecturasPorId.invalidar();
+        lecturasPorDni.invalidar();
+    }
+
+    // --- Cache de pacientes ---
+
+    private static CachePacientes crearCache() {
+        int capacidad = Integer.getInteger("cache.pacientes", 0);
+        return capacidad > 0 ? new CachePacientes(capacidad) : null;
+    }
+
+    private CoherenciaCache crearCoherenciaCache() {
+        if (cache == null) {
+            return null;
+        }
+        // El margen debe cubrir la transacción de escritura más larga (ver CoherenciaCache).
+        CoherenciaCache c = new CoherenciaCache(cache, this::invalidarLecturasEnVuelo,
+                Long.getLong("cache.margenMs", 15_000L));
+        c.iniciar(Long.getLong("cache.sondeoMs", 1_000L));
+        return c;
+    }
+
+    /**
+     * Cache de pacientes (para métricas), o null si está desactivada.
+     */
+    public CachePacientes getCache() {
+        return cache;
+    }
+
+    /**
+     * Sondeo de cambios de otras instancias (para métricas), o null si la cache está desactivada.
+     */
+    public CoherenciaCache getCoherenciaCache() {
+        return coherenciaCache;
+    }
+
+    // --- Unicidad (filtros de Bloom) ---
+
+    private FiltrosUnicidad crearFiltrosUnicidad() {
+        if (!Boolean.getBoolean("unicidad.filtros")) {
+            return null;
+        }
+        FiltrosUnicidad f = new FiltrosUnicidad(this::cargarClavesUnicas,
+                Long.getLong("unicidad.filtros.capacidad", 1_000_000L),
+                Double.parseDouble(System.getProperty("unicidad.filtros.fp", "0.01")));
+        f.iniciar(Long.getLong("unicidad.filtros.reconstruirMin", 60L));
+        return f;
+    }
+
+    /** Recorre todos los DNI y Nro. HC existentes (en cada shard, si hay sharding). */
+    private void cargarClavesUnicas(Consumer<String> dnis, Consumer<String> nros) throws Exception {
+        int cantidad = shards != null ? ShardRouter.getCantidad() : 1;
+        for (int s = 0; s < cantidad; s++) {
+            int shard = shards != null ? s : -1;
+            Compartimento.MASIVO.ejecutar(() -> {
+                try (Connection conn = conexion(shard)) {
+                    pacienteDao.recorrerDnisTx(dnis, conn);
+                    historiaClinicaDao.recorrerNrosHistoriaTx(nros, conn);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * verificarUnicidadPrevia con una conexión propia (en autocommit), que
+     * se pide solo si algún filtro dice que el DNI o el Nro. HC pueden existir.
+     */
+    private void verificarUnicidadPrevia(Paciente p, int shard) throws Exception {
+        if (filtrosUnicidad == null || !filtrosUnicidad.estaActivo()
+                || (!filtrosUnicidad.dniPuedeExistir(p.getDni())
+                    && !filtrosUnicidad.nroHistoriaPuedeExistir(p.getHistoriaClinica().getNroHistoria()))) {
+            return;
+        }
+        try (Connection conn = conexion(shard)) {
+            verificarUnicidadPrevia(p, conn);
+        }
+    }
+
+    /**
+     * Si los filtros dicen que el DNI o el Nro. HC pueden existir, lo
+     * confirma con una consulta indexada antes de escribir. Un duplicado se
+     * informa igual que el error 1062 de MySQL (misma ServiceException y causa).
+     */
+    private void verificarUnicidadPrevia(Paciente p, Connection conn) throws Exception {
+        if (filtrosUnicidad == null || !filtrosUnicidad.estaActivo()) {
+            return;
+        }
+        if (filtrosUnicidad.dniPuedeExistir(p.getDni())) {
+            boolean existe = pacienteDao.existeDniTx(p.getDni(), conn);
+            filtrosUnicidad.registrarVerificacion(existe);
+            if (existe) {
+                throw errorDuplicado("DNI " + p.getDni());
+            }
+        }
+        String nroHistoria = p.getHistoriaClinica().getNroHistoria();
+        if (filtrosUnicidad.nroHistoriaPuedeExistir(nroHistoria)) {
+            boolean existe = historiaClinicaDao.existeNroHistoriaTx(nroHistoria, conn);
+            filtrosUnicidad.registrarVerificacion(existe);
+            if (existe) {
+                throw errorDuplicado("Nro. HC " + nroHistoria);
+            }
+        }
+    }
+
+    private static ServiceException errorDuplicado(String detalle) {
+        return new ServiceException("Error de unicidad (DNI/Nro. HC ya existen).",
+                new SQLIntegrityConstraintViolationException("Duplicado detectado antes del INSERT: " + detalle, "23000", 1062));
+    }
+
+    /**
+     * Filtros de unicidad activos (para métricas), o null si están desactivados.
+     */
+    public FiltrosUnicidad getFiltrosUnicidad() {
+        return filtrosUnicidad;
+    }
+
+    // --- Sharding ---
+
+    /**
+     * Conexión al shard indicado, o a la BD única si shard es -1 (sin sharding).
+     */
+    private Connection conexion(int shard) throws SQLException {
+        return shard >= 0 ? ShardRouter.getConnection(shard) : DatabaseConnection.getConnection();
+    }
+
+    private int ubicar(int id) throws ServiceException {
+        try {
+            return shards.ubicar(id);
+        } catch (Exception e) {
+            throw new ServiceException("No se pudo ubicar el shard del Paciente ID " + id, e);
+        }
+    }
+
+    // --- Lecturas sobre conexión externa (modo batch) ---
+
+    public Paciente getByIdTx(int id, Connection conn) throws Exception {
+        return pacienteDao.getByIdTx(id, conn);
+    }
+
+    public Paciente buscarPorDniTx(String dni, Connection conn) throws Exception {
+        return pacienteDao.buscarPorDniTx(dni, conn);
     }
 }
\ No newline at end of file
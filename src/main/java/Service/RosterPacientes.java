@@ -0,0 +1,375 @@
+package Service;
+
+import Dao.PacienteDAOShardeado;
+import entities.HistoriaClinica;
+import entities.HistoriaClinica.GrupoSanguineo;
+import entities.Paciente;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Instantánea de solo lectura del padrón de pacientes activos, en formato
+ * columnar compacto para la pantalla de listado.
+ *
+ * En lugar de un List&lt;Paciente&gt; (Paciente + HistoriaClinica + LocalDate +
+ * varios String por fila, cientos de bytes cada una) guarda:
+ * - ids en int[]
+ * - fecha de nacimiento como epoch-day en int[] (SIN_FECHA si es null)
+ * - grupo sanguíneo como byte[] de ordinales (-1 si no tiene HC)
+ * - nombre y apellido como códigos int[] sobre un diccionario compartido
+ *   (los apellidos y nombres se repiten mucho)
+ * - DNI y Nro. de HC empaquetados en una "arena" de bytes, opcionalmente
+ *   fuera del heap (ByteBuffer directo)
+ *
+ * El diccionario se ordena al construir con el mismo orden de textos que
+ * el listado de la BD (PacienteDAOShardeado.ordenTexto: sin distinguir
+ * acentos ni mayúsculas), y cada código lleva su rango en ese orden (los
+ * textos equivalentes comparten rango). Así el orden apellido/nombre/id,
+ * idéntico al del listado paginado, queda precalculado en una permutación
+ * y el filtro por prefijo de apellido es una búsqueda binaria sobre el
+ * diccionario y otra sobre la permutación.
+ *
+ * Es inmutable y thread-safe una vez construida. Para reflejar cambios se
+ * construye una nueva con Constructor (p. ej. desde PacienteDAO.recorrerResumen).
+ */
+public final class RosterPacientes {
+
+    public static final int SIN_FECHA = Integer.MIN_VALUE;
+
+    private static final GrupoSanguineo[] GRUPOS = GrupoSanguineo.values();
+
+    private final int tamano;
+    private final int[] ids;
+    private final int[] fechas;
+    private final byte[] grupos;
+    private final int[] apellidos;
+    private final int[] nombres;
+    private final String[] diccionario;
+    /** Rango de cada código en el orden de textos (iguales para textos equivalentes). */
+    private final int[] rangos;
+    /** Fila i: DNI en [desp[2i], desp[2i+1]), Nro. HC en [desp[2i+1], desp[2i+2]). */
+    private final int[] desplazamientos;
+    private final ByteBuffer arena;
+    /** Filas en orden apellido, nombre, id. */
+    private final int[] orden;
+
+    private RosterPacientes(Constructor c, String[] diccionario, int[] rangos, int[] remapeo, boolean fueraDelHeap) {
+        this.tamano = c.tamano;
+        this.ids = Arrays.copyOf(c.ids, tamano);
+        this.fechas = Arrays.copyOf(c.fechas, tamano);
+        this.grupos = Arrays.copyOf(c.grupos, tamano);
+        this.apellidos = new int[tamano];
+        this.nombres = new int[tamano];
+        for (int i = 0; i < tamano; i++) {
+            apellidos[i] = remapeo[c.apellidos[i]];
+            nombres[i] = remapeo[c.nombres[i]];
+        }
+        this.diccionario = diccionario;
+        this.rangos = rangos;
+        this.desplazamientos = Arrays.copyOf(c.desplazamientos, 2 * tamano + 1);
+
+        int bytes = desplazamientos[2 * tamano];
+        this.arena = fueraDelHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        arena.put(c.arena, 0, bytes).flip();
+
+        this.orden = new int[tamano];
+        for (int i = 0; i < tamano; i++) {
+            orden[i] = i;
+        }
+        ordenar(orden, this::compararFilas);
+    }
+
+    // --- Acceso por fila ---
+
+    public int tamano() {
+        return tamano;
+    }
+
+    /** Fila que ocupa la posición dada en el orden apellido/nombre/id. */
+    public int filaEnPosicion(int posicion) {
+        return orden[posicion];
+    }
+
+    public int getId(int fila) {
+        return ids[fila];
+    }
+
+    public String getApellido(int fila) {
+        return diccionario[apellidos[fila]];
+    }
+
+    public String getNombre(int fila) {
+        return diccionario[nombres[fila]];
+    }
+
+    public String getDni(int fila) {
+        return texto(desplazamientos[2 * fila], desplazamientos[2 * fila + 1]);
+    }
+
+    /** @return Nro. de HC, o null si el paciente no tiene HC */
+    public String getNroHistoria(int fila) {
+        return grupos[fila] < 0 && desplazamientos[2 * fila + 1] == desplazamientos[2 * fila + 2]
+                ? null
+                : texto(desplazamientos[2 * fila + 1], desplazamientos[2 * fila + 2]);
+    }
+
+    /** @return Fecha como epoch-day, o SIN_FECHA */
+    public int getFechaEpochDay(int fila) {
+        return fechas[fila];
+    }
+
+    public LocalDate getFechaNacimiento(int fila) {
+        return fechas[fila] == SIN_FECHA ? null : LocalDate.ofEpochDay(fechas[fila]);
+    }
+
+    /** @return Grupo sanguíneo, o null si no tiene HC */
+    public GrupoSanguineo getGrupoSanguineo(int fila) {
+        return grupos[fila] < 0 ? null : GRUPOS[grupos[fila]];
+    }
+
+    /**
+     * Materializa la fila como entidad (sin los campos TEXT de la HC),
+     * p. ej. para mostrar el detalle de una fila seleccionada.
+     */
+    public Paciente aPaciente(int fila) {
+        Paciente p = new Paciente();
+        p.setId(getId(fila));
+        p.setNombre(getNombre(fila));
+        p.setApellido(getApellido(fila));
+        p.setDni(getDni(fila));
+        p.setFechaNacimiento(getFechaNacimiento(fila));
+        String nroHc = getNroHistoria(fila);
+        if (nroHc != null) {
+            HistoriaClinica hc = new HistoriaClinica();
+            hc.setNroHistoria(nroHc);
+            hc.setGrupoSanguineo(getGrupoSanguineo(fila));
+            hc.setPacienteId((long) getId(fila));
+            p.setHistoriaClinica(hc);
+        }
+        return p;
+    }
+
+    // --- Recorridos ---
+
+    /** Recorre todas las filas en orden apellido, nombre, id. */
+    public void recorrerOrdenado(IntConsumer fila) {
+        recorrerOrdenado(0, tamano, fila);
+    }
+
+    /** Recorre las posiciones [desde, hasta) del orden apellido, nombre, id. */
+    public void recorrerOrdenado(int desde, int hasta, IntConsumer fila) {
+        for (int pos = desde; pos < hasta; pos++) {
+            fila.accept(orden[pos]);
+        }
+    }
+
+    /**
+     * Rango de posiciones (en el orden apellido/nombre/id) cuyos apellidos
+     * empiezan con el prefijo dado, sin distinguir acentos ni mayúsculas.
+     *
+     * @return {desde, hasta} para usar con recorrerOrdenado / filaEnPosicion
+     */
+    public int[] rangoPorPrefijoApellido(String prefijo) {
+        Comparator<String> orden = PacienteDAOShardeado.ordenTexto(); // uno por llamada: no es thread-safe
+        // 1. Rango de códigos del diccionario con ese prefijo (son contiguos por el orden).
+        int codDesde = primerCodigoNoMenor(prefijo, orden);
+        int codHasta = codDesde;
+        while (codHasta < diccionario.length && diccionario[codHasta].length() >= prefijo.length()
+                && orden.compare(diccionario[codHasta].substring(0, prefijo.length()), prefijo) == 0) {
+            codHasta++;
+        }
+        // 2. Las filas con apellido en ese rango son contiguas en 'orden'.
+        return new int[]{primeraPosicionConApellido(codDesde), primeraPosicionConApellido(codHasta)};
+    }
+
+    /**
+     * Estimación de bytes ocupados (arreglos + diccionario + arena).
+     */
+    public long memoriaEstimadaBytes() {
+        long total = 16L * 8; // encabezados de los arreglos
+        total += 4L * tamano * 5; // ids, fechas, apellidos, nombres, orden
+        total += tamano; // grupos
+        total += 4L * desplazamientos.length;
+        total += 4L * rangos.length;
+        total += arena.capacity();
+        for (String s : diccionario) {
+            total += 40 + s.length(); // String + byte[] compacto (Latin-1)
+        }
+        return total;
+    }
+
+    // --- Internos ---
+
+    private String texto(int desde, int hasta) {
+        byte[] b = new byte[hasta - desde];
+        arena.get(desde, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private int compararFilas(int a, int b) {
+        int c = Integer.compare(rangos[apellidos[a]], rangos[apellidos[b]]);
+        if (c == 0) {
+            c = Integer.compare(rangos[nombres[a]], rangos[nombres[b]]);
+        }
+        return c != 0 ? c : Integer.compare(ids[a], ids[b]);
+    }
+
+    private int primerCodigoNoMenor(String prefijo, Comparator<String> orden) {
+        int lo = 0;
+        int hi = diccionario.length;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (orden.compare(diccionario[m], prefijo) < 0) {
+                lo = m + 1;
+            } else {
+                hi = m;
+            }
+        }
+        return lo;
+    }
+
+    private int primeraPosicionConApellido(int codigo) {
+        int rango = codigo < rangos.length ? rangos[codigo] : Integer.MAX_VALUE;
+        int lo = 0;
+        int hi = tamano;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (rangos[apellidos[orden[m]]] < rango) {
+                lo = m + 1;
+            } else {
+                hi = m;
+            }
+        }
+        return lo;
+    }
+
+    @FunctionalInterface
+    private interface ComparadorInt {
+        int comparar(int a, int b);
+    }
+
+    /** Merge sort estable sobre int[] sin boxing. */
+    private static void ordenar(int[] a, ComparadorInt cmp) {
+        int[] aux = new int[a.length];
+        for (int ancho = 1; ancho < a.length; ancho <<= 1) {
+            for (int desde = 0; desde < a.length - ancho; desde += 2 * ancho) {
+                int medio = desde + ancho;
+                int hasta = Math.min(desde + 2 * ancho, a.length);
+                if (cmp.comparar(a[medio - 1], a[medio]) <= 0) {
+                    continue; // ya ordenado
+                }
+                System.arraycopy(a, desde, aux, desde, hasta - desde);
+                int i = desde, j = medio, k = desde;
+                while (i < medio && j < hasta) {
+                    a[k++] = cmp.comparar(aux[j], aux[i]) < 0 ? aux[j++] : aux[i++];
+                }
+                while (i < medio) {
+                    a[k++] = aux[i++];
+                }
+                while (j < hasta) {
+                    a[k++] = aux[j++];
+                }
+            }
+        }
+    }
+
+    /**
+     * Acumula filas de un recorrido en streaming (una a la vez, sin retener
+     * las entidades) y arma la instantánea.
+     */
+    public static final class Constructor {
+        private int tamano;
+        private int[] ids = new int[1024];
+        private int[] fechas = new int[1024];
+        private byte[] grupos = new byte[1024];
+        private int[] apellidos = new int[1024];
+        private int[] nombres = new int[1024];
+        private int[] desplazamientos = new int[2 * 1024 + 1];
+        private byte[] arena = new byte[16 * 1024];
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private final boolean fueraDelHeap;
+
+        /**
+         * @param fueraDelHeap true para ubicar la arena de DNI/Nro. HC en memoria directa
+         */
+        public Constructor(boolean fueraDelHeap) {
+            this.fueraDelHeap = fueraDelHeap;
+        }
+
+        public Constructor agregar(Paciente p) {
+            if (tamano == ids.length) {
+                int n = ids.length + (ids.length >> 1);
+                ids = Arrays.copyOf(ids, n);
+                fechas = Arrays.copyOf(fechas, n);
+                grupos = Arrays.copyOf(grupos, n);
+                apellidos = Arrays.copyOf(apellidos, n);
+                nombres = Arrays.copyOf(nombres, n);
+                desplazamientos = Arrays.copyOf(desplazamientos, 2 * n + 1);
+            }
+            int i = tamano++;
+            ids[i] = p.getId();
+            fechas[i] = p.getFechaNacimiento() == null ? SIN_FECHA : (int) p.getFechaNacimiento().toEpochDay();
+            HistoriaClinica hc = p.getHistoriaClinica();
+            grupos[i] = (byte) (hc == null || hc.getGrupoSanguineo() == null ? -1 : hc.getGrupoSanguineo().ordinal());
+            apellidos[i] = codificar(p.getApellido());
+            nombres[i] = codificar(p.getNombre());
+            desplazamientos[2 * i + 1] = escribir(desplazamientos[2 * i], p.getDni());
+            desplazamientos[2 * i + 2] = escribir(desplazamientos[2 * i + 1], hc == null ? null : hc.getNroHistoria());
+            return this;
+        }
+
+        public RosterPacientes construir() {
+            // Ordena el diccionario y calcula el remapeo código provisorio -> definitivo.
+            String[] diccionario = new String[codigos.size()];
+            for (Map.Entry<String, Integer> e : codigos.entrySet()) {
+                diccionario[e.getValue()] = e.getKey();
+            }
+            // Orden del listado y, ante empate, orden natural (para que el diccionario sea determinístico).
+            Comparator<String> orden = PacienteDAOShardeado.ordenTexto();
+            String[] ordenado = diccionario.clone();
+            Arrays.sort(ordenado, orden.thenComparing(Comparator.naturalOrder()));
+            int[] rangos = new int[ordenado.length];
+            for (int i = 1; i < ordenado.length; i++) {
+                rangos[i] = orden.compare(ordenado[i - 1], ordenado[i]) == 0 ? rangos[i - 1] : rangos[i - 1] + 1;
+            }
+            Map<String, Integer> definitivo = new HashMap<>(ordenado.length * 2);
+            for (int i = 0; i < ordenado.length; i++) {
+                definitivo.put(ordenado[i], i);
+            }
+            int[] remapeo = new int[diccionario.length];
+            for (int i = 0; i < diccionario.length; i++) {
+                remapeo[i] = definitivo.get(diccionario[i]);
+            }
+            return new RosterPacientes(this, ordenado, rangos, remapeo, fueraDelHeap);
+        }
+
+        private int codificar(String texto) {
+            String t = texto == null ? "" : texto;
+            Integer codigo = codigos.get(t);
+            if (codigo == null) {
+                codigo = codigos.size();
+                codigos.put(t, codigo);
+            }
+            return codigo;
+        }
+
+        private int escribir(int posicion, String texto) {
+            if (texto == null || texto.isEmpty()) {
+                return posicion;
+            }
+            byte[] b = texto.getBytes(StandardCharsets.UTF_8);
+            if (posicion + b.length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, posicion + b.length));
+            }
+            System.arraycopy(b, 0, arena, posicion, b.length);
+            return posicion + b.length;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package Service;
+
+import Auditoria.Auditor;
+import Auditoria.EventoAuditoria;
+import Config.Compartimento;
+import Config.DatabaseConnection;
+import Config.TransactionManager;
+import Dao.HistoriaClinicaDAO;
+import Dao.PacienteDAO;
+import Util.LectorCsv;
+import entities.HistoriaClinica;
+import entities.HistoriaClinica.GrupoSanguineo;
+import entities.Paciente;
+import exceptions.ServiceException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sincroniza la tabla Paciente con un padrón maestro externo (CSV), usando
+ * el DNI como clave.
+ *
+ * 1. Se recorre la BD una vez en streaming y se guarda, por DNI, el ID, si
+ *    está dado de baja, si tiene HC y un hash de 64 bits del contenido
+ *    (nombre, apellido, fecha de nacimiento).
+ * 2. Se lee el padrón fila por fila. Las filas cuyo hash coincide con el de
+ *    la BD (y el paciente está activo y con HC) se cuentan como sin cambios
+ *    y no generan ninguna escritura.
+ * 3. El resto se acumula en lotes: un INSERT ... ON DUPLICATE KEY UPDATE
+ *    por lote (altas, modificaciones y reactivaciones), la creación de las
+ *    HCs que faltan y un commit por lote.
+ * 4. Opcionalmente, los pacientes activos que no figuran en el padrón se
+ *    dan de baja (lógica, igual que eliminar()). Si son más que el
+ *    porcentaje máximo configurado, las bajas no se aplican: un padrón
+ *    truncado no debe vaciar la tabla.
+ *
+ * Columnas del padrón: dni, apellido, nombre, fechaNacimiento (AAAA-MM-DD o
+ * vacía) y, opcionalmente, nroHistoria y grupoSanguineo para las HCs a
+ * crear. Sin Nro. HC se usa "P" + DNI; sin grupo la HC no se crea y el
+ * paciente se cuenta en hc_pendientes. La primera fila se toma como
+ * encabezado si su DNI no es numérico.
+ *
+ * No soporta -Ddb.shards (trabaja contra una sola base).
+ */
+public class SincronizadorPadron {
+
+    /** Estado de un paciente de la BD, en el mínimo de memoria posible. */
+    private static final class Existente {
+        final int id;
+        final long hash;
+        final boolean eliminado;
+        final boolean tieneHc;
+        boolean visto;
+
+        Existente(int id, long hash, boolean eliminado, boolean tieneHc) {
+            this.id = id;
+            this.hash = hash;
+            this.eliminado = eliminado;
+            this.tieneHc = tieneHc;
+        }
+    }
+
+    /** Fila del padrón ya validada, con su paciente y los datos de la HC a crear. */
+    private static final class Fila {
+        final Paciente paciente;
+        final String nroHistoria;
+        final GrupoSanguineo grupo;
+        final Existente existente;
+
+        Fila(Paciente paciente, String nroHistoria, GrupoSanguineo grupo, Existente existente) {
+            this.paciente = paciente;
+            this.nroHistoria = nroHistoria;
+            this.grupo = grupo;
+            this.existente = existente;
+        }
+    }
+
+    /** Contadores de la corrida. */
+    public static final class Resumen {
+        private long leidas;
+        private long insertados;
+        private long actualizados;
+        private long reactivados;
+        private long sinCambios;
+        private long eliminados;
+        private long hcCreadas;
+        private long hcPendientes;
+        private long rechazadas;
+        private long repetidas;
+        private long fallidas;
+        private long ausentes;
+        private boolean bajasOmitidas;
+
+        public long getLeidas() { return leidas; }
+        public long getInsertados() { return insertados; }
+        public long getActualizados() { return actualizados; }
+        public long getReactivados() { return reactivados; }
+        public long getSinCambios() { return sinCambios; }
+        public long getEliminados() { return eliminados; }
+        public long getHcCreadas() { return hcCreadas; }
+        public long getHcPendientes() { return hcPendientes; }
+        public long getRechazadas() { return rechazadas; }
+        public long getRepetidas() { return repetidas; }
+        public long getFallidas() { return fallidas; }
+        public long getAusentes() { return ausentes; }
+        public boolean isBajasOmitidas() { return bajasOmitidas; }
+
+        @Override
+        public String toString() {
+            return String.format("leidas=%d insertados=%d actualizados=%d reactivados=%d sin_cambios=%d eliminados=%d "
+                            + "hc_creadas=%d hc_pendientes=%d rechazadas=%d repetidas=%d fallidas=%d ausentes=%d%s",
+                    leidas, insertados, actualizados, reactivados, sinCambios, eliminados,
+                    hcCreadas, hcPendientes, rechazadas, repetidas, fallidas, ausentes,
+                    bajasOmitidas ? " bajas=OMITIDAS" : "");
+        }
+    }
+
+    private final PacienteDAO pacienteDao = new PacienteDAO();
+    private final HistoriaClinicaDAO historiaClinicaDao = new HistoriaClinicaDAO();
+
+    private final int tamLote;
+    private final boolean aplicarBajas;
+    private final double maxBajasPct;
+    private final boolean simular;
+
+    /**
+     * @param tamLote Filas con cambios por transacción
+     * @param aplicarBajas Dar de baja a los pacientes activos ausentes del padrón
+     * @param maxBajasPct Máximo de bajas admitido, en % de los pacientes activos
+     * @param simular Solo clasificar y contar, sin escribir en la BD
+     */
+    public SincronizadorPadron(int tamLote, boolean aplicarBajas, double maxBajasPct, boolean simular) {
+        if (tamLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo");
+        }
+        this.tamLote = tamLote;
+        this.aplicarBajas = aplicarBajas;
+        this.maxBajasPct = maxBajasPct;
+        this.simular = simular;
+    }
+
+    /**
+     * Aplica el padrón. Corre en el compartimento MASIVO (ver Config.Compartimento).
+     */
+    public Resumen sincronizar(LectorCsv padron) throws Exception {
+        return Compartimento.MASIVO.ejecutar(() -> aplicar(padron));
+    }
+
+    private Resumen aplicar(LectorCsv padron) throws Exception {
+        Map<String, Existente> existentes = cargarExistentes();
+        Set<String> nuevosVistos = new HashSet<>();
+        Resumen r = new Resumen();
+        List<Fila> lote = new ArrayList<>(tamLote);
+
+        List<String> campos;
+        boolean primera = true;
+        while ((campos = padron.leer()) != null) {
+            if (campos.size() == 1 && campos.get(0).trim().isEmpty()) {
+                continue;
+            }
+            String dni = limpiarDni(campos.get(0));
+            if (primera && !dni.matches("\\d+")) {
+                primera = false;
+                continue; // encabezado
+            }
+            primera = false;
+            r.leidas++;
+
+            Fila fila;
+            try {
+                fila = parsear(campos, dni, existentes.get(dni));
+            } catch (ServiceException e) {
+                r.rechazadas++;
+                System.err.println("⚠️ Línea " + padron.getLinea() + " rechazada: " + e.getMessage());
+                continue;
+            }
+            Existente ex = fila.existente;
+            if (ex != null ? ex.visto : !nuevosVistos.add(dni)) {
+                r.repetidas++;
+                continue;
+            }
+            if (ex != null) {
+                ex.visto = true;
+                boolean faltaHc = !ex.tieneHc && fila.grupo != null;
+                if (!ex.eliminado && !faltaHc && ex.hash == hashContenido(fila.paciente)) {
+                    r.sinCambios++;
+                    continue;
+                }
+            }
+            lote.add(fila);
+            if (lote.size() >= tamLote) {
+                aplicar(lote, r);
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            aplicar(lote, r);
+        }
+
+        darDeBajaAusentes(existentes, r);
+        return r;
+    }
+
+    private Map<String, Existente> cargarExistentes() throws Exception {
+        Map<String, Existente> existentes = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            pacienteDao.recorrerParaSincronizacionTx(p -> existentes.put(p.getDni(),
+                    new Existente(p.getId(), hashContenido(p), p.isEliminado(), p.getHistoriaClinica() != null)), conn);
+        }
+        return existentes;
+    }
+
+    private Fila parsear(List<String> campos, String dni, Existente existente) throws ServiceException {
+        if (campos.size() < 4) {
+            throw new ServiceException("Se esperaban al menos 4 columnas (dni, apellido, nombre, fechaNacimiento).");
+        }
+        if (!dni.matches("\\d{7,15}")) {
+            throw new ServiceException("El DNI debe tener un formato válido (solo números, 7-15 dígitos).");
+        }
+        String apellido = campos.get(1).trim();
+        String nombre = campos.get(2).trim();
+        if (nombre.isEmpty() || apellido.isEmpty()) {
+            throw new ServiceException("El nombre y apellido del paciente son obligatorios.");
+        }
+        LocalDate fecha = null;
+        String textoFecha = campos.get(3).trim();
+        if (!textoFecha.isEmpty()) {
+            try {
+                fecha = LocalDate.parse(textoFecha);
+            } catch (DateTimeParseException e) {
+                throw new ServiceException("Fecha de nacimiento inválida: " + textoFecha);
+            }
+        }
+        String nroHistoria = campos.size() > 4 ? campos.get(4).trim() : "";
+        if (nroHistoria.isEmpty()) {
+            nroHistoria = "P" + dni;
+        } else if (nroHistoria.length() > 20) {
+            throw new ServiceException("El Nro. de Historia no puede superar los 20 caracteres.");
+        }
+        GrupoSanguineo grupo = null;
+        String textoGrupo = campos.size() > 5 ? campos.get(5).trim() : "";
+        if (!textoGrupo.isEmpty()) {
+            try {
+                grupo = GrupoSanguineo.desdeSimbolo(textoGrupo);
+            } catch (IllegalArgumentException e) {
+                throw new ServiceException("Grupo sanguíneo inválido: " + textoGrupo);
+            }
+        }
+
+        Paciente p = new Paciente();
+        p.setDni(dni);
+        p.setNombre(nombre);
+        p.setApellido(apellido);
+        p.setFechaNacimiento(fecha);
+        if (existente != null) {
+            p.setId(existente.id);
+        }
+        return new Fila(p, nroHistoria, grupo, existente);
+    }
+
+    /**
+     * Aplica un lote en una transacción: upsert de los pacientes, HCs
+     * faltantes y reactivación de las HCs de los pacientes reactivados.
+     * Si falla, se revierte el lote entero y se cuenta como fallido.
+     */
+    private void aplicar(List<Fila> lote, Resumen r) throws Exception {
+        List<Paciente> pacientes = new ArrayList<>(lote.size());
+        List<Paciente> nuevos = new ArrayList<>();
+        List<Integer> reactivados = new ArrayList<>();
+        int insertados = 0;
+        int actualizados = 0;
+        for (Fila f : lote) {
+            pacientes.add(f.paciente);
+            if (f.existente == null) {
+                nuevos.add(f.paciente);
+                insertados++;
+            } else if (f.existente.eliminado) {
+                reactivados.add(f.existente.id);
+            } else if (f.existente.hash != hashContenido(f.paciente)) {
+                actualizados++;
+            }
+        }
+
+        int hcNecesarias = 0;
+        int hcCreadas = 0;
+        int hcSinGrupo = 0;
+        if (simular) {
+            for (Fila f : lote) {
+                if (f.existente == null || !f.existente.tieneHc) {
+                    if (f.grupo == null) {
+                        hcSinGrupo++;
+                    } else {
+                        hcNecesarias++;
+                    }
+                }
+            }
+            hcCreadas = hcNecesarias;
+        } else {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 TransactionManager tx = new TransactionManager(conn)) {
+                tx.startTransaction();
+                pacienteDao.upsertPorDniBatchTx(pacientes, conn);
+                if (!nuevos.isEmpty()) {
+                    pacienteDao.asignarIdsPorDniTx(nuevos, conn);
+                }
+                List<HistoriaClinica> historias = new ArrayList<>();
+                for (Fila f : lote) {
+                    if (f.existente != null && f.existente.tieneHc) {
+                        continue;
+                    }
+                    if (f.grupo == null || f.paciente.getId() <= 0) {
+                        hcSinGrupo++;
+                        continue;
+                    }
+                    HistoriaClinica hc = new HistoriaClinica();
+                    hc.setNroHistoria(f.nroHistoria);
+                    hc.setGrupoSanguineo(f.grupo);
+                    hc.setPacienteId((long) f.paciente.getId());
+                    historias.add(hc);
+                }
+                hcNecesarias = historias.size();
+                if (!historias.isEmpty()) {
+                    hcCreadas = historiaClinicaDao.insertarMinimasBatchTx(historias, conn);
+                }
+                if (!reactivados.isEmpty()) {
+                    historiaClinicaDao.reactivarPorPacienteIdsBatchTx(reactivados, conn);
+                }
+                tx.commit();
+                for (Fila f : lote) {
+                    Auditor.registrar(f.existente == null ? EventoAuditoria.Tipo.ALTA : EventoAuditoria.Tipo.MODIFICACION,
+                            f.paciente.getId(), "sync");
+                }
+            } catch (Exception e) {
+                r.fallidas += lote.size();
+                System.err.println("❌ Lote de " + lote.size() + " filas revertido: " + e.getMessage());
+                return;
+            }
+        }
+
+        r.insertados += insertados;
+        r.actualizados += actualizados;
+        r.reactivados += reactivados.size();
+        // Filas que solo necesitaban la HC (mismo contenido, sin HC): no cambian el Paciente.
+        r.sinCambios += lote.size() - insertados - actualizados - reactivados.size();
+        r.hcCreadas += hcCreadas;
+        // Sin grupo en el padrón, o Nro. HC ya usado por otro paciente (INSERT IGNORE).
+        r.hcPendientes += hcSinGrupo + (hcNecesarias - hcCreadas);
+    }
+
+    private void darDeBajaAusentes(Map<String, Existente> existentes, Resumen r) throws Exception {
+        List<Integer> ausentes = new ArrayList<>();
+        long activos = 0;
+        for (Existente ex : existentes.values()) {
+            if (!ex.eliminado) {
+                activos++;
+                if (!ex.visto) {
+                    ausentes.add(ex.id);
+                }
+            }
+        }
+        r.ausentes = ausentes.size();
+        if (!aplicarBajas || ausentes.isEmpty()) {
+            return;
+        }
+        if (ausentes.size() > activos * maxBajasPct / 100.0) {
+            r.bajasOmitidas = true;
+            System.err.printf("⚠️ %d de %d pacientes activos no figuran en el padrón (máximo %.1f%%): no se aplican bajas.%n",
+                    ausentes.size(), activos, maxBajasPct);
+            return;
+        }
+        if (simular) {
+            r.eliminados = ausentes.size();
+            return;
+        }
+        for (int desde = 0; desde < ausentes.size(); desde += tamLote) {
+            List<Integer> ids = ausentes.subList(desde, Math.min(ausentes.size(), desde + tamLote));
+            try (Connection conn = DatabaseConnection.getConnection();
+                 TransactionManager tx = new TransactionManager(conn)) {
+                tx.startTransaction();
+                historiaClinicaDao.eliminarPorPacienteIdsBatchTx(ids, conn);
+                pacienteDao.eliminarBatchTx(ids, conn);
+                tx.commit();
+                for (int id : ids) {
+                    Auditor.registrar(EventoAuditoria.Tipo.BAJA, id, "sync");
+                }
+                r.eliminados += ids.size();
+            } catch (Exception e) {
+                r.fallidas += ids.size();
+                System.err.println("❌ Lote de " + ids.size() + " bajas revertido: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Quita espacios y puntos de miles ("12.345.678"). */
+    private static String limpiarDni(String texto) {
+        return texto.trim().replace(".", "");
+    }
+
+    /**
+     * Hash de 64 bits (FNV-1a) de los campos que sincroniza el padrón. Una
+     * colisión haría pasar una modificación por "sin cambios"; con 64 bits
+     * la probabilidad por fila es despreciable (~5e-20).
+     */
+    static long hashContenido(Paciente p) {
+        long h = 0xcbf29ce484222325L;
+        h = mezclar(h, p.getNombre());
+        h = mezclar(h, p.getApellido());
+        h = mezclar(h, p.getFechaNacimiento() == null ? "" : p.getFechaNacimiento().toString());
+        return h;
+    }
+
+    private static long mezclar(long h, String campo) {
+        for (byte b : (campo == null ? "" : campo).getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        // Separador: ("ab", "c") y ("a", "bc") no deben dar lo mismo.
+        h ^= 0xff;
+        h *= 0x100000001b3L;
+        return h;
+    }
+}
@@ -0,0 +1,142 @@
+package Service;
+
+import Config.Plazo;
+
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalescencia de lecturas concurrentes ("single-flight").
+ *
+ * Si varios hilos piden la misma clave al mismo tiempo, solo el primero
+ * (el "líder") ejecuta la consulta; el resto espera su resultado en lugar
+ * de lanzar otra consulta idéntica contra la BD.
+ *
+ * Consistencia con las escrituras: cada vuelo registra la "época" en que
+ * empezó. Las escrituras llaman a invalidar() al confirmar, lo que avanza
+ * la época; una lectura que empieza después nunca se une a un vuelo de una
+ * época anterior (podría devolver datos previos a la escritura), sino que
+ * lanza su propia consulta.
+ *
+ * Copias: el vuelo guarda una instantánea privada del resultado, que no
+ * se entrega a nadie; cada llamador, líder incluido, recibe su propia copia
+ * de ella. Así nadie ve las modificaciones que otro hilo haga a lo que
+ * recibió (p. ej. el PUT de ServidorHttp, que edita el paciente leído).
+ *
+ * Errores: si la consulta del líder falla, todos los que esperaban reciben
+ * la misma excepción y la entrada se elimina, por lo que la siguiente
+ * lectura vuelve a intentar.
+ *
+ * @param <K> Tipo de clave (id, DNI...)
+ * @param <V> Tipo de resultado
+ */
+public class SingleFlight<K, V> {
+
+    /** Consulta a ejecutar por el líder. */
+    @FunctionalInterface
+    public interface Carga<V> {
+        V cargar() throws Exception;
+    }
+
+    private static final class Vuelo<V> {
+        final long epoca;
+        final CompletableFuture<V> futuro = new CompletableFuture<>();
+
+        Vuelo(long epoca) {
+            this.epoca = epoca;
+        }
+    }
+
+    private final ConcurrentHashMap<K, Vuelo<V>> enVuelo = new ConcurrentHashMap<>();
+    private final AtomicLong epoca = new AtomicLong();
+    private final UnaryOperator<V> copiador;
+
+    /**
+     * @param copiador Copia entregada a cada llamador (y la instantánea del
+     *                 vuelo), para que nadie comparta un objeto mutable con otro hilo
+     */
+    public SingleFlight(UnaryOperator<V> copiador) {
+        this.copiador = copiador;
+    }
+
+    /**
+     * Ejecuta la carga o se une a una carga en curso para la misma clave.
+     */
+    public V ejecutar(K clave, Carga<V> carga) throws Exception {
+        long epocaLectura = epoca.get();
+        Vuelo<V> propio = null;
+        Vuelo<V> actual = enVuelo.get(clave);
+        while (propio == null) {
+            if (actual != null && actual.epoca >= epocaLectura) {
+                return esperar(actual);
+            }
+            Vuelo<V> candidato = new Vuelo<>(epocaLectura);
+            if (actual == null) {
+                actual = enVuelo.putIfAbsent(clave, candidato);
+                if (actual == null) {
+                    propio = candidato;
+                }
+            } else if (enVuelo.replace(clave, actual, candidato)) {
+                // El vuelo anterior es de antes de una escritura: se reemplaza.
+                propio = candidato;
+            } else {
+                actual = enVuelo.get(clave);
+            }
+        }
+
+        try {
+            V instantanea = copiar(carga.cargar());
+            propio.futuro.complete(instantanea);
+            return copiar(instantanea);
+        } catch (Exception | Error e) {
+            propio.futuro.completeExceptionally(e);
+            throw e;
+        } finally {
+            enVuelo.remove(clave, propio);
+        }
+    }
+
+    /**
+     * Marca como obsoletos todos los vuelos en curso. Debe llamarse después
+     * de confirmar cualquier escritura que pueda cambiar el resultado.
+     */
+    public void invalidar() {
+        epoca.incrementAndGet();
+    }
+
+    /** Cantidad de claves con una consulta en curso (métricas). */
+    public int getEnCurso() {
+        return enVuelo.size();
+    }
+
+    private V copiar(V valor) {
+        return valor == null ? null : copiador.apply(valor);
+    }
+
+    private V esperar(Vuelo<V> vuelo) throws Exception {
+        try {
+            // Quien se une a un vuelo ajeno espera solo hasta su propio plazo.
+            Plazo plazo = Plazo.actual();
+            V resultado;
+            try {
+                resultado = plazo == null ? vuelo.futuro.get()
+                        : vuelo.futuro.get(Math.max(0, plazo.restanteNanos()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new SQLTimeoutException("Plazo vencido esperando una lectura en curso", e);
+            }
+            return copiar(resultado);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof Exception) {
+                throw (Exception) causa;
+            }
+            throw (Error) causa;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Buffer circular acotado, sin locks, para muchos productores y un único
+ * consumidor (esquema de Vyukov: cada casillero lleva un número de secuencia
+ * que indica si está libre para el productor de la vuelta actual o listo
+ * para el consumidor).
+ *
+ * - ofrecer(): un CAS sobre la cola; nunca bloquea. Si el buffer está
+ *   lleno devuelve false y el llamador decide (descartar, contar...).
+ * - sacar(): solo desde UN hilo consumidor; devuelve null si está vacío.
+ */
+public class AnilloMpsc<T> {
+
+    private final Object[] casilleros;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    private final AtomicLong cola = new AtomicLong();
+    /** Solo la usa el consumidor. */
+    private long cabeza;
+
+    /**
+     * @param capacidad Se redondea a la potencia de 2 siguiente
+     */
+    public AnilloMpsc(int capacidad) {
+        int n = Integer.highestOneBit(Math.max(2, capacidad - 1)) << 1;
+        this.casilleros = new Object[n];
+        this.secuencias = new AtomicLongArray(n);
+        this.mascara = n - 1;
+        for (int i = 0; i < n; i++) {
+            secuencias.set(i, i);
+        }
+    }
+
+    /**
+     * @return false si el buffer está lleno (el elemento no se encoló)
+     */
+    public boolean ofrecer(T elemento) {
+        long pos = cola.get();
+        while (true) {
+            int i = (int) (pos & mascara);
+            long diferencia = secuencias.get(i) - pos;
+            if (diferencia == 0) {
+                if (cola.compareAndSet(pos, pos + 1)) {
+                    casilleros[i] = elemento;
+                    secuencias.set(i, pos + 1); // publica el elemento al consumidor
+                    return true;
+                }
+                pos = cola.get();
+            } else if (diferencia < 0) {
+                return false; // el consumidor todavía no liberó este casillero
+            } else {
+                pos = cola.get(); // otro productor ganó la posición
+            }
+        }
+    }
+
+    /**
+     * @return El elemento más antiguo, o null si no hay ninguno publicado
+     */
+    @SuppressWarnings("unchecked")
+    public T sacar() {
+        int i = (int) (cabeza & mascara);
+        if (secuencias.get(i) != cabeza + 1) {
+            return null;
+        }
+        T elemento = (T) casilleros[i];
+        casilleros[i] = null;
+        secuencias.set(i, cabeza + casilleros.length); // libre para la próxima vuelta
+        cabeza++;
+        return elemento;
+    }
+
+    public int getCapacidad() {
+        return casilleros.length;
+    }
+
+    /** Aproximado: puede quedar desactualizado apenas se lee. */
+    public long getPendientes() {
+        return Math.max(0, cola.get() - cabeza);
+    }
+}
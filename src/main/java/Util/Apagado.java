@@ -0,0 +1,63 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Secuencia de cierre de la JVM (fin normal, System.exit, SIGTERM o
+ * Ctrl+C) en un único shutdown hook.
+ *
+ * La JVM ejecuta sus hooks en paralelo y sin orden; acá las tareas corren
+ * por fase y, dentro de una fase, en el orden en que se registraron: se
+ * deja de aceptar trabajo, se vacían las escrituras pendientes y recién
+ * entonces se cierran las bitácoras que esas escrituras alimentan.
+ */
+public final class Apagado {
+
+    /** Fases del cierre, en orden de ejecución. */
+    public enum Fase {
+        /** Dejar de aceptar solicitudes (servidor HTTP). */
+        ENTRADA,
+        /** Vaciar lo que quedó en memoria sin escribir (escritura diferida). */
+        ESCRITURAS,
+        /** Cerrar las bitácoras (auditoría), ya sin productores. */
+        BITACORAS
+    }
+
+    private static final Map<Fase, List<Runnable>> TAREAS = new EnumMap<>(Fase.class);
+    private static boolean hookRegistrado;
+
+    private Apagado() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * Agrega una tarea al cierre. Un error en una tarea se informa por
+     * stderr y no impide las siguientes.
+     */
+    public static synchronized void alApagar(Fase fase, Runnable tarea) {
+        TAREAS.computeIfAbsent(fase, f -> new ArrayList<>()).add(tarea);
+        if (!hookRegistrado) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Apagado::ejecutar, "apagado"));
+            hookRegistrado = true;
+        }
+    }
+
+    private static void ejecutar() {
+        for (Fase fase : Fase.values()) {
+            List<Runnable> tareas;
+            synchronized (Apagado.class) {
+                tareas = new ArrayList<>(TAREAS.getOrDefault(fase, List.of()));
+            }
+            for (Runnable tarea : tareas) {
+                try {
+                    tarea.run();
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️ Error al cerrar (" + fase + "): " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Diferencia por líneas entre dos textos (para comparar revisiones de una
+ * HC). Se descartan primero las líneas iguales del inicio y del final y al
+ * resto se le aplica la subsecuencia común más larga. Si ese tramo es
+ * demasiado grande para la tabla (MAX_CELDAS), se informa entero como
+ * quitado y agregado.
+ */
+public final class DiffLineas {
+
+    private static final long MAX_CELDAS = 4_000_000L;
+
+    public enum Tipo { IGUAL, QUITADA, AGREGADA }
+
+    public static final class Linea {
+        private final Tipo tipo;
+        private final String texto;
+
+        Linea(Tipo tipo, String texto) {
+            this.tipo = tipo;
+            this.texto = texto;
+        }
+
+        public Tipo getTipo() { return tipo; }
+        public String getTexto() { return texto; }
+
+        @Override
+        public String toString() {
+            return (tipo == Tipo.IGUAL ? "  " : tipo == Tipo.QUITADA ? "- " : "+ ") + texto;
+        }
+    }
+
+    private DiffLineas() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * @param antes Texto anterior (null = sin líneas)
+     * @param despues Texto nuevo (null = sin líneas)
+     * @return Todas las líneas de ambos textos, en orden, marcadas como iguales, quitadas o agregadas
+     */
+    public static List<Linea> comparar(String antes, String despues) {
+        List<String> a = lineas(antes);
+        List<String> b = lineas(despues);
+        int inicio = 0;
+        while (inicio < a.size() && inicio < b.size() && a.get(inicio).equals(b.get(inicio))) {
+            inicio++;
+        }
+        int finA = a.size();
+        int finB = b.size();
+        while (finA > inicio && finB > inicio && a.get(finA - 1).equals(b.get(finB - 1))) {
+            finA--;
+            finB--;
+        }
+
+        List<Linea> resultado = new ArrayList<>(Math.max(a.size(), b.size()));
+        for (int i = 0; i < inicio; i++) {
+            resultado.add(new Linea(Tipo.IGUAL, a.get(i)));
+        }
+        medio(a.subList(inicio, finA), b.subList(inicio, finB), resultado);
+        for (int i = finA; i < a.size(); i++) {
+            resultado.add(new Linea(Tipo.IGUAL, a.get(i)));
+        }
+        return resultado;
+    }
+
+    /**
+     * true si hay alguna línea quitada o agregada.
+     */
+    public static boolean hayCambios(List<Linea> diferencia) {
+        for (Linea l : diferencia) {
+            if (l.tipo != Tipo.IGUAL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void medio(List<String> a, List<String> b, List<Linea> resultado) {
+        int n = a.size();
+        int m = b.size();
+        if ((long) (n + 1) * (m + 1) > MAX_CELDAS) {
+            for (String s : a) {
+                resultado.add(new Linea(Tipo.QUITADA, s));
+            }
+            for (String s : b) {
+                resultado.add(new Linea(Tipo.AGREGADA, s));
+            }
+            return;
+        }
+        // lcs[i][j]: largo de la subsecuencia común de a[i..] y b[j..]
+        int[][] lcs = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = m - 1; j >= 0; j--) {
+                lcs[i][j] = a.get(i).equals(b.get(j)) ? lcs[i + 1][j + 1] + 1 : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+            }
+        }
+        int i = 0;
+        int j = 0;
+        while (i < n && j < m) {
+            if (a.get(i).equals(b.get(j))) {
+                resultado.add(new Linea(Tipo.IGUAL, a.get(i)));
+                i++;
+                j++;
+            } else if (lcs[i + 1][j] >= lcs[i][j + 1]) {
+                resultado.add(new Linea(Tipo.QUITADA, a.get(i++)));
+            } else {
+                resultado.add(new Linea(Tipo.AGREGADA, b.get(j++)));
+            }
+        }
+        while (i < n) {
+            resultado.add(new Linea(Tipo.QUITADA, a.get(i++)));
+        }
+        while (j < m) {
+            resultado.add(new Linea(Tipo.AGREGADA, b.get(j++)));
+        }
+    }
+
+    private static List<String> lineas(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(texto.split("\r?\n", -1));
+    }
+}
@@ -0,0 +1,109 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom para cadenas: responde "seguro que no está" o "puede estar".
+ *
+ * El tamaño (m bits) y la cantidad de funciones hash (k) se calculan a partir
+ * de la capacidad esperada y la tasa de falsos positivos deseada. Las k
+ * posiciones salen de un único hash de 64 bits (doble hashing de
+ * Kirsch-Mitzenmacher: h1 + i*h2).
+ *
+ * Es thread-safe sin locks: agregar() solo hace OR atómicos sobre los bits.
+ * No admite borrados: un valor eliminado sigue dando "puede estar".
+ */
+public class FiltroBloom {
+
+    private final AtomicLongArray bits;
+    private final long m;
+    private final int k;
+    private final AtomicLong cantidad = new AtomicLong();
+
+    /**
+     * @param capacidad Cantidad de valores esperada
+     * @param tasaFalsosPositivos Tasa deseada con esa capacidad (ej. 0.01)
+     */
+    public FiltroBloom(long capacidad, double tasaFalsosPositivos) {
+        long n = Math.max(1, capacidad);
+        double p = Math.min(0.5, Math.max(1e-9, tasaFalsosPositivos));
+        // En double: con capacidades enormes el long se saturaba y "+ 63" desbordaba a negativo.
+        double bitsNecesarios = Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        double palabras = Math.max(1, Math.ceil(bitsNecesarios / 64));
+        if (palabras > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filtro de Bloom demasiado grande para " + capacidad + " valores");
+        }
+        this.bits = new AtomicLongArray((int) palabras);
+        this.m = (long) palabras * 64;
+        this.k = (int) Math.max(1, Math.min(16, Math.round((double) m / n * Math.log(2))));
+    }
+
+    public void agregar(String valor) {
+        long h = hash(valor);
+        long h1 = h;
+        long h2 = (h >>> 32) | 1; // impar: recorre posiciones distintas
+        for (int i = 0; i < k; i++) {
+            long bit = Math.floorMod(h1 + i * h2, m);
+            long mascara = 1L << (bit & 63);
+            int palabra = (int) (bit >>> 6);
+            long actual = bits.get(palabra);
+            if ((actual & mascara) == 0) {
+                bits.getAndAccumulate(palabra, mascara, (a, b) -> a | b);
+            }
+        }
+        cantidad.incrementAndGet();
+    }
+
+    /**
+     * @return false si el valor seguro no fue agregado; true si puede haberlo sido
+     */
+    public boolean puedeContener(String valor) {
+        long h = hash(valor);
+        long h1 = h;
+        long h2 = (h >>> 32) | 1;
+        for (int i = 0; i < k; i++) {
+            long bit = Math.floorMod(h1 + i * h2, m);
+            if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Cantidad de agregados (con repeticiones). */
+    public long getCantidad() {
+        return cantidad.get();
+    }
+
+    public long getBits() {
+        return m;
+    }
+
+    public int getFuncionesHash() {
+        return k;
+    }
+
+    /**
+     * Tasa teórica de falsos positivos con la carga actual: (1 - e^(-k*n/m))^k.
+     */
+    public double tasaFalsosPositivosEstimada() {
+        return Math.pow(1 - Math.exp(-k * (double) cantidad.get() / m), k);
+    }
+
+    /** FNV-1a de 64 bits + mezcla final de MurmurHash3. */
+    private static long hash(String valor) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
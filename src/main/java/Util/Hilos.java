@@ -0,0 +1,69 @@
+package Util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fábricas de ejecutores compartidas por los modos servidor, batch y carga.
+ *
+ * El proyecto compila con Java 17, donde no existen los hilos virtuales.
+ * Si la JVM que ejecuta la aplicación es 21+, se usan por reflexión
+ * (Executors.newVirtualThreadPerTaskExecutor); si no, se cae a un pool
+ * fijo de hilos de plataforma del tamaño indicado.
+ */
+public final class Hilos {
+
+    private Hilos() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * Ejecutor "un hilo por tarea".
+     *
+     * @param nombre Prefijo de nombre de los hilos (solo para el fallback)
+     * @param hilosPlataforma Tamaño del pool si no hay hilos virtuales
+     */
+    public static ExecutorService porTarea(String nombre, int hilosPlataforma) {
+        ExecutorService virtual = virtualPorTarea();
+        if (virtual != null) {
+            return virtual;
+        }
+        return Executors.newFixedThreadPool(hilosPlataforma, fabrica(nombre, true));
+    }
+
+    /**
+     * @return true si la JVM actual soporta hilos virtuales
+     */
+    public static boolean hayHilosVirtuales() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * ThreadFactory con nombres numerados ("nombre-1", "nombre-2", ...).
+     */
+    public static ThreadFactory fabrica(String nombre, boolean daemon) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, nombre + "-" + contador.incrementAndGet());
+            t.setDaemon(daemon);
+            return t;
+        };
+    }
+
+    private static ExecutorService virtualPorTarea() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
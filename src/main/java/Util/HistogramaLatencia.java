@@ -0,0 +1,175 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias con precisión relativa acotada (~3%).
+ *
+ * Los valores (en nanosegundos) se agrupan en "magnitudes" (potencias de 2)
+ * y cada magnitud se divide en 64 sub-buckets lineales, al estilo HdrHistogram.
+ * Así se cubre desde 1 ns hasta ~2^62 ns con un arreglo fijo y pequeño,
+ * sin guardar cada muestra.
+ *
+ * Es thread-safe: registrar() solo hace incrementos atómicos, por lo que
+ * varios hilos (carriles del modo batch, handlers HTTP, etc.) pueden
+ * registrar sobre el mismo histograma sin locks.
+ */
+public class HistogramaLatencia {
+
+    private static final int BITS_SUB_BUCKET = 6;
+    private static final int SUB_BUCKETS = 1 << BITS_SUB_BUCKET; // 64
+    private static final int MAGNITUDES = 64 - BITS_SUB_BUCKET;
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(MAGNITUDES * SUB_BUCKETS);
+    private final AtomicLong cantidad = new AtomicLong();
+    private final AtomicLong suma = new AtomicLong();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra una muestra.
+     * @param nanos Latencia en nanosegundos (valores negativos se toman como 0)
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cuentas.incrementAndGet(indice(valor));
+        cantidad.incrementAndGet();
+        suma.addAndGet(valor);
+        long actual;
+        while (valor > (actual = maximo.get())) {
+            if (maximo.compareAndSet(actual, valor)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Registra una muestra corrigiendo la "omisión coordinada": si la
+     * operación tardó más que el intervalo esperado entre solicitudes, se
+     * agregan las muestras que un cliente de tasa fija habría observado
+     * mientras esperaba (valor - intervalo, valor - 2*intervalo, ...).
+     *
+     * @param nanos Latencia medida
+     * @param intervaloEsperadoNanos Intervalo entre solicitudes (0 = sin corrección)
+     */
+    public void registrarCorregido(long nanos, long intervaloEsperadoNanos) {
+        registrar(nanos);
+        if (intervaloEsperadoNanos <= 0) {
+            return;
+        }
+        for (long faltante = nanos - intervaloEsperadoNanos; faltante >= intervaloEsperadoNanos; faltante -= intervaloEsperadoNanos) {
+            registrar(faltante);
+        }
+    }
+
+    /**
+     * Suma las cuentas de otro histograma a este (p. ej. para consolidar
+     * los histogramas de cada carril en un resumen global).
+     */
+    public void agregar(HistogramaLatencia otro) {
+        for (int i = 0; i < cuentas.length(); i++) {
+            long c = otro.cuentas.get(i);
+            if (c != 0) {
+                cuentas.addAndGet(i, c);
+            }
+        }
+        cantidad.addAndGet(otro.cantidad.get());
+        suma.addAndGet(otro.suma.get());
+        long max = otro.maximo.get();
+        long actual;
+        while (max > (actual = maximo.get())) {
+            if (maximo.compareAndSet(actual, max)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Devuelve una copia del estado actual y deja este histograma en cero.
+     * Útil para reportes por intervalo. Las muestras que se registren
+     * concurrentemente durante la copia quedan en uno u otro intervalo,
+     * nunca se pierden.
+     */
+    public HistogramaLatencia obtenerYReiniciar() {
+        HistogramaLatencia copia = new HistogramaLatencia();
+        for (int i = 0; i < cuentas.length(); i++) {
+            long c = cuentas.getAndSet(i, 0);
+            if (c != 0) {
+                copia.cuentas.set(i, c);
+            }
+        }
+        copia.cantidad.set(cantidad.getAndSet(0));
+        copia.suma.set(suma.getAndSet(0));
+        copia.maximo.set(maximo.getAndSet(0));
+        return copia;
+    }
+
+    /**
+     * Percentil aproximado.
+     * @param percentil Valor entre 0 y 100 (ej. 99.9)
+     * @return Latencia en nanosegundos (límite superior del bucket), 0 si no hay muestras
+     */
+    public long percentil(double percentil) {
+        long total = 0;
+        for (int i = 0; i < cuentas.length(); i++) {
+            total += cuentas.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentil) / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < cuentas.length(); i++) {
+            acumulado += cuentas.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    public long getCantidad() {
+        return cantidad.get();
+    }
+
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    public double getPromedio() {
+        long n = cantidad.get();
+        return n == 0 ? 0.0 : (double) suma.get() / n;
+    }
+
+    /**
+     * Resumen de una línea en microsegundos: n, promedio, p50, p90, p99, p99.9 y máximo.
+     */
+    public String resumen() {
+        return String.format("n=%d prom=%.1fus p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus",
+                getCantidad(), getPromedio() / 1_000.0,
+                percentil(50) / 1_000, percentil(90) / 1_000, percentil(99) / 1_000,
+                percentil(99.9) / 1_000, getMaximo() / 1_000);
+    }
+
+    // --- Cálculo de índices ---
+
+    private static int indice(long valor) {
+        if (valor < SUB_BUCKETS) {
+            return (int) valor; // magnitud 0: buckets exactos
+        }
+        int magnitud = (63 - Long.numberOfLeadingZeros(valor)) - BITS_SUB_BUCKET + 1;
+        int sub = (int) (valor >>> magnitud) & (SUB_BUCKETS - 1);
+        // En magnitudes > 0 el bit alto siempre está en la mitad superior,
+        // por lo que solo se usan los sub-buckets [32, 64).
+        return magnitud * SUB_BUCKETS + sub;
+    }
+
+    private static long limiteSuperior(int indice) {
+        int magnitud = indice / SUB_BUCKETS;
+        long sub = indice % SUB_BUCKETS;
+        if (magnitud == 0) {
+            return sub;
+        }
+        return ((sub + 1) << magnitud) - 1;
+    }
+}
@@ -0,0 +1,201 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser JSON mínimo para los cuerpos de las solicitudes HTTP.
+ *
+ * Devuelve Map (objetos), List (arreglos), String, Long, Double, Boolean o
+ * null. Alcanza para los documentos chicos que recibe la API; no pretende
+ * ser un parser de propósito general.
+ *
+ * Los objetos y arreglos se parsean recursivamente: más de MAX_PROFUNDIDAD
+ * niveles de anidamiento se rechazan como JSON inválido, en lugar de agotar
+ * la pila del hilo con un cuerpo como "[[[[...".
+ */
+public final class JsonReader {
+
+    /** Niveles de objetos/arreglos anidados admitidos (la raíz es el 1). */
+    public static final int MAX_PROFUNDIDAD = 32;
+
+    private final String texto;
+    private int pos;
+    private int profundidad;
+
+    private JsonReader(String texto) {
+        this.texto = texto;
+    }
+
+    /**
+     * Parsea un documento cuyo valor raíz debe ser un objeto.
+     * @throws IllegalArgumentException Si el JSON es inválido
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parsearObjeto(String json) {
+        JsonReader r = new JsonReader(json);
+        r.espacios();
+        if (r.pos >= r.texto.length() || r.texto.charAt(r.pos) != '{') {
+            throw new IllegalArgumentException("Se esperaba un objeto JSON");
+        }
+        Object valor = r.valor();
+        r.espacios();
+        if (r.pos != r.texto.length()) {
+            throw r.error("Contenido sobrante después del objeto");
+        }
+        return (Map<String, Object>) valor;
+    }
+
+    private Object valor() {
+        espacios();
+        if (pos >= texto.length()) {
+            throw error("Fin inesperado");
+        }
+        char c = texto.charAt(pos);
+        switch (c) {
+            case '{':
+            case '[': {
+                entrar();
+                Object anidado = c == '{' ? objeto() : arreglo();
+                profundidad--; // Un error corta todo el parseo: no hace falta en un finally.
+                return anidado;
+            }
+            case '"': return cadena();
+            case 't': literal("true"); return Boolean.TRUE;
+            case 'f': literal("false"); return Boolean.FALSE;
+            case 'n': literal("null"); return null;
+            default: return numero();
+        }
+    }
+
+    private Map<String, Object> objeto() {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        pos++; // '{'
+        espacios();
+        if (consumir('}')) {
+            return mapa;
+        }
+        do {
+            espacios();
+            if (pos >= texto.length() || texto.charAt(pos) != '"') {
+                throw error("Se esperaba un nombre de campo");
+            }
+            String nombre = cadena();
+            espacios();
+            if (!consumir(':')) {
+                throw error("Se esperaba ':'");
+            }
+            mapa.put(nombre, valor());
+            espacios();
+        } while (consumir(','));
+        if (!consumir('}')) {
+            throw error("Se esperaba '}'");
+        }
+        return mapa;
+    }
+
+    private List<Object> arreglo() {
+        List<Object> lista = new ArrayList<>();
+        pos++; // '['
+        espacios();
+        if (consumir(']')) {
+            return lista;
+        }
+        do {
+            lista.add(valor());
+            espacios();
+        } while (consumir(','));
+        if (!consumir(']')) {
+            throw error("Se esperaba ']'");
+        }
+        return lista;
+    }
+
+    private String cadena() {
+        pos++; // '"'
+        StringBuilder sb = new StringBuilder();
+        while (pos < texto.length()) {
+            char c = texto.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= texto.length()) {
+                break;
+            }
+            char e = texto.charAt(pos++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > texto.length()) {
+                        throw error("Escape \\u incompleto");
+                    }
+                    sb.append((char) Integer.parseInt(texto.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default: sb.append(e); // '"', '\\', '/'
+            }
+        }
+        throw error("Cadena sin cerrar");
+    }
+
+    private Object numero() {
+        int inicio = pos;
+        boolean decimal = false;
+        while (pos < texto.length()) {
+            char c = texto.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                decimal = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            pos++;
+        }
+        String s = texto.substring(inicio, pos);
+        try {
+            return decimal ? (Object) Double.parseDouble(s) : (Object) Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            throw error("Número inválido: '" + s + "'");
+        }
+    }
+
+    private void entrar() {
+        if (++profundidad > MAX_PROFUNDIDAD) {
+            throw error("Más de " + MAX_PROFUNDIDAD + " niveles de anidamiento");
+        }
+    }
+
+    private void literal(String esperado) {
+        if (!texto.startsWith(esperado, pos)) {
+            throw error("Se esperaba " + esperado);
+        }
+        pos += esperado.length();
+    }
+
+    private boolean consumir(char c) {
+        if (pos < texto.length() && texto.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void espacios() {
+        while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String mensaje) {
+        return new IllegalArgumentException("JSON inválido (posición " + pos + "): " + mensaje);
+    }
+}
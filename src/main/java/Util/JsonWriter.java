@@ -0,0 +1,216 @@
+package Util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escritor JSON en streaming que codifica directamente a UTF-8 sobre un
+ * buffer de bytes propio, sin construir Strings intermedios del documento.
+ *
+ * Maneja las comas automáticamente según la anidación:
+ * <pre>
+ * JsonWriter w = new JsonWriter(out);
+ * w.inicioObjeto().nombre("id").valor(5).nombre("dni").valor("123").finObjeto();
+ * w.flush();
+ * </pre>
+ *
+ * No es thread-safe: se usa uno por respuesta.
+ */
+public class JsonWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final int PROFUNDIDAD_MAXIMA = 32;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int pos;
+
+    /** primero[n] = aún no se escribió ningún elemento en el nivel n. */
+    private final boolean[] primero = new boolean[PROFUNDIDAD_MAXIMA];
+    private int nivel;
+    private boolean despuesDeNombre;
+
+    public JsonWriter(OutputStream out) {
+        this(out, 8 * 1024);
+    }
+
+    public JsonWriter(OutputStream out, int tamanoBuffer) {
+        this.out = out;
+        this.buffer = new byte[tamanoBuffer];
+        this.primero[0] = true;
+    }
+
+    public JsonWriter inicioObjeto() throws IOException {
+        separador();
+        escribir('{');
+        abrirNivel();
+        return this;
+    }
+
+    public JsonWriter finObjeto() throws IOException {
+        nivel--;
+        escribir('}');
+        return this;
+    }
+
+    public JsonWriter inicioArreglo() throws IOException {
+        separador();
+        escribir('[');
+        abrirNivel();
+        return this;
+    }
+
+    public JsonWriter finArreglo() throws IOException {
+        nivel--;
+        escribir(']');
+        return this;
+    }
+
+    public JsonWriter nombre(String nombre) throws IOException {
+        separador();
+        cadena(nombre);
+        escribir(':');
+        despuesDeNombre = true;
+        return this;
+    }
+
+    public JsonWriter valor(String valor) throws IOException {
+        if (valor == null) {
+            return nulo();
+        }
+        separador();
+        cadena(valor);
+        return this;
+    }
+
+    public JsonWriter valor(long valor) throws IOException {
+        separador();
+        if (valor == Long.MIN_VALUE) {
+            ascii(Long.toString(valor));
+            return this;
+        }
+        if (valor < 0) {
+            escribir('-');
+            valor = -valor;
+        }
+        asegurar(20);
+        int inicio = pos;
+        do {
+            buffer[pos++] = (byte) ('0' + (valor % 10));
+            valor /= 10;
+        } while (valor != 0);
+        // Los dígitos quedaron invertidos
+        for (int i = inicio, j = pos - 1; i < j; i++, j--) {
+            byte t = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = t;
+        }
+        return this;
+    }
+
+    public JsonWriter valor(double valor) throws IOException {
+        separador();
+        ascii(Double.isFinite(valor) ? Double.toString(valor) : "null");
+        return this;
+    }
+
+    public JsonWriter valor(boolean valor) throws IOException {
+        separador();
+        ascii(valor ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter nulo() throws IOException {
+        separador();
+        ascii("null");
+        return this;
+    }
+
+    /** Vuelca el buffer al stream subyacente (no lo cierra). */
+    public void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    // --- Internos ---
+
+    private void abrirNivel() {
+        if (++nivel >= PROFUNDIDAD_MAXIMA) {
+            throw new IllegalStateException("Anidación JSON demasiado profunda");
+        }
+        primero[nivel] = true;
+    }
+
+    private void separador() throws IOException {
+        if (despuesDeNombre) {
+            despuesDeNombre = false;
+            return;
+        }
+        if (!primero[nivel]) {
+            escribir(',');
+        }
+        primero[nivel] = false;
+    }
+
+    private void cadena(String s) throws IOException {
+        escribir('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                asegurar(2);
+                buffer[pos++] = '\\';
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x20) {
+                asegurar(6);
+                buffer[pos++] = '\\';
+                buffer[pos++] = 'u';
+                buffer[pos++] = '0';
+                buffer[pos++] = '0';
+                buffer[pos++] = HEX[c >> 4];
+                buffer[pos++] = HEX[c & 0xF];
+            } else if (c < 0x80) {
+                asegurar(1);
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                asegurar(2);
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                asegurar(4);
+                buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+                buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                asegurar(3);
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        escribir('"');
+    }
+
+    private void ascii(String s) throws IOException {
+        asegurar(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buffer[pos++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void escribir(char c) throws IOException {
+        asegurar(1);
+        buffer[pos++] = (byte) c;
+    }
+
+    private void asegurar(int bytes) throws IOException {
+        if (pos + bytes > buffer.length) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+}
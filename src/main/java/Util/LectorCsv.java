@@ -0,0 +1,91 @@
+package Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector CSV mínimo y en streaming: un registro por llamada a leer().
+ *
+ * Soporta campos entre comillas dobles (con separadores, saltos de línea y
+ * comillas duplicadas "" dentro), separador configurable y BOM UTF-8 al
+ * inicio. No interpreta tipos: todo se devuelve como String sin recortar.
+ */
+public class LectorCsv {
+
+    private final BufferedReader entrada;
+    private final char separador;
+    private long linea;
+    private boolean inicio = true;
+
+    public LectorCsv(BufferedReader entrada, char separador) {
+        this.entrada = entrada;
+        this.separador = separador;
+    }
+
+    /**
+     * @return Campos del siguiente registro, o null al final del archivo
+     */
+    public List<String> leer() throws IOException {
+        String texto = entrada.readLine();
+        if (texto == null) {
+            return null;
+        }
+        linea++;
+        if (inicio) {
+            inicio = false;
+            if (!texto.isEmpty() && texto.charAt(0) == '\uFEFF') {
+                texto = texto.substring(1);
+            }
+        }
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        int i = 0;
+        while (true) {
+            if (i == texto.length()) {
+                if (!entreComillas) {
+                    break;
+                }
+                // Campo entre comillas que continúa en la línea siguiente.
+                String siguiente = entrada.readLine();
+                if (siguiente == null) {
+                    throw new IOException("Comillas sin cerrar en la línea " + linea);
+                }
+                linea++;
+                campo.append('\n');
+                texto = siguiente;
+                i = 0;
+                continue;
+            }
+            char c = texto.charAt(i++);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i < texto.length() && texto.charAt(i) == '"') {
+                        campo.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"' && campo.length() == 0) {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    /** Número de la última línea física leída (para mensajes de error). */
+    public long getLinea() {
+        return linea;
+    }
+}
@@ -0,0 +1,187 @@
+package Util;
+
+import java.text.Normalizer;
+
+/**
+ * Funciones de comparación aproximada de textos para detectar pacientes
+ * cargados dos veces (errores de tipeo, acentos, formato del DNI).
+ */
+public final class Similitud {
+
+    private Similitud() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * Mayúsculas, sin acentos ni diéresis (Ñ -> N) y solo letras y espacios simples.
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinAcentos = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(sinAcentos.length());
+        boolean espacio = false;
+        for (int i = 0; i < sinAcentos.length(); i++) {
+            char c = sinAcentos.charAt(i);
+            if (Character.isLetter(c)) {
+                if (espacio && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(Character.toUpperCase(c));
+                espacio = false;
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                espacio = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Solo los dígitos del DNI, sin ceros a la izquierda ("12.345.678" y
+     * "012345678" dan "12345678").
+     */
+    public static String normalizarDni(String dni) {
+        if (dni == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(dni.length());
+        for (int i = 0; i < dni.length(); i++) {
+            char c = dni.charAt(i);
+            if (c >= '0' && c <= '9' && (c != '0' || sb.length() > 0)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Código fonético para apellidos en castellano (variante de Soundex):
+     * se unifican las letras que suenan igual (B/V/W, C/K/Q, S/Z/C+E,I,
+     * G+E,I/J, LL/L), se ignoran la H y las vocales salvo la inicial, y se
+     * colapsan los sonidos repetidos. "González", "Gonzales" y "Gonsalez"
+     * dan el mismo código.
+     *
+     * @param texto Texto ya normalizado (ver normalizar)
+     * @return Hasta 6 caracteres, o "" si no hay letras
+     */
+    public static String codigoFonetico(String texto) {
+        StringBuilder sb = new StringBuilder(6);
+        char anterior = 0;
+        int n = texto.length();
+        for (int i = 0; i < n && sb.length() < 6; i++) {
+            char c = texto.charAt(i);
+            char sig = i + 1 < n ? texto.charAt(i + 1) : 0;
+            char codigo;
+            switch (c) {
+                case 'A': case 'E': case 'I': case 'O': case 'U':
+                    codigo = sb.length() == 0 ? 'A' : 0;
+                    break;
+                case 'B': case 'V': case 'W':
+                    codigo = 'B';
+                    break;
+                case 'C':
+                    if (sig == 'H') {
+                        codigo = 'X';
+                        i++;
+                    } else {
+                        codigo = (sig == 'E' || sig == 'I') ? 'S' : 'K';
+                    }
+                    break;
+                case 'K':
+                    codigo = 'K';
+                    break;
+                case 'Q':
+                    codigo = 'K';
+                    if (sig == 'U') {
+                        i++;
+                    }
+                    break;
+                case 'S': case 'Z': case 'X':
+                    codigo = 'S';
+                    break;
+                case 'G':
+                    codigo = (sig == 'E' || sig == 'I') ? 'J' : 'G';
+                    break;
+                case 'J':
+                    codigo = 'J';
+                    break;
+                case 'L':
+                    codigo = 'L';
+                    if (sig == 'L') {
+                        i++;
+                    }
+                    break;
+                case 'Y':
+                    codigo = 'Y';
+                    break;
+                case 'H': case ' ':
+                    codigo = 0;
+                    break;
+                default:
+                    codigo = c;
+            }
+            if (codigo != 0 && codigo != anterior) {
+                sb.append(codigo);
+            }
+            if (codigo != 0 || c != 'H') {
+                anterior = codigo;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Similitud de Jaro-Winkler entre 0 (nada en común) y 1 (iguales).
+     * Favorece los textos que comparten prefijo, típico de los errores de
+     * tipeo al final de nombres y apellidos.
+     */
+    public static double jaroWinkler(String a, String b) {
+        if (a.equals(b)) {
+            return a.isEmpty() ? 0.0 : 1.0;
+        }
+        int la = a.length();
+        int lb = b.length();
+        if (la == 0 || lb == 0) {
+            return 0.0;
+        }
+        int ventana = Math.max(0, Math.max(la, lb) / 2 - 1);
+        boolean[] usadosA = new boolean[la];
+        boolean[] usadosB = new boolean[lb];
+        int coincidencias = 0;
+        for (int i = 0; i < la; i++) {
+            int desde = Math.max(0, i - ventana);
+            int hasta = Math.min(lb - 1, i + ventana);
+            for (int j = desde; j <= hasta; j++) {
+                if (!usadosB[j] && a.charAt(i) == b.charAt(j)) {
+                    usadosA[i] = true;
+                    usadosB[j] = true;
+                    coincidencias++;
+                    break;
+                }
+            }
+        }
+        if (coincidencias == 0) {
+            return 0.0;
+        }
+        int transposiciones = 0;
+        for (int i = 0, j = 0; i < la; i++) {
+            if (usadosA[i]) {
+                while (!usadosB[j]) {
+                    j++;
+                }
+                if (a.charAt(i) != b.charAt(j)) {
+                    transposiciones++;
+                }
+                j++;
+            }
+        }
+        double m = coincidencias;
+        double jaro = (m / la + m / lb + (m - transposiciones / 2.0) / m) / 3.0;
+        int prefijo = 0;
+        while (prefijo < 4 && prefijo < la && prefijo < lb && a.charAt(prefijo) == b.charAt(prefijo)) {
+            prefijo++;
+        }
+        return jaro + prefijo * 0.1 * (1.0 - jaro);
+    }
+}
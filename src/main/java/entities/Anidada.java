@@ -0,0 +1,19 @@
+package entities;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca un campo que es otra entidad leída en la misma fila (un LEFT JOIN),
+ * con sus columnas renombradas con "prefijo" (p. ej. hc_nroHistoria). Solo
+ * se lee si su id no es nulo; no participa de la vinculación de parámetros.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Anidada {
+
+    /** Prefijo de las columnas de la entidad anidada en el SELECT. */
+    String prefijo();
+}
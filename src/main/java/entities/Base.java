@@ -1,9 +1,11 @@
 package entities;
 
 public abstract class Base {
-    
+
+    @Columna
     private int id;
 
+    @Columna
     private boolean eliminado;
 
     protected Base(int id, boolean eliminado) {
@@ -0,0 +1,29 @@
+package entities;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca un campo de una entidad como columna de su tabla. Procesador.ProcesadorFilas
+ * genera en compilación la clase &lt;Entidad&gt;Filas (paquete Dao), con el
+ * mapeo de filas y la vinculación de parámetros (ver Dao.PacienteDAO).
+ *
+ * El campo necesita su getter y su setter; tipos admitidos: int, long,
+ * boolean, double, Integer, Long, String, LocalDate, LocalDateTime y enums
+ * (por símbolo si el enum tiene desdeSimbolo/getSimbolo, si no por nombre).
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Columna {
+
+    /** Nombre de la columna (vacío = el del campo). */
+    String value() default "";
+
+    /**
+     * Texto que puede estar guardado comprimido (ver Dao.CompresionTextos):
+     * se lee con set&lt;Campo&gt;Diferido y se guarda con paraGuardar.
+     */
+    boolean comprimida() default false;
+}
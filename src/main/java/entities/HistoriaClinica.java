@@ -1,5 +1,9 @@
 package entities;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
 public class HistoriaClinica extends Base { // Extiende la clase Base
     
     // Enum para el grupo sanguíneo (se mantiene igual)
@@ -16,13 +20,46 @@ public class HistoriaClinica extends Base { // Extiende la clase Base
         public String getSimbolo() {
             return simbolo;
         }
+
+        private static final Map<String, GrupoSanguineo> POR_SIMBOLO = new HashMap<>();
+        static {
+            for (GrupoSanguineo g : values()) {
+                POR_SIMBOLO.put(g.simbolo, g);
+            }
+        }
+
+        /**
+         * Convierte el símbolo de la BD/UI ("A+", "ab-") en el enum. El de la BD
+         * se encuentra sin copiar el texto; el de la UI se normaliza antes.
+         * @throws IllegalArgumentException Si el símbolo no corresponde a ningún grupo
+         */
+        public static GrupoSanguineo desdeSimbolo(String simbolo) {
+            if (simbolo == null) {
+                throw new IllegalArgumentException("Grupo sanguíneo inválido: null");
+            }
+            GrupoSanguineo g = POR_SIMBOLO.get(simbolo);
+            if (g == null) {
+                g = POR_SIMBOLO.get(simbolo.trim().toUpperCase());
+            }
+            if (g == null) {
+                throw new IllegalArgumentException("Grupo sanguíneo inválido: " + simbolo);
+            }
+            return g;
+        }
     }
 
-    private String nroHistoria;
-    private GrupoSanguineo grupoSanguineo;
-    private String antecedentes;
-    private String medicacionActual;
-    private String observaciones;
+    // Columnas de la tabla: el mapeo lo genera Procesador.ProcesadorFilas (Dao.HistoriaClinicaFilas)
+    @Columna private String nroHistoria;
+    @Columna private GrupoSanguineo grupoSanguineo;
+    @Columna(comprimida = true) private String antecedentes;
+    @Columna(comprimida = true) private String medicacionActual;
+    @Columna(comprimida = true) private String observaciones;
+
+    // Textos que el DAO leyó comprimidos (ver Dao.CompresionTextos): se
+    // expanden en el primer get y quedan en el campo correspondiente.
+    private Supplier<String> antecedentesDiferido;
+    private Supplier<String> medicacionDiferida;
+    private Supplier<String> observacionesDiferidas;
     
     // Campo auxiliar para que el DAO/Service maneje la FK del Paciente (en la tabla HC)
     // Se mantiene como Long para mapear al ID del Paciente en la BD (BIGINT), 
@@ -52,18 +89,52 @@ public class HistoriaClinica extends Base { // Extiende la clase Base
     public GrupoSanguineo getGrupoSanguineo() { return grupoSanguineo; }
     public void setGrupoSanguineo(GrupoSanguineo grupoSanguineo) { this.grupoSanguineo = grupoSanguineo; }
     
-    public String getAntecedentes() { return antecedentes; }
-    public void setAntecedentes(String antecedentes) { this.antecedentes = antecedentes; }
+    public String getAntecedentes() {
+        if (antecedentesDiferido != null) {
+            antecedentes = antecedentesDiferido.get();
+            antecedentesDiferido = null;
+        }
+        return antecedentes;
+    }
+    public void setAntecedentes(String antecedentes) { this.antecedentes = antecedentes; this.antecedentesDiferido = null; }
+    public void setAntecedentesDiferido(Supplier<String> valor) { this.antecedentes = null; this.antecedentesDiferido = valor; }
     
-    public String getMedicacionActual() { return medicacionActual; }
-    public void setMedicacionActual(String medicacionActual) { this.medicacionActual = medicacionActual; }
+    public String getMedicacionActual() {
+        if (medicacionDiferida != null) {
+            medicacionActual = medicacionDiferida.get();
+            medicacionDiferida = null;
+        }
+        return medicacionActual;
+    }
+    public void setMedicacionActual(String medicacionActual) { this.medicacionActual = medicacionActual; this.medicacionDiferida = null; }
+    public void setMedicacionActualDiferido(Supplier<String> valor) { this.medicacionActual = null; this.medicacionDiferida = valor; }
     
-    public String getObservaciones() { return observaciones; }
-    public void setObservaciones(String observaciones) { this.observaciones = observaciones; }
+    public String getObservaciones() {
+        if (observacionesDiferidas != null) {
+            observaciones = observacionesDiferidas.get();
+            observacionesDiferidas = null;
+        }
+        return observaciones;
+    }
+    public void setObservaciones(String observaciones) { this.observaciones = observaciones; this.observacionesDiferidas = null; }
+    public void setObservacionesDiferido(Supplier<String> valor) { this.observaciones = null; this.observacionesDiferidas = valor; }
     
     public Long getPacienteId() { return pacienteId; }
     public void setPacienteId(Long pacienteId) { this.pacienteId = pacienteId; }
 
+    /**
+     * Copia de todos los campos (ver Paciente.copiar()). Los textos aún sin
+     * expandir se copian sin expandir.
+     */
+    public HistoriaClinica copiar() {
+        HistoriaClinica copia = new HistoriaClinica(getId(), isEliminado(), nroHistoria, grupoSanguineo, antecedentes,
+                medicacionActual, observaciones, pacienteId);
+        copia.antecedentesDiferido = antecedentesDiferido;
+        copia.medicacionDiferida = medicacionDiferida;
+        copia.observacionesDiferidas = observacionesDiferidas;
+        return copia;
+    }
+
     @Override
     public String toString() {
         return "HC [ID=" + getId() + ", Nro. HC=" + nroHistoria + ", Grupo=" + (grupoSanguineo != null ? grupoSanguineo.getSimbolo() : "N/A") + 
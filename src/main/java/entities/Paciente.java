@@ -4,12 +4,14 @@ import java.time.LocalDate;
 
 public class Paciente extends Base { // Extiende la clase Base
 
-    private String nombre;
-    private String apellido;
-    private String dni;
-    private LocalDate fechaNacimiento;
+    // Columnas de la tabla: el mapeo lo genera Procesador.ProcesadorFilas (Dao.PacienteFilas)
+    @Columna private String nombre;
+    @Columna private String apellido;
+    @Columna private String dni;
+    @Columna private LocalDate fechaNacimiento;
     
-    // Relación 1:1 unidireccional
+    // Relación 1:1 unidireccional (en los SELECT, columnas hc_*)
+    @Anidada(prefijo = "hc_")
     private HistoriaClinica historiaClinica; 
 
     // Constructor completo (incluye los campos heredados y propios)
@@ -43,6 +45,15 @@ public class Paciente extends Base { // Extiende la clase Base
     public HistoriaClinica getHistoriaClinica() { return historiaClinica; }
     public void setHistoriaClinica(HistoriaClinica historiaClinica) { this.historiaClinica = historiaClinica; }
 
+    /**
+     * Copia profunda (incluye la HistoriaClinica), para entregar el mismo
+     * resultado a varios llamadores sin que compartan un objeto mutable.
+     */
+    public Paciente copiar() {
+        return new Paciente(getId(), isEliminado(), nombre, apellido, dni, fechaNacimiento,
+                historiaClinica != null ? historiaClinica.copiar() : null);
+    }
+
     @Override
     public String toString() {
         return "Paciente [ID=" + getId() + ", DNI=" + dni + ", Nombre=" + nombre + 
@@ -0,0 +1,56 @@
+package entities;
+
+import java.time.LocalDateTime;
+
+/**
+ * Una versión pasada (o la actual) de los textos clínicos de una HC:
+ * antecedentes, medicación actual y observaciones (ver Dao.RevisionHistoriaDAO).
+ *
+ * En el listado de revisiones los textos quedan en null; se leen con la
+ * revisión puntual.
+ */
+public class RevisionHistoria {
+
+    private final int historiaId;
+    private final int revision;
+    private final long pacienteId;
+    private final LocalDateTime fecha;
+    private final boolean completa;
+    private final int bytes;
+    private final String antecedentes;
+    private final String medicacionActual;
+    private final String observaciones;
+
+    public RevisionHistoria(int historiaId, int revision, long pacienteId, LocalDateTime fecha, boolean completa, int bytes,
+                            String antecedentes, String medicacionActual, String observaciones) {
+        this.historiaId = historiaId;
+        this.revision = revision;
+        this.pacienteId = pacienteId;
+        this.fecha = fecha;
+        this.completa = completa;
+        this.bytes = bytes;
+        this.antecedentes = antecedentes;
+        this.medicacionActual = medicacionActual;
+        this.observaciones = observaciones;
+    }
+
+    public int getHistoriaId() { return historiaId; }
+    /** Número de revisión: 1, 2, ... en el orden en que se escribieron. */
+    public int getRevision() { return revision; }
+    public long getPacienteId() { return pacienteId; }
+    /** Momento desde el que esta versión fue la vigente. */
+    public LocalDateTime getFecha() { return fecha; }
+    /** true si se guardó completa (keyframe) y no como diferencia con la anterior. */
+    public boolean isCompleta() { return completa; }
+    /** Bytes que ocupa guardada. */
+    public int getBytes() { return bytes; }
+    public String getAntecedentes() { return antecedentes; }
+    public String getMedicacionActual() { return medicacionActual; }
+    public String getObservaciones() { return observaciones; }
+
+    @Override
+    public String toString() {
+        return "Revisión [HC ID=" + historiaId + ", Nro=" + revision + ", Fecha=" + fecha
+                + (completa ? ", completa" : ", diferencia") + ", " + bytes + " bytes]";
+    }
+}
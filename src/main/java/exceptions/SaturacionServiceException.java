@@ -0,0 +1,22 @@
+package exceptions;
+
+/**
+ * La base está saturada: el compartimento de la operación (interactivo o
+ * masivo) alcanzó su límite de concurrencia y no había lugar en su cola.
+ * La operación se rechazó sin llegar a la BD.
+ *
+ * Igual que TimeoutServiceException, es un tipo aparte para que el
+ * llamador descarte carga (p. ej. 503) en lugar de reintentar en seguida.
+ */
+public class SaturacionServiceException extends ServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message Descripción (operación y compartimento)
+     * @param cause Excepción original (Config.SaturacionException)
+     */
+    public SaturacionServiceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,31 @@
+package exceptions;
+
+/**
+ * La operación no terminó dentro de su plazo (o fue cancelada): se venció
+ * el timeout de una consulta, la espera por una conexión del pool o la
+ * espera por un lock.
+ *
+ * Es un tipo aparte para que el llamador pueda distinguirlo de un error de
+ * negocio o de la BD y descartar carga (p. ej. responder 503) en lugar de
+ * reintentar en seguida.
+ */
+public class TimeoutServiceException extends ServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean cancelada;
+
+    /**
+     * @param message Descripción (operación y plazo)
+     * @param cancelada true si se canceló desde otro hilo en lugar de vencer
+     * @param cause Excepción original (normalmente SQLTimeoutException)
+     */
+    public TimeoutServiceException(String message, boolean cancelada, Throwable cause) {
+        super(message, cause);
+        this.cancelada = cancelada;
+    }
+
+    public boolean isCancelada() {
+        return cancelada;
+    }
+}
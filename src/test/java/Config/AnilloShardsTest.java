@@ -0,0 +1,78 @@
+package Config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnilloShardsTest {
+
+    private static final int NODOS_VIRTUALES = 160;
+    private static final int DNIS = 200_000;
+
+    @Test
+    void elShardDependeSoloDeLaClave() {
+        AnilloShards a = new AnilloShards(4, NODOS_VIRTUALES);
+        AnilloShards b = new AnilloShards(4, NODOS_VIRTUALES);
+        for (int i = 0; i < 10_000; i++) {
+            String dni = dni(i);
+            int shard = a.shardDe(dni);
+            assertTrue(shard >= 0 && shard < 4);
+            assertEquals(shard, b.shardDe(dni));
+        }
+    }
+
+    @Test
+    void conUnSoloShardTodoVaAlCero() {
+        AnilloShards anillo = new AnilloShards(1, NODOS_VIRTUALES);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(0, anillo.shardDe(dni(i)));
+        }
+    }
+
+    @Test
+    void repartePareja() {
+        int shards = 4;
+        AnilloShards anillo = new AnilloShards(shards, NODOS_VIRTUALES);
+        int[] cuenta = new int[shards];
+        for (int i = 0; i < DNIS; i++) {
+            cuenta[anillo.shardDe(dni(i))]++;
+        }
+        double esperado = (double) DNIS / shards;
+        for (int s = 0; s < shards; s++) {
+            double desvio = Math.abs(cuenta[s] - esperado) / esperado;
+            assertTrue(desvio < 0.15, "shard " + s + " recibió " + cuenta[s] + " de " + DNIS);
+        }
+    }
+
+    @Test
+    void alAgregarUnShardSoloSeMuevenLasClavesQueVanAlNuevo() {
+        AnilloShards antes = new AnilloShards(4, NODOS_VIRTUALES);
+        AnilloShards despues = new AnilloShards(5, NODOS_VIRTUALES);
+        int movidas = 0;
+        for (int i = 0; i < DNIS; i++) {
+            String dni = dni(i);
+            int nuevo = despues.shardDe(dni);
+            if (nuevo != antes.shardDe(dni)) {
+                // Ninguna clave pasa de un shard viejo a otro shard viejo.
+                assertEquals(4, nuevo);
+                movidas++;
+            }
+        }
+        double fraccion = (double) movidas / DNIS;
+        assertTrue(fraccion > 0.15 && fraccion < 0.25, "se movió " + fraccion + " de las claves (esperado ~1/5)");
+    }
+
+    @Test
+    void hashDeterministicoYDisperso() {
+        assertEquals(AnilloShards.hash("30111222"), AnilloShards.hash("30111222"));
+        assertTrue(AnilloShards.hash("30111222") != AnilloShards.hash("30111223"));
+        // FNV-1a de la cadena vacía es el offset basis; la mezcla final lo cambia.
+        assertTrue(AnilloShards.hash("") != 0xcbf29ce484222325L);
+    }
+
+    /** DNI de 8 dígitos consecutivos: el peor caso para un hash flojo. */
+    private static String dni(int i) {
+        return String.valueOf(20_000_000 + i);
+    }
+}
@@ -0,0 +1,165 @@
+package Config;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LimitadorConcurrenciaTest {
+
+    /** Conexión que no hace nada: solo importa cuándo se cierra. */
+    private static final PoolConexiones.FabricaConexiones FABRICA = () -> (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, metodo, args) -> null);
+
+    /** Tolerancia que ninguna latencia real alcanza: el límite solo reacciona a timeouts y al uso. */
+    private static final double SIN_LATENCIA = 1e9;
+
+    private static LimitadorConcurrencia limitador(int inicial, int minimo, int maximo, int maxCola,
+                                                  long esperaMs, double tolerancia) {
+        return new LimitadorConcurrencia("prueba", inicial, minimo, maximo, maxCola, esperaMs, tolerancia, 60_000);
+    }
+
+    @Test
+    void bajaMultiplicativamenteAnteUnTimeout() throws Exception {
+        LimitadorConcurrencia l = limitador(10, 2, 20, 0, 0, SIN_LATENCIA);
+        l.conectar(FABRICA).close(); // una muestra en la ventana
+        assertThrows(SQLTransientConnectionException.class, () -> l.conectar(() -> {
+            throw new SQLTransientConnectionException("pool agotado");
+        }));
+        assertEquals(9, l.getLimite());
+        assertEquals(1, l.getBajas());
+        assertEquals(0, l.getEnCurso());
+    }
+
+    @Test
+    void bajaCuandoLaLatenciaSuperaLaTolerancia() throws Exception {
+        LimitadorConcurrencia l = limitador(10, 2, 20, 0, 0, 5);
+        // Primera ventana (10 muestras de ~1 ms): fija la latencia base.
+        for (int i = 0; i < 10; i++) {
+            try (Connection c = l.conectar(FABRICA)) {
+                Thread.sleep(1);
+            }
+        }
+        assertEquals(10, l.getLimite());
+        // Segunda: cada conexión retenida mucho más que la base.
+        for (int i = 0; i < 10; i++) {
+            try (Connection c = l.conectar(FABRICA)) {
+                Thread.sleep(50);
+            }
+        }
+        assertEquals(9, l.getLimite());
+        assertEquals(1, l.getBajas());
+    }
+
+    @Test
+    void nuncaBajaDelMinimo() throws Exception {
+        LimitadorConcurrencia l = limitador(3, 3, 10, 0, 0, SIN_LATENCIA);
+        for (int i = 0; i < 5; i++) {
+            l.conectar(FABRICA).close();
+            assertThrows(SQLTimeoutException.class, () -> l.conectar(() -> {
+                throw new SQLTimeoutException("plazo");
+            }));
+        }
+        assertEquals(3, l.getLimite());
+    }
+
+    @Test
+    void subeDeAUnoSiLaVentanaUsoTodoElLimite() throws Exception {
+        LimitadorConcurrencia l = limitador(2, 1, 3, 0, 0, SIN_LATENCIA);
+        for (int ventana = 0; ventana < 3; ventana++) {
+            // 10 muestras, siempre con el límite completo en uso.
+            for (int i = 0; i < 5; i++) {
+                List<Connection> abiertas = new ArrayList<>();
+                for (int j = 0; j < 2; j++) {
+                    abiertas.add(l.conectar(FABRICA));
+                }
+                for (Connection c : abiertas) {
+                    c.close();
+                }
+            }
+        }
+        // 2 -> 3 y ahí se queda (máximo).
+        assertEquals(3, l.getLimite());
+        assertEquals(0, l.getBajas());
+    }
+
+    @Test
+    void noSubeSiLaVentanaNoLlegoAlLimite() throws Exception {
+        LimitadorConcurrencia l = limitador(4, 1, 10, 0, 0, SIN_LATENCIA);
+        for (int i = 0; i < 30; i++) {
+            l.conectar(FABRICA).close();
+        }
+        assertEquals(4, l.getLimite());
+    }
+
+    @Test
+    void conLaColaLlenaRechazaEnSeguida() throws Exception {
+        LimitadorConcurrencia l = limitador(1, 1, 1, 0, 10_000, 2);
+        try (Connection ocupada = l.conectar(FABRICA)) {
+            long inicio = System.nanoTime();
+            assertThrows(SaturacionException.class, () -> l.conectar(FABRICA));
+            assertTrue(System.nanoTime() - inicio < TimeUnit.SECONDS.toNanos(1), "no debía esperar");
+            assertEquals(1, l.getRechazos());
+        }
+        // El rechazo no ocupó lugar.
+        l.conectar(FABRICA).close();
+        assertEquals(0, l.getEnCurso());
+    }
+
+    @Test
+    void rechazaAlVencerLaEsperaEnCola() throws Exception {
+        LimitadorConcurrencia l = limitador(1, 1, 1, 1, 50, 2);
+        try (Connection ocupada = l.conectar(FABRICA)) {
+            assertThrows(SaturacionException.class, () -> l.conectar(FABRICA));
+            assertEquals(0, l.getEnCola());
+            assertEquals(1, l.getRechazos());
+        }
+    }
+
+    @Test
+    void elPlazoDelHiloCortaLaEsperaEnCola() throws Exception {
+        LimitadorConcurrencia l = limitador(1, 1, 1, 1, 60_000, 2);
+        try (Connection ocupada = l.conectar(FABRICA)) {
+            long inicio = System.nanoTime();
+            Plazo.ejecutar(Plazo.en(50), () -> assertThrows(SQLTimeoutException.class, () -> l.conectar(FABRICA)));
+            assertTrue(System.nanoTime() - inicio < TimeUnit.SECONDS.toNanos(5), "esperó más que el plazo");
+            // Vencer el plazo no es saturación.
+            assertEquals(0, l.getRechazos());
+            assertEquals(0, l.getEnCola());
+        }
+    }
+
+    @Test
+    void alCerrarseUnaConexionEntraElQueEspera() throws Exception {
+        LimitadorConcurrencia l = limitador(1, 1, 1, 1, 10_000, 2);
+        Connection ocupada = l.conectar(FABRICA);
+        CompletableFuture<Connection> espera = CompletableFuture.supplyAsync(() -> {
+            try {
+                return l.conectar(FABRICA);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (l.getEnCola() == 0 && System.nanoTime() < limite) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, l.getEnCola());
+        assertFalse(espera.isDone());
+        ocupada.close();
+        espera.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, l.getEnCurso());
+        assertEquals(0, l.getRechazos());
+    }
+}
@@ -0,0 +1,104 @@
+package Config;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlazoTest {
+
+    @Test
+    void unAnidadoMasLejanoNoExtiendeElDeAfuera() throws Exception {
+        Plazo afuera = Plazo.en(1_000);
+        Plazo.ejecutar(afuera, () -> Plazo.ejecutar(Plazo.en(60_000), () -> {
+            assertSame(afuera, Plazo.actual());
+            return null;
+        }));
+        assertNull(Plazo.actual());
+    }
+
+    @Test
+    void unAnidadoMasProximoQuedaFijadoMientrasDura() throws Exception {
+        Plazo afuera = Plazo.en(60_000);
+        Plazo.ejecutar(afuera, () -> {
+            Plazo.ejecutar(Plazo.en(1_000), () -> {
+                assertNotSame(afuera, Plazo.actual());
+                assertTrue(Plazo.actual().restanteMs() <= 1_000);
+                return null;
+            });
+            assertSame(afuera, Plazo.actual());
+            return null;
+        });
+    }
+
+    @Test
+    void cancelarElDeAfueraCancelaElAnidado() throws Exception {
+        Plazo afuera = Plazo.en(60_000);
+        Plazo.ejecutar(afuera, () -> Plazo.ejecutar(Plazo.en(30_000), () -> {
+            Plazo anidado = Plazo.actual();
+            assertFalse(anidado.vencido());
+            afuera.cancelar();
+            assertTrue(anidado.vencido());
+            assertTrue(anidado.isCancelado());
+            assertThrows(SQLTimeoutException.class, () -> anidado.verificar("prueba"));
+            return null;
+        }));
+    }
+
+    @Test
+    void cancelarDesdeOtroHiloCortaLaEsperaAnidada() throws Exception {
+        Plazo afuera = Plazo.en(60_000);
+        CountDownLatch esperando = new CountDownLatch(1);
+        Thread cancelador = new Thread(() -> {
+            try {
+                esperando.await();
+                afuera.cancelar();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        cancelador.start();
+        long inicio = System.nanoTime();
+        boolean cortada = Plazo.ejecutar(afuera, () -> Plazo.ejecutar(Plazo.en(30_000), () -> {
+            esperando.countDown();
+            // Como el pool o el limitador: esperar hasta que el plazo del hilo venza.
+            while (!Plazo.actual().vencido()) {
+                if (System.nanoTime() - inicio > TimeUnit.SECONDS.toNanos(5)) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        }));
+        cancelador.join();
+        assertTrue(cortada, "el plazo anidado no vio la cancelación del de afuera");
+    }
+
+    @Test
+    void unAnidadoBajoUnPlazoYaCanceladoNaceCancelado() throws Exception {
+        Plazo afuera = Plazo.en(60_000);
+        afuera.cancelar();
+        Plazo.ejecutar(afuera, () -> Plazo.ejecutar(Plazo.en(30_000), () -> {
+            assertTrue(Plazo.actual().isCancelado());
+            return null;
+        }));
+    }
+
+    @Test
+    void cancelarElAnidadoNoCancelaElDeAfuera() throws Exception {
+        Plazo afuera = Plazo.en(60_000);
+        Plazo.ejecutar(afuera, () -> Plazo.ejecutar(Plazo.en(30_000), () -> {
+            Plazo.actual().cancelar();
+            return null;
+        }));
+        assertFalse(afuera.vencido());
+    }
+}
@@ -0,0 +1,118 @@
+package Dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeltaTextosTest {
+
+    private static final String ALFABETO = "abc áé\n😀xyz";
+
+    @Test
+    void completaSeLeeSinLaAnterior() {
+        String[] textos = {"Asma leve.", null, ""};
+        assertArrayEquals(textos, DeltaTextos.aplicar(null, DeltaTextos.completa(textos)));
+    }
+
+    @Test
+    void deltaReconstruyeLaNuevaVersion() {
+        String[] anterior = {"Hipertensión.", "Enalapril 10 mg.", "Control anual."};
+        String[] nuevo = {"Hipertensión.", null, "Control anual. Se solicita laboratorio."};
+        assertArrayEquals(nuevo, DeltaTextos.aplicar(anterior, DeltaTextos.delta(anterior, nuevo)));
+        // Y de null a texto.
+        assertArrayEquals(anterior, DeltaTextos.aplicar(nuevo, DeltaTextos.delta(nuevo, anterior)));
+    }
+
+    @Test
+    void agregarUnaNotaCuestaPocoMasQueLaNota() {
+        String base = "Paciente refiere buena adherencia al tratamiento. ".repeat(200);
+        String[] anterior = {base, base, base};
+        String[] nuevo = {base, base, base + "Derivado a cardiología."};
+        byte[] delta = DeltaTextos.delta(anterior, nuevo);
+        assertTrue(delta.length < 40, "delta de " + delta.length + " bytes");
+        assertArrayEquals(nuevo, DeltaTextos.aplicar(anterior, delta));
+    }
+
+    @Test
+    void noCortaParesSustitutos() {
+        // Los textos difieren en el segundo char de un emoji: prefijo y sufijo no pueden partirlo.
+        String[] anterior = {"a😀b", null, null};
+        String[] nuevo = {"a😁b", null, null};
+        String[] leido = DeltaTextos.aplicar(anterior, DeltaTextos.delta(anterior, nuevo));
+        assertEquals(nuevo[0], leido[0]);
+    }
+
+    @Test
+    void idaYVueltaAleatoria() {
+        Random r = new Random(7);
+        String[] actual = {texto(r), texto(r), texto(r)};
+        String[] reconstruido = DeltaTextos.aplicar(null, DeltaTextos.completa(actual));
+        for (int i = 0; i < 5_000; i++) {
+            String[] nuevo = editar(r, actual);
+            byte[] revision = i % 16 == 0 ? DeltaTextos.completa(nuevo) : DeltaTextos.delta(actual, nuevo);
+            // Igual que RevisionHistoriaDAO: se aplica sobre lo reconstruido, no sobre el original.
+            reconstruido = DeltaTextos.aplicar(i % 16 == 0 ? null : reconstruido, revision);
+            assertArrayEquals(nuevo, reconstruido, "revisión " + i);
+            actual = nuevo;
+        }
+    }
+
+    @Test
+    void rechazaContenidoDanado() {
+        String[] anterior = {"uno", "dos", "tres"};
+        String[] nuevo = {"uno más", "dos", null};
+        byte[] delta = DeltaTextos.delta(anterior, nuevo);
+
+        assertThrows(IllegalStateException.class, () -> DeltaTextos.aplicar(null, delta));
+        assertThrows(IllegalStateException.class, () -> DeltaTextos.aplicar(null, new byte[0]));
+        assertThrows(IllegalStateException.class, () -> DeltaTextos.aplicar(null, new byte[]{9}));
+        byte[] truncado = Arrays.copyOf(delta, delta.length - 1);
+        assertThrows(IllegalStateException.class, () -> DeltaTextos.aplicar(anterior, truncado));
+        byte[] sobrante = Arrays.copyOf(delta, delta.length + 1);
+        assertThrows(IllegalStateException.class, () -> DeltaTextos.aplicar(anterior, sobrante));
+        // Empalme sobre una base más corta que su prefijo + sufijo.
+        assertThrows(IllegalStateException.class, () -> DeltaTextos.aplicar(new String[]{"u", "dos", "tres"}, delta));
+    }
+
+    private static String[] editar(Random r, String[] actual) {
+        String[] nuevo = actual.clone();
+        int campo = r.nextInt(DeltaTextos.CAMPOS);
+        String t = nuevo[campo];
+        switch (r.nextInt(6)) {
+            case 0:
+                nuevo[campo] = null;
+                break;
+            case 1:
+                nuevo[campo] = texto(r);
+                break;
+            default:
+                if (t == null) {
+                    nuevo[campo] = texto(r);
+                } else {
+                    // Cortes en límites de code point: los textos de la BD son UTF-16 válido.
+                    int puntos = t.codePointCount(0, t.length());
+                    int desde = t.offsetByCodePoints(0, r.nextInt(puntos + 1));
+                    int hasta = t.offsetByCodePoints(desde, r.nextInt(t.codePointCount(desde, t.length()) + 1));
+                    String insertado = texto(r);
+                    insertado = insertado.substring(0, insertado.offsetByCodePoints(0, r.nextInt(8)));
+                    nuevo[campo] = t.substring(0, desde) + insertado + t.substring(hasta);
+                }
+        }
+        return nuevo;
+    }
+
+    private static String texto(Random r) {
+        int largo = 8 + r.nextInt(200);
+        StringBuilder sb = new StringBuilder(largo);
+        while (sb.length() < largo) {
+            sb.appendCodePoint(ALFABETO.codePointAt(ALFABETO.offsetByCodePoints(0, r.nextInt(ALFABETO.codePointCount(0, ALFABETO.length())))));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package Dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KWayMergeTest {
+
+    private static final Comparator<Integer> NATURAL = Comparator.naturalOrder();
+
+    @Test
+    void fusionaEnOrden() {
+        List<List<Integer>> listas = List.of(List.of(1, 4, 7), List.of(2, 5, 8), List.of(3, 6, 9));
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9), KWayMerge.fusionar(listas, NATURAL, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void cortaEnElLimite() {
+        List<List<Integer>> listas = List.of(List.of(1, 4, 7), List.of(2, 5, 8), List.of(3, 6, 9));
+        assertEquals(List.of(1, 2, 3, 4), KWayMerge.fusionar(listas, NATURAL, 4));
+        assertEquals(List.of(), KWayMerge.fusionar(listas, NATURAL, 0));
+    }
+
+    @Test
+    void toleraListasVaciasYNingunaLista() {
+        List<List<Integer>> listas = List.of(List.of(), List.of(3), List.of(), List.of(1, 2));
+        assertEquals(List.of(1, 2, 3), KWayMerge.fusionar(listas, NATURAL, Integer.MAX_VALUE));
+        assertEquals(List.of(), KWayMerge.fusionar(List.<List<Integer>>of(), NATURAL, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void conservaLosEmpatesDeCadaLista() {
+        // Empates por clave: el orden relativo dentro de cada lista se mantiene.
+        Comparator<String> porLetra = Comparator.comparing(s -> s.charAt(0));
+        List<List<String>> listas = List.of(List.of("a1", "a2", "b1"), List.of("a3", "b2", "b3"));
+        List<String> fusion = KWayMerge.fusionar(listas, porLetra, Integer.MAX_VALUE);
+        assertEquals(6, fusion.size());
+        assertTrue(fusion.indexOf("a1") < fusion.indexOf("a2"));
+        assertTrue(fusion.indexOf("b2") < fusion.indexOf("b3"));
+        assertTrue(fusion.indexOf("a3") < fusion.indexOf("b1"));
+    }
+
+    @Test
+    void coincideConOrdenarTodo() {
+        Random r = new Random(42);
+        for (int caso = 0; caso < 200; caso++) {
+            int k = 1 + r.nextInt(8);
+            List<List<Integer>> listas = new ArrayList<>();
+            List<Integer> todos = new ArrayList<>();
+            for (int i = 0; i < k; i++) {
+                List<Integer> l = new ArrayList<>();
+                int n = r.nextInt(50);
+                for (int j = 0; j < n; j++) {
+                    l.add(r.nextInt(100));
+                }
+                l.sort(NATURAL);
+                listas.add(l);
+                todos.addAll(l);
+            }
+            todos.sort(NATURAL);
+            int limite = r.nextInt(todos.size() + 2);
+            assertEquals(todos.subList(0, Math.min(limite, todos.size())), KWayMerge.fusionar(listas, NATURAL, limite));
+        }
+    }
+
+    @Test
+    void enStreamingAvanzaCadaFuenteRecienAlEntregar() {
+        List<Integer> leidos = new ArrayList<>();
+        List<Iterator<Integer>> fuentes = List.of(
+                registrando(List.of(1, 3, 5), leidos),
+                registrando(List.of(2, 4, 6), leidos));
+        List<Integer> entregados = new ArrayList<>();
+        KWayMerge.fusionar(fuentes, NATURAL, (Integer x) -> {
+            entregados.add(x);
+            // Como máximo se leyó un elemento más por fuente que lo entregado.
+            assertTrue(leidos.size() <= entregados.size() + fuentes.size());
+        });
+        assertEquals(List.of(1, 2, 3, 4, 5, 6), entregados);
+    }
+
+    private static Iterator<Integer> registrando(List<Integer> datos, List<Integer> leidos) {
+        Iterator<Integer> it = datos.iterator();
+        return new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                Integer x = it.next();
+                leidos.add(x);
+                return x;
+            }
+        };
+    }
+}
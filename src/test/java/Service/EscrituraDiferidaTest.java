@@ -0,0 +1,179 @@
+package Service;
+
+import Auditoria.Auditor;
+import entities.HistoriaClinica;
+import entities.Paciente;
+import exceptions.SaturacionServiceException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EscrituraDiferidaTest {
+
+    /** Lotes recibidos por el escritor, como "id:nombre". */
+    private final List<List<String>> lotes = new ArrayList<>();
+
+    @Test
+    void combinaLasActualizacionesDelMismoPaciente() throws Exception {
+        EscrituraDiferida d = new EscrituraDiferida(this::registrar, 100, 1_000);
+        d.encolar(paciente(1, "Ana"), 0);
+        d.encolar(paciente(1, "Ana María"), 0);
+        d.encolar(paciente(2, "Luis"), 0);
+        assertEquals(2, d.tamano());
+        assertEquals(1, d.getCombinadas());
+        assertEquals("Ana María", d.getPorId(1).getNombre());
+
+        d.vaciar();
+        assertEquals(List.of(List.of("1:Ana María", "2:Luis")), lotes);
+        assertEquals(0, d.tamano());
+        assertEquals(2, d.getEscritas());
+        assertEquals(1, d.getLotes());
+    }
+
+    @Test
+    void conservaLaHcPendienteSiLaNuevaNoTrae() throws Exception {
+        EscrituraDiferida d = new EscrituraDiferida(this::registrar, 100, 1_000);
+        Paciente conHc = paciente(1, "Ana");
+        conHc.setHistoriaClinica(new HistoriaClinica(7, false, "HC-7", null, "Asma.", null, null, 1L));
+        d.encolar(conHc, 0);
+        d.encolar(paciente(1, "Ana María"), 0);
+        assertEquals(7, d.getPorId(1).getHistoriaClinica().getId());
+    }
+
+    @Test
+    void agrupaPorShardEnOrdenDeId() throws Exception {
+        EscrituraDiferida d = new EscrituraDiferida(this::registrar, 100, 1_000);
+        d.encolar(paciente(5, "E"), 1);
+        d.encolar(paciente(3, "C"), 0);
+        d.encolar(paciente(4, "D"), 1);
+        d.encolar(paciente(1, "A"), 0);
+        d.vaciar();
+        assertEquals(List.of(List.of("1:A", "3:C"), List.of("4:D", "5:E")), lotes);
+    }
+
+    @Test
+    void noQuitaUnaActualizacionPosteriorAlLote() throws Exception {
+        EscrituraDiferida[] d = new EscrituraDiferida[1];
+        d[0] = new EscrituraDiferida((shard, lote, usuarios) -> {
+            registrar(shard, lote, usuarios);
+            if (lotes.size() == 1) {
+                // Llega otra actualización del mismo paciente mientras se escribe el lote.
+                d[0].encolar(paciente(1, "Ana María"), 0);
+            }
+        }, 100, 1_000);
+        d[0].encolar(paciente(1, "Ana"), 0);
+        d[0].vaciar();
+
+        assertEquals(1, d[0].tamano());
+        assertEquals("Ana María", d[0].getPorId(1).getNombre());
+        d[0].vaciar();
+        assertEquals(List.of(List.of("1:Ana"), List.of("1:Ana María")), lotes);
+        assertEquals(0, d[0].tamano());
+    }
+
+    @Test
+    void aislaYDescartaElPacienteQueLaBdRechaza() throws Exception {
+        EscrituraDiferida d = new EscrituraDiferida((shard, lote, usuarios) -> {
+            for (Paciente p : lote) {
+                if (p.getId() == 3) {
+                    throw new SQLException("Duplicate entry", "23000", 1062);
+                }
+            }
+            registrar(shard, lote, usuarios);
+        }, 100, 1_000);
+        for (int id = 1; id <= 5; id++) {
+            d.encolar(paciente(id, "P" + id), 0);
+        }
+        d.vaciar();
+
+        // El lote falla entero y se reintenta de a uno: solo el 3 queda afuera.
+        assertEquals(List.of(List.of("1:P1"), List.of("2:P2"), List.of("4:P4"), List.of("5:P5")), lotes);
+        assertEquals(1, d.getRechazadas());
+        assertEquals(4, d.getEscritas());
+        assertEquals(0, d.tamano());
+    }
+
+    @Test
+    void unErrorTransitorioDejaElLotePendiente() throws Exception {
+        EscrituraDiferida d = new EscrituraDiferida((shard, lote, usuarios) -> {
+            throw new SQLException("Communications link failure", "08S01");
+        }, 100, 1_000);
+        d.encolar(paciente(1, "Ana"), 0);
+        d.encolar(paciente(2, "Luis"), 0);
+        assertThrows(SQLException.class, d::vaciar);
+        assertEquals(2, d.tamano());
+        assertEquals(0, d.getRechazadas());
+        assertEquals(1, d.getErrores());
+    }
+
+    @Test
+    void vaciarUnPacienteEscribeSoloEse() throws Exception {
+        EscrituraDiferida d = new EscrituraDiferida(this::registrar, 100, 1_000);
+        d.encolar(paciente(1, "Ana"), 0);
+        d.encolar(paciente(2, "Luis"), 0);
+        d.vaciar(2);
+        assertEquals(List.of(List.of("2:Luis")), lotes);
+        assertNull(d.getPorId(2));
+        assertNotNull(d.getPorId(1));
+    }
+
+    @Test
+    void elEscritorRecibeElUsuarioQueEncolo() throws Exception {
+        List<String> recibidos = new ArrayList<>();
+        EscrituraDiferida d = new EscrituraDiferida((shard, lote, usuarios) -> recibidos.addAll(usuarios), 100, 1_000);
+        Auditor.setUsuario("ana");
+        try {
+            d.encolar(paciente(1, "Ana"), 0);
+        } finally {
+            Auditor.setUsuario(null);
+        }
+        d.encolar(paciente(2, "Luis"), 0);
+        d.vaciar();
+        assertEquals(List.of("ana", Auditor.getUsuario()), recibidos);
+    }
+
+    @Test
+    void conElLimiteRechazaPacientesNuevosPeroCombinaLosPendientes() throws Exception {
+        // Escritor que no logra escribir: lo pendiente no baja.
+        EscrituraDiferida d = new EscrituraDiferida((shard, lote, usuarios) -> {
+            throw new SQLException("Lock wait timeout", "40001");
+        }, 100, 100);
+        for (int id = 1; id <= 100; id++) {
+            d.encolar(paciente(id, "P" + id), 0);
+        }
+        assertThrows(SaturacionServiceException.class, () -> d.encolar(paciente(101, "Nuevo"), 0));
+        assertTrue(d.encolar(paciente(50, "Otro nombre"), 0));
+        assertEquals(100, d.tamano());
+    }
+
+    @Test
+    void cerradaNoAceptaMas() throws Exception {
+        EscrituraDiferida d = new EscrituraDiferida(this::registrar, 100, 1_000);
+        d.encolar(paciente(1, "Ana"), 0);
+        d.cerrar();
+        assertEquals(List.of(List.of("1:Ana")), lotes);
+        assertFalse(d.encolar(paciente(2, "Luis"), 0), "cerrada debe pedir escritura directa");
+    }
+
+    private void registrar(int shard, List<Paciente> lote, List<String> usuarios) {
+        List<String> ids = new ArrayList<>();
+        for (Paciente p : lote) {
+            ids.add(p.getId() + ":" + p.getNombre());
+        }
+        lotes.add(ids);
+    }
+
+    private static Paciente paciente(int id, String nombre) {
+        return new Paciente(id, false, nombre, "Pérez", String.valueOf(30_000_000 + id), LocalDate.of(1980, 1, 1), null);
+    }
+}
@@ -0,0 +1,105 @@
+package Service;
+
+import Dao.PacienteDAO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PacienteServiceImplTest {
+
+    private static final int[] DIAS = {0, 1, 7, 30, 59, 60, 180, 364, 365};
+
+    @Test
+    void dentroDelAnioEsUnSoloTramo() {
+        assertTramos(LocalDate.of(2025, 6, 10), 20, new int[][] {{610, 630}});
+        assertTramos(LocalDate.of(2025, 6, 10), 0, new int[][] {{610, 610}});
+    }
+
+    @Test
+    void alCruzarFinDeAnioSonDosTramosEnOrden() {
+        assertTramos(LocalDate.of(2025, 12, 20), 30, new int[][] {{1220, 1231}, {101, 119}});
+        assertTramos(LocalDate.of(2025, 12, 31), 1, new int[][] {{1231, 1231}, {101, 101}});
+    }
+
+    @Test
+    void conUnAnioCompletoElSegundoTramoNoRepiteHoy() {
+        assertTramos(LocalDate.of(2025, 6, 10), 365, new int[][] {{610, 1231}, {101, 609}});
+        // 2024 es bisiesto: 365 días desde el 1/1 terminan el 31/12, sin cruzar.
+        assertTramos(LocalDate.of(2024, 1, 1), 365, new int[][] {{101, 1231}});
+    }
+
+    @Test
+    void elNacidoUn29DeFebreroCumpleEl28EnAniosNoBisiestos() {
+        // El período termina el 28/2 de 2025: incluye el 29/2.
+        assertTramos(LocalDate.of(2025, 2, 1), 27, new int[][] {{201, 229}});
+        assertTramos(LocalDate.of(2025, 2, 28), 0, new int[][] {{228, 229}});
+        // Cruzando el año hasta el 28/2 no bisiesto.
+        assertTramos(LocalDate.of(2024, 12, 1), 89, new int[][] {{1201, 1231}, {101, 229}});
+        // En un año bisiesto el 28/2 es solo el 28/2.
+        assertTramos(LocalDate.of(2024, 2, 1), 27, new int[][] {{201, 228}});
+    }
+
+    @Test
+    void desdeUn29DeFebreroConUnAnioCompletoNoLoRepite() {
+        // Termina el 28/2/2025 (se extendería a 229), pero el 29/2 ya está en el primer tramo.
+        assertTramos(LocalDate.of(2024, 2, 29), 365, new int[][] {{229, 1231}, {101, 228}});
+    }
+
+    @Test
+    void coincideConRecorrerElPeriodoDiaPorDia() {
+        for (LocalDate hoy = LocalDate.of(2023, 1, 1); hoy.getYear() < 2026; hoy = hoy.plusDays(1)) {
+            for (int dias : DIAS) {
+                int[][] tramos = PacienteServiceImpl.tramosCumpleanos(hoy, dias);
+                boolean[] esperado = cumpleanosDelPeriodo(hoy, dias);
+                for (int md = 101; md <= 1231; md++) {
+                    if (!esMesDia(md)) {
+                        continue;
+                    }
+                    int veces = 0;
+                    for (int[] t : tramos) {
+                        if (md >= t[0] && md <= t[1]) {
+                            veces++;
+                        }
+                    }
+                    String caso = hoy + " + " + dias + " días, mesDia " + md;
+                    assertTrue(veces <= 1, caso + ": en más de un tramo");
+                    assertEquals(esperado[md], veces == 1, caso);
+                }
+                // El primer tramo empieza hoy: el orden de cercanía sale del orden de los tramos.
+                assertEquals(PacienteDAO.mesDia(hoy), tramos[0][0]);
+            }
+        }
+    }
+
+    /** mesDia de quienes cumplen años en el período, marcando día por día. */
+    private static boolean[] cumpleanosDelPeriodo(LocalDate hoy, int dias) {
+        boolean[] cumple = new boolean[1232];
+        for (int i = 0; i <= dias; i++) {
+            LocalDate d = hoy.plusDays(i);
+            cumple[PacienteDAO.mesDia(d)] = true;
+            if (d.getMonthValue() == 2 && d.getDayOfMonth() == 28 && !d.isLeapYear()) {
+                cumple[229] = true;
+            }
+        }
+        return cumple;
+    }
+
+    private static boolean esMesDia(int md) {
+        int mes = md / 100;
+        int dia = md % 100;
+        return mes >= 1 && mes <= 12 && dia >= 1 && dia <= MonthDay.of(mes, 1).getMonth().maxLength();
+    }
+
+    private static void assertTramos(LocalDate hoy, int dias, int[][] esperados) {
+        int[][] tramos = PacienteServiceImpl.tramosCumpleanos(hoy, dias);
+        assertEquals(esperados.length, tramos.length, hoy + " + " + dias);
+        for (int i = 0; i < esperados.length; i++) {
+            assertEquals(esperados[i][0], tramos[i][0], hoy + " + " + dias + ", tramo " + i);
+            assertEquals(esperados[i][1], tramos[i][1], hoy + " + " + dias + ", tramo " + i);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private static final int SEGUIDORES = 4;
+
+    private final SingleFlight<Integer, StringBuilder> vuelos = new SingleFlight<>(StringBuilder::new);
+
+    @Test
+    void cadaLlamadorRecibeSuPropiaCopia() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger cargas = new AtomicInteger();
+        StringBuilder cargado = new StringBuilder("original");
+        ExecutorService hilos = Executors.newFixedThreadPool(SEGUIDORES + 1);
+        try {
+            Future<StringBuilder> lider = hilos.submit(() -> vuelos.ejecutar(1, () -> {
+                cargas.incrementAndGet();
+                liberar.await();
+                return cargado;
+            }));
+            while (vuelos.getEnCurso() == 0) {
+                Thread.sleep(1);
+            }
+            List<Thread> esperando = new ArrayList<>();
+            List<Future<StringBuilder>> seguidores = new ArrayList<>();
+            for (int i = 0; i < SEGUIDORES; i++) {
+                seguidores.add(hilos.submit(() -> {
+                    synchronized (esperando) {
+                        esperando.add(Thread.currentThread());
+                    }
+                    return vuelos.ejecutar(1, () -> {
+                        cargas.incrementAndGet();
+                        return new StringBuilder("otra carga");
+                    });
+                }));
+            }
+            esperarBloqueados(esperando, SEGUIDORES);
+            liberar.countDown();
+
+            StringBuilder delLider = lider.get(5, TimeUnit.SECONDS);
+            // El líder edita lo que recibió (como el PUT sobre el resultado de getById)...
+            delLider.append(" editado por el líder");
+            // ...y la carga modifica el objeto que devolvió.
+            cargado.append(" modificado después");
+
+            List<StringBuilder> recibidos = new ArrayList<>();
+            recibidos.add(delLider);
+            for (Future<StringBuilder> f : seguidores) {
+                StringBuilder s = f.get(5, TimeUnit.SECONDS);
+                assertEquals("original", s.toString());
+                recibidos.add(s);
+            }
+            assertEquals(1, cargas.get(), "una sola carga para todo el vuelo");
+            assertNotSame(cargado, delLider);
+            for (int i = 0; i < recibidos.size(); i++) {
+                for (int j = i + 1; j < recibidos.size(); j++) {
+                    assertNotSame(recibidos.get(i), recibidos.get(j));
+                }
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    @Test
+    void unaLecturaPosteriorAInvalidarNoSeUneAlVueloAnterior() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService hilo = Executors.newSingleThreadExecutor();
+        try {
+            Future<StringBuilder> anterior = hilo.submit(() -> vuelos.ejecutar(1, () -> {
+                liberar.await();
+                return new StringBuilder("antes de la escritura");
+            }));
+            while (vuelos.getEnCurso() == 0) {
+                Thread.sleep(1);
+            }
+            vuelos.invalidar();
+
+            // Si se uniera al vuelo anterior, quedaría esperando al latch.
+            StringBuilder posterior = vuelos.ejecutar(1, () -> new StringBuilder("después de la escritura"));
+            assertEquals("después de la escritura", posterior.toString());
+
+            liberar.countDown();
+            assertEquals("antes de la escritura", anterior.get(5, TimeUnit.SECONDS).toString());
+        } finally {
+            hilo.shutdownNow();
+        }
+    }
+
+    @Test
+    void elErrorLlegaATodosYLaSiguienteLecturaReintenta() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            Future<StringBuilder> lider = hilos.submit(() -> vuelos.ejecutar(1, () -> {
+                liberar.await();
+                throw new IllegalStateException("BD caída");
+            }));
+            while (vuelos.getEnCurso() == 0) {
+                Thread.sleep(1);
+            }
+            List<Thread> esperando = new ArrayList<>();
+            Future<StringBuilder> seguidor = hilos.submit(() -> {
+                synchronized (esperando) {
+                    esperando.add(Thread.currentThread());
+                }
+                return vuelos.ejecutar(1, () -> new StringBuilder("no debería cargarse"));
+            });
+            esperarBloqueados(esperando, 1);
+            liberar.countDown();
+
+            for (Future<StringBuilder> f : List.of(lider, seguidor)) {
+                Exception e = assertThrows(Exception.class, () -> f.get(5, TimeUnit.SECONDS));
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                assertEquals("BD caída", e.getCause().getMessage());
+            }
+            assertEquals(0, vuelos.getEnCurso());
+            assertEquals("reintento", vuelos.ejecutar(1, () -> new StringBuilder("reintento")).toString());
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    @Test
+    void unResultadoNuloNoSeCopia() throws Exception {
+        assertNull(vuelos.ejecutar(1, () -> null));
+    }
+
+    /** Espera a que los "cantidad" seguidores estén bloqueados en el futuro del vuelo. */
+    private static void esperarBloqueados(List<Thread> hilos, int cantidad) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < limite) {
+            boolean todos;
+            synchronized (hilos) {
+                todos = hilos.size() == cantidad;
+                for (Thread t : hilos) {
+                    todos &= t.getState() == Thread.State.WAITING;
+                }
+            }
+            if (todos) {
+                return;
+            }
+            Thread.sleep(1);
+        }
+        throw new AssertionError("Los seguidores no se unieron al vuelo");
+    }
+}
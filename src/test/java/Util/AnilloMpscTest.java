@@ -0,0 +1,137 @@
+package Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnilloMpscTest {
+
+    @Test
+    void redondeaLaCapacidadALaPotenciaDe2() {
+        assertEquals(1024, new AnilloMpsc<Integer>(1000).getCapacidad());
+        assertEquals(1024, new AnilloMpsc<Integer>(1024).getCapacidad());
+        assertEquals(2048, new AnilloMpsc<Integer>(1025).getCapacidad());
+    }
+
+    @Test
+    void entregaEnOrdenYVacioDevuelveNull() {
+        AnilloMpsc<Integer> anillo = new AnilloMpsc<>(8);
+        assertNull(anillo.sacar());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(anillo.ofrecer(i));
+        }
+        assertEquals(5, anillo.getPendientes());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(i), anillo.sacar());
+        }
+        assertNull(anillo.sacar());
+        assertEquals(0, anillo.getPendientes());
+    }
+
+    @Test
+    void llenoRechazaHastaQueElConsumidorLibereLugar() {
+        AnilloMpsc<Integer> anillo = new AnilloMpsc<>(8);
+        for (int i = 0; i < anillo.getCapacidad(); i++) {
+            assertTrue(anillo.ofrecer(i));
+        }
+        assertFalse(anillo.ofrecer(99));
+        assertFalse(anillo.ofrecer(99));
+
+        assertEquals(Integer.valueOf(0), anillo.sacar());
+        assertTrue(anillo.ofrecer(8));
+        assertFalse(anillo.ofrecer(99));
+        // El rechazado no ocupó lugar: sale todo lo aceptado, en orden.
+        for (int i = 1; i <= 8; i++) {
+            assertEquals(Integer.valueOf(i), anillo.sacar());
+        }
+        assertNull(anillo.sacar());
+    }
+
+    @Test
+    void daMuchasVueltasSinPerderElementos() {
+        AnilloMpsc<Integer> anillo = new AnilloMpsc<>(4);
+        int siguiente = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(anillo.ofrecer(i));
+            if (i % 3 == 2) {
+                // Se saca menos de lo que entra hasta llenarlo, luego se vacía.
+                assertEquals(Integer.valueOf(siguiente++), anillo.sacar());
+            }
+            if (anillo.getPendientes() == anillo.getCapacidad()) {
+                while (siguiente <= i) {
+                    assertEquals(Integer.valueOf(siguiente++), anillo.sacar());
+                }
+            }
+        }
+        while (siguiente < 10_000) {
+            assertEquals(Integer.valueOf(siguiente++), anillo.sacar());
+        }
+        assertNull(anillo.sacar());
+    }
+
+    @Test
+    void variosProductoresUnConsumidorSinPerdidasNiDuplicados() throws Exception {
+        int productores = 4;
+        int porProductor = 50_000;
+        // Chico a propósito: los productores se encuentran seguido con el anillo lleno.
+        AnilloMpsc<long[]> anillo = new AnilloMpsc<>(64);
+        CyclicBarrier largada = new CyclicBarrier(productores + 1);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(productores);
+        long rechazos = 0;
+        try {
+            List<Future<Long>> tareas = new ArrayList<>();
+            for (int p = 0; p < productores; p++) {
+                long productor = p;
+                tareas.add(ejecutor.submit(() -> {
+                    largada.await();
+                    long llenos = 0;
+                    for (long n = 0; n < porProductor; n++) {
+                        long[] elemento = {productor, n};
+                        while (!anillo.ofrecer(elemento)) {
+                            llenos++;
+                            Thread.yield(); // también con un solo procesador
+                        }
+                    }
+                    return llenos;
+                }));
+            }
+
+            largada.await();
+            long[] siguientePorProductor = new long[productores];
+            long recibidos = 0;
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (recibidos < (long) productores * porProductor) {
+                long[] e = anillo.sacar();
+                if (e == null) {
+                    assertTrue(System.nanoTime() < limite, "el consumidor no recibió todo a tiempo");
+                    Thread.yield();
+                    continue;
+                }
+                int productor = (int) e[0];
+                // FIFO por productor: ni saltos (pérdidas) ni repetidos.
+                assertEquals(siguientePorProductor[productor], e[1], "productor " + productor);
+                siguientePorProductor[productor]++;
+                recibidos++;
+            }
+            for (Future<Long> t : tareas) {
+                rechazos += t.get();
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+        assertNull(anillo.sacar());
+        assertEquals(0, anillo.getPendientes());
+        assertTrue(rechazos > 0, "el anillo nunca se llenó: la prueba no ejercitó el rechazo");
+    }
+}
@@ -0,0 +1,103 @@
+package Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiltroBloomTest {
+
+    private static final int CAPACIDAD = 100_000;
+
+    @Test
+    void sinFalsosNegativos() {
+        FiltroBloom filtro = new FiltroBloom(CAPACIDAD, 0.01);
+        for (int i = 0; i < CAPACIDAD; i++) {
+            filtro.agregar(dni(i));
+        }
+        for (int i = 0; i < CAPACIDAD; i++) {
+            assertTrue(filtro.puedeContener(dni(i)), "falso negativo para " + dni(i));
+        }
+        assertEquals(CAPACIDAD, filtro.getCantidad());
+    }
+
+    @Test
+    void vacioNoContieneNada() {
+        FiltroBloom filtro = new FiltroBloom(CAPACIDAD, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(filtro.puedeContener(dni(i)));
+        }
+    }
+
+    @Test
+    void tasaDeFalsosPositivosCercaDeLaPedida() {
+        double pedida = 0.01;
+        FiltroBloom filtro = new FiltroBloom(CAPACIDAD, pedida);
+        for (int i = 0; i < CAPACIDAD; i++) {
+            filtro.agregar(dni(i));
+        }
+        int falsos = 0;
+        int pruebas = 200_000;
+        for (int i = 0; i < pruebas; i++) {
+            if (filtro.puedeContener(dni(CAPACIDAD + i))) {
+                falsos++;
+            }
+        }
+        double observada = (double) falsos / pruebas;
+        assertTrue(observada < pedida * 2, "tasa observada " + observada);
+        assertTrue(Math.abs(filtro.tasaFalsosPositivosEstimada() - pedida) < pedida / 2,
+                "tasa estimada " + filtro.tasaFalsosPositivosEstimada());
+    }
+
+    @Test
+    void dimensionaSegunCapacidadYTasa() {
+        // m = -n ln p / (ln 2)^2 ≈ 9,59 bits por valor y k ≈ 7 para p = 1 %.
+        FiltroBloom filtro = new FiltroBloom(CAPACIDAD, 0.01);
+        assertTrue(filtro.getBits() >= 958_505 && filtro.getBits() < 958_505 + 64);
+        assertEquals(0, filtro.getBits() % 64);
+        assertEquals(7, filtro.getFuncionesHash());
+    }
+
+    @Test
+    void rechazaUnFiltroDemasiadoGrande() {
+        assertThrows(IllegalArgumentException.class, () -> new FiltroBloom(Long.MAX_VALUE / 2, 1e-9));
+    }
+
+    @Test
+    void agregarConcurrenteNoPierdeBits() throws Exception {
+        FiltroBloom filtro = new FiltroBloom(CAPACIDAD, 0.01);
+        int hilos = 4;
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                int desde = h;
+                tareas.add(ejecutor.submit(() -> {
+                    for (int i = desde; i < CAPACIDAD; i += hilos) {
+                        filtro.agregar(dni(i));
+                    }
+                }));
+            }
+            for (Future<?> t : tareas) {
+                t.get();
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+        for (int i = 0; i < CAPACIDAD; i++) {
+            assertTrue(filtro.puedeContener(dni(i)), "falso negativo para " + dni(i));
+        }
+    }
+
+    private static String dni(int i) {
+        return String.valueOf(20_000_000 + i);
+    }
+}
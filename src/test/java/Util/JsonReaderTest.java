@@ -0,0 +1,71 @@
+package Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonReaderTest {
+
+    @Test
+    void parseaTiposBasicos() {
+        Map<String, Object> json = JsonReader.parsearObjeto(
+                "{\"nombre\":\"Ana\\nMaría\",\"id\":15,\"peso\":61.5,\"activo\":true,\"hc\":null,\"tags\":[1,\"x\"]}");
+        assertEquals("Ana\nMaría", json.get("nombre"));
+        assertEquals(15L, json.get("id"));
+        assertEquals(61.5, json.get("peso"));
+        assertEquals(Boolean.TRUE, json.get("activo"));
+        assertNull(json.get("hc"));
+        assertTrue(json.containsKey("hc"));
+        assertEquals(List.of(1L, "x"), json.get("tags"));
+    }
+
+    @Test
+    void aceptaHastaLaProfundidadMaxima() {
+        // La raíz es el nivel 1: MAX_PROFUNDIDAD - 1 arreglos anidados adentro.
+        int arreglos = JsonReader.MAX_PROFUNDIDAD - 1;
+        String json = "{\"a\":" + "[".repeat(arreglos) + "]".repeat(arreglos) + "}";
+        assertEquals(1, JsonReader.parsearObjeto(json).size());
+    }
+
+    @Test
+    void rechazaAnidamientoExcesivo() {
+        int arreglos = JsonReader.MAX_PROFUNDIDAD;
+        String json = "{\"a\":" + "[".repeat(arreglos) + "]".repeat(arreglos) + "}";
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parsearObjeto(json));
+    }
+
+    @Test
+    void anidamientoPatologicoNoAgotaLaPila() {
+        // Sin límite, esto terminaba en StackOverflowError.
+        String json = "{\"a\":" + "[".repeat(1_000_000);
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parsearObjeto(json));
+        String objetos = "{\"a\":".repeat(1_000_000);
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parsearObjeto(objetos));
+    }
+
+    @Test
+    void laProfundidadSeCuentaPorRamaNoPorTotal() {
+        // Muchos hermanos anidados de a poco no deben acumular profundidad.
+        StringBuilder json = new StringBuilder("{\"a\":[");
+        for (int i = 0; i < 1_000; i++) {
+            json.append(i > 0 ? "," : "").append("[[{\"b\":[]}]]");
+        }
+        json.append("]}");
+        assertEquals(1, JsonReader.parsearObjeto(json.toString()).size());
+    }
+
+    @Test
+    void rechazaJsonInvalido() {
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parsearObjeto("[1,2]"));
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parsearObjeto("{\"a\":1} x"));
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parsearObjeto("{\"a\":\"sin cerrar}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parsearObjeto("{\"a\":12abc}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parsearObjeto("{\"a\":\"\\u12\"}"));
+    }
+}